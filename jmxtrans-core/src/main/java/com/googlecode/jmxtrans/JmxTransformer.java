@@ -26,24 +26,34 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.name.Named;
+import com.google.inject.name.Names;
 import com.googlecode.jmxtrans.classloader.ClassLoaderEnricher;
 import com.googlecode.jmxtrans.cli.JCommanderArgumentParser;
 import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.discovery.DiscoveryCommand;
+import com.googlecode.jmxtrans.explain.ExplainCommand;
 import com.googlecode.jmxtrans.exceptions.LifecycleException;
 import com.googlecode.jmxtrans.guice.JmxTransModule;
+import com.googlecode.jmxtrans.jmx.NotificationSubscriptions;
 import com.googlecode.jmxtrans.jobs.ServerJob;
 import com.googlecode.jmxtrans.model.JmxProcess;
 import com.googlecode.jmxtrans.model.OutputWriter;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.ValidationException;
+import com.googlecode.jmxtrans.model.naming.KeyUtils;
+import com.googlecode.jmxtrans.model.results.CardinalityGuard;
+import com.googlecode.jmxtrans.monitoring.ManagedCardinalityGuard;
 import com.googlecode.jmxtrans.monitoring.ManagedThreadPoolExecutor;
+import com.googlecode.jmxtrans.snapshot.SnapshotClients;
 import com.googlecode.jmxtrans.util.WatchDir;
 import com.googlecode.jmxtrans.util.WatchedCallback;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.RandomStringUtils;
+import org.apache.commons.pool.KeyedObjectPool;
 import org.quartz.CronExpression;
 import org.quartz.CronTrigger;
 import org.quartz.JobDataMap;
@@ -59,6 +69,7 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.management.MBeanServer;
 import java.io.File;
+import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -101,6 +112,9 @@ public class JmxTransformer implements WatchedCallback {
 	private volatile boolean isRunning = false;
 	@Nonnull private final ThreadPoolExecutor queryProcessorExecutor;
 	@Nonnull private final ThreadPoolExecutor resultProcessorExecutor;
+	@Nonnull private final NotificationSubscriptions notificationSubscriptions;
+	@Nonnull private final SnapshotClients snapshotClients;
+	@Nonnull private final CardinalityGuard cardinalityGuard;
 	@Nonnull private final ThreadLocalRandom random = ThreadLocalRandom.current();
 
 	@Inject
@@ -110,13 +124,19 @@ public class JmxTransformer implements WatchedCallback {
 			ConfigurationParser configurationParser,
 			Injector injector,
 			@Nonnull @Named("queryProcessorExecutor") ThreadPoolExecutor queryProcessorExecutor,
-			@Nonnull @Named("resultProcessorExecutor") ThreadPoolExecutor resultProcessorExecutor) {
+			@Nonnull @Named("resultProcessorExecutor") ThreadPoolExecutor resultProcessorExecutor,
+			@Nonnull NotificationSubscriptions notificationSubscriptions,
+			@Nonnull SnapshotClients snapshotClients,
+			@Nonnull CardinalityGuard cardinalityGuard) {
 		this.serverScheduler = serverScheduler;
 		this.configuration = configuration;
 		this.configurationParser = configurationParser;
 		this.injector = injector;
 		this.queryProcessorExecutor = queryProcessorExecutor;
 		this.resultProcessorExecutor = resultProcessorExecutor;
+		this.notificationSubscriptions = notificationSubscriptions;
+		this.snapshotClients = snapshotClients;
+		this.cardinalityGuard = cardinalityGuard;
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -134,6 +154,21 @@ public class JmxTransformer implements WatchedCallback {
 
 		JmxTransformer transformer = injector.getInstance(JmxTransformer.class);
 
+		if (configuration.getDiscoveryOutput() != null || configuration.isExplain()) {
+			// one-off commands: the connections are not needed once they are done
+			KeyedObjectPool<?, ?> pool = injector.getInstance(Key.get(KeyedObjectPool.class, Names.named("mbeanPool")));
+			try {
+				if (configuration.getDiscoveryOutput() != null) {
+					transformer.discover(configuration.getDiscoveryOutput());
+				} else {
+					transformer.explain(System.out);
+				}
+			} finally {
+				pool.close();
+			}
+			return;
+		}
+
 		// Start the process
 		transformer.doMain();
 	}
@@ -153,6 +188,9 @@ public class JmxTransformer implements WatchedCallback {
 		ManagedThreadPoolExecutor resultExecutorMBean = new ManagedThreadPoolExecutor(resultProcessorExecutor, "resultProcessorExecutor");
 		platformMBeanServer.registerMBean(resultExecutorMBean, resultExecutorMBean.getObjectName());
 
+		ManagedCardinalityGuard cardinalityGuardMBean = new ManagedCardinalityGuard(cardinalityGuard);
+		platformMBeanServer.registerMBean(cardinalityGuardMBean, cardinalityGuardMBean.getObjectName());
+
 		// Start the process
 		this.start();
 
@@ -172,6 +210,33 @@ public class JmxTransformer implements WatchedCallback {
 		platformMBeanServer.unregisterMBean(mbean.getObjectName());
 		platformMBeanServer.unregisterMBean(queryExecutorMBean.getObjectName());
 		platformMBeanServer.unregisterMBean(resultExecutorMBean.getObjectName());
+		platformMBeanServer.unregisterMBean(cardinalityGuardMBean.getObjectName());
+	}
+
+	/**
+	 * Writes queries for all the numeric attributes of the configured servers,
+	 * see {@link DiscoveryCommand}.
+	 */
+	public void discover(File output) throws Exception {
+		ImmutableList<Server> servers = configurationParser.parseServers(getJsonFiles(), configuration.isContinueOnJsonError());
+		ImmutableList<Server> previous = ImmutableList.of();
+		if (output.isFile()) {
+			try {
+				previous = configurationParser.parseServers(ImmutableList.of(output), false);
+			} catch (LifecycleException e) {
+				log.warn("Could not read the previous discovery {}, it will be replaced", output, e);
+			}
+		}
+		injector.getInstance(DiscoveryCommand.class).run(servers, previous, output);
+	}
+
+	/**
+	 * Prints what each MBean of the configured queries costs to collect, see
+	 * {@link ExplainCommand}.
+	 */
+	public void explain(PrintStream out) throws Exception {
+		ImmutableList<Server> servers = configurationParser.parseServers(getJsonFiles(), configuration.isContinueOnJsonError());
+		injector.getInstance(ExplainCommand.class).run(servers, out);
 	}
 
 	public synchronized void start() throws LifecycleException {
@@ -260,6 +325,9 @@ public class JmxTransformer implements WatchedCallback {
 	 * Used both during shutdown and when re-reading config files
 	 */
 	private void stopWriterAndClearMasterServerList() {
+		// no more notifications should reach the writers we are about to close
+		notificationSubscriptions.unsubscribeAll();
+		snapshotClients.closeAll();
 		for (Server server : this.masterServersList) {
 			for (OutputWriter writer : server.getOutputWriters()) {
 				try {
@@ -280,6 +348,8 @@ public class JmxTransformer implements WatchedCallback {
 			}
 		}
 		this.masterServersList = ImmutableList.of();
+		// cached names reference the servers and queries being dropped
+		KeyUtils.clearCache();
 	}
 
 	/**
@@ -342,6 +412,7 @@ public class JmxTransformer implements WatchedCallback {
 	 * Processes all the json files and manages the dedup process
 	 */
 	private void processFilesIntoServers() throws LifecycleException {
+		ImmutableList<Server> previousServers = this.masterServersList;
 		// Shutdown the outputwriters and clear the current server list - this gives us a clean
 		// start when re-reading the json config files
 		try {
@@ -352,6 +423,20 @@ public class JmxTransformer implements WatchedCallback {
 		}
 
 		this.masterServersList = configurationParser.parseServers(getJsonFiles(), configuration.isContinueOnJsonError());
+		clearConnectionsOfRemovedServers(previousServers);
+	}
+
+	/** Servers kept across a reload keep their pooled connections. */
+	private void clearConnectionsOfRemovedServers(ImmutableList<Server> previousServers) {
+		for (Server server : previousServers) {
+			if (masterServersList.contains(server)) continue;
+			try {
+				server.clearConnections();
+				log.debug("Closed the connections of removed server {}", server);
+			} catch (Exception e) {
+				log.warn("Could not close the connections of removed server {}", server, e);
+			}
+		}
 	}
 
 	/**
@@ -374,6 +459,12 @@ public class JmxTransformer implements WatchedCallback {
 				// query.
 				this.validateSetup(server, server.getQueries());
 
+				try {
+					server.prewarmConnections();
+				} catch (Exception e) {
+					log.warn("Could not open connections to server {} ahead of its first run", server, e);
+				}
+
 				// Now schedule the jobs for execution.
 				this.scheduleJob(server);
 			} catch (ParseException ex) {
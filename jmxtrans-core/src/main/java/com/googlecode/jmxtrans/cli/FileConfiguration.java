@@ -69,6 +69,8 @@ public class FileConfiguration implements IDefaultProvider {
 				return properties.getProperty("result.processor.executor.pool.size");
 			case "--result-processor-executor-work-queue-capacity":
 				return properties.getProperty("result.processor.executor.work.queue.capacity");
+			case "--jmx-connections-per-server":
+				return properties.getProperty("jmx.connections.per.server");
 			default:
 				return null;
 		}
@@ -144,4 +144,28 @@ public class JmxTransConfiguration {
 	@Getter @Setter
 	private int resultProcessorExecutorWorkQueueCapacity = 100000;
 
+	@Parameter(
+			names = {"--jmx-connections-per-server"},
+			description = "Maximum number of JMX connections opened to each server. They are opened ahead of the first run, " +
+					"by an allocator thread per server. Only raise it for servers running queries concurrently.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int jmxConnectionsPerServer = 1;
+
+	@Parameter(
+			names = {"--discover"},
+			description = "Walks the MBeans of the configured servers, writes a configuration reading all their numeric " +
+					"attributes to this file and exits."
+	)
+	@Getter @Setter
+	private File discoveryOutput;
+
+	@Parameter(
+			names = {"--explain"},
+			description = "Runs every configured query once, prints what each MBean costs to collect, most expensive first, and exits."
+	)
+	@Getter @Setter
+	private boolean explain = false;
+
 }
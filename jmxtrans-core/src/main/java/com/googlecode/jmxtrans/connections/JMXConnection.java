@@ -28,7 +28,10 @@ import lombok.ToString;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ListenerNotFoundException;
 import javax.management.MBeanServerConnection;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
 import javax.management.remote.JMXConnector;
 import java.io.Closeable;
 import java.io.IOException;
@@ -44,6 +47,23 @@ public class JMXConnection implements Closeable {
 		this.mBeanServerConnection = mBeanServerConnection;
 	}
 
+	/**
+	 * Listens to the state of the underlying connector (see
+	 * {@link javax.management.remote.JMXConnectionNotification}). Local
+	 * connections have no connector and never change state, the listener is
+	 * ignored for them.
+	 */
+	public void addConnectionNotificationListener(
+			@Nonnull NotificationListener listener,
+			@Nullable NotificationFilter filter,
+			@Nullable Object handback) {
+		if (connector != null) connector.addConnectionNotificationListener(listener, filter, handback);
+	}
+
+	public void removeConnectionNotificationListener(@Nonnull NotificationListener listener) throws ListenerNotFoundException {
+		if (connector != null) connector.removeConnectionNotificationListener(listener);
+	}
+
 	@Override
 	public void close() throws IOException {
 		if (connector != null) connector.close();
@@ -0,0 +1,166 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.connections;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Closer;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * Reads MBean attributes from a <a href="https://jolokia.org/">Jolokia</a>
+ * agent (JMX over HTTP).
+ * <p/>
+ * All read requests are packed into a single bulk POST, so reading every
+ * query of a server costs one HTTP round trip instead of one RMI call per
+ * MBean.
+ */
+@ThreadSafe
+@ToString(exclude = "authorization")
+public class JolokiaConnection {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	public static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+	public static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+
+	@Nonnull private final URL url;
+	@Nullable private final String authorization;
+	private final int connectTimeoutMs;
+	private final int readTimeoutMs;
+
+	public JolokiaConnection(
+			@Nonnull URL url,
+			@Nullable String username,
+			@Nullable String password,
+			int connectTimeoutMs,
+			int readTimeoutMs) {
+		this.url = url;
+		if (username != null && password != null) {
+			this.authorization = "Basic " + BaseEncoding.base64().encode((username + ":" + password).getBytes(UTF_8));
+		} else {
+			this.authorization = null;
+		}
+		this.connectTimeoutMs = connectTimeoutMs;
+		this.readTimeoutMs = readTimeoutMs;
+	}
+
+	/**
+	 * Sends all requests in one bulk POST.
+	 *
+	 * @return the responses, in the same order as the requests. Each response
+	 * carries its own status, failed reads do not fail the whole bulk.
+	 */
+	@Nonnull
+	public List<JsonNode> bulkRead(@Nonnull List<ReadRequest> requests) throws IOException {
+		if (requests.isEmpty()) return ImmutableList.of();
+
+		ArrayNode body = JsonNodeFactory.instance.arrayNode();
+		for (ReadRequest request : requests) {
+			body.add(request.toJson());
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		Closer closer = Closer.create();
+		try {
+			connection.setConnectTimeout(connectTimeoutMs);
+			connection.setReadTimeout(readTimeoutMs);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+			if (authorization != null) connection.setRequestProperty("Authorization", authorization);
+
+			OutputStream out = closer.register(connection.getOutputStream());
+			MAPPER.writeValue(out, body);
+
+			int responseCode = connection.getResponseCode();
+			if (responseCode != 200) {
+				throw new IOException("Jolokia agent at " + url + " answered " + responseCode + ": " + connection.getResponseMessage());
+			}
+
+			InputStream in = closer.register(connection.getInputStream());
+			JsonNode responses = MAPPER.readTree(in);
+			if (!responses.isArray() || responses.size() != requests.size()) {
+				throw new IOException("Jolokia agent at " + url + " sent " + responses.size()
+						+ " responses for " + requests.size() + " requests");
+			}
+			return ImmutableList.copyOf(responses);
+		} catch (Throwable t) {
+			throw closer.rethrow(t);
+		} finally {
+			closer.close();
+		}
+	}
+
+	/** A Jolokia <code>read</code> request for some (or all) attributes of an MBean or an MBean pattern. */
+	@Immutable
+	@EqualsAndHashCode
+	@ToString
+	public static final class ReadRequest {
+		@Nonnull @Getter private final String mbean;
+		@Nonnull @Getter private final ImmutableList<String> attributes;
+
+		public ReadRequest(@Nonnull String mbean, @Nonnull List<String> attributes) {
+			this.mbean = mbean;
+			this.attributes = ImmutableList.copyOf(attributes);
+		}
+
+		@Nonnull
+		private ObjectNode toJson() {
+			ObjectNode request = JsonNodeFactory.instance.objectNode();
+			request.put("type", "read");
+			request.put("mbean", mbean);
+			if (attributes.size() == 1) {
+				request.put("attribute", attributes.get(0));
+			} else if (!attributes.isEmpty()) {
+				ArrayNode attributeNames = request.putArray("attribute");
+				for (String attribute : attributes) {
+					attributeNames.add(attribute);
+				}
+			}
+			ObjectNode config = request.putObject("config");
+			config.put("ignoreErrors", true);
+			return request;
+		}
+	}
+}
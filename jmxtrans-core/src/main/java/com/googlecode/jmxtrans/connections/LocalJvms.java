@@ -0,0 +1,187 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.connections;
+
+import com.sun.tools.attach.AgentInitializationException;
+import com.sun.tools.attach.AgentLoadException;
+import com.sun.tools.attach.AttachNotSupportedException;
+import com.sun.tools.attach.VirtualMachine;
+import com.sun.tools.attach.VirtualMachineDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.remote.JMXServiceURL;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the JMX connector address of the JVMs running on this host through
+ * the attach API.
+ * <p/>
+ * Attaching is costly, and might load the management agent in the target,
+ * so what is read from a JVM is cached until that JVM exits. JVMs selected
+ * by main class or system property are searched again on each call, which
+ * picks up a restarted process under its new pid.
+ * <p/>
+ * Only referenced when a server needs it, to prevent class loader issues
+ * when tools.jar isn't present.
+ */
+@ThreadSafe
+public final class LocalJvms {
+
+	public static final LocalJvms INSTANCE = new LocalJvms();
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalJvms.class);
+	private static final String CONNECTOR_ADDRESS = "com.sun.management.jmxremote.localConnectorAddress";
+
+	@Nonnull private final String selfPid;
+	@Nonnull private final ConcurrentMap<String, AttachedJvm> attached = new ConcurrentHashMap<>();
+
+	private LocalJvms() {
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		this.selfPid = name.substring(0, Math.max(name.indexOf('@'), 0));
+	}
+
+	@Nonnull
+	public JMXServiceURL forPid(@Nonnull String pid) throws IOException {
+		runningJvms();
+		return connectorAddressOf(pid);
+	}
+
+	/**
+	 * Attaches to the first JVM whose main class (or jar) contains the
+	 * pattern. The current JVM is never selected.
+	 */
+	@Nonnull
+	public JMXServiceURL forMainClass(@Nonnull Pattern mainClass) throws IOException {
+		for (VirtualMachineDescriptor jvm : runningJvms()) {
+			if (jvm.id().equals(selfPid)) continue;
+			if (mainClass.matcher(mainClassOf(jvm)).find()) {
+				logger.debug("JVM {} ({}) matches main class {}", jvm.id(), jvm.displayName(), mainClass);
+				return connectorAddressOf(jvm.id());
+			}
+		}
+		throw new IOException("No local JVM has a main class matching " + mainClass);
+	}
+
+	/**
+	 * Attaches to the first JVM having a system property whose value matches
+	 * the pattern. The current JVM is never selected.
+	 */
+	@Nonnull
+	public JMXServiceURL forSystemProperty(@Nonnull String name, @Nonnull Pattern value) throws IOException {
+		for (VirtualMachineDescriptor jvm : runningJvms()) {
+			if (jvm.id().equals(selfPid)) continue;
+			AttachedJvm attachedJvm;
+			try {
+				attachedJvm = attach(jvm.id(), false);
+			} catch (IOException e) {
+				logger.debug("Could not read system properties of JVM {}", jvm.id(), e);
+				continue;
+			}
+			String property = attachedJvm.systemProperties.getProperty(name);
+			if (property != null && value.matcher(property).matches()) {
+				logger.debug("JVM {} ({}) matches {}={}", jvm.id(), jvm.displayName(), name, value);
+				return connectorAddressOf(jvm.id());
+			}
+		}
+		throw new IOException("No local JVM has a system property " + name + " matching " + value);
+	}
+
+	/** Lists the running JVMs and forgets about the ones which exited. */
+	private List<VirtualMachineDescriptor> runningJvms() {
+		List<VirtualMachineDescriptor> jvms = VirtualMachine.list();
+		Set<String> pids = new HashSet<>();
+		for (VirtualMachineDescriptor jvm : jvms) {
+			pids.add(jvm.id());
+		}
+		attached.keySet().retainAll(pids);
+		return jvms;
+	}
+
+	private JMXServiceURL connectorAddressOf(String pid) throws IOException {
+		String connectorAddress = attach(pid, true).connectorAddress;
+		if (connectorAddress == null) {
+			throw new IOException("JVM " + pid + " did not publish a JMX connector address");
+		}
+		return new JMXServiceURL(connectorAddress);
+	}
+
+	private AttachedJvm attach(String pid, boolean needsConnector) throws IOException {
+		AttachedJvm cached = attached.get(pid);
+		if (cached != null && (cached.connectorAddress != null || !needsConnector)) return cached;
+
+		try {
+			VirtualMachine vm = VirtualMachine.attach(pid);
+			try {
+				Properties systemProperties = cached != null ? cached.systemProperties : vm.getSystemProperties();
+				String connectorAddress = vm.getAgentProperties().getProperty(CONNECTOR_ADDRESS);
+
+				if (connectorAddress == null && needsConnector) {
+					String agent = systemProperties.getProperty("java.home") +
+							File.separator + "lib" + File.separator + "management-agent.jar";
+					vm.loadAgent(agent);
+
+					connectorAddress = vm.getAgentProperties().getProperty(CONNECTOR_ADDRESS);
+				}
+
+				AttachedJvm attachedJvm = new AttachedJvm(systemProperties, connectorAddress);
+				attached.put(pid, attachedJvm);
+				return attachedJvm;
+			} finally {
+				vm.detach();
+			}
+		} catch (AttachNotSupportedException | AgentLoadException | AgentInitializationException e) {
+			throw new IOException("Could not attach to JVM " + pid, e);
+		}
+	}
+
+	private static String mainClassOf(VirtualMachineDescriptor jvm) {
+		String displayName = jvm.displayName();
+		int separator = displayName.indexOf(' ');
+		return separator < 0 ? displayName : displayName.substring(0, separator);
+	}
+
+	@Immutable
+	private static final class AttachedJvm {
+		@Nonnull private final Properties systemProperties;
+		@Nullable private final String connectorAddress;
+
+		private AttachedJvm(@Nonnull Properties systemProperties, @Nullable String connectorAddress) {
+			this.systemProperties = systemProperties;
+			this.connectorAddress = connectorAddress;
+		}
+	}
+}
@@ -40,6 +40,21 @@ public class MBeanServerConnectionFactory extends BaseKeyedPoolableObjectFactory
 		}
 	}
 
+	/**
+	 * Remote connections are checked with a cheap round trip, local ones are
+	 * always valid.
+	 */
+	@Override
+	public boolean validateObject(@Nonnull JmxConnectionProvider server, @Nonnull JMXConnection obj) {
+		if (server.isLocal()) return true;
+		try {
+			obj.getMBeanServerConnection().getMBeanCount();
+			return true;
+		} catch (IOException | RuntimeException e) {
+			return false;
+		}
+	}
+
 	@Override
 	public void destroyObject(@Nonnull JmxConnectionProvider key, @Nonnull JMXConnection obj) throws IOException {
 		obj.close();
@@ -0,0 +1,321 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.connections;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.pool.KeyedObjectPool;
+import org.apache.commons.pool.KeyedPoolableObjectFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import stormpot.Allocator;
+import stormpot.BlazePool;
+import stormpot.Config;
+import stormpot.Expiration;
+import stormpot.PoolException;
+import stormpot.Poolable;
+import stormpot.Slot;
+import stormpot.SlotInfo;
+import stormpot.Timeout;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A {@link KeyedObjectPool} keeping an independent Stormpot {@link BlazePool}
+ * per key, so borrowing and returning never contend across keys and do not
+ * lock within a key.
+ * <p/>
+ * Each key gets up to {@code maxPerKey} objects, allocated in the background
+ * as soon as the key is first seen (see {@link #addObject(Object)} to do this
+ * ahead of the first borrow). Objects are validated by the factory in the
+ * background at most once per {@code validationIntervalMillis}, borrowing
+ * never waits for a validation unless the object was not checked recently.
+ * Objects not borrowed for {@code idleMillis} are closed and replaced, so
+ * that connections dropped by firewalls while unused are not handed out.
+ * <p/>
+ * Borrowed objects are tracked by identity, values must not override equals.
+ */
+@ThreadSafe
+public class StormpotKeyedObjectPool<K, V> implements KeyedObjectPool<K, V> {
+
+	private static final Logger logger = LoggerFactory.getLogger(StormpotKeyedObjectPool.class);
+
+	@Nonnull private final KeyedPoolableObjectFactory<K, V> factory;
+	@Nonnull private final ThreadFactory threadFactory;
+	@Nonnull private final ConcurrentMap<K, BlazePool<Pooled<K, V>>> pools = new ConcurrentHashMap<>();
+	@Nonnull private final ConcurrentMap<V, Pooled<K, V>> borrowed = new ConcurrentHashMap<>();
+	private final long validationIntervalMillis;
+	private final long idleMillis;
+	private volatile int maxPerKey;
+	private volatile long maxWaitMillis;
+
+	public StormpotKeyedObjectPool(
+			@Nonnull KeyedPoolableObjectFactory<K, V> factory,
+			@Nonnull String poolName,
+			int maxPerKey,
+			long maxWaitMillis,
+			long validationIntervalMillis,
+			long idleMillis) {
+		checkArgument(maxPerKey > 0, "maxPerKey must be positive");
+		checkArgument(idleMillis > 0, "idleMillis must be positive");
+		this.factory = factory;
+		this.threadFactory = new ThreadFactoryBuilder()
+				.setDaemon(true)
+				.setNameFormat("jmxtrans-pool-" + poolName + "-%d")
+				.build();
+		this.maxPerKey = maxPerKey;
+		this.maxWaitMillis = maxWaitMillis;
+		this.validationIntervalMillis = validationIntervalMillis;
+		this.idleMillis = idleMillis;
+	}
+
+	@Override
+	public V borrowObject(K key) throws Exception {
+		Pooled<K, V> pooled;
+		try {
+			pooled = poolFor(key).claim(new Timeout(maxWaitMillis, MILLISECONDS));
+		} catch (PoolException pe) {
+			// allocation failures are reported on claim, rethrow what the factory threw
+			if (pe.getCause() instanceof Exception) throw (Exception) pe.getCause();
+			throw pe;
+		}
+		if (pooled == null) {
+			throw new NoSuchElementException("Timed out after " + maxWaitMillis + "ms waiting for an object for " + key);
+		}
+		borrowed.put(pooled.object, pooled);
+		return pooled.object;
+	}
+
+	@Override
+	public void returnObject(K key, V obj) {
+		Pooled<K, V> pooled = borrowed.remove(obj);
+		if (pooled == null) throw new IllegalStateException("Object " + obj + " was not borrowed from this pool");
+		pooled.release();
+	}
+
+	@Override
+	public void invalidateObject(K key, V obj) {
+		Pooled<K, V> pooled = borrowed.remove(obj);
+		if (pooled == null) throw new IllegalStateException("Object " + obj + " was not borrowed from this pool");
+		pooled.slot.expire(pooled);
+		pooled.release();
+	}
+
+	/**
+	 * Starts allocating the objects of this key in the background, without
+	 * waiting for them.
+	 */
+	@Override
+	public void addObject(K key) {
+		poolFor(key);
+	}
+
+	@Override
+	public int getNumIdle(K key) {
+		BlazePool<Pooled<K, V>> pool = pools.get(key);
+		return pool == null ? 0 : Math.max(pool.getTargetSize() - getNumActive(key), 0);
+	}
+
+	@Override
+	public int getNumActive(K key) {
+		int active = 0;
+		for (Pooled<K, V> pooled : borrowed.values()) {
+			if (pooled.key.equals(key)) active++;
+		}
+		return active;
+	}
+
+	@Override
+	public int getNumIdle() {
+		int idle = 0;
+		for (K key : pools.keySet()) {
+			idle += getNumIdle(key);
+		}
+		return idle;
+	}
+
+	@Override
+	public int getNumActive() {
+		return borrowed.size();
+	}
+
+	@Override
+	public void clear() {
+		for (Iterator<BlazePool<Pooled<K, V>>> it = pools.values().iterator(); it.hasNext(); ) {
+			BlazePool<Pooled<K, V>> pool = it.next();
+			it.remove();
+			pool.shutdown();
+		}
+	}
+
+	@Override
+	public void clear(K key) {
+		BlazePool<Pooled<K, V>> pool = pools.remove(key);
+		if (pool != null) pool.shutdown();
+	}
+
+	@Override
+	public void close() {
+		clear();
+	}
+
+	@Override
+	@Deprecated
+	public void setFactory(KeyedPoolableObjectFactory<K, V> factory) {
+		throw new UnsupportedOperationException("The factory of a StormpotKeyedObjectPool cannot be changed");
+	}
+
+	public int getMaxPerKey() {
+		return maxPerKey;
+	}
+
+	public void setMaxPerKey(int maxPerKey) {
+		checkArgument(maxPerKey > 0, "maxPerKey must be positive");
+		this.maxPerKey = maxPerKey;
+		for (BlazePool<Pooled<K, V>> pool : pools.values()) {
+			pool.setTargetSize(maxPerKey);
+		}
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public int getNumKeys() {
+		return pools.size();
+	}
+
+	public long getAllocationCount() {
+		long count = 0;
+		for (BlazePool<Pooled<K, V>> pool : pools.values()) {
+			count += pool.getAllocationCount();
+		}
+		return count;
+	}
+
+	public long getFailedAllocationCount() {
+		long count = 0;
+		for (BlazePool<Pooled<K, V>> pool : pools.values()) {
+			count += pool.getFailedAllocationCount();
+		}
+		return count;
+	}
+
+	private BlazePool<Pooled<K, V>> poolFor(K key) {
+		BlazePool<Pooled<K, V>> pool = pools.get(key);
+		if (pool != null) return pool;
+
+		BlazePool<Pooled<K, V>> created = new BlazePool<>(new Config<Pooled<K, V>>()
+				.setAllocator(new KeyAllocator(key))
+				.setSize(maxPerKey)
+				.setExpiration(new IdleOrInvalidExpiration())
+				.setBackgroundExpirationEnabled(true)
+				.setThreadFactory(threadFactory));
+		pool = pools.putIfAbsent(key, created);
+		if (pool == null) return created;
+
+		// another thread created the pool first
+		created.shutdown();
+		return pool;
+	}
+
+	private static final class Pooled<K, V> implements Poolable {
+		@Nonnull private final Slot slot;
+		@Nonnull private final K key;
+		@Nonnull private final V object;
+		private volatile long idleSince = System.currentTimeMillis();
+
+		private Pooled(@Nonnull Slot slot, @Nonnull K key, @Nonnull V object) {
+			this.slot = slot;
+			this.key = key;
+			this.object = object;
+		}
+
+		@Override
+		public void release() {
+			idleSince = System.currentTimeMillis();
+			slot.release(this);
+		}
+	}
+
+	private final class KeyAllocator implements Allocator<Pooled<K, V>> {
+		@Nonnull private final K key;
+
+		private KeyAllocator(@Nonnull K key) {
+			this.key = key;
+		}
+
+		@Override
+		public Pooled<K, V> allocate(Slot slot) throws Exception {
+			return new Pooled<>(slot, key, factory.makeObject(key));
+		}
+
+		@Override
+		public void deallocate(Pooled<K, V> pooled) throws Exception {
+			factory.destroyObject(key, pooled.object);
+		}
+	}
+
+	/**
+	 * Expires objects idle for idleMillis, and validates the others through
+	 * the factory unless they were validated less than
+	 * validationIntervalMillis ago. With background expiration, most checks
+	 * happen in the allocation thread while the objects are idle.
+	 */
+	private final class IdleOrInvalidExpiration implements Expiration<Pooled<K, V>> {
+		@Override
+		public boolean hasExpired(SlotInfo<? extends Pooled<K, V>> info) {
+			long now = System.currentTimeMillis();
+			Pooled<K, V> pooled = info.getPoolable();
+			if (now - pooled.idleSince >= idleMillis) {
+				logger.debug("Object {} for {} was idle for more than {}ms", pooled.object, pooled.key, idleMillis);
+				return true;
+			}
+			if (info.getStamp() == 0) {
+				// just allocated
+				info.setStamp(now);
+				return false;
+			}
+			if (now - info.getStamp() < validationIntervalMillis) return false;
+
+			if (!factory.validateObject(pooled.key, pooled.object)) {
+				logger.debug("Object {} for {} failed validation", pooled.object, pooled.key);
+				return true;
+			}
+			info.setStamp(now);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.connections;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+
+/**
+ * Opens RMI client sockets with a connect timeout and a read timeout, so that
+ * the lookup of the connector stub of an unreachable or frozen server fails
+ * instead of blocking its thread. A timeout of 0 is not bounded.
+ * <p/>
+ * RMI reuses connections opened by equal factories, hence equals and
+ * hashCode.
+ */
+@Immutable
+@EqualsAndHashCode
+@ToString
+public class TimeoutRMIClientSocketFactory implements RMIClientSocketFactory, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int connectTimeoutMs;
+	private final int readTimeoutMs;
+
+	public TimeoutRMIClientSocketFactory(int connectTimeoutMs, int readTimeoutMs) {
+		this.connectTimeoutMs = connectTimeoutMs;
+		this.readTimeoutMs = readTimeoutMs;
+	}
+
+	@Override
+	public Socket createSocket(String host, int port) throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.setSoTimeout(readTimeoutMs);
+			socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+			return socket;
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+}
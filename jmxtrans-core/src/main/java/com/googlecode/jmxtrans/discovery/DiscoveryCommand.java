@@ -0,0 +1,167 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.discovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapDifference;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.inject.Inject;
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+
+/**
+ * Discovers the MBeans of the configured servers and writes a configuration
+ * reading all their numeric attributes (<code>--discover</code>).
+ * <p/>
+ * The servers of the generated file keep their connection settings, but have
+ * no output writers. The queries added, removed or changed since the previous
+ * discovery, if any, are logged.
+ */
+public class DiscoveryCommand {
+
+	private static final Logger log = LoggerFactory.getLogger(DiscoveryCommand.class);
+
+	@Nonnull private final JmxTransConfiguration configuration;
+
+	@Inject
+	public DiscoveryCommand(@Nonnull JmxTransConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	/**
+	 * @param previous the servers of the previous discovery, read from the
+	 *                 file about to be replaced.
+	 */
+	public void run(@Nonnull List<Server> servers, @Nonnull List<Server> previous, @Nonnull File output) throws Exception {
+		ExecutorService executor = newFixedThreadPool(configuration.getJmxConnectionsPerServer(), new ThreadFactoryBuilder()
+				.setDaemon(true)
+				.setNameFormat("jmxtrans-discovery-%d")
+				.build());
+		try {
+			MBeanDiscovery discovery = new MBeanDiscovery(executor);
+			Map<Server, ImmutableList<Query>> discovered = new HashMap<>();
+			for (Server server : servers) {
+				discovered.put(server, QueryCollapser.collapse(discovery.walk(server).getAttributes()));
+			}
+
+			logChanges(previous, servers, discovered);
+
+			ObjectNode json = JsonNodeFactory.instance.objectNode();
+			ArrayNode serverNodes = json.putArray("servers");
+			for (Server server : servers) {
+				serverNodes.add(toJson(server, discovered.get(server)));
+			}
+			new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output, json);
+			log.info("Wrote the queries of {} servers to {}", servers.size(), output);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void logChanges(List<Server> previousServers, List<Server> servers, Map<Server, ImmutableList<Query>> discovered) {
+		Map<Server, Map<String, List<String>>> previous = new HashMap<>();
+		for (Server server : previousServers) {
+			previous.put(server, byPattern(server.getQueries()));
+		}
+
+		for (Server server : servers) {
+			Map<String, List<String>> before = previous.get(server);
+			if (before == null) continue;
+			MapDifference<String, List<String>> difference = Maps.difference(before, byPattern(discovered.get(server)));
+			if (difference.areEqual()) {
+				log.info("No change on {} since the previous discovery", server);
+				continue;
+			}
+			log.info("Changes on {} since the previous discovery: {} queries added, {} removed, {} changed",
+					server, difference.entriesOnlyOnRight().size(), difference.entriesOnlyOnLeft().size(),
+					difference.entriesDiffering().size());
+			for (String added : difference.entriesOnlyOnRight().keySet()) log.info("  + {}", added);
+			for (String removed : difference.entriesOnlyOnLeft().keySet()) log.info("  - {}", removed);
+			for (String changed : difference.entriesDiffering().keySet()) log.info("  ~ {}", changed);
+		}
+	}
+
+	private static Map<String, List<String>> byPattern(Iterable<Query> queries) {
+		Map<String, List<String>> byPattern = new HashMap<>();
+		for (Query query : queries) {
+			byPattern.put(query.getObjectName().getCanonicalName(), query.getAttr());
+		}
+		return byPattern;
+	}
+
+	/** The connection settings of the server, as they were configured, and the discovered queries. */
+	private static ObjectNode toJson(Server server, List<Query> queries) {
+		ObjectNode node = JsonNodeFactory.instance.objectNode();
+		putIfNotNull(node, "alias", server.getAlias());
+		if (server.isLocalProcess()) {
+			putIfNotNull(node, "pid", server.getPid());
+			putIfNotNull(node, "mainClass", server.getMainClass());
+			putIfNotNull(node, "systemProperty", server.getSystemProperty());
+		} else if (server.getUrl() != null) {
+			node.put("url", server.getUrl());
+		} else {
+			putIfNotNull(node, "host", server.getHost());
+			putIfNotNull(node, "port", server.getPort());
+		}
+		putIfNotNull(node, "username", server.getUsername());
+		putIfNotNull(node, "password", server.getPassword());
+		putIfNotNull(node, "protocolProviderPackages", server.getProtocolProviderPackages());
+		if (server.getRunPeriodSeconds() != null) node.put("runPeriodSeconds", server.getRunPeriodSeconds());
+		if (server.getConnectTimeoutMs() != null) node.put("connectTimeoutMs", server.getConnectTimeoutMs());
+		if (server.getReadTimeoutMs() != null) node.put("readTimeoutMs", server.getReadTimeoutMs());
+		if (server.isLocal()) node.put("local", true);
+
+		ArrayNode queryNodes = node.putArray("queries");
+		for (Query query : queries) {
+			ObjectNode queryNode = queryNodes.addObject();
+			queryNode.put("obj", query.getObjectName().toString());
+			ArrayNode attributes = queryNode.putArray("attr");
+			for (String attribute : query.getAttr()) {
+				attributes.add(attribute);
+			}
+		}
+		return node;
+	}
+
+	private static void putIfNotNull(ObjectNode node, String field, String value) {
+		if (value != null) node.put(field, value);
+	}
+}
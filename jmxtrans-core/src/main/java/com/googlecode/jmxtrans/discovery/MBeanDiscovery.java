@@ -0,0 +1,150 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.discovery;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.googlecode.jmxtrans.connections.JMXConnection;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Descriptor;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Walks the MBean tree of servers to find out what can be collected.
+ * <p/>
+ * Domains are walked in parallel, each on its own pooled connection. The
+ * {@link MBeanInfo} of MBeans declaring it immutable (standard MBeans and
+ * MXBeans) is fetched once per class and cached across walks, so that most
+ * MBeans of a large JVM cost no round trip besides the listing of their domain.
+ */
+@ThreadSafe
+public class MBeanDiscovery {
+
+	private static final Logger log = LoggerFactory.getLogger(MBeanDiscovery.class);
+
+	@Nonnull private final ExecutorService executor;
+	@Nonnull private final ConcurrentMap<String, ImmutableSortedSet<String>> attributesByClass = new ConcurrentHashMap<>();
+
+	public MBeanDiscovery(@Nonnull ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	@Nonnull
+	public DiscoveredMBeans walk(@Nonnull final Server server) throws Exception {
+		String[] domains;
+		JMXConnection connection = server.borrowConnection();
+		boolean broken = true;
+		try {
+			domains = connection.getMBeanServerConnection().getDomains();
+			broken = false;
+		} finally {
+			server.releaseConnection(connection, broken);
+		}
+
+		List<Future<Map<ObjectName, ImmutableSortedSet<String>>>> walks = new ArrayList<>(domains.length);
+		for (final String domain : domains) {
+			walks.add(executor.submit(new Callable<Map<ObjectName, ImmutableSortedSet<String>>>() {
+				@Override
+				public Map<ObjectName, ImmutableSortedSet<String>> call() throws Exception {
+					return walkDomain(server, domain);
+				}
+			}));
+		}
+
+		Map<ObjectName, ImmutableSortedSet<String>> attributes = new ConcurrentHashMap<>();
+		for (Future<Map<ObjectName, ImmutableSortedSet<String>>> walk : walks) {
+			try {
+				attributes.putAll(walk.get());
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			}
+		}
+
+		log.info("Discovered {} MBeans on {}", attributes.size(), server);
+		return new DiscoveredMBeans(attributes);
+	}
+
+	private Map<ObjectName, ImmutableSortedSet<String>> walkDomain(Server server, String domain) throws Exception {
+		JMXConnection connection = server.borrowConnection();
+		boolean broken = true;
+		try {
+			MBeanServerConnection mbeanServer = connection.getMBeanServerConnection();
+			Map<ObjectName, ImmutableSortedSet<String>> attributes = new ConcurrentHashMap<>();
+			// a single call lists the MBeans and their classes
+			for (ObjectInstance instance : mbeanServer.queryMBeans(new ObjectName(domain + ":*"), null)) {
+				ObjectName name = instance.getObjectName();
+				ImmutableSortedSet<String> known = attributesByClass.get(instance.getClassName());
+				if (known == null) {
+					try {
+						known = introspect(mbeanServer, instance);
+					} catch (InstanceNotFoundException e) {
+						// unregistered while walking
+						continue;
+					}
+				}
+				if (!known.isEmpty()) attributes.put(name, known);
+			}
+			broken = false;
+			return attributes;
+		} finally {
+			server.releaseConnection(connection, broken);
+		}
+	}
+
+	private ImmutableSortedSet<String> introspect(MBeanServerConnection mbeanServer, ObjectInstance instance) throws Exception {
+		MBeanInfo info = mbeanServer.getMBeanInfo(instance.getObjectName());
+		ImmutableSortedSet.Builder<String> numeric = ImmutableSortedSet.naturalOrder();
+		for (MBeanAttributeInfo attribute : info.getAttributes()) {
+			if (NumericAttributes.isNumeric(attribute)) numeric.add(attribute.getName());
+		}
+		ImmutableSortedSet<String> attributes = numeric.build();
+		if (!isImmutable(info)) return attributes;
+		// another domain walk may have introspected the same class meanwhile
+		ImmutableSortedSet<String> cached = attributesByClass.putIfAbsent(instance.getClassName(), attributes);
+		return cached != null ? cached : attributes;
+	}
+
+	/** See the "immutableInfo" field of {@link Descriptor}. */
+	private static boolean isImmutable(MBeanInfo info) {
+		Descriptor descriptor = info.getDescriptor();
+		return descriptor != null && "true".equalsIgnoreCase(String.valueOf(descriptor.getFieldValue("immutableInfo")));
+	}
+}
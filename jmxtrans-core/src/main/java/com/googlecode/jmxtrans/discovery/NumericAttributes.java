@@ -0,0 +1,67 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.discovery;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nonnull;
+import javax.management.MBeanAttributeInfo;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+/**
+ * Decides which attributes are worth collecting: readable attributes whose
+ * values are numbers, or composites holding numbers (like
+ * {@link java.lang.management.MemoryUsage}).
+ */
+final class NumericAttributes {
+
+	private static final ImmutableSet<String> NUMERIC_TYPES = ImmutableSet.of(
+			"byte", "short", "int", "long", "float", "double",
+			Byte.class.getName(), Short.class.getName(), Integer.class.getName(), Long.class.getName(),
+			Float.class.getName(), Double.class.getName(), Number.class.getName(),
+			"java.math.BigInteger", "java.math.BigDecimal",
+			"java.util.concurrent.atomic.AtomicInteger", "java.util.concurrent.atomic.AtomicLong");
+
+	private NumericAttributes() {}
+
+	static boolean isNumeric(@Nonnull MBeanAttributeInfo attribute) {
+		if (!attribute.isReadable()) return false;
+		// MXBeans and open MBeans describe the structure of their values
+		Object openType = attribute.getDescriptor().getFieldValue("openType");
+		if (openType instanceof OpenType) return isNumeric((OpenType<?>) openType);
+		return NUMERIC_TYPES.contains(attribute.getType());
+	}
+
+	private static boolean isNumeric(OpenType<?> openType) {
+		if (openType instanceof SimpleType) return NUMERIC_TYPES.contains(openType.getClassName());
+		if (openType instanceof CompositeType) {
+			CompositeType compositeType = (CompositeType) openType;
+			for (String key : compositeType.keySet()) {
+				if (isNumeric(compositeType.getType(key))) return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.discovery;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+
+import javax.annotation.Nonnull;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Turns discovered MBeans into as few queries as possible.
+ * <p/>
+ * MBeans of the same domain, with the same keys and the same attributes are
+ * read by a single query, where the values of the keys which differ are
+ * replaced by a wildcard (<code>java.lang:type=GarbageCollector,name=*</code>).
+ * Groups whose patterns would match each other's MBeans are merged, so that
+ * no MBean is read twice.
+ */
+final class QueryCollapser {
+
+	private QueryCollapser() {}
+
+	@Nonnull
+	static ImmutableList<Query> collapse(@Nonnull Map<ObjectName, ? extends Set<String>> attributes) {
+		// MBeans of the same domain and keys, then grouped by attributes
+		Map<String, Map<Set<String>, Group>> buckets = new TreeMap<>();
+		for (Map.Entry<ObjectName, ? extends Set<String>> mbean : attributes.entrySet()) {
+			ObjectName name = mbean.getKey();
+			String bucket = name.getDomain() + ":" + new TreeSet<>(name.getKeyPropertyList().keySet());
+			Map<Set<String>, Group> groups = buckets.get(bucket);
+			if (groups == null) {
+				groups = new LinkedHashMap<>();
+				buckets.put(bucket, groups);
+			}
+			Group group = groups.get(mbean.getValue());
+			if (group == null) {
+				group = new Group();
+				groups.put(mbean.getValue(), group);
+			}
+			group.add(name, mbean.getValue());
+		}
+
+		Map<String, Query> queries = new TreeMap<>();
+		for (Map<Set<String>, Group> groups : buckets.values()) {
+			for (Group group : mergeOverlapping(new ArrayList<>(groups.values()))) {
+				String pattern = group.pattern();
+				queries.put(pattern, Query.builder()
+						.setObj(pattern)
+						.addAttr(group.attributes.toArray(new String[group.attributes.size()]))
+						.build());
+			}
+		}
+		return ImmutableList.copyOf(queries.values());
+	}
+
+	private static List<Group> mergeOverlapping(List<Group> groups) {
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			search:
+			for (int i = 0; i < groups.size(); i++) {
+				for (int j = i + 1; j < groups.size(); j++) {
+					if (groups.get(i).overlaps(groups.get(j))) {
+						groups.get(i).addAll(groups.remove(j));
+						merged = true;
+						break search;
+					}
+				}
+			}
+		}
+		return groups;
+	}
+
+	private static final class Group {
+		private final List<ObjectName> members = new ArrayList<>();
+		private final SortedSet<String> attributes = new TreeSet<>();
+
+		void add(ObjectName name, Set<String> attributes) {
+			this.members.add(name);
+			this.attributes.addAll(attributes);
+		}
+
+		void addAll(Group other) {
+			this.members.addAll(other.members);
+			this.attributes.addAll(other.attributes);
+		}
+
+		/** The keys which have the same value for all members keep it, the others become wildcards. */
+		String pattern() {
+			ObjectName first = members.get(0);
+			Map<String, String> keys = new TreeMap<>(first.getKeyPropertyList());
+			for (ObjectName member : members) {
+				for (Map.Entry<String, String> key : keys.entrySet()) {
+					if (!key.getValue().equals(member.getKeyProperty(key.getKey()))) key.setValue("*");
+				}
+			}
+			StringBuilder pattern = new StringBuilder(first.getDomain()).append(':');
+			String separator = "";
+			for (Map.Entry<String, String> key : keys.entrySet()) {
+				pattern.append(separator).append(key.getKey()).append('=').append(key.getValue());
+				separator = ",";
+			}
+			return pattern.toString();
+		}
+
+		boolean overlaps(Group other) {
+			return matchesAny(this, other) || matchesAny(other, this);
+		}
+
+		private static boolean matchesAny(Group group, Group candidates) {
+			ObjectName pattern = objectName(group.pattern());
+			if (!pattern.isPattern()) return false;
+			for (ObjectName candidate : candidates.members) {
+				if (pattern.apply(candidate)) return true;
+			}
+			return false;
+		}
+
+		private static ObjectName objectName(String name) {
+			try {
+				return new ObjectName(name);
+			} catch (MalformedObjectNameException e) {
+				throw new IllegalStateException("Invalid pattern " + name, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.explain;
+
+import lombok.Getter;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.management.ObjectName;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * What it costs to collect an MBean of a query: time spent in each JMX call,
+ * bytes exchanged, and what came out of it.
+ * <p/>
+ * The cost of <code>queryNames</code> is accounted on the query pattern.
+ */
+@NotThreadSafe
+public class CollectionCost {
+
+	@Nonnull @Getter private final String server;
+	@Nonnull @Getter private final ObjectName query;
+	@Nonnull @Getter private final ObjectName objectName;
+
+	@Getter private long queryNamesNanos;
+	@Getter private long getObjectInstanceNanos;
+	@Getter private long getMBeanInfoNanos;
+	@Getter private long getAttributesNanos;
+	@Getter private long otherNanos;
+	@Getter private long bytes;
+	@Getter private int results;
+	@Getter private int values;
+	@Getter private int nonNumericValues;
+
+	public CollectionCost(@Nonnull String server, @Nonnull ObjectName query, @Nonnull ObjectName objectName) {
+		this.server = server;
+		this.query = query;
+		this.objectName = objectName;
+	}
+
+	void addCall(@Nonnull String method, long nanos, long bytes) {
+		switch (method) {
+			case "queryNames":
+				queryNamesNanos += nanos;
+				break;
+			case "getObjectInstance":
+				getObjectInstanceNanos += nanos;
+				break;
+			case "getMBeanInfo":
+				getMBeanInfoNanos += nanos;
+				break;
+			case "getAttributes":
+				getAttributesNanos += nanos;
+				break;
+			default:
+				otherNanos += nanos;
+		}
+		this.bytes += bytes;
+	}
+
+	void addResult(int values, int nonNumericValues) {
+		this.results++;
+		this.values += values;
+		this.nonNumericValues += nonNumericValues;
+	}
+
+	public long getTotalNanos() {
+		return queryNamesNanos + getObjectInstanceNanos + getMBeanInfoNanos + getAttributesNanos + otherNanos;
+	}
+
+	static double millis(long nanos) {
+		return nanos / (double) NANOSECONDS.convert(1, MILLISECONDS);
+	}
+}
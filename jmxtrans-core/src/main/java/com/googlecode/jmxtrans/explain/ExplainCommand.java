@@ -0,0 +1,133 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.explain;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import com.googlecode.jmxtrans.connections.JMXConnection;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import static com.googlecode.jmxtrans.explain.CollectionCost.millis;
+import static com.googlecode.jmxtrans.util.NumberUtils.isValidNumber;
+
+/**
+ * Runs every query once and reports what each MBean costs to collect
+ * (<code>--explain</code>), most expensive first.
+ * <p/>
+ * Queries run through the generic JMX path, so the times are those of a
+ * remote collection even for local servers. Jolokia and snapshot agent
+ * servers are read in bulk and are not explained.
+ */
+public class ExplainCommand {
+
+	private static final Logger log = LoggerFactory.getLogger(ExplainCommand.class);
+
+	private static final Comparator<CollectionCost> MOST_EXPENSIVE_FIRST = new Comparator<CollectionCost>() {
+		@Override
+		public int compare(CollectionCost left, CollectionCost right) {
+			return Long.compare(right.getTotalNanos(), left.getTotalNanos());
+		}
+	};
+
+	public void run(@Nonnull List<Server> servers, @Nonnull PrintStream out) throws Exception {
+		ImmutableList.Builder<CollectionCost> costs = ImmutableList.builder();
+		for (Server server : servers) {
+			costs.addAll(explain(server));
+		}
+		print(Ordering.from(MOST_EXPENSIVE_FIRST).sortedCopy(costs.build()), out);
+	}
+
+	@Nonnull
+	public ImmutableList<CollectionCost> explain(@Nonnull Server server) throws Exception {
+		if (server.isJolokia() || server.isSnapshotAgent()) {
+			log.warn("{} is not read through JMX, it cannot be explained", server);
+			return ImmutableList.of();
+		}
+
+		ImmutableList.Builder<CollectionCost> costs = ImmutableList.builder();
+		JMXConnection connection = server.borrowConnection();
+		boolean broken = true;
+		try {
+			for (Query query : server.getQueries()) {
+				costs.addAll(explain(server, connection.getMBeanServerConnection(), query));
+			}
+			broken = false;
+		} finally {
+			server.releaseConnection(connection, broken);
+		}
+		return costs.build();
+	}
+
+	private Iterable<CollectionCost> explain(Server server, MBeanServerConnection target, Query query) throws Exception {
+		MeasuringConnection measuring = MeasuringConnection.measure(target, server.getLabel(), query.getObjectName());
+		MBeanServerConnection connection = measuring.connection();
+		// the pattern is reported even when it does not match anything
+		measuring.costOf(query.getObjectName());
+
+		for (ObjectName objectName : query.queryNames(connection)) {
+			try {
+				for (Result result : query.fetchResults(connection, objectName)) {
+					int nonNumeric = 0;
+					for (Object value : result.getValues().values()) {
+						if (!isValidNumber(value)) nonNumeric++;
+					}
+					measuring.costOf(objectName).addResult(result.getValues().size(), nonNumeric);
+				}
+			} catch (Exception e) {
+				log.warn("Error collecting {} for query {}", objectName, query, e);
+			}
+		}
+		return measuring.costs();
+	}
+
+	private static void print(List<CollectionCost> costs, PrintStream out) {
+		out.printf(Locale.ENGLISH, "%10s %10s %10s %10s %10s %10s %8s %8s %8s  %s%n",
+				"total ms", "names ms", "inst ms", "info ms", "attrs ms", "bytes", "results", "values", "dropped", "server / query / MBean");
+		for (CollectionCost cost : costs) {
+			out.printf(Locale.ENGLISH, "%10.2f %10.2f %10.2f %10.2f %10.2f %10d %8d %8d %8d  %s / %s / %s%n",
+					millis(cost.getTotalNanos()),
+					millis(cost.getQueryNamesNanos()),
+					millis(cost.getGetObjectInstanceNanos()),
+					millis(cost.getGetMBeanInfoNanos()),
+					millis(cost.getGetAttributesNanos()),
+					cost.getBytes(),
+					cost.getResults(),
+					cost.getValues(),
+					cost.getNonNumericValues(),
+					cost.getServer(), cost.getQuery(), cost.getObjectName());
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.explain;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Wraps an {@link MBeanServerConnection} to account the time and bytes of
+ * each call to the MBean it targets.
+ * <p/>
+ * Bytes are the Java serialized size of the arguments and of the returned
+ * value, which is what RMI transfers (without the protocol overhead). Local
+ * servers get the same estimation.
+ */
+@NotThreadSafe
+final class MeasuringConnection implements InvocationHandler {
+
+	@Nonnull private final MBeanServerConnection target;
+	@Nonnull private final String server;
+	@Nonnull private final ObjectName query;
+	@Nonnull private final Map<ObjectName, CollectionCost> costs = new LinkedHashMap<>();
+
+	private MeasuringConnection(@Nonnull MBeanServerConnection target, @Nonnull String server, @Nonnull ObjectName query) {
+		this.target = target;
+		this.server = server;
+		this.query = query;
+	}
+
+	@Nonnull
+	static MeasuringConnection measure(@Nonnull MBeanServerConnection target, @Nonnull String server, @Nonnull ObjectName query) {
+		return new MeasuringConnection(target, server, query);
+	}
+
+	@Nonnull
+	MBeanServerConnection connection() {
+		return (MBeanServerConnection) Proxy.newProxyInstance(
+				MBeanServerConnection.class.getClassLoader(),
+				new Class<?>[]{MBeanServerConnection.class},
+				this);
+	}
+
+	@Nonnull
+	CollectionCost costOf(@Nonnull ObjectName objectName) {
+		CollectionCost cost = costs.get(objectName);
+		if (cost == null) {
+			cost = new CollectionCost(server, query, objectName);
+			costs.put(objectName, cost);
+		}
+		return cost;
+	}
+
+	@Nonnull
+	Iterable<CollectionCost> costs() {
+		return costs.values();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		long start = System.nanoTime();
+		Object result;
+		try {
+			result = method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		ObjectName objectName = args != null && args.length > 0 && args[0] instanceof ObjectName ? (ObjectName) args[0] : query;
+		costOf(objectName).addCall(method.getName(), elapsed, serializedSize(args) + serializedSize(result));
+		return result;
+	}
+
+	private static long serializedSize(Object value) {
+		if (value == null) return 0;
+		CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+		try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+			out.writeObject(value);
+		} catch (IOException e) {
+			// not serializable, local MBeans can return anything
+		}
+		return counter.getCount();
+	}
+}
@@ -37,8 +37,11 @@ import com.google.inject.name.Named;
 import com.google.inject.name.Names;
 import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
 import com.googlecode.jmxtrans.connections.DatagramSocketFactory;
+import com.googlecode.jmxtrans.connections.JMXConnection;
+import com.googlecode.jmxtrans.connections.JmxConnectionProvider;
 import com.googlecode.jmxtrans.connections.MBeanServerConnectionFactory;
 import com.googlecode.jmxtrans.connections.SocketFactory;
+import com.googlecode.jmxtrans.connections.StormpotKeyedObjectPool;
 import com.googlecode.jmxtrans.monitoring.ManagedGenericKeyedObjectPool;
 import org.apache.commons.pool.KeyedObjectPool;
 import org.apache.commons.pool.KeyedPoolableObjectFactory;
@@ -66,6 +69,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class JmxTransModule extends AbstractModule {
 
@@ -84,7 +88,7 @@ public class JmxTransModule extends AbstractModule {
 		bind(new TypeLiteral<GenericKeyedObjectPool<SocketAddress, DatagramSocket>>(){})
 				.toInstance(getObjectPool(new DatagramSocketFactory(), DatagramSocketFactory.class.getSimpleName()));
 		bind(KeyedObjectPool.class).annotatedWith(Names.named("mbeanPool"))
-				.toInstance(getObjectPool(new MBeanServerConnectionFactory(), MBeanServerConnectionFactory.class.getSimpleName()));
+				.toInstance(getJmxConnectionPool());
 	}
 
 	@Provides
@@ -167,6 +171,27 @@ public class JmxTransModule extends AbstractModule {
 		return pool;
 	}
 
+	private StormpotKeyedObjectPool<JmxConnectionProvider, JMXConnection> getJmxConnectionPool() {
+		String poolName = MBeanServerConnectionFactory.class.getSimpleName();
+		StormpotKeyedObjectPool<JmxConnectionProvider, JMXConnection> pool = new StormpotKeyedObjectPool<>(
+				new MBeanServerConnectionFactory(),
+				poolName,
+				configuration.getJmxConnectionsPerServer(),
+				MILLISECONDS.convert(30, SECONDS),
+				MILLISECONDS.convert(1, MINUTES),
+				MILLISECONDS.convert(5, MINUTES));
+
+		try {
+			ManagedGenericKeyedObjectPool mbean = new ManagedGenericKeyedObjectPool(pool, poolName);
+			ManagementFactory.getPlatformMBeanServer()
+					.registerMBean(mbean, mbean.getObjectName());
+		} catch (Exception e) {
+			log.error("Could not register mbean for pool [{}]", poolName, e);
+		}
+
+		return pool;
+	}
+
 	@Nonnull
 	public static Injector createInjector(@Nonnull JmxTransConfiguration configuration) {
 		return Guice.createInjector(
@@ -24,14 +24,19 @@ package com.googlecode.jmxtrans.jmx;
 
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.snapshot.SnapshotClients;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.List;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Lists.newArrayList;
 
 /**
  * The worker code.
@@ -44,23 +49,87 @@ public class JmxUtils {
 
 	@Nonnull private final ThreadPoolExecutor executorService;
 	@Nonnull private final ResultProcessor resultProcessor;
+	@Nonnull private final NotificationSubscriptions notificationSubscriptions;
+	@Nonnull private final SnapshotClients snapshotClients;
+	@Nonnull private final JolokiaResultMapper jolokiaResultMapper = new JolokiaResultMapper();
+	@Nonnull private final AtomicLong cycleIds = new AtomicLong();
 
 	@Inject
 	public JmxUtils(
 			@Named("queryProcessorExecutor") @Nonnull ThreadPoolExecutor executorService,
-			@Nonnull ResultProcessor resultProcessor) {
+			@Nonnull ResultProcessor resultProcessor,
+			@Nonnull NotificationSubscriptions notificationSubscriptions,
+			@Nonnull SnapshotClients snapshotClients) {
 		this.executorService = executorService;
 		this.resultProcessor = resultProcessor;
+		this.notificationSubscriptions = notificationSubscriptions;
+		this.snapshotClients = snapshotClients;
+	}
+
+	/**
+	 * Submits the collection of all the queries of a server, as one
+	 * {@link ServerCycle}.
+	 */
+	public void processServer(final Server server) throws Exception {
+		ServerCycle cycle = ServerCycle.begin(server, cycleIds.incrementAndGet());
+		try {
+			submitQueries(server, cycle);
+		} finally {
+			cycle.exit();
+		}
 	}
 
-	public void processServer(Server server) throws Exception {
+	private void submitQueries(final Server server, ServerCycle cycle) {
+		if (server.isJolokia()) {
+			// a single bulk request reads every query of the server
+			submit(new ProcessJolokiaServerThread(resultProcessor, jolokiaResultMapper, server), cycle);
+			return;
+		}
+		if (server.isSnapshotAgent()) {
+			// the agent evaluates every query and answers with a single snapshot
+			submit(new ProcessSnapshotServerThread(resultProcessor, snapshotClients.forServer(server), server), cycle);
+			return;
+		}
+
+		final List<Query> notificationQueries = newArrayList();
 		for (Query query : server.getQueries()) {
-			ProcessQueryThread pqt = new ProcessQueryThread(resultProcessor, server, query);
-			try {
-				executorService.submit(pqt);
-			} catch (RejectedExecutionException ree) {
-				logger.error("Could not submit query {}. You could try to size the 'queryProcessorExecutor' to a larger size.", pqt, ree);
+			if (query.isNotifications()) {
+				notificationQueries.add(query);
+			} else {
+				submit(new ProcessQueryThread(resultProcessor, server, query), cycle);
 			}
 		}
+
+		if (!notificationQueries.isEmpty()) {
+			// notifications arrive on their own schedule, outside of the cycle
+			submit(new Runnable() {
+				@Override
+				public void run() {
+					notificationSubscriptions.refresh(server, notificationQueries);
+				}
+
+				@Override
+				public String toString() {
+					return "notification subscriptions of " + server;
+				}
+			});
+		}
+	}
+
+	private void submit(Runnable task, ServerCycle cycle) {
+		cycle.enter();
+		if (!submit(cycle.wrap(task))) {
+			cycle.exit();
+		}
+	}
+
+	private boolean submit(Runnable task) {
+		try {
+			executorService.submit(task);
+			return true;
+		} catch (RejectedExecutionException ree) {
+			logger.error("Could not submit query {}. You could try to size the 'queryProcessorExecutor' to a larger size.", task, ree);
+			return false;
+		}
 	}
 }
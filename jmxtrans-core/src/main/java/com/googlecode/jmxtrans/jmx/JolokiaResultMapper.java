@@ -0,0 +1,168 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.connections.JolokiaConnection.ReadRequest;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.google.common.collect.ImmutableList.Builder;
+
+/**
+ * Translates between {@link Query}s and Jolokia read requests / responses.
+ * <p/>
+ * Jolokia serializes composite and tabular data as JSON objects. They are
+ * flattened the same way {@link com.googlecode.jmxtrans.model.JmxResultProcessor}
+ * flattens open types: the scalar fields of an object become the values of
+ * one {@link Result}, nested objects produce additional results named
+ * <code>attribute.key</code>.
+ * <p/>
+ * Jolokia does not expose the class of an MBean, so the domain of the
+ * ObjectName is used in its place. Queries run through Jolokia should
+ * usually define a <code>resultAlias</code>.
+ */
+@ThreadSafe
+public class JolokiaResultMapper {
+
+	private static final Logger logger = LoggerFactory.getLogger(JolokiaResultMapper.class);
+
+	@Nonnull
+	public ReadRequest toRequest(@Nonnull Query query) {
+		return new ReadRequest(query.getObjectName().getCanonicalName(), query.getAttr());
+	}
+
+	@Nonnull
+	public ImmutableList<Result> toResults(@Nonnull Query query, @Nonnull JsonNode response) {
+		int status = response.path("status").asInt();
+		if (status != 200) {
+			logger.warn("Jolokia could not read {}: {} {}", query.getObjectName(), status, response.path("error").asText());
+			return ImmutableList.of();
+		}
+
+		JsonNode value = response.get("value");
+		if (value == null || value.isNull()) return ImmutableList.of();
+
+		Builder<Result> accumulator = ImmutableList.builder();
+		long epoch = System.currentTimeMillis();
+		if (query.getObjectName().isPattern()) {
+			Iterator<Map.Entry<String, JsonNode>> mbeans = value.fields();
+			while (mbeans.hasNext()) {
+				Map.Entry<String, JsonNode> mbean = mbeans.next();
+				ObjectName objectName = parse(mbean.getKey());
+				if (objectName != null) {
+					addAttributes(accumulator, query, objectName, epoch, mbean.getValue());
+				}
+			}
+		} else if (query.getAttr().size() == 1) {
+			addAttribute(accumulator, query, query.getObjectName(), epoch, query.getAttr().get(0), value);
+		} else {
+			addAttributes(accumulator, query, query.getObjectName(), epoch, value);
+		}
+		return accumulator.build();
+	}
+
+	private void addAttributes(Builder<Result> accumulator, Query query, ObjectName objectName, long epoch, JsonNode attributes) {
+		Iterator<Map.Entry<String, JsonNode>> fields = attributes.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> attribute = fields.next();
+			addAttribute(accumulator, query, objectName, epoch, attribute.getKey(), attribute.getValue());
+		}
+	}
+
+	private void addAttribute(Builder<Result> accumulator, Query query, ObjectName objectName, long epoch, String attributeName, JsonNode value) {
+		if (value == null || value.isNull()) return;
+
+		if (value.isObject()) {
+			ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+			boolean hasValues = false;
+			Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				JsonNode fieldValue = field.getValue();
+				if (fieldValue.isContainerNode()) {
+					addAttribute(accumulator, query, objectName, epoch, attributeName + "." + field.getKey(), fieldValue);
+				} else if (!fieldValue.isNull()) {
+					values.put(field.getKey(), scalar(fieldValue));
+					hasValues = true;
+				}
+			}
+			if (hasValues) accumulator.add(newResult(query, objectName, epoch, attributeName, values.build()));
+		} else if (value.isArray()) {
+			ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+			boolean hasValues = false;
+			for (int i = 0; i < value.size(); i++) {
+				JsonNode element = value.get(i);
+				if (element.isContainerNode()) {
+					addAttribute(accumulator, query, objectName, epoch, attributeName, element);
+				} else if (!element.isNull()) {
+					values.put(attributeName + "." + i, scalar(element));
+					hasValues = true;
+				}
+			}
+			if (hasValues) accumulator.add(newResult(query, objectName, epoch, attributeName, values.build()));
+		} else {
+			accumulator.add(newResult(query, objectName, epoch, attributeName, ImmutableMap.of(attributeName, scalar(value))));
+		}
+	}
+
+	private Result newResult(Query query, ObjectName objectName, long epoch, String attributeName, Map<String, Object> values) {
+		return new Result(
+				epoch,
+				attributeName,
+				objectName.getDomain(),
+				objectName.getDomain(),
+				query.getResultAlias(),
+				objectName.getKeyPropertyListString(),
+				values);
+	}
+
+	@Nonnull
+	private static Object scalar(@Nonnull JsonNode node) {
+		if (node.isNumber()) return node.numberValue();
+		if (node.isBoolean()) return node.booleanValue();
+		return node.asText();
+	}
+
+	@Nullable
+	private static ObjectName parse(String name) {
+		try {
+			return new ObjectName(name);
+		} catch (MalformedObjectNameException e) {
+			logger.warn("Jolokia returned an invalid ObjectName {}", name, e);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.connections.JMXConnection;
+import com.googlecode.jmxtrans.connections.MBeanServerConnectionFactory;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.InstanceNotFoundException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectionNotification;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.collect.Sets.newHashSet;
+
+/**
+ * Keeps the notification listeners of the queries marked with
+ * {@link Query#isNotifications()} registered.
+ * <p>
+ * Each server gets a connection of its own, opened outside of the pool so
+ * that queries keep all the pooled connections. Subscriptions are refreshed on every run
+ * of the server: MBeans matching a query since the last run get a listener
+ * and, when the connection failed or was closed in the meantime, it is
+ * replaced and every listener is registered again on the new one.
+ */
+@Singleton
+@ThreadSafe
+public class NotificationSubscriptions {
+
+	@Nonnull private static final Logger logger = LoggerFactory.getLogger(NotificationSubscriptions.class);
+	@Nonnull private static final MBeanServerConnectionFactory connections = new MBeanServerConnectionFactory();
+
+	@Nonnull private final ResultProcessor resultProcessor;
+	@Nonnull private final ConcurrentMap<Server, ServerSubscriptions> subscriptions = new ConcurrentHashMap<>();
+
+	@Inject
+	public NotificationSubscriptions(@Nonnull ResultProcessor resultProcessor) {
+		this.resultProcessor = resultProcessor;
+	}
+
+	/**
+	 * Makes sure every MBean currently matching one of the queries has a
+	 * listener registered. Failures are logged and retried on the next call.
+	 */
+	public void refresh(@Nonnull Server server, @Nonnull Iterable<Query> queries) {
+		ServerSubscriptions serverSubscriptions = subscriptions.get(server);
+		if (serverSubscriptions == null) {
+			ServerSubscriptions created = new ServerSubscriptions(server);
+			serverSubscriptions = subscriptions.putIfAbsent(server, created);
+			if (serverSubscriptions == null) serverSubscriptions = created;
+		}
+		try {
+			serverSubscriptions.refresh(queries);
+		} catch (Exception e) {
+			logger.error("Could not subscribe to notifications on server {}", server, e);
+		}
+	}
+
+	/**
+	 * Removes all listeners and closes their connections. Used
+	 * on shutdown and when the configuration is reloaded.
+	 */
+	public void unsubscribeAll() {
+		for (Iterator<ServerSubscriptions> it = subscriptions.values().iterator(); it.hasNext(); ) {
+			ServerSubscriptions serverSubscriptions = it.next();
+			it.remove();
+			serverSubscriptions.close();
+		}
+	}
+
+	@ThreadSafe
+	private final class ServerSubscriptions implements NotificationListener {
+		@Nonnull private final Server server;
+		@GuardedBy("this") private JMXConnection connection;
+		@GuardedBy("this") private final Map<Query, Map<ObjectName, QueryNotificationListener>> listeners = new IdentityHashMap<>();
+		private volatile boolean broken;
+
+		private ServerSubscriptions(@Nonnull Server server) {
+			this.server = server;
+		}
+
+		private synchronized void refresh(Iterable<Query> queries) throws Exception {
+			if (connection != null && broken) {
+				logger.info("Connection to {} was lost, subscribing to notifications again", server);
+				release();
+			}
+			if (connection == null) {
+				connection = connections.makeObject(server);
+				broken = false;
+				connection.addConnectionNotificationListener(this, null, null);
+			}
+
+			MBeanServerConnection mbeanServer = connection.getMBeanServerConnection();
+			try {
+				for (Query query : queries) {
+					subscribe(mbeanServer, query);
+				}
+			} catch (IOException e) {
+				broken = true;
+				throw e;
+			}
+		}
+
+		@GuardedBy("this")
+		private void subscribe(MBeanServerConnection mbeanServer, Query query) throws IOException {
+			Map<ObjectName, QueryNotificationListener> queryListeners = listeners.get(query);
+			if (queryListeners == null) {
+				queryListeners = new HashMap<>();
+				listeners.put(query, queryListeners);
+			}
+
+			Set<ObjectName> names = newHashSet(query.queryNames(mbeanServer));
+			// listeners of unregistered MBeans are dropped by the MBean server
+			queryListeners.keySet().retainAll(names);
+
+			for (ObjectName name : names) {
+				if (queryListeners.containsKey(name)) continue;
+				try {
+					QueryNotificationListener listener = new QueryNotificationListener(
+							resultProcessor, server, query, mbeanServer.getObjectInstance(name));
+					mbeanServer.addNotificationListener(name, listener, null, null);
+					queryListeners.put(name, listener);
+					logger.debug("Subscribed to notifications of {} for query {}", name, query);
+				} catch (InstanceNotFoundException e) {
+					logger.debug("MBean {} disappeared before subscribing to its notifications", name);
+				} catch (IllegalArgumentException e) {
+					// not a NotificationBroadcaster, no point in trying again
+					logger.warn("MBean {} does not emit notifications, query {} will ignore it", name, query);
+					queryListeners.put(name, null);
+				}
+			}
+		}
+
+		@Override
+		public void handleNotification(Notification notification, Object handback) {
+			String type = notification.getType();
+			if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+				broken = true;
+			} else if (JMXConnectionNotification.NOTIFS_LOST.equals(type)) {
+				logger.warn("Notifications were lost on server {}: {}", server, notification.getMessage());
+			}
+		}
+
+		private synchronized void close() {
+			if (connection == null) return;
+			if (!broken) {
+				MBeanServerConnection mbeanServer = connection.getMBeanServerConnection();
+				for (Map<ObjectName, QueryNotificationListener> queryListeners : listeners.values()) {
+					for (Map.Entry<ObjectName, QueryNotificationListener> entry : queryListeners.entrySet()) {
+						if (entry.getValue() == null) continue;
+						try {
+							mbeanServer.removeNotificationListener(entry.getKey(), entry.getValue());
+						} catch (Exception e) {
+							logger.debug("Could not remove notification listener from {}", entry.getKey(), e);
+						}
+					}
+				}
+			}
+			release();
+		}
+
+		@GuardedBy("this")
+		private void release() {
+			try {
+				connection.removeConnectionNotificationListener(this);
+			} catch (ListenerNotFoundException e) {
+				logger.debug("Connection listener of server {} was already removed", server, e);
+			}
+			try {
+				connections.destroyObject(server, connection);
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Could not close notification connection of server {}", server, e);
+			}
+			connection = null;
+			listeners.clear();
+		}
+	}
+}
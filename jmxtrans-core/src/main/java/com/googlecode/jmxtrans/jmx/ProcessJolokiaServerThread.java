@@ -0,0 +1,81 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.connections.JolokiaConnection.ReadRequest;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+
+/**
+ * Reads all the queries of a Jolokia server with a single bulk request and
+ * hands the results of each query to the {@link ResultProcessor}.
+ */
+@ThreadSafe
+@ToString(exclude = {"resultProcessor", "mapper"})
+public class ProcessJolokiaServerThread implements Runnable {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	@Nonnull private final Server server;
+	@Nonnull private final ResultProcessor resultProcessor;
+	@Nonnull private final JolokiaResultMapper mapper;
+
+	public ProcessJolokiaServerThread(
+			@Nonnull ResultProcessor resultProcessor,
+			@Nonnull JolokiaResultMapper mapper,
+			@Nonnull Server server) {
+		this.resultProcessor = resultProcessor;
+		this.mapper = mapper;
+		this.server = server;
+	}
+
+	@Override
+	public void run() {
+		try {
+			List<Query> queries = server.getQueries().asList();
+			ImmutableList.Builder<ReadRequest> requests = ImmutableList.builder();
+			for (Query query : queries) {
+				requests.add(mapper.toRequest(query));
+			}
+
+			List<JsonNode> responses = server.getJolokiaConnection().bulkRead(requests.build());
+
+			for (int i = 0; i < queries.size(); i++) {
+				Query query = queries.get(i);
+				resultProcessor.submit(server, query, mapper.toResults(query, responses.get(i)));
+			}
+		} catch (Exception e) {
+			log.error("Error executing Jolokia bulk read on server {}", server, e);
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.JmxResultProcessor;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Attribute;
+import javax.management.AttributeChangeNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectInstance;
+
+/**
+ * Converts the notifications emitted by a single MBean into results of a
+ * query and pushes them to the output writers.
+ * <p>
+ * An {@link AttributeChangeNotification} becomes a value of the changed
+ * attribute, any other notification carrying user data (for example a
+ * GarbageCollectionNotification) becomes a value named after the
+ * notification type.
+ */
+@ThreadSafe
+@ToString(of = {"query", "objectInstance"})
+class QueryNotificationListener implements NotificationListener {
+
+	@Nonnull private final ResultProcessor resultProcessor;
+	@Nonnull private final Server server;
+	@Nonnull private final Query query;
+	@Nonnull private final ObjectInstance objectInstance;
+
+	QueryNotificationListener(
+			@Nonnull ResultProcessor resultProcessor,
+			@Nonnull Server server,
+			@Nonnull Query query,
+			@Nonnull ObjectInstance objectInstance) {
+		this.resultProcessor = resultProcessor;
+		this.server = server;
+		this.query = query;
+		this.objectInstance = objectInstance;
+	}
+
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		Attribute attribute = toAttribute(notification);
+		if (attribute == null) return;
+
+		Iterable<Result> results = new JmxResultProcessor(
+				query,
+				objectInstance,
+				ImmutableList.of(attribute),
+				objectInstance.getClassName(),
+				objectInstance.getObjectName().getDomain()).getResults();
+		resultProcessor.submit(server, query, results);
+	}
+
+	@Nullable
+	private Attribute toAttribute(Notification notification) {
+		if (notification instanceof AttributeChangeNotification) {
+			AttributeChangeNotification change = (AttributeChangeNotification) notification;
+			if (!accepts(change.getAttributeName())) return null;
+			return new Attribute(change.getAttributeName(), change.getNewValue());
+		}
+		if (notification.getUserData() == null || !accepts(notification.getType())) return null;
+		return new Attribute(notification.getType(), notification.getUserData());
+	}
+
+	private boolean accepts(String name) {
+		return query.getAttr().isEmpty() || query.getAttr().contains(name);
+	}
+}
@@ -22,16 +22,20 @@
  */
 package com.googlecode.jmxtrans.jmx;
 
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.googlecode.jmxtrans.model.OutputWriter;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.results.ClusterAggregates;
+import com.googlecode.jmxtrans.model.results.ResultPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -42,26 +46,63 @@ public class ResultProcessor {
 	private final Logger logger = LoggerFactory.getLogger(ResultProcessor.class);
 
 	@Nonnull private final ThreadPoolExecutor executorService;
+	@Nonnull private final ResultPipeline pipeline;
+	@Nonnull private final ClusterAggregates clusterAggregates;
 
 	@Inject
-	public ResultProcessor(@Named("resultProcessorExecutor") @Nonnull ThreadPoolExecutor executorService) {
+	public ResultProcessor(
+			@Named("resultProcessorExecutor") @Nonnull ThreadPoolExecutor executorService,
+			@Nonnull ResultPipeline pipeline,
+			@Nonnull ClusterAggregates clusterAggregates) {
 		this.executorService = executorService;
+		this.pipeline = pipeline;
+		this.clusterAggregates = clusterAggregates;
 	}
 
-	public void submit(@Nonnull final Server server, @Nonnull final Query query, @Nonnull final Iterable<Result> results) {
+	/**
+	 * Results go through the {@link ResultPipeline} once here, then are
+	 * shared by all the writers of the query and server. Aggregates across
+	 * servers are written by the same writers, as the aggregate server. They
+	 * count every prepared result, before rollups and the change filter.
+	 * <p/>
+	 * When called while collecting a {@link ServerCycle}, the writes are
+	 * part of that cycle, which only ends once they are done.
+	 */
+	public void submit(@Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> collected) {
+		ServerCycle cycle = ServerCycle.current();
+		ImmutableList<Result> prepared = pipeline.prepare(server, query, collected);
+		ImmutableList<Result> aggregates = clusterAggregates.add(server, query, prepared);
+		if (!aggregates.isEmpty()) {
+			write(server, clusterAggregates.aggregateServer(server, query), query, aggregates, cycle);
+		}
+		if (!query.isAggregateOnly()) {
+			write(server, server, query, pipeline.reduce(server, query, prepared), cycle);
+		}
+	}
+
+	private void write(
+			@Nonnull Server server,
+			@Nonnull final Server writtenAs,
+			@Nonnull final Query query,
+			@Nonnull final ImmutableList<Result> results,
+			@Nullable final ServerCycle cycle) {
 		for (final OutputWriter writer : concat(query.getOutputWriterInstances(), server.getOutputWriters())) {
+			if (cycle != null) cycle.enter();
 			try {
 				executorService.submit(new Runnable() {
 					@Override
 					public void run() {
 						try {
-							writer.doWrite(server, query, results);
+							writer.doWrite(writtenAs, query, results);
 						} catch (Exception e) {
 							logger.warn("Could not write results {} of query {} to output writer {}", results, query, writer, e);
+						} finally {
+							if (cycle != null) cycle.exit();
 						}
 					}
 				});
 			} catch (RejectedExecutionException ree) {
+				if (cycle != null) cycle.exit();
 				logger.error("Could not submit results {} of query {} to output writer {}. You could try to size the 'resultProcessorExecutor' to a larger size.", results, query, writer, ree);
 			}
 		}
@@ -0,0 +1,155 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.googlecode.jmxtrans.model.CycleAwareOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks the work of one collection cycle of a server: the tasks collecting
+ * its queries and the writes of their results. The
+ * {@link CycleAwareOutputWriter}s of the server are told when the cycle
+ * begins, and when the last of this work is done.
+ * <p/>
+ * Collection tasks are run through {@link #wrap(Runnable)}, which makes the
+ * cycle {@link #current()} for the thread running them, so that the
+ * {@link ResultProcessor} can attach the writes to it.
+ */
+@ThreadSafe
+final class ServerCycle {
+
+	private static final Logger logger = LoggerFactory.getLogger(ServerCycle.class);
+
+	private static final ThreadLocal<ServerCycle> CURRENT = new ThreadLocal<>();
+
+	@Nonnull @Getter private final Server server;
+	@Getter private final long id;
+	@Nonnull private final ImmutableList<CycleAwareOutputWriter> writers;
+	/** Outstanding work, plus one held until all tasks have been submitted. */
+	@Nonnull private final AtomicInteger pending = new AtomicInteger(1);
+
+	private ServerCycle(@Nonnull Server server, long id, @Nonnull ImmutableList<CycleAwareOutputWriter> writers) {
+		this.server = server;
+		this.id = id;
+		this.writers = writers;
+	}
+
+	/**
+	 * Starts a cycle and calls {@link CycleAwareOutputWriter#beginCycle(Server, long)}
+	 * on the writers of the server. The caller must {@link #exit()} once it
+	 * has submitted all the tasks of the cycle.
+	 */
+	@Nonnull
+	static ServerCycle begin(@Nonnull Server server, long id) {
+		ServerCycle cycle = new ServerCycle(server, id, cycleAwareWriters(server));
+		for (CycleAwareOutputWriter writer : cycle.writers) {
+			try {
+				writer.beginCycle(server, id);
+			} catch (Exception e) {
+				logger.warn("Could not begin cycle {} of server {} on output writer {}", id, server, writer, e);
+			}
+		}
+		return cycle;
+	}
+
+	@Nullable
+	static ServerCycle current() {
+		return CURRENT.get();
+	}
+
+	void enter() {
+		pending.incrementAndGet();
+	}
+
+	void exit() {
+		if (pending.decrementAndGet() == 0) {
+			end();
+		}
+	}
+
+	/**
+	 * Wraps a task that was {@link #enter() entered} in this cycle, so that it
+	 * runs as part of the cycle and exits it when done.
+	 */
+	@Nonnull
+	Runnable wrap(@Nonnull final Runnable task) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				CURRENT.set(ServerCycle.this);
+				try {
+					task.run();
+				} finally {
+					CURRENT.remove();
+					exit();
+				}
+			}
+
+			@Override
+			public String toString() {
+				return task.toString();
+			}
+		};
+	}
+
+	private void end() {
+		for (CycleAwareOutputWriter writer : writers) {
+			try {
+				writer.endCycle(server, id);
+			} catch (Exception e) {
+				logger.warn("Could not end cycle {} of server {} on output writer {}", id, server, writer, e);
+			}
+		}
+	}
+
+	private static ImmutableList<CycleAwareOutputWriter> cycleAwareWriters(Server server) {
+		Set<OutputWriter> seen = Sets.newIdentityHashSet();
+		ImmutableList.Builder<CycleAwareOutputWriter> writers = ImmutableList.builder();
+		for (Query query : server.getQueries()) {
+			for (OutputWriter writer : query.getOutputWriterInstances()) {
+				if (writer instanceof CycleAwareOutputWriter && seen.add(writer)) {
+					writers.add((CycleAwareOutputWriter) writer);
+				}
+			}
+		}
+		for (OutputWriter writer : server.getOutputWriters()) {
+			if (writer instanceof CycleAwareOutputWriter && seen.add(writer)) {
+				writers.add((CycleAwareOutputWriter) writer);
+			}
+		}
+		return writers.build();
+	}
+}
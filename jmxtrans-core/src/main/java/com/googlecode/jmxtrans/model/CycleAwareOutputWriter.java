@@ -0,0 +1,43 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+/**
+ * An {@link OutputWriter} told when a collection cycle of a server starts and
+ * when all of its queries have been collected and written.
+ * <p/>
+ * {@link #beginCycle(Server, long)} is called before any query of the cycle
+ * runs, and {@link #endCycle(Server, long)} once every
+ * {@link #doWrite(Server, Query, Iterable)} call of the cycle has returned,
+ * so a writer can accumulate the results of a server and send them once per
+ * cycle. Cycles of different servers overlap, and results written outside
+ * of a cycle (notifications, aggregates written as another server) still
+ * arrive through {@link #doWrite(Server, Query, Iterable)} only.
+ */
+public interface CycleAwareOutputWriter extends OutputWriter {
+
+	void beginCycle(Server server, long cycleId) throws Exception;
+
+	void endCycle(Server server, long cycleId) throws Exception;
+
+}
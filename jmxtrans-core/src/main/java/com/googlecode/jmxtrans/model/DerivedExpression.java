@@ -0,0 +1,291 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.collect.ImmutableList;
+import lombok.EqualsAndHashCode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Arithmetic expression over the values of the results of a query, such as
+ * {@code HeapMemoryUsage.used / HeapMemoryUsage.max * 100}.
+ * <p/>
+ * Expressions support {@code + - * /}, unary minus, parentheses, numbers
+ * and variables. A variable is the name of an attribute ({@code
+ * CollectionTime}) or an attribute and a value key separated by a dot
+ * ({@code HeapMemoryUsage.used}); names with other characters than
+ * letters, digits, underscores and dots are quoted in backquotes
+ * ({@code `LastGcInfo.memoryUsageAfterGc.PS Eden Space`}).
+ * <p/>
+ * Expressions are parsed once, into a small stack machine program over
+ * doubles, so that evaluating them does not need any parsing nor boxing.
+ */
+@Immutable
+@ThreadSafe
+@EqualsAndHashCode(of = "expression")
+public final class DerivedExpression {
+
+	private static final int PUSH_CONSTANT = 0;
+	private static final int PUSH_VARIABLE = 1;
+	private static final int ADD = 2;
+	private static final int SUBTRACT = 3;
+	private static final int MULTIPLY = 4;
+	private static final int DIVIDE = 5;
+	private static final int NEGATE = 6;
+
+	@Nonnull private final String expression;
+	/** Operations, followed by the index of their operand for the push operations. */
+	@Nonnull private final int[] program;
+	@Nonnull private final double[] constants;
+	@Nonnull private final ImmutableList<String> variables;
+	private final int maxDepth;
+
+	private DerivedExpression(String expression, int[] program, double[] constants, ImmutableList<String> variables, int maxDepth) {
+		this.expression = expression;
+		this.program = program;
+		this.constants = constants;
+		this.variables = variables;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Parses the expression.
+	 *
+	 * @throws IllegalArgumentException if the expression is invalid
+	 */
+	@Nonnull
+	public static DerivedExpression compile(@Nonnull String expression) {
+		return new Parser(expression).parse();
+	}
+
+	/** The variables of the expression, in the order their values are given to {@link #evaluate}. */
+	@Nonnull
+	public ImmutableList<String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Evaluates the expression with the given variable values, following IEEE
+	 * 754 rules: a division by zero gives an infinite value or NaN.
+	 */
+	public double evaluate(@Nonnull double[] values) {
+		double[] stack = new double[maxDepth];
+		int top = -1;
+		for (int pc = 0; pc < program.length; pc++) {
+			switch (program[pc]) {
+				case PUSH_CONSTANT:
+					stack[++top] = constants[program[++pc]];
+					break;
+				case PUSH_VARIABLE:
+					stack[++top] = values[program[++pc]];
+					break;
+				case ADD:
+					top--;
+					stack[top] += stack[top + 1];
+					break;
+				case SUBTRACT:
+					top--;
+					stack[top] -= stack[top + 1];
+					break;
+				case MULTIPLY:
+					top--;
+					stack[top] *= stack[top + 1];
+					break;
+				case DIVIDE:
+					top--;
+					stack[top] /= stack[top + 1];
+					break;
+				case NEGATE:
+					stack[top] = -stack[top];
+					break;
+				default:
+					throw new IllegalStateException("Invalid operation " + program[pc]);
+			}
+		}
+		return stack[0];
+	}
+
+	@JsonValue
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/** Recursive descent parser, emitting the program while parsing. */
+	private static final class Parser {
+		private final String expression;
+		private int position;
+
+		private int[] program = new int[16];
+		private int length;
+		private final List<Double> constants = new ArrayList<>();
+		private final List<String> variables = new ArrayList<>();
+		private int depth;
+		private int maxDepth;
+
+		Parser(String expression) {
+			this.expression = expression;
+		}
+
+		DerivedExpression parse() {
+			parseSum();
+			skipWhitespace();
+			if (position < expression.length()) throw error("Unexpected '" + expression.charAt(position) + "'");
+
+			double[] constantValues = new double[constants.size()];
+			for (int i = 0; i < constantValues.length; i++) {
+				constantValues[i] = constants.get(i);
+			}
+			return new DerivedExpression(expression, Arrays.copyOf(program, length), constantValues,
+					ImmutableList.copyOf(variables), maxDepth);
+		}
+
+		private void parseSum() {
+			parseProduct();
+			while (true) {
+				if (consume('+')) {
+					parseProduct();
+					emitBinary(ADD);
+				} else if (consume('-')) {
+					parseProduct();
+					emitBinary(SUBTRACT);
+				} else {
+					return;
+				}
+			}
+		}
+
+		private void parseProduct() {
+			parseUnary();
+			while (true) {
+				if (consume('*')) {
+					parseUnary();
+					emitBinary(MULTIPLY);
+				} else if (consume('/')) {
+					parseUnary();
+					emitBinary(DIVIDE);
+				} else {
+					return;
+				}
+			}
+		}
+
+		private void parseUnary() {
+			if (consume('-')) {
+				parseUnary();
+				emit(NEGATE);
+				return;
+			}
+			if (consume('(')) {
+				parseSum();
+				if (!consume(')')) throw error("Missing ')'");
+				return;
+			}
+			skipWhitespace();
+			if (position >= expression.length()) throw error("Unexpected end of expression");
+			char c = expression.charAt(position);
+			if (Character.isDigit(c) || c == '.') {
+				push(PUSH_CONSTANT, constants, parseNumber());
+			} else if (c == '`') {
+				int end = expression.indexOf('`', position + 1);
+				if (end < 0) throw error("Missing closing '`'");
+				push(PUSH_VARIABLE, variables, expression.substring(position + 1, end));
+				position = end + 1;
+			} else if (Character.isLetter(c) || c == '_') {
+				int start = position;
+				while (position < expression.length() && isNameChar(expression.charAt(position))) {
+					position++;
+				}
+				push(PUSH_VARIABLE, variables, expression.substring(start, position));
+			} else {
+				throw error("Unexpected '" + c + "'");
+			}
+		}
+
+		private double parseNumber() {
+			int start = position;
+			while (position < expression.length()
+					&& (Character.isDigit(expression.charAt(position)) || expression.charAt(position) == '.')) {
+				position++;
+			}
+			try {
+				return Double.parseDouble(expression.substring(start, position));
+			} catch (NumberFormatException e) {
+				throw error("Invalid number '" + expression.substring(start, position) + "'");
+			}
+		}
+
+		/** Pushes a constant or variable, sharing the operand index of equal ones. */
+		private <T> void push(int operation, List<T> operands, T operand) {
+			int index = operands.indexOf(operand);
+			if (index < 0) {
+				index = operands.size();
+				operands.add(operand);
+			}
+			emit(operation);
+			emit(index);
+			depth++;
+			maxDepth = Math.max(maxDepth, depth);
+		}
+
+		private void emitBinary(int operation) {
+			emit(operation);
+			depth--;
+		}
+
+		private void emit(int code) {
+			if (length == program.length) program = Arrays.copyOf(program, length * 2);
+			program[length++] = code;
+		}
+
+		private boolean consume(char c) {
+			skipWhitespace();
+			if (position < expression.length() && expression.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+				position++;
+			}
+		}
+
+		private static boolean isNameChar(char c) {
+			return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + position + " of expression: " + expression);
+		}
+	}
+}
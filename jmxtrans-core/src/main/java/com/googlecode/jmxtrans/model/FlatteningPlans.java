@@ -0,0 +1,276 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.lang.reflect.Array;
+import java.util.Map;
+
+/**
+ * Caches the way attribute values are flattened into {@link Result}s.
+ * <p/>
+ * The structure of a {@link CompositeType}, a {@link TabularType} or of an
+ * array class does not change from one collection to the next, so it is
+ * analyzed once and the resulting plan is reused for every value of the same
+ * shape. Plans only depend on types, never on values, so they can safely be
+ * shared between queries and servers.
+ */
+@ThreadSafe
+final class FlatteningPlans {
+
+	/** Upper bound on the number of distinct shapes we remember. */
+	private static final int MAX_PLANS = 1000;
+
+	private static final LoadingCache<Class<?>, ValueKind> VALUE_KINDS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PLANS)
+			.build(new CacheLoader<Class<?>, ValueKind>() {
+				@Override
+				public ValueKind load(@Nonnull Class<?> valueClass) {
+					return ValueKind.of(valueClass);
+				}
+			});
+
+	private static final LoadingCache<CompositeType, CompositePlan> COMPOSITE_PLANS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PLANS)
+			.build(new CacheLoader<CompositeType, CompositePlan>() {
+				@Override
+				public CompositePlan load(@Nonnull CompositeType compositeType) {
+					return new CompositePlan(compositeType);
+				}
+			});
+
+	private static final LoadingCache<TabularType, CompositePlan> TABULAR_PLANS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PLANS)
+			.build(new CacheLoader<TabularType, CompositePlan>() {
+				@Override
+				public CompositePlan load(@Nonnull TabularType tabularType) {
+					return compositePlan(tabularType.getRowType());
+				}
+			});
+
+	private static final LoadingCache<String, IndexedKeys> INDEXED_KEYS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PLANS)
+			.build(new CacheLoader<String, IndexedKeys>() {
+				@Override
+				public IndexedKeys load(@Nonnull String attributeName) {
+					return new IndexedKeys(attributeName);
+				}
+			});
+
+	private FlatteningPlans() {}
+
+	@Nonnull
+	static ValueKind valueKind(@Nonnull Object value) {
+		return VALUE_KINDS.getUnchecked(value.getClass());
+	}
+
+	@Nonnull
+	static CompositePlan compositePlan(@Nonnull CompositeType compositeType) {
+		return COMPOSITE_PLANS.getUnchecked(compositeType);
+	}
+
+	/** The plan used for the rows of tabular data of the given type. */
+	@Nonnull
+	static CompositePlan rowPlan(@Nonnull TabularType tabularType) {
+		return TABULAR_PLANS.getUnchecked(tabularType);
+	}
+
+	/** The keys (<code>attributeName.0</code>, <code>attributeName.1</code>, ...) used for array elements. */
+	@Nonnull
+	static IndexedKeys indexedKeys(@Nonnull String attributeName) {
+		return INDEXED_KEYS.getUnchecked(attributeName);
+	}
+
+	/**
+	 * How a top level attribute value is processed. Computed once per value
+	 * class, this replaces the chain of <code>instanceof</code> checks.
+	 */
+	enum ValueKind {
+		COMPOSITE, COMPOSITE_ARRAY, OBJECT_NAME_ARRAY,
+		LONG_ARRAY, DOUBLE_ARRAY, INT_ARRAY, OTHER_ARRAY,
+		TABULAR, MAP, SIMPLE;
+
+		private static ValueKind of(Class<?> valueClass) {
+			if (CompositeData.class.isAssignableFrom(valueClass)) return COMPOSITE;
+			if (CompositeData[].class.isAssignableFrom(valueClass)) return COMPOSITE_ARRAY;
+			if (ObjectName[].class.isAssignableFrom(valueClass)) return OBJECT_NAME_ARRAY;
+			if (valueClass == long[].class) return LONG_ARRAY;
+			if (valueClass == double[].class) return DOUBLE_ARRAY;
+			if (valueClass == int[].class) return INT_ARRAY;
+			if (valueClass.isArray()) return OTHER_ARRAY;
+			if (TabularDataSupport.class.isAssignableFrom(valueClass)) return TABULAR;
+			if (Map.class.isAssignableFrom(valueClass)) return MAP;
+			return SIMPLE;
+		}
+	}
+
+	/** How a single item of a {@link CompositeType} is processed. */
+	enum ItemKind {
+		TABULAR, COMPOSITE, SIMPLE;
+
+		private static ItemKind of(OpenType<?> openType) {
+			if (openType instanceof TabularType) return TABULAR;
+			if (openType instanceof CompositeType) return COMPOSITE;
+			return SIMPLE;
+		}
+	}
+
+	/**
+	 * Precomputed view of a {@link CompositeType}: its item names, the kind of
+	 * each item and the suffix used when an item is tabular data.
+	 */
+	@Immutable
+	static final class CompositePlan {
+		@Nonnull private final String[] keys;
+		@Nonnull private final ItemKind[] kinds;
+		@Nonnull private final String[] suffixes;
+
+		private CompositePlan(@Nonnull CompositeType compositeType) {
+			int size = compositeType.keySet().size();
+			keys = new String[size];
+			kinds = new ItemKind[size];
+			suffixes = new String[size];
+			int i = 0;
+			for (String key : compositeType.keySet()) {
+				keys[i] = key;
+				kinds[i] = ItemKind.of(compositeType.getType(key));
+				suffixes[i] = "." + key;
+				i++;
+			}
+		}
+
+		int size() {
+			return keys.length;
+		}
+
+		@Nonnull
+		String key(int i) {
+			return keys[i];
+		}
+
+		@Nonnull
+		ItemKind kind(int i) {
+			return kinds[i];
+		}
+
+		/** <code>.key</code>, appended to the attribute name when the item is tabular. */
+		@Nonnull
+		String suffix(int i) {
+			return suffixes[i];
+		}
+	}
+
+	/**
+	 * Keys of array elements for a given attribute name. The keys are built
+	 * lazily and kept, so that arrays of stable length never allocate new
+	 * keys after the first collection.
+	 */
+	@ThreadSafe
+	static final class IndexedKeys {
+		@Nonnull private final String attributeName;
+		@Nonnull private volatile String[] keys = new String[0];
+
+		private IndexedKeys(@Nonnull String attributeName) {
+			this.attributeName = attributeName;
+		}
+
+		@Nonnull
+		String[] upTo(int length) {
+			String[] current = keys;
+			if (current.length >= length) return current;
+
+			String[] extended = new String[length];
+			System.arraycopy(current, 0, extended, 0, current.length);
+			for (int i = current.length; i < length; i++) {
+				extended[i] = attributeName + "." + i;
+			}
+			// concurrent extensions produce equal arrays, last one wins
+			keys = extended;
+			return extended;
+		}
+	}
+
+	/**
+	 * Flattens an array into its values, indexed by position. Primitive arrays
+	 * of the most common types are read directly instead of going through
+	 * {@link Array#get(Object, int)}.
+	 */
+	@Nonnull
+	static ImmutableMap<String, Object> flattenArray(@Nonnull ValueKind kind, @Nonnull String attributeName, @Nonnull Object array) {
+		ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+		switch (kind) {
+			case LONG_ARRAY: {
+				long[] longs = (long[]) array;
+				String[] keys = indexedKeys(attributeName).upTo(longs.length);
+				for (int i = 0; i < longs.length; i++) {
+					values.put(keys[i], longs[i]);
+				}
+				break;
+			}
+			case DOUBLE_ARRAY: {
+				double[] doubles = (double[]) array;
+				String[] keys = indexedKeys(attributeName).upTo(doubles.length);
+				for (int i = 0; i < doubles.length; i++) {
+					values.put(keys[i], doubles[i]);
+				}
+				break;
+			}
+			case INT_ARRAY: {
+				int[] ints = (int[]) array;
+				String[] keys = indexedKeys(attributeName).upTo(ints.length);
+				for (int i = 0; i < ints.length; i++) {
+					values.put(keys[i], ints[i]);
+				}
+				break;
+			}
+			default: {
+				int length = Array.getLength(array);
+				String[] keys = indexedKeys(attributeName).upTo(length);
+				if (array instanceof Object[]) {
+					Object[] objects = (Object[]) array;
+					for (int i = 0; i < length; i++) {
+						values.put(keys[i], objects[i]);
+					}
+				} else {
+					for (int i = 0; i < length; i++) {
+						values.put(keys[i], Array.get(array, i));
+					}
+				}
+			}
+		}
+		return values.build();
+	}
+}
@@ -24,16 +24,15 @@ package com.googlecode.jmxtrans.model;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.FlatteningPlans.CompositePlan;
+import com.googlecode.jmxtrans.model.FlatteningPlans.ValueKind;
 
 import javax.management.Attribute;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.CompositeDataSupport;
-import javax.management.openmbean.CompositeType;
 import javax.management.openmbean.TabularDataSupport;
-import java.lang.reflect.Array;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,23 +40,31 @@ import java.util.Set;
 import static com.google.common.collect.ImmutableList.Builder;
 import static com.google.common.collect.Maps.newHashMap;
 
+/**
+ * Flattens the attributes of an MBean into {@link Result}s.
+ * <p/>
+ * The structure of open types is analyzed once and cached in
+ * {@link FlatteningPlans}, so that subsequent collections of MBeans of the
+ * same shape only walk the values.
+ */
 public class JmxResultProcessor {
 
-	private final Query query;
-	private final ObjectInstance objectInstance;
-	private final String className;
-	private final String objDomain;
+	private final MBeanDescriptor descriptor;
 	private final List<Attribute> attributes;
+	private long epoch;
 
 	public JmxResultProcessor(Query query, ObjectInstance objectInstance, List<Attribute> attributes, String className, String objDomain) {
-		this.query = query;
-		this.objectInstance = objectInstance;
-		this.className = className;
-		this.objDomain = objDomain;
+		this.descriptor = MBeanDescriptor.of(
+				className,
+				objDomain,
+				objectInstance.getObjectName().getKeyPropertyListString(),
+				query.getResultAlias());
 		this.attributes = attributes;
 	}
 
 	public ImmutableList<Result> getResults() {
+		// all the attributes were read at once
+		epoch = System.currentTimeMillis();
 		Builder<Result> accumulator = ImmutableList.builder();
 		for (Attribute attribute : attributes) {
 			getResult(accumulator, attribute);
@@ -74,42 +81,42 @@ public class JmxResultProcessor {
 			return;
 		}
 
-		if (value instanceof CompositeData) {
-			getResult(accumulator, attribute.getName(), (CompositeData) value);
-		} else if (value instanceof CompositeData[]) {
-			for (CompositeData cd : (CompositeData[]) value) {
-				getResult(accumulator, attribute.getName(), cd);
-			}
-		} else if (value instanceof ObjectName[]) {
-			Map<String, Object> values = newHashMap();
-			for (ObjectName obj : (ObjectName[]) value) {
-				values.put(obj.getCanonicalName(), obj.getKeyPropertyListString());
+		String attributeName = attribute.getName();
+		ValueKind kind = FlatteningPlans.valueKind(value);
+		switch (kind) {
+			case COMPOSITE:
+				getResult(accumulator, attributeName, (CompositeData) value);
+				break;
+			case COMPOSITE_ARRAY:
+				for (CompositeData cd : (CompositeData[]) value) {
+					getResult(accumulator, attributeName, cd);
+				}
+				break;
+			case OBJECT_NAME_ARRAY: {
+				Map<String, Object> values = newHashMap();
+				for (ObjectName obj : (ObjectName[]) value) {
+					values.put(obj.getCanonicalName(), obj.getKeyPropertyListString());
+				}
+				accumulator.add(getNewResultObject(attributeName, values));
+				break;
 			}
-			Result r = getNewResultObject(attribute.getName(), values);
-			accumulator.add(r);
-		} else if (value.getClass().isArray()) {
-			// OMFG: this is nutty. some of the items in the array can be
-			// primitive! great interview question!
-			Map<String, Object> values = newHashMap();
-			for (int i = 0; i < Array.getLength(value); i++) {
-				Object val = Array.get(value, i);
-				values.put(attribute.getName() + "." + i, val);
+			case LONG_ARRAY:
+			case DOUBLE_ARRAY:
+			case INT_ARRAY:
+			case OTHER_ARRAY:
+				accumulator.add(getNewResultObject(attributeName, FlatteningPlans.flattenArray(kind, attributeName, value)));
+				break;
+			case TABULAR: {
+				Result r = getNewResultObject(attributeName, ResultValues.builder(0).build());
+				processTabularDataSupport(accumulator, attributeName, (TabularDataSupport) value);
+				accumulator.add(r);
+				break;
 			}
-			accumulator.add(getNewResultObject(attribute.getName(), values));
-		} else if (value instanceof TabularDataSupport) {
-			TabularDataSupport tds = (TabularDataSupport) value;
-			Map<String, Object> values = Collections.emptyMap();
-			Result r = getNewResultObject(attribute.getName(), values);
-			processTabularDataSupport(accumulator, attribute.getName(), tds);
-			accumulator.add(r);
-		}  else if (value instanceof Map) {
-			Result r = getNewResultObject(attribute.getName(), convertKeysToString((Map<Object, Object>) value));
-			accumulator.add(r);
-		} else {
-			Map<String, Object> values = newHashMap();
-			values.put(attribute.getName(), value);
-			Result r = getNewResultObject(attribute.getName(), values);
-			accumulator.add(r);
+			case MAP:
+				accumulator.add(getNewResultObject(attributeName, convertKeysToString((Map<Object, Object>) value)));
+				break;
+			default:
+				accumulator.add(getNewResultObject(attributeName, ResultValues.builder(1).put(attributeName, value).build()));
 		}
 	}
 
@@ -126,33 +133,41 @@ public class JmxResultProcessor {
 	 * contains the keys that we want to get the values of.
 	 */
 	private void getResult(Builder<Result> accumulator, String attributeName, CompositeData cds) {
-		CompositeType t = cds.getCompositeType();
-
-		Map<String, Object> values = newHashMap();
+		getResult(accumulator, attributeName, cds, FlatteningPlans.compositePlan(cds.getCompositeType()));
+	}
 
-		Set<String> keys = t.keySet();
-		for (String key : keys) {
+	private void getResult(Builder<Result> accumulator, String attributeName, CompositeData cds, CompositePlan plan) {
+		ResultValues.Builder values = ResultValues.builder(plan.size());
+		for (int i = 0; i < plan.size(); i++) {
+			String key = plan.key(i);
 			Object value = cds.get(key);
-			if (value instanceof TabularDataSupport) {
-				TabularDataSupport tds = (TabularDataSupport) value;
-				processTabularDataSupport(accumulator, attributeName + "." + key, tds);
-				// continue because we added tabular contents within above, but need primitives at this level
-			} else if (value instanceof CompositeDataSupport) {
-				// now recursively go through everything.
-				CompositeDataSupport cds2 = (CompositeDataSupport) value;
-				getResult(accumulator, attributeName, cds2);
-				return; // because we don't want to add to the list yet.
-			} else {
-				values.put(key, value);
+			switch (plan.kind(i)) {
+				case TABULAR:
+					if (value instanceof TabularDataSupport) {
+						processTabularDataSupport(accumulator, attributeName + plan.suffix(i), (TabularDataSupport) value);
+						// continue because we added tabular contents within above, but need primitives at this level
+						continue;
+					}
+					break;
+				case COMPOSITE:
+					if (value instanceof CompositeDataSupport) {
+						// now recursively go through everything.
+						getResult(accumulator, attributeName, (CompositeDataSupport) value);
+						return; // because we don't want to add to the list yet.
+					}
+					break;
+				default:
+					break;
 			}
+			values.put(key, value);
 		}
-		Result r = getNewResultObject(attributeName, values);
-		accumulator.add(r);
+		accumulator.add(getNewResultObject(attributeName, values.build()));
 	}
 
 	private void processTabularDataSupport(
 			Builder<Result> accumulator, String attributeName,
 			TabularDataSupport tds) {
+		CompositePlan rowPlan = FlatteningPlans.rowPlan(tds.getTabularType());
 		Set<Map.Entry<Object, Object>> entries = tds.entrySet();
 		for (Map.Entry<Object, Object> entry : entries) {
 			Object entryKeys = entry.getKey();
@@ -160,7 +175,7 @@ public class JmxResultProcessor {
 				// ie: attributeName=LastGcInfo.Par Survivor Space
 				// i haven't seen this be smaller or larger than List<1>, but
 				// might as well loop it.
-				StringBuilder sb = new StringBuilder();
+				StringBuilder sb = new StringBuilder(attributeName);
 				for (Object entryKey : (List<?>) entryKeys) {
 					sb.append(".");
 					sb.append(entryKey);
@@ -168,7 +183,7 @@ public class JmxResultProcessor {
 				String attributeName2 = sb.toString();
 				Object entryValue = entry.getValue();
 				if (entryValue instanceof CompositeDataSupport) {
-					getResult(accumulator, attributeName + attributeName2, (CompositeDataSupport) entryValue);
+					getResult(accumulator, attributeName2, (CompositeDataSupport) entryValue, rowPlan);
 				} else {
 					throw new RuntimeException("!!!!!!!!!! Please file a bug: https://github.com/jmxtrans/jmxtrans/issues entryValue is: "
 							+ entryValue.getClass().getCanonicalName());
@@ -183,7 +198,11 @@ public class JmxResultProcessor {
 	/**
 	 * Builds up the base Result object
 	 */
-	private Result getNewResultObject(String attributeName, Map<String, Object> values) {
-		return new Result(System.currentTimeMillis(), attributeName, className, objDomain, query.getResultAlias(), objectInstance.getObjectName().getKeyPropertyListString(), values);
+	private Result getNewResultObject(String attributeName, Map<String, ?> values) {
+		return getNewResultObject(attributeName, ResultValues.copyOf(values));
+	}
+
+	private Result getNewResultObject(String attributeName, ResultValues values) {
+		return new Result(epoch, attributeName, descriptor, values);
 	}
 }
@@ -0,0 +1,70 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * What identifies the MBean a {@link Result} was read from. All the results
+ * of an MBean share the same descriptor, and descriptors are interned, so
+ * that the same strings are not held by every result.
+ */
+@Immutable
+@ThreadSafe
+@EqualsAndHashCode
+@ToString
+public final class MBeanDescriptor {
+
+	private static final Interner<MBeanDescriptor> INTERNER = Interners.newWeakInterner();
+
+	@Nullable @Getter private final String className;
+	@Nullable @Getter private final String objDomain;
+	@Nullable @Getter private final String typeName;
+	/** Specified as part of the query. */
+	@Nullable @Getter private final String keyAlias;
+
+	private MBeanDescriptor(String className, String objDomain, String typeName, String keyAlias) {
+		this.className = className;
+		this.objDomain = objDomain;
+		this.typeName = typeName;
+		this.keyAlias = keyAlias;
+	}
+
+	@Nonnull
+	public static MBeanDescriptor of(
+			@Nullable String className,
+			@Nullable String objDomain,
+			@Nullable String typeName,
+			@Nullable String keyAlias) {
+		return INTERNER.intern(new MBeanDescriptor(className, objDomain, typeName, keyAlias));
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.PlatformManagedObject;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * Reads the standard {@code java.lang} MXBeans of the current JVM through
+ * their typed interfaces, skipping the marshalling to open types and the
+ * flattening done by {@link JmxResultProcessor}.
+ * <p/>
+ * Only used for local servers. The results are the same as the ones of the
+ * generic path. Queries listing no attribute, or an attribute not known
+ * here, are left to the generic path.
+ */
+@ThreadSafe
+final class PlatformMXBeans {
+
+	private static final String DOMAIN = "java.lang";
+
+	private PlatformMXBeans() {}
+
+	/**
+	 * @return the results of the query for this MBean, or null if the MBean
+	 * or one of the queried attributes has no typed fast path.
+	 */
+	@Nullable
+	static ImmutableList<Result> read(Query query, ObjectName name) {
+		if (query.getAttr().isEmpty() || !DOMAIN.equals(name.getDomain())) return null;
+
+		Kind kind = Kind.of(name.getKeyProperty("type"));
+		if (kind == null || !kind.attributes.containsAll(query.getAttr())) return null;
+
+		PlatformManagedObject bean = kind.find(name);
+		if (bean == null) return null;
+
+		long epoch = System.currentTimeMillis();
+		String className = bean.getClass().getName();
+		String typeName = name.getKeyPropertyListString();
+		ImmutableList.Builder<Result> results = ImmutableList.builder();
+		for (String attribute : query.getAttr()) {
+			Object value = kind.value(bean, attribute);
+			if (value == null) continue;
+
+			ImmutableMap<String, Object> values = value instanceof MemoryUsage
+					? memoryUsage((MemoryUsage) value)
+					: ImmutableMap.of(attribute, value);
+			results.add(new Result(epoch, attribute, className, DOMAIN, query.getResultAlias(), typeName, values));
+		}
+		return results.build();
+	}
+
+	/** Same keys, in the same order, as the MemoryUsage composite type. */
+	private static ImmutableMap<String, Object> memoryUsage(MemoryUsage usage) {
+		return ImmutableMap.<String, Object>of(
+				"committed", usage.getCommitted(),
+				"init", usage.getInit(),
+				"max", usage.getMax(),
+				"used", usage.getUsed());
+	}
+
+	private enum Kind {
+		MEMORY("Memory", MemoryMXBean.class,
+				"HeapMemoryUsage", "NonHeapMemoryUsage", "ObjectPendingFinalizationCount") {
+			@Override
+			Object value(PlatformManagedObject bean, String attribute) {
+				MemoryMXBean memory = (MemoryMXBean) bean;
+				switch (attribute) {
+					case "HeapMemoryUsage": return memory.getHeapMemoryUsage();
+					case "NonHeapMemoryUsage": return memory.getNonHeapMemoryUsage();
+					default: return memory.getObjectPendingFinalizationCount();
+				}
+			}
+		},
+		MEMORY_POOL("MemoryPool", MemoryPoolMXBean.class,
+				"Usage", "PeakUsage", "CollectionUsage") {
+			@Override
+			Object value(PlatformManagedObject bean, String attribute) {
+				MemoryPoolMXBean pool = (MemoryPoolMXBean) bean;
+				switch (attribute) {
+					case "Usage": return pool.getUsage();
+					case "PeakUsage": return pool.getPeakUsage();
+					default: return pool.getCollectionUsage();
+				}
+			}
+		},
+		GARBAGE_COLLECTOR("GarbageCollector", GarbageCollectorMXBean.class,
+				"CollectionCount", "CollectionTime") {
+			@Override
+			Object value(PlatformManagedObject bean, String attribute) {
+				GarbageCollectorMXBean collector = (GarbageCollectorMXBean) bean;
+				return "CollectionCount".equals(attribute) ? collector.getCollectionCount() : collector.getCollectionTime();
+			}
+		},
+		THREADING("Threading", ThreadMXBean.class,
+				"ThreadCount", "PeakThreadCount", "DaemonThreadCount", "TotalStartedThreadCount") {
+			@Override
+			Object value(PlatformManagedObject bean, String attribute) {
+				ThreadMXBean threads = (ThreadMXBean) bean;
+				switch (attribute) {
+					case "ThreadCount": return threads.getThreadCount();
+					case "PeakThreadCount": return threads.getPeakThreadCount();
+					case "DaemonThreadCount": return threads.getDaemonThreadCount();
+					default: return threads.getTotalStartedThreadCount();
+				}
+			}
+		},
+		OPERATING_SYSTEM("OperatingSystem", OperatingSystemMXBean.class,
+				"AvailableProcessors", "SystemLoadAverage") {
+			@Override
+			Object value(PlatformManagedObject bean, String attribute) {
+				OperatingSystemMXBean os = (OperatingSystemMXBean) bean;
+				// no conditional expression here, it would widen the int to a double
+				if ("AvailableProcessors".equals(attribute)) return os.getAvailableProcessors();
+				return os.getSystemLoadAverage();
+			}
+		};
+
+		private final String type;
+		private final Class<? extends PlatformManagedObject> mxbeanInterface;
+		private final ImmutableSet<String> attributes;
+
+		Kind(String type, Class<? extends PlatformManagedObject> mxbeanInterface, String... attributes) {
+			this.type = type;
+			this.mxbeanInterface = mxbeanInterface;
+			this.attributes = ImmutableSet.copyOf(attributes);
+		}
+
+		@Nullable
+		static Kind of(@Nullable String type) {
+			for (Kind kind : values()) {
+				if (kind.type.equals(type)) return kind;
+			}
+			return null;
+		}
+
+		@Nullable
+		PlatformManagedObject find(ObjectName name) {
+			List<? extends PlatformManagedObject> beans = ManagementFactory.getPlatformMXBeans(mxbeanInterface);
+			for (PlatformManagedObject bean : beans) {
+				if (bean.getObjectName().equals(name)) return bean;
+			}
+			return null;
+		}
+
+		/** Reads one of {@link #attributes}, boxed the same way the MBean server does. */
+		abstract Object value(PlatformManagedObject bean, String attribute);
+	}
+}
@@ -27,7 +27,9 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.googlecode.jmxtrans.model.naming.typename.PrependingTypeNameValuesStringBuilder;
 import com.googlecode.jmxtrans.model.naming.typename.TypeNameValuesStringBuilder;
 import com.googlecode.jmxtrans.model.naming.typename.UseAllTypeNameValuesStringBuilder;
@@ -57,7 +59,10 @@ import java.rmi.UnmarshalException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.fasterxml.jackson.databind.annotation.JsonSerialize.Inclusion.NON_NULL;
@@ -73,7 +78,7 @@ import static java.util.Arrays.asList;
  * @author jon
  */
 @JsonSerialize(include = NON_NULL)
-@JsonPropertyOrder(value = {"obj", "attr", "typeNames", "resultAlias", "keys", "allowDottedKeys", "useAllTypeNames", "outputWriters"})
+@JsonPropertyOrder(value = {"obj", "attr", "typeNames", "resultAlias", "keys", "allowDottedKeys", "useAllTypeNames", "notifications", "rates", "onlyOnChange", "heartbeatCycles", "rollupSeconds", "rollupStatistics", "aggregateAlias", "aggregateTypeNames", "aggregateStatistics", "aggregateOnly", "derived", "maxSeries", "topBy", "outputWriters"})
 @ThreadSafe
 @EqualsAndHashCode(exclude = {"outputWriters", "outputWriterInstances"})
 @ToString(exclude = {"outputWriters", "typeNameValuesStringBuilder"})
@@ -115,6 +120,86 @@ public class Query {
 	@Getter private final boolean useObjDomainAsKey;
 	@Getter private final boolean allowDottedKeys;
 	@Getter private final boolean useAllTypeNames;
+
+	/**
+	 * When set, the MBeans matching this query are not polled. A
+	 * NotificationListener is registered on them instead and each
+	 * notification (GarbageCollectionNotification,
+	 * AttributeChangeNotification, ...) is converted into results as soon as
+	 * it arrives. If attributes are given, only attribute changes of those
+	 * attributes or notifications of those types are kept.
+	 * <p>
+	 * Only supported for servers accessed through a JMX connection, Jolokia
+	 * servers poll these queries like any other.
+	 */
+	@Getter private final boolean notifications;
+
+	/**
+	 * Attributes which are monotonic counters (CollectionCount,
+	 * CollectionTime, request counts...). Their numeric values are replaced
+	 * by their rate of change per second before being written, see
+	 * {@link com.googlecode.jmxtrans.model.results.CounterRates}.
+	 */
+	@Nonnull @Getter private final ImmutableSet<String> rates;
+
+	/**
+	 * When set, values equal to the previously written value of the same
+	 * series are not written again, except every {@link #heartbeatCycles}
+	 * cycles so that backends do not consider the series stale, see
+	 * {@link com.googlecode.jmxtrans.model.results.ChangeFilter}.
+	 */
+	@Getter private final boolean onlyOnChange;
+	@Getter private final Integer heartbeatCycles;
+
+	/**
+	 * When set, numeric values are aggregated over windows of this many
+	 * seconds and only the {@link #rollupStatistics} of each window are
+	 * written, once the window is over. Polling can then be frequent enough
+	 * to catch short spikes without writing every sample, see
+	 * {@link com.googlecode.jmxtrans.model.results.Rollups}.
+	 */
+	@Getter private final Integer rollupSeconds;
+	/** Statistics written for each rollup window, min, max, sum, count and last if empty. */
+	@Nonnull @Getter private final ImmutableSet<RollupStatistic> rollupStatistics;
+
+	/**
+	 * When set, the results of this query are also aggregated across all the
+	 * servers running it, and the aggregates are written as if they were read
+	 * from a server with this alias, see
+	 * {@link com.googlecode.jmxtrans.model.results.ClusterAggregates}. Results
+	 * are grouped by query alias, attribute, value key and the values of the
+	 * {@link #aggregateTypeNames}.
+	 */
+	@Getter private final String aggregateAlias;
+	@Nonnull @Getter private final ImmutableSet<String> aggregateTypeNames;
+	/** Statistics of each aggregate, all rollup statistics but last. Sum, avg, max and count if empty. */
+	@Nonnull @Getter private final ImmutableSet<RollupStatistic> aggregateStatistics;
+	/** Only write the aggregates, not the results of each server. */
+	@Getter private final boolean aggregateOnly;
+
+	/**
+	 * Values computed from other values of the same MBean, by name. Each
+	 * expression is compiled once and its value written as an extra result
+	 * named after it, see {@link DerivedExpression} and
+	 * {@link com.googlecode.jmxtrans.model.results.DerivedMetrics}.
+	 */
+	@Nonnull @Getter private final ImmutableMap<String, DerivedExpression> derived;
+
+	/**
+	 * Maximum number of distinct series written for each run of this query on
+	 * a server. Beyond it, only the values of the MBeans with the highest
+	 * {@link #topBy} value are kept, within one series less than the limit,
+	 * and the others are summed into a single {@code __other__} MBean, see
+	 * {@link com.googlecode.jmxtrans.model.results.CardinalityGuard}. Not
+	 * bounded when not set.
+	 */
+	@Getter private final Integer maxSeries;
+	/**
+	 * The value ranking MBeans when {@link #maxSeries} is exceeded, named like
+	 * the variables of derived expressions ({@code BytesInPerSec.Count}).
+	 * MBeans are kept in the order they are read if not set.
+	 */
+	@Getter private final String topBy;
 	@Nonnull @Getter private final ImmutableList<OutputWriterFactory> outputWriters;
 	@Nonnull @Getter private final Iterable<OutputWriter> outputWriterInstances;
 	private final TypeNameValuesStringBuilder typeNameValuesStringBuilder;
@@ -129,12 +214,28 @@ public class Query {
 			@JsonProperty("useObjDomainAsKey") boolean useObjDomainAsKey,
 			@JsonProperty("allowDottedKeys") boolean allowDottedKeys,
 			@JsonProperty("useAllTypeNames") boolean useAllTypeNames,
+			@JsonProperty("notifications") boolean notifications,
+			@JsonProperty("rates") List<String> rates,
+			@JsonProperty("onlyOnChange") boolean onlyOnChange,
+			@JsonProperty("heartbeatCycles") Integer heartbeatCycles,
+			@JsonProperty("rollupSeconds") Integer rollupSeconds,
+			@JsonProperty("rollupStatistics") List<String> rollupStatistics,
+			@JsonProperty("aggregateAlias") String aggregateAlias,
+			@JsonProperty("aggregateTypeNames") List<String> aggregateTypeNames,
+			@JsonProperty("aggregateStatistics") List<String> aggregateStatistics,
+			@JsonProperty("aggregateOnly") boolean aggregateOnly,
+			@JsonProperty("derived") Map<String, String> derived,
+			@JsonProperty("maxSeries") Integer maxSeries,
+			@JsonProperty("topBy") String topBy,
 			@JsonProperty("outputWriters") List<OutputWriterFactory> outputWriters
 	) {
 		// For typeName, note the using copyOf does not change the order of
 		// the elements.
 		this(obj, keys, attr, ImmutableSet.copyOf(firstNonNull(typeNames, Collections.<String>emptySet())), resultAlias, useObjDomainAsKey, allowDottedKeys, useAllTypeNames,
-				outputWriters, ImmutableList.<OutputWriter>of());
+				notifications, firstNonNull(rates, Collections.<String>emptyList()), onlyOnChange, heartbeatCycles,
+				rollupSeconds, toRollupStatistics(rollupStatistics), aggregateAlias,
+				firstNonNull(aggregateTypeNames, Collections.<String>emptyList()), toRollupStatistics(aggregateStatistics), aggregateOnly,
+				compileDerived(derived), maxSeries, topBy, outputWriters, ImmutableList.<OutputWriter>of());
 	}
 
 	public Query(
@@ -149,6 +250,7 @@ public class Query {
 			List<OutputWriterFactory> outputWriters
 	) {
 		this(obj, keys, attr, typeNames, resultAlias, useObjDomainAsKey, allowDottedKeys, useAllTypeNames,
+				false, null, false, null, null, null, null, null, null, false, null, null, null,
 				outputWriters, ImmutableList.<OutputWriter>of());
 	}
 
@@ -164,6 +266,7 @@ public class Query {
 			ImmutableList<OutputWriter> outputWriters
 	) {
 		this(obj, keys, attr, typeNames, resultAlias, useObjDomainAsKey, allowDottedKeys, useAllTypeNames,
+				false, null, false, null, null, null, null, null, null, false, null, null, null,
 				ImmutableList.<OutputWriterFactory>of(), outputWriters);
 	}
 
@@ -176,6 +279,19 @@ public class Query {
 			boolean useObjDomainAsKey,
 			boolean allowDottedKeys,
 			boolean useAllTypeNames,
+			boolean notifications,
+			Collection<String> rates,
+			boolean onlyOnChange,
+			Integer heartbeatCycles,
+			Integer rollupSeconds,
+			Collection<RollupStatistic> rollupStatistics,
+			String aggregateAlias,
+			Collection<String> aggregateTypeNames,
+			Collection<RollupStatistic> aggregateStatistics,
+			boolean aggregateOnly,
+			Map<String, DerivedExpression> derived,
+			Integer maxSeries,
+			String topBy,
 			List<OutputWriterFactory> outputWriterFactories,
 			List<OutputWriter> outputWriters
 	) {
@@ -190,6 +306,27 @@ public class Query {
 		this.keys = copyOf(firstNonNull(keys, Collections.<String>emptyList()));
 		this.allowDottedKeys = allowDottedKeys;
 		this.useAllTypeNames = useAllTypeNames;
+		this.notifications = notifications;
+		this.rates = ImmutableSet.copyOf(firstNonNull(rates, Collections.<String>emptySet()));
+		this.onlyOnChange = onlyOnChange;
+		this.heartbeatCycles = heartbeatCycles;
+		this.rollupSeconds = rollupSeconds;
+		this.rollupStatistics = Sets.immutableEnumSet(firstNonNull(rollupStatistics, Collections.<RollupStatistic>emptySet()));
+		this.aggregateAlias = aggregateAlias;
+		this.aggregateTypeNames = ImmutableSet.copyOf(firstNonNull(aggregateTypeNames, Collections.<String>emptySet()));
+		this.aggregateStatistics = Sets.immutableEnumSet(firstNonNull(aggregateStatistics, Collections.<RollupStatistic>emptySet()));
+		for (RollupStatistic statistic : this.aggregateStatistics) {
+			if (statistic == RollupStatistic.LAST) {
+				throw new IllegalArgumentException("Invalid aggregate statistic: " + statistic);
+			}
+		}
+		this.aggregateOnly = aggregateOnly;
+		this.derived = ImmutableMap.copyOf(firstNonNull(derived, Collections.<String, DerivedExpression>emptyMap()));
+		if (maxSeries != null && maxSeries <= 0) {
+			throw new IllegalArgumentException("maxSeries must be positive");
+		}
+		this.maxSeries = maxSeries;
+		this.topBy = topBy;
 		this.outputWriters = copyOf(firstNonNull(outputWriterFactories, ImmutableList.<OutputWriterFactory>of()));
 		// We need to preserve the order of typeNames. So note that copyOf
 		// does not mess with the order. 
@@ -200,6 +337,24 @@ public class Query {
 		this.outputWriterInstances = copyOf(firstNonNull(outputWriters, ImmutableList.<OutputWriter>of()));
 	}
 
+	private static ImmutableSet<RollupStatistic> toRollupStatistics(List<String> names) {
+		if (names == null) return ImmutableSet.of();
+		EnumSet<RollupStatistic> statistics = EnumSet.noneOf(RollupStatistic.class);
+		for (String name : names) {
+			statistics.add(RollupStatistic.fromName(name));
+		}
+		return Sets.immutableEnumSet(statistics);
+	}
+
+	private static ImmutableMap<String, DerivedExpression> compileDerived(Map<String, String> expressions) {
+		if (expressions == null) return ImmutableMap.of();
+		ImmutableMap.Builder<String, DerivedExpression> derived = ImmutableMap.builder();
+		for (Map.Entry<String, String> expression : expressions.entrySet()) {
+			derived.put(expression.getKey(), DerivedExpression.compile(expression.getValue()));
+		}
+		return derived.build();
+	}
+
 	public String makeTypeNameValueString(List<String> typeNames, String typeNameStr) {
 		return this.typeNameValuesStringBuilder.build(typeNames, typeNameStr);
 	}
@@ -278,6 +433,19 @@ public class Query {
 		@Setter private boolean useObjDomainAsKey;
 		@Setter private boolean allowDottedKeys;
 		@Setter private boolean useAllTypeNames;
+		@Setter private boolean notifications;
+		private final Set<String> rates = newLinkedHashSet();
+		@Setter private boolean onlyOnChange;
+		@Setter private Integer heartbeatCycles;
+		@Setter private Integer rollupSeconds;
+		private final Set<RollupStatistic> rollupStatistics = EnumSet.noneOf(RollupStatistic.class);
+		@Setter private String aggregateAlias;
+		private final Set<String> aggregateTypeNames = newLinkedHashSet();
+		private final Set<RollupStatistic> aggregateStatistics = EnumSet.noneOf(RollupStatistic.class);
+		@Setter private boolean aggregateOnly;
+		private final Map<String, DerivedExpression> derived = new LinkedHashMap<>();
+		@Setter private Integer maxSeries;
+		@Setter private String topBy;
 		private final List<OutputWriterFactory> outputWriterFactories = newArrayList();
 		private final List<OutputWriter> outputWriters = newArrayList();
 		// We need to pick an order preserving Set implementation here to
@@ -295,6 +463,19 @@ public class Query {
 			this.useObjDomainAsKey = query.useObjDomainAsKey;
 			this.allowDottedKeys = query.allowDottedKeys;
 			this.useAllTypeNames = query.useAllTypeNames;
+			this.notifications = query.notifications;
+			this.rates.addAll(query.rates);
+			this.onlyOnChange = query.onlyOnChange;
+			this.heartbeatCycles = query.heartbeatCycles;
+			this.rollupSeconds = query.rollupSeconds;
+			this.rollupStatistics.addAll(query.rollupStatistics);
+			this.aggregateAlias = query.aggregateAlias;
+			this.aggregateTypeNames.addAll(query.aggregateTypeNames);
+			this.aggregateStatistics.addAll(query.aggregateStatistics);
+			this.aggregateOnly = query.aggregateOnly;
+			this.derived.putAll(query.derived);
+			this.maxSeries = query.maxSeries;
+			this.topBy = query.topBy;
 			this.typeNames.addAll(query.typeNames);
 		}
 
@@ -312,6 +493,31 @@ public class Query {
 			return this;
 		}
 
+		public Builder addRates(String... rates) {
+			this.rates.addAll(asList(rates));
+			return this;
+		}
+
+		public Builder addRollupStatistics(RollupStatistic... rollupStatistics) {
+			this.rollupStatistics.addAll(asList(rollupStatistics));
+			return this;
+		}
+
+		public Builder addAggregateTypeNames(String... aggregateTypeNames) {
+			this.aggregateTypeNames.addAll(asList(aggregateTypeNames));
+			return this;
+		}
+
+		public Builder addAggregateStatistics(RollupStatistic... aggregateStatistics) {
+			this.aggregateStatistics.addAll(asList(aggregateStatistics));
+			return this;
+		}
+
+		public Builder addDerived(String name, String expression) {
+			this.derived.put(name, DerivedExpression.compile(expression));
+			return this;
+		}
+
 		public Builder addOutputWriterFactory(OutputWriterFactory outputWriterFactory) {
 			return addOutputWriterFactories(outputWriterFactory);
 		}
@@ -332,19 +538,6 @@ public class Query {
 		}
 
 		public Query build() {
-			if (!outputWriterFactories.isEmpty()) {
-				return new Query(
-						this.obj,
-						this.keys,
-						this.attr,
-						this.typeNames,
-						this.resultAlias,
-						this.useObjDomainAsKey,
-						this.allowDottedKeys,
-						this.useAllTypeNames,
-						this.outputWriterFactories
-				);
-			}
 			return new Query(
 					this.obj,
 					this.keys,
@@ -354,7 +547,21 @@ public class Query {
 					this.useObjDomainAsKey,
 					this.allowDottedKeys,
 					this.useAllTypeNames,
-					copyOf(this.outputWriters)
+					this.notifications,
+					this.rates,
+					this.onlyOnChange,
+					this.heartbeatCycles,
+					this.rollupSeconds,
+					this.rollupStatistics,
+					this.aggregateAlias,
+					this.aggregateTypeNames,
+					this.aggregateStatistics,
+					this.aggregateOnly,
+					this.derived,
+					this.maxSeries,
+					this.topBy,
+					this.outputWriterFactories,
+					this.outputWriters
 			);
 		}
 
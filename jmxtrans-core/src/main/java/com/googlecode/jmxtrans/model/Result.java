@@ -22,50 +22,125 @@
  */
 package com.googlecode.jmxtrans.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.ToString;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.Map;
 
 import static com.fasterxml.jackson.databind.annotation.JsonSerialize.Inclusion.NON_NULL;
-import static com.google.common.collect.ImmutableMap.copyOf;
 
 /**
  * Represents the result of a query.
- * 
+ * <p/>
+ * The MBean information is shared with the other results of the same MBean
+ * (see {@link MBeanDescriptor}) and the values are stored unboxed (see
+ * {@link ResultValues}). {@link #getValues()} is kept for existing writers, the
+ * map is only built when first asked for.
+ *
  * @author jon
  */
 @JsonSerialize(include = NON_NULL)
 @ThreadSafe
 @Immutable
-@EqualsAndHashCode
-@ToString
+@EqualsAndHashCode(of = {"attributeName", "descriptor", "resultValues", "epoch"})
 public class Result {
 	@Getter private final String attributeName;
-	@Getter private final String className;
-	@Getter private final String objDomain;
-	@Getter private final String typeName;
-	@Nonnull @Getter private final ImmutableMap<String, Object> values;
+	@Nonnull @JsonIgnore @Getter private final MBeanDescriptor descriptor;
+	@Nonnull @JsonIgnore @Getter private final ResultValues resultValues;
 	@Getter private final long epoch;
-	/** Specified as part of the query. */
-	@Getter private final String keyAlias;
+	@Nullable private volatile ImmutableMap<String, Object> values;
 
 	public Result(
 			long epoch, String attributeName, String className, String objDomain, String keyAlias, String typeName,
 			@Nonnull Map<String, Object> values) {
-		this.className = className;
-		this.objDomain = objDomain;
-		this.typeName = typeName;
-		this.values = copyOf(values);
+		this(epoch, attributeName, MBeanDescriptor.of(className, objDomain, typeName, keyAlias), ResultValues.copyOf(values));
+	}
+
+	public Result(long epoch, String attributeName, @Nonnull MBeanDescriptor descriptor, @Nonnull ResultValues resultValues) {
 		this.epoch = epoch;
 		this.attributeName = attributeName;
-		this.keyAlias = keyAlias;
+		this.descriptor = descriptor;
+		this.resultValues = resultValues;
+	}
+
+	public String getClassName() {
+		return descriptor.getClassName();
+	}
+
+	public String getObjDomain() {
+		return descriptor.getObjDomain();
+	}
+
+	public String getTypeName() {
+		return descriptor.getTypeName();
+	}
+
+	/** Specified as part of the query. */
+	public String getKeyAlias() {
+		return descriptor.getKeyAlias();
+	}
+
+	@Nonnull
+	public ImmutableMap<String, Object> getValues() {
+		ImmutableMap<String, Object> map = values;
+		if (map == null) {
+			// racy but idempotent
+			map = resultValues.asMap();
+			values = map;
+		}
+		return map;
+	}
+
+	/**
+	 * A result with the same MBean information and transformed values, values
+	 * transformed to null are dropped.
+	 */
+	@Nonnull
+	public Result transformValues(@Nonnull Function<Object, Object> transformer) {
+		ResultValues transformed = resultValues.transform(transformer);
+		if (transformed == resultValues) return this;
+		return new Result(epoch, attributeName, descriptor, transformed);
+	}
+
+	/**
+	 * A result with the same MBean information and its values normalized,
+	 * see {@link ResultValues#normalize()}.
+	 */
+	@Nonnull
+	public Result normalize() {
+		ResultValues normalized = resultValues.normalize();
+		if (normalized == resultValues) return this;
+		return new Result(epoch, attributeName, descriptor, normalized);
+	}
+
+	/**
+	 * Same as {@link #transformValues(Function)}, for transformers leaving
+	 * numbers unchanged.
+	 */
+	@Nonnull
+	public Result transformNonNumbers(@Nonnull Function<Object, Object> transformer) {
+		ResultValues transformed = resultValues.transformNonNumbers(transformer);
+		if (transformed == resultValues) return this;
+		return new Result(epoch, attributeName, descriptor, transformed);
+	}
+
+	@Override
+	public String toString() {
+		return "Result(attributeName=" + attributeName
+				+ ", className=" + getClassName()
+				+ ", objDomain=" + getObjDomain()
+				+ ", typeName=" + getTypeName()
+				+ ", values=" + resultValues
+				+ ", epoch=" + epoch
+				+ ", keyAlias=" + getKeyAlias() + ")";
 	}
 
 }
@@ -22,16 +22,12 @@
  */
 package com.googlecode.jmxtrans.model;
 
-import lombok.SneakyThrows;
 import lombok.ToString;
 import org.apache.commons.lang.StringUtils;
 
 import javax.annotation.Nonnull;
-import java.lang.reflect.Method;
 import java.util.Map;
 
-import static org.apache.commons.lang.StringUtils.capitalize;
-
 /**
  * Enumerates the attributes of {@link Result}
  * 
@@ -42,18 +38,40 @@ import static org.apache.commons.lang.StringUtils.capitalize;
 @ToString
 public enum ResultAttribute {
 
-	TYPE_NAME("typeName"), OBJ_DOMAIN("objDomain"), CLASS_NAME("className"), ATTRIBUTE_NAME("attributeName");
+	TYPE_NAME("typeName") {
+		@Override
+		String get(Result result) {
+			return result.getTypeName();
+		}
+	},
+	OBJ_DOMAIN("objDomain") {
+		@Override
+		String get(Result result) {
+			return result.getObjDomain();
+		}
+	},
+	CLASS_NAME("className") {
+		@Override
+		String get(Result result) {
+			return result.getClassName();
+		}
+	},
+	ATTRIBUTE_NAME("attributeName") {
+		@Override
+		String get(Result result) {
+			return result.getAttributeName();
+		}
+	};
 
 	@Nonnull
 	private String attributeName;
-	@Nonnull
-	private String accessorMethod;
 
 	ResultAttribute(String attributeName) {
 		this.attributeName = attributeName;
-		this.accessorMethod = "get" + capitalize(attributeName);
 	}
 
+	abstract String get(Result result);
+
 	/**
 	 * Get the {@link ResultAttribute} value from the attribute name
 	 * 
@@ -82,10 +100,7 @@ public enum ResultAttribute {
 	 * @param result
 	 *            The {@link Result} to get the data from
 	 */
-	// Reflection errors have been covered fully by tests
-	@SneakyThrows
 	public void addAttribute(@Nonnull Map<String, String> attributeMap, @Nonnull Result result) {
-		Method m = result.getClass().getMethod(accessorMethod);
-		attributeMap.put(attributeName, (String) m.invoke(result));
+		attributeMap.put(attributeName, get(result));
 	}
 }
\ No newline at end of file
@@ -25,6 +25,8 @@ package com.googlecode.jmxtrans.model;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.Map;
+
 public final class ResultFixtures {
 	private ResultFixtures() {}
 
@@ -138,4 +140,22 @@ public final class ResultFixtures {
 	public static ImmutableList<Result> singleResult(Result result) {
 		return ImmutableList.of(result);
 	}
+
+	/** A result read at epoch from the MBean named objectName, e.g. java.lang:type=Memory. */
+	public static Result resultAt(long epoch, String objectName, String attributeName, Map<String, Object> values) {
+		int colon = objectName.indexOf(':');
+		return new Result(
+				epoch,
+				attributeName,
+				"javax.management.StandardMBean",
+				objectName.substring(0, colon),
+				null,
+				objectName.substring(colon + 1),
+				values);
+	}
+
+	/** A result holding a single value, keyed by the attribute name like simple attributes. */
+	public static Result resultAt(long epoch, String objectName, String attributeName, Object value) {
+		return resultAt(epoch, objectName, attributeName, ImmutableMap.of(attributeName, value));
+	}
 }
@@ -0,0 +1,468 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The values of a {@link Result}, without boxing.
+ * <p/>
+ * Primitive numbers are kept in a <code>long[]</code> (raw bits for floating
+ * point numbers) with a type tag, so that their original type is preserved,
+ * and other values in an <code>Object[]</code> only allocated when needed.
+ * The keys are interned as a whole: results of the same shape (all the
+ * results of a composite type, for instance) share the same key array.
+ * <p/>
+ * Equality and hash code are those of {@link #asMap()}.
+ * <p/>
+ * Values can be {@link #normalize() normalized} once after collection, so
+ * that writers do not have to parse strings or check for special floating
+ * point values again.
+ */
+@Immutable
+@ThreadSafe
+public final class ResultValues {
+
+	private static final byte OBJECT = 0;
+	private static final byte INT = 1;
+	private static final byte LONG = 2;
+	private static final byte SHORT = 3;
+	private static final byte BYTE = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte BOOLEAN = 7;
+
+	/** Same threshold as {@link com.googlecode.jmxtrans.model.results.CPrecisionValueTransformer}. */
+	private static final double C_PRECISION = 1E-308;
+
+	private static final Interner<Keys> KEYS = Interners.newWeakInterner();
+
+	@Nonnull private final Keys keys;
+	@Nonnull private final byte[] types;
+	@Nonnull private final long[] numbers;
+	@Nullable private final Object[] objects;
+	private final boolean normalized;
+
+	private ResultValues(@Nonnull Keys keys, @Nonnull byte[] types, @Nonnull long[] numbers, @Nullable Object[] objects, boolean normalized) {
+		this.keys = keys;
+		this.types = types;
+		this.numbers = numbers;
+		this.objects = objects;
+		this.normalized = normalized;
+	}
+
+	public int size() {
+		return types.length;
+	}
+
+	@Nonnull
+	public String getKey(int index) {
+		return keys.keys[index];
+	}
+
+	/** Whether the value is a primitive number (or its wrapper), see {@link #getLong} and {@link #getDouble}. */
+	public boolean isNumber(int index) {
+		return types[index] != OBJECT && types[index] != BOOLEAN;
+	}
+
+	/** Whether the value is a number, neither NaN nor infinite. */
+	public boolean isValidNumber(int index) {
+		switch (types[index]) {
+			case OBJECT:
+			case BOOLEAN:
+				return false;
+			case DOUBLE:
+			case FLOAT:
+				double value = getDouble(index);
+				return !Double.isNaN(value) && !Double.isInfinite(value);
+			default:
+				return true;
+		}
+	}
+
+	public boolean isNormalized() {
+		return normalized;
+	}
+
+	public boolean isIntegral(int index) {
+		byte type = types[index];
+		return type == INT || type == LONG || type == SHORT || type == BYTE;
+	}
+
+	public long getLong(int index) {
+		if (isIntegral(index)) return numbers[index];
+		return (long) getDouble(index);
+	}
+
+	public double getDouble(int index) {
+		switch (types[index]) {
+			case DOUBLE:
+				return Double.longBitsToDouble(numbers[index]);
+			case FLOAT:
+				return Float.intBitsToFloat((int) numbers[index]);
+			case OBJECT:
+			case BOOLEAN:
+				throw new IllegalStateException("Value " + getKey(index) + " is not a number: " + getValue(index));
+			default:
+				return numbers[index];
+		}
+	}
+
+	/** The value, boxed to its original type. */
+	@Nonnull
+	public Object getValue(int index) {
+		long number = numbers[index];
+		switch (types[index]) {
+			case INT:
+				return (int) number;
+			case LONG:
+				return number;
+			case SHORT:
+				return (short) number;
+			case BYTE:
+				return (byte) number;
+			case DOUBLE:
+				return Double.longBitsToDouble(number);
+			case FLOAT:
+				return Float.intBitsToFloat((int) number);
+			case BOOLEAN:
+				return number != 0 ? Boolean.TRUE : Boolean.FALSE;
+			default:
+				return objects[index];
+		}
+	}
+
+	/** The index of the value of the given key, or a negative value if there is none. */
+	public int indexOf(@Nullable String key) {
+		return keys.indexOf(key);
+	}
+
+	@Nullable
+	public Object get(@Nullable String key) {
+		int index = indexOf(key);
+		return index < 0 ? null : getValue(index);
+	}
+
+	@Nonnull
+	public ImmutableMap<String, Object> asMap() {
+		ImmutableMap.Builder<String, Object> map = ImmutableMap.builder();
+		for (int i = 0; i < size(); i++) {
+			map.put(getKey(i), getValue(i));
+		}
+		return map.build();
+	}
+
+	/**
+	 * Applies a function to each value, sharing the keys and the unchanged
+	 * values. Values transformed to null are dropped.
+	 */
+	@Nonnull
+	public ResultValues transform(@Nonnull Function<Object, Object> function) {
+		return transform(function, true);
+	}
+
+	/**
+	 * Same as {@link #transform(Function)}, for functions leaving numbers
+	 * unchanged: numbers are neither boxed nor passed to the function.
+	 */
+	@Nonnull
+	public ResultValues transformNonNumbers(@Nonnull Function<Object, Object> function) {
+		return transform(function, false);
+	}
+
+	private ResultValues transform(Function<Object, Object> function, boolean numbers) {
+		Builder transformed = null;
+		for (int i = 0; i < size(); i++) {
+			if (!numbers && isNumber(i)) {
+				if (transformed != null) transformed.copy(this, i);
+				continue;
+			}
+			Object value = getValue(i);
+			Object newValue = function.apply(value);
+			if (transformed == null) {
+				if (newValue == value) continue;
+				// first change, copy what was unchanged so far
+				transformed = new Builder(size());
+				for (int j = 0; j < i; j++) {
+					transformed.copy(this, j);
+				}
+			}
+			if (newValue == value) transformed.copy(this, i);
+			else transformed.put(getKey(i), newValue);
+		}
+		return transformed == null ? this : transformed.build();
+	}
+
+	/**
+	 * Converts the values once for all the writers:
+	 * <ul>
+	 * <li>strings holding a number are parsed, when the number prints back
+	 * as the same string,</li>
+	 * <li>floating point numbers closer to zero than C precision (1E-308 for
+	 * doubles, the smallest normal float for floats) are flushed to zero.</li>
+	 * </ul>
+	 * NaN and infinite values are kept, {@link #isValidNumber(int)} flags them.
+	 */
+	@Nonnull
+	public ResultValues normalize() {
+		if (normalized) return this;
+		Builder normalizedValues = null;
+		for (int i = 0; i < size(); i++) {
+			Object value = normalize(i);
+			if (normalizedValues == null) {
+				if (value == null) continue;
+				normalizedValues = new Builder(size());
+				for (int j = 0; j < i; j++) {
+					normalizedValues.copy(this, j);
+				}
+			}
+			if (value == null) normalizedValues.copy(this, i);
+			else normalizedValues.put(getKey(i), value);
+		}
+		if (normalizedValues == null) return new ResultValues(keys, types, numbers, objects, true);
+		return normalizedValues.build(true);
+	}
+
+	/** The normalized value, or null if unchanged. */
+	@Nullable
+	private Object normalize(int index) {
+		switch (types[index]) {
+			case DOUBLE:
+				double doubleValue = Double.longBitsToDouble(numbers[index]);
+				return doubleValue != 0 && Math.abs(doubleValue) < C_PRECISION ? 0d : null;
+			case FLOAT:
+				float floatValue = Float.intBitsToFloat((int) numbers[index]);
+				return floatValue != 0 && Math.abs(floatValue) < Float.MIN_NORMAL ? 0f : null;
+			case OBJECT:
+				return objects[index] instanceof String ? parseNumber((String) objects[index]) : null;
+			default:
+				return null;
+		}
+	}
+
+	@Nullable
+	private static Number parseNumber(String string) {
+		if (string.isEmpty() || string.length() > 32) return null;
+		char first = string.charAt(0);
+		if (first != '-' && (first < '0' || first > '9')) return null;
+		try {
+			Long longValue = Long.valueOf(string);
+			return longValue.toString().equals(string) ? longValue : null;
+		} catch (NumberFormatException notALong) {
+			try {
+				Double doubleValue = Double.valueOf(string);
+				return doubleValue.toString().equals(string) ? doubleValue : null;
+			} catch (NumberFormatException notADouble) {
+				return null;
+			}
+		}
+	}
+
+	@Nonnull
+	public static ResultValues copyOf(@Nonnull Map<String, ?> values) {
+		Builder builder = new Builder(values.size());
+		for (Map.Entry<String, ?> value : values.entrySet()) {
+			builder.put(value.getKey(), value.getValue());
+		}
+		return builder.build();
+	}
+
+	@Nonnull
+	public static Builder builder(int expectedSize) {
+		return new Builder(expectedSize);
+	}
+
+	/** Equality does not depend on normalization. */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof ResultValues)) return false;
+		ResultValues other = (ResultValues) o;
+		if (keys == other.keys) {
+			return Arrays.equals(types, other.types)
+					&& Arrays.equals(numbers, other.numbers)
+					&& Arrays.equals(objects, other.objects);
+		}
+		return asMap().equals(other.asMap());
+	}
+
+	/** Same as {@link Map#hashCode()}, computed without boxing. */
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int i = 0; i < size(); i++) {
+			hash += getKey(i).hashCode() ^ valueHashCode(i);
+		}
+		return hash;
+	}
+
+	private int valueHashCode(int index) {
+		long number = numbers[index];
+		switch (types[index]) {
+			case INT:
+			case SHORT:
+			case BYTE:
+			case FLOAT:
+				return (int) number;
+			case LONG:
+			case DOUBLE:
+				return (int) (number ^ (number >>> 32));
+			case BOOLEAN:
+				return number != 0 ? 1231 : 1237;
+			default:
+				return objects[index].hashCode();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder("{");
+		for (int i = 0; i < size(); i++) {
+			if (i > 0) string.append(", ");
+			string.append(getKey(i)).append('=').append(getValue(i));
+		}
+		return string.append('}').toString();
+	}
+
+	@NotThreadSafe
+	public static final class Builder {
+		private String[] keys;
+		private byte[] types;
+		private long[] numbers;
+		private Object[] objects;
+		private int size;
+
+		private Builder(int expectedSize) {
+			int capacity = Math.max(expectedSize, 1);
+			this.keys = new String[capacity];
+			this.types = new byte[capacity];
+			this.numbers = new long[capacity];
+		}
+
+		/** Null values are ignored. */
+		@Nonnull
+		public Builder put(@Nonnull String key, @Nullable Object value) {
+			if (value == null) return this;
+			if (value instanceof Integer) return add(key, INT, (Integer) value);
+			if (value instanceof Long) return add(key, LONG, (Long) value);
+			// raw bits are not canonical for NaN, doubleToLongBits keeps equality consistent with Double.equals()
+			if (value instanceof Double) return add(key, DOUBLE, Double.doubleToLongBits((Double) value));
+			if (value instanceof Float) return add(key, FLOAT, Float.floatToIntBits((Float) value));
+			if (value instanceof Short) return add(key, SHORT, (Short) value);
+			if (value instanceof Byte) return add(key, BYTE, (Byte) value);
+			if (value instanceof Boolean) return add(key, BOOLEAN, (Boolean) value ? 1 : 0);
+			add(key, OBJECT, 0);
+			if (objects == null) objects = new Object[keys.length];
+			objects[size - 1] = value;
+			return this;
+		}
+
+		@Nonnull
+		public Builder putLong(@Nonnull String key, long value) {
+			return add(key, LONG, value);
+		}
+
+		@Nonnull
+		public Builder putDouble(@Nonnull String key, double value) {
+			return add(key, DOUBLE, Double.doubleToLongBits(value));
+		}
+
+		private void copy(ResultValues values, int index) {
+			if (values.types[index] == OBJECT) {
+				put(values.getKey(index), values.objects[index]);
+			} else {
+				add(values.getKey(index), values.types[index], values.numbers[index]);
+			}
+		}
+
+		private Builder add(String key, byte type, long number) {
+			if (size == keys.length) grow();
+			keys[size] = key;
+			types[size] = type;
+			numbers[size] = number;
+			size++;
+			return this;
+		}
+
+		private void grow() {
+			int capacity = keys.length * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			types = Arrays.copyOf(types, capacity);
+			numbers = Arrays.copyOf(numbers, capacity);
+			if (objects != null) objects = Arrays.copyOf(objects, capacity);
+		}
+
+		@Nonnull
+		public ResultValues build() {
+			return build(false);
+		}
+
+		private ResultValues build(boolean normalized) {
+			return new ResultValues(
+					KEYS.intern(new Keys(keys.length == size ? keys : Arrays.copyOf(keys, size))),
+					types.length == size ? types : Arrays.copyOf(types, size),
+					numbers.length == size ? numbers : Arrays.copyOf(numbers, size),
+					objects == null || objects.length == size ? objects : Arrays.copyOf(objects, size),
+					normalized);
+		}
+	}
+
+	@Immutable
+	private static final class Keys {
+		private final String[] keys;
+		private final int hash;
+
+		private Keys(String[] keys) {
+			this.keys = keys;
+			this.hash = Arrays.hashCode(keys);
+		}
+
+		private int indexOf(String key) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i].equals(key)) return i;
+			}
+			return -1;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o || o instanceof Keys && Arrays.equals(keys, ((Keys) o).keys);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
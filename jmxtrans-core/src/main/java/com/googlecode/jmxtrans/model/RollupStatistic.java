@@ -0,0 +1,74 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+/**
+ * Statistics written for each window of a rolled up query, see
+ * {@link Query#getRollupSeconds()}. Each statistic is written as the value
+ * key suffixed by the name of the statistic ({@code used_max},
+ * {@code used_p99}). Percentiles are estimated from a sketch of bounded
+ * size, within 2% of the actual value.
+ */
+public enum RollupStatistic {
+
+	MIN, MAX, SUM, COUNT, LAST, AVG,
+	P50(0.5), P75(0.75), P90(0.9), P95(0.95), P99(0.99), P999(0.999);
+
+	private final String suffix = "_" + name().toLowerCase(Locale.ENGLISH);
+	private final double quantile;
+
+	RollupStatistic() {
+		this(Double.NaN);
+	}
+
+	RollupStatistic(double quantile) {
+		this.quantile = quantile;
+	}
+
+	@Nonnull
+	public String suffix() {
+		return suffix;
+	}
+
+	public boolean isQuantile() {
+		return !Double.isNaN(quantile);
+	}
+
+	/** The quantile (between 0 and 1) of a percentile statistic, NaN for the others. */
+	public double quantile() {
+		return quantile;
+	}
+
+	/**
+	 * Get the {@link RollupStatistic} from its name, case insensitive
+	 * ("min", "max", "sum", "count", "last", "avg", "p50", "p75", "p90",
+	 * "p95", "p99" or "p999").
+	 */
+	@Nonnull
+	public static RollupStatistic fromName(@Nonnull String name) {
+		return valueOf(name.toUpperCase(Locale.ENGLISH));
+	}
+}
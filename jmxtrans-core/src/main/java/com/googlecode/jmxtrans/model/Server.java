@@ -28,13 +28,17 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.name.Named;
 import com.googlecode.jmxtrans.connections.JMXConnection;
 import com.googlecode.jmxtrans.connections.JmxConnectionProvider;
-import com.sun.tools.attach.VirtualMachine;
+import com.googlecode.jmxtrans.connections.JolokiaConnection;
+import com.googlecode.jmxtrans.connections.LocalJvms;
+import com.googlecode.jmxtrans.connections.TimeoutRMIClientSocketFactory;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -55,22 +59,36 @@ import javax.management.ObjectName;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
-import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
 import static com.fasterxml.jackson.databind.annotation.JsonSerialize.Inclusion.NON_NULL;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.collect.ImmutableSet.copyOf;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static javax.management.remote.JMXConnectorFactory.PROTOCOL_PROVIDER_PACKAGES;
 import static javax.naming.Context.SECURITY_CREDENTIALS;
 import static javax.naming.Context.SECURITY_PRINCIPAL;
@@ -86,23 +104,42 @@ import static javax.naming.Context.SECURITY_PRINCIPAL;
 		"alias",
 		"local",
 		"pid",
+		"mainClass",
+		"systemProperty",
 		"host",
 		"port",
 		"username",
 		"password",
 		"cronExpression",
 		"numQueryThreads",
+		"connectTimeoutMs",
+		"readTimeoutMs",
+		"maxSeries",
 		"protocolProviderPackages"
 })
 @Immutable
 @ThreadSafe
 @EqualsAndHashCode(exclude = {"queries", "pool", "outputWriters", "outputWriterFactories"})
-@ToString(of = {"pid", "host", "port", "url", "cronExpression", "numQueryThreads"})
+@ToString(of = {"pid", "mainClass", "systemProperty", "host", "port", "url", "cronExpression", "numQueryThreads"})
 public class Server implements JmxConnectionProvider {
 
-	private static final String CONNECTOR_ADDRESS = "com.sun.management.jmxremote.localConnectorAddress";
 	private static final String FRONT = "service:jmx:rmi:///jndi/rmi://";
 	private static final String BACK = "/jmxrmi";
+	private static final String SNAPSHOT_AGENT_SCHEME = "jmxtrans://";
+
+	/** Socket factory used by the JNDI lookup of the RMI connector stub. */
+	private static final String JNDI_RMI_SOCKET_FACTORY = "com.sun.jndi.rmi.factory.socket";
+	private static final String REQUEST_WAITING_TIMEOUT = "jmx.remote.x.request.waiting.timeout";
+
+	/**
+	 * Maximum number of remote fetches running at once for the servers having
+	 * a read timeout, including those still waiting for a server they timed
+	 * out on.
+	 */
+	static final int MAX_TIMED_FETCHES = 256;
+
+	/** Remote fetches of the servers having a read timeout. */
+	private static final ExecutorService TIMED_FETCHES = timedFetches(MAX_TIMED_FETCHES);
 
 	private static final Logger logger = LoggerFactory.getLogger(Server.class);
 
@@ -114,6 +151,17 @@ public class Server implements JmxConnectionProvider {
 
 	/** Returns the pid of the local process jmxtrans will attach to. */
 	@Getter private final String pid;
+	/**
+	 * Pattern searched in the main class (or jar) of the local processes, the
+	 * first matching process is attached to. Follows the process across
+	 * restarts.
+	 */
+	@Getter private final String mainClass;
+	/**
+	 * Selects the local process to attach to by one of its system properties,
+	 * as {@code name=pattern}. Follows the process across restarts.
+	 */
+	@Getter private final String systemProperty;
 	private final String host;
 	private final String port;
 	@Getter private final String username;
@@ -141,6 +189,23 @@ public class Server implements JmxConnectionProvider {
 	@Getter @Nullable private final Integer runPeriodSeconds;
 	/** The number of query threads for this server. */
 	@Getter private final int numQueryThreads;
+	/**
+	 * Maximum time to establish a connection to the server, in milliseconds.
+	 * Not bounded when not set.
+	 */
+	@Getter @Nullable private final Integer connectTimeoutMs;
+	/**
+	 * Maximum time to wait for a response of the server, in milliseconds. Not
+	 * bounded when not set.
+	 */
+	@Getter @Nullable private final Integer readTimeoutMs;
+	/**
+	 * Maximum number of distinct series written for this server, all queries
+	 * together. Values of new series beyond it are dropped, see
+	 * {@link com.googlecode.jmxtrans.model.results.CardinalityGuard}. Not
+	 * bounded when not set.
+	 */
+	@Getter @Nullable private final Integer maxSeries;
 
 	/**
 	 * Whether the current local Java process should be used or not (useful for
@@ -160,6 +225,8 @@ public class Server implements JmxConnectionProvider {
 	public Server(
 			@JsonProperty("alias") String alias,
 			@JsonProperty("pid") String pid,
+			@JsonProperty("mainClass") String mainClass,
+			@JsonProperty("systemProperty") String systemProperty,
 			@JsonProperty("host") String host,
 			@JsonProperty("port") String port,
 			@JsonProperty("username") String username,
@@ -169,13 +236,38 @@ public class Server implements JmxConnectionProvider {
 			@JsonProperty("cronExpression") String cronExpression,
 			@JsonProperty("runPeriodSeconds") Integer runPeriodSeconds,
 			@JsonProperty("numQueryThreads") Integer numQueryThreads,
+			@JsonProperty("connectTimeoutMs") Integer connectTimeoutMs,
+			@JsonProperty("readTimeoutMs") Integer readTimeoutMs,
+			@JsonProperty("maxSeries") Integer maxSeries,
 			@JsonProperty("local") boolean local,
 			@JsonProperty("queries") List<Query> queries,
 			@JsonProperty("outputWriters") List<OutputWriterFactory> outputWriters,
 			@JacksonInject @Named("mbeanPool") KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool) {
 
-		this(alias, pid, host, port, username, password, protocolProviderPackages, url, cronExpression,
-				runPeriodSeconds, numQueryThreads, local, queries, outputWriters, ImmutableList.<OutputWriter>of(),
+		this(alias, pid, mainClass, systemProperty, host, port, username, password, protocolProviderPackages, url, cronExpression,
+				runPeriodSeconds, numQueryThreads, connectTimeoutMs, readTimeoutMs, maxSeries, local, queries, outputWriters, ImmutableList.<OutputWriter>of(),
+				pool);
+	}
+
+	public Server(
+			String alias,
+			String pid,
+			String host,
+			String port,
+			String username,
+			String password,
+			String protocolProviderPackages,
+			String url,
+			String cronExpression,
+			Integer runPeriodSeconds,
+			Integer numQueryThreads,
+			boolean local,
+			List<Query> queries,
+			List<OutputWriterFactory> outputWriters,
+			KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool) {
+
+		this(alias, pid, null, null, host, port, username, password, protocolProviderPackages, url, cronExpression,
+				runPeriodSeconds, numQueryThreads, null, null, null, local, queries, outputWriters, ImmutableList.<OutputWriter>of(),
 				pool);
 	}
 
@@ -196,14 +288,16 @@ public class Server implements JmxConnectionProvider {
 			ImmutableList<OutputWriter> outputWriters,
 			KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool) {
 
-		this(alias, pid, host, port, username, password, protocolProviderPackages, url, cronExpression,
-				runPeriodSeconds, numQueryThreads, local, queries, ImmutableList.<OutputWriterFactory>of(),
+		this(alias, pid, null, null, host, port, username, password, protocolProviderPackages, url, cronExpression,
+				runPeriodSeconds, numQueryThreads, null, null, null, local, queries, ImmutableList.<OutputWriterFactory>of(),
 				outputWriters, pool);
 	}
 
 	private Server(
 			String alias,
 			String pid,
+			String mainClass,
+			String systemProperty,
 			String host,
 			String port,
 			String username,
@@ -213,19 +307,29 @@ public class Server implements JmxConnectionProvider {
 			String cronExpression,
 			Integer runPeriodSeconds,
 			Integer numQueryThreads,
+			Integer connectTimeoutMs,
+			Integer readTimeoutMs,
+			Integer maxSeries,
 			boolean local,
 			List<Query> queries,
 			List<OutputWriterFactory> outputWriterFactories,
 			List<OutputWriter> outputWriters,
 			KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool) {
 
-		checkArgument(pid != null || url != null || host != null,
-				"You must provide the pid or the [url|host and port]");
-		checkArgument(!(pid != null && (url != null || host != null)),
-				"You must provide the pid OR the url, not both");
+		int processSelectors = (pid != null ? 1 : 0) + (mainClass != null ? 1 : 0) + (systemProperty != null ? 1 : 0);
+		checkArgument(processSelectors > 0 || url != null || host != null,
+				"You must provide the pid, mainClass, systemProperty or the [url|host and port]");
+		checkArgument(processSelectors <= 1,
+				"You must provide only one of pid, mainClass or systemProperty");
+		checkArgument(!(processSelectors > 0 && (url != null || host != null)),
+				"You must provide the pid, mainClass or systemProperty OR the url, not both");
+		checkArgument(systemProperty == null || systemProperty.indexOf('=') > 0,
+				"systemProperty must be of the form name=pattern");
 
 		this.alias = alias;
 		this.pid = pid;
+		this.mainClass = mainClass;
+		this.systemProperty = systemProperty;
 		this.port = port;
 		this.username = username;
 		this.password = password;
@@ -238,11 +342,17 @@ public class Server implements JmxConnectionProvider {
 
 		this.runPeriodSeconds = runPeriodSeconds;
 		this.numQueryThreads = firstNonNull(numQueryThreads, 0);
+		checkArgument(connectTimeoutMs == null || connectTimeoutMs > 0, "connectTimeoutMs must be positive");
+		checkArgument(readTimeoutMs == null || readTimeoutMs > 0, "readTimeoutMs must be positive");
+		this.connectTimeoutMs = connectTimeoutMs;
+		this.readTimeoutMs = readTimeoutMs;
+		checkArgument(maxSeries == null || maxSeries > 0, "maxSeries must be positive");
+		this.maxSeries = maxSeries;
 		this.local = local;
 		this.queries = copyOf(queries);
 
 		// when connecting in local, we cache the host after retrieving it from the network card
-		if(pid != null) {
+		if(processSelectors > 0) {
 			try {
 				this.host = InetAddress.getLocalHost().getHostName();
 			} catch (UnknownHostException e) {
@@ -258,14 +368,66 @@ public class Server implements JmxConnectionProvider {
 		this.outputWriters = ImmutableList.copyOf(firstNonNull(outputWriters, ImmutableList.<OutputWriter>of()));
 	}
 
-	public Iterable<Result> execute(Query query) throws Exception {
-		JMXConnection jmxConnection = pool.borrowObject(this);
+	/**
+	 * Runs a query on a pooled connection. With a read timeout, remote fetches
+	 * run on their own thread and the query fails once the timeout is over:
+	 * RMI calls go through socket factories chosen by the server, a client
+	 * cannot bound them otherwise. The connection stays with the fetch until
+	 * the server answers or the connection breaks, so a frozen server holds
+	 * at most its share of the pool. At most {@link #MAX_TIMED_FETCHES}
+	 * fetches run at once, queries beyond fail right away.
+	 */
+	public Iterable<Result> execute(final Query query) throws Exception {
+		final JMXConnection jmxConnection = pool.borrowObject(this);
+		if (readTimeoutMs == null || local) {
+			return fetch(query, jmxConnection);
+		}
+
+		Future<ImmutableList<Result>> fetch;
+		try {
+			fetch = TIMED_FETCHES.submit(new Callable<ImmutableList<Result>>() {
+				@Override
+				public ImmutableList<Result> call() throws Exception {
+					return fetch(query, jmxConnection);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pool.returnObject(this, jmxConnection);
+			throw new RejectedExecutionException(this + " could not run " + query + ", "
+					+ MAX_TIMED_FETCHES + " fetches are already waiting for their servers", e);
+		}
+		try {
+			return fetch.get(readTimeoutMs, MILLISECONDS);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		} catch (TimeoutException e) {
+			fetch.cancel(true);
+			throw new SocketTimeoutException(this + " did not answer " + query + " within " + readTimeoutMs + " ms");
+		}
+	}
+
+	/**
+	 * A thread per fetch, up to the given number of threads: a fetch can't be
+	 * interrupted while reading from its server, so threads of frozen servers
+	 * must not pile up.
+	 */
+	@VisibleForTesting
+	static ExecutorService timedFetches(int maxThreads) {
+		return new ThreadPoolExecutor(0, maxThreads, 60, SECONDS, new SynchronousQueue<Runnable>(),
+				new ThreadFactoryBuilder()
+						.setDaemon(true)
+						.setNameFormat("jmxtrans-fetch-%d")
+						.build());
+	}
+
+	private ImmutableList<Result> fetch(Query query, JMXConnection jmxConnection) throws Exception {
 		try {
 			ImmutableList.Builder<Result> results = ImmutableList.builder();
 			MBeanServerConnection connection = jmxConnection.getMBeanServerConnection();
 
 			for (ObjectName queryName : query.queryNames(connection)) {
-				results.addAll(query.fetchResults(connection, queryName));
+				ImmutableList<Result> platformResults = local ? PlatformMXBeans.read(query, queryName) : null;
+				results.addAll(platformResults != null ? platformResults : query.fetchResults(connection, queryName));
 			}
 			pool.returnObject(this, jmxConnection);
 			return results.build();
@@ -282,22 +444,65 @@ public class Server implements JmxConnectionProvider {
 		}
 	}
 
+	/**
+	 * Opens the pooled connections of this server ahead of its first run. The
+	 * JMX connection pool does it in the background, servers are warmed up in
+	 * parallel.
+	 */
+	public void prewarmConnections() throws Exception {
+		if (!isJolokia() && !isSnapshotAgent()) pool.addObject(this);
+	}
+
+	/**
+	 * Closes the pooled connections of this server, once it is no longer
+	 * configured. Connections currently borrowed are closed when handed back.
+	 */
+	public void clearConnections() throws Exception {
+		pool.clear(this);
+	}
+
+	/**
+	 * Borrows a connection for long lived work, like listening to
+	 * notifications. It has to be handed back with {@link #releaseConnection}.
+	 */
+	public JMXConnection borrowConnection() throws Exception {
+		return pool.borrowObject(this);
+	}
+
+	/**
+	 * Hands back a connection obtained from {@link #borrowConnection()}. A
+	 * broken connection is closed and removed from the pool.
+	 */
+	public void releaseConnection(JMXConnection jmxConnection, boolean broken) throws Exception {
+		if (!broken) {
+			pool.returnObject(this, jmxConnection);
+			return;
+		}
+		try {
+			jmxConnection.close();
+		} catch (IOException | RuntimeException re) {
+			logger.warn("An error occurred trying to close a broken JMX Connection.", re);
+		}
+		pool.invalidateObject(this, jmxConnection);
+	}
+
 	/**
 	 * Generates the proper username/password environment for JMX connections.
 	 */
 	@JsonIgnore
 	public ImmutableMap<String, ?> getEnvironment() {
 		if (getProtocolProviderPackages() != null && getProtocolProviderPackages().contains("weblogic")) {
-			ImmutableMap.Builder<String, String> environment = ImmutableMap.builder();
+			ImmutableMap.Builder<String, Object> environment = ImmutableMap.builder();
 			if ((username != null) && (password != null)) {
 				environment.put(PROTOCOL_PROVIDER_PACKAGES, getProtocolProviderPackages());
 				environment.put(SECURITY_PRINCIPAL, username);
 				environment.put(SECURITY_CREDENTIALS, password);
 			}
+			putTimeouts(environment);
 			return environment.build();
 		}
 
-		ImmutableMap.Builder<String, String[]> environment = ImmutableMap.builder();
+		ImmutableMap.Builder<String, Object> environment = ImmutableMap.builder();
 		if ((username != null) && (password != null)) {
 			String[] credentials = new String[] {
 					username,
@@ -305,10 +510,27 @@ public class Server implements JmxConnectionProvider {
 			};
 			environment.put(JMXConnector.CREDENTIALS, credentials);
 		}
+		putTimeouts(environment);
 
 		return environment.build();
 	}
 
+	/**
+	 * The JNDI lookup of the RMI connector stub goes through a socket factory
+	 * enforcing the timeouts, the other connectors (JMXMP, WebLogic t3, ...)
+	 * honor the jmx.remote.x request timeout. The calls made once connected
+	 * are bounded by {@link #execute(Query)}.
+	 */
+	private void putTimeouts(ImmutableMap.Builder<String, Object> environment) {
+		if (connectTimeoutMs == null && readTimeoutMs == null) return;
+
+		environment.put(JNDI_RMI_SOCKET_FACTORY,
+				new TimeoutRMIClientSocketFactory(firstNonNull(connectTimeoutMs, 0), firstNonNull(readTimeoutMs, 0)));
+		if (readTimeoutMs != null) {
+			environment.put(REQUEST_WAITING_TIMEOUT, readTimeoutMs.longValue());
+		}
+	}
+
 	/**
 	 * Helper method for connecting to a Server. You need to close the resulting
 	 * connection.
@@ -316,8 +538,7 @@ public class Server implements JmxConnectionProvider {
 	@Override
 	@JsonIgnore
 	public JMXConnector getServerConnection() throws IOException {
-		JMXServiceURL url = new JMXServiceURL(getUrl());
-		return JMXConnectorFactory.connect(url, this.getEnvironment());
+		return JMXConnectorFactory.connect(getJmxServiceURL(), this.getEnvironment());
 	}
 
 	@Override
@@ -392,58 +613,67 @@ public class Server implements JmxConnectionProvider {
 
 	@JsonIgnore
 	public JMXServiceURL getJmxServiceURL() throws IOException {
-		if(this.pid != null) {
-			return JMXServiceURLFactory.extractJMXServiceURLFromPid(this.pid);
+		if (this.pid != null) {
+			return LocalJvms.INSTANCE.forPid(this.pid);
+		}
+		if (this.mainClass != null) {
+			return LocalJvms.INSTANCE.forMainClass(Pattern.compile(this.mainClass));
+		}
+		if (this.systemProperty != null) {
+			int separator = this.systemProperty.indexOf('=');
+			return LocalJvms.INSTANCE.forSystemProperty(
+					this.systemProperty.substring(0, separator),
+					Pattern.compile(this.systemProperty.substring(separator + 1)));
 		}
 		return new JMXServiceURL(getUrl());
 	}
 
+	/** Whether this server is a process running on this host, found through the attach API. */
 	@JsonIgnore
-	public boolean isQueriesMultiThreaded() {
-		return numQueryThreads > 0;
+	public boolean isLocalProcess() {
+		return pid != null || mainClass != null || systemProperty != null;
 	}
 
-	public void runOutputWriters(Query query, Iterable<Result> results) throws Exception {
-		for (OutputWriter writer : outputWriters) {
-			writer.doWrite(this, query, results);
-		}
-		logger.debug("Finished running outputWriters for query: {}", query);
+	/**
+	 * Servers whose url is an http(s) url are read through a Jolokia agent
+	 * instead of RMI.
+	 */
+	@JsonIgnore
+	public boolean isJolokia() {
+		return url != null && (url.startsWith("http://") || url.startsWith("https://"));
 	}
 
 	/**
-	 * Factory to create a JMXServiceURL from a pid. Inner class to prevent class
-	 * loader issues when tools.jar isn't present.
+	 * Servers whose url is a <code>jmxtrans://host:port</code> url are read
+	 * through a jmxtrans agent running in the target JVM, which answers each
+	 * poll with a single binary snapshot.
 	 */
-	private static class JMXServiceURLFactory {
-
-		private JMXServiceURLFactory() {}
-
-		public static JMXServiceURL extractJMXServiceURLFromPid(String pid) throws IOException {
-
-			try {
-				VirtualMachine vm = VirtualMachine.attach(pid);
-
-				try {
-					String connectorAddress = vm.getAgentProperties().getProperty(CONNECTOR_ADDRESS);
+	@JsonIgnore
+	public boolean isSnapshotAgent() {
+		return url != null && url.startsWith(SNAPSHOT_AGENT_SCHEME);
+	}
 
-					if (connectorAddress == null) {
-						String agent = vm.getSystemProperties().getProperty("java.home") +
-								File.separator + "lib" + File.separator + "management-agent.jar";
-						vm.loadAgent(agent);
+	@JsonIgnore
+	public JolokiaConnection getJolokiaConnection() throws MalformedURLException {
+		checkState(isJolokia(), "Server %s is not a Jolokia server", this);
+		return new JolokiaConnection(
+				new URL(url),
+				username,
+				password,
+				firstNonNull(connectTimeoutMs, JolokiaConnection.DEFAULT_CONNECT_TIMEOUT_MS),
+				firstNonNull(readTimeoutMs, JolokiaConnection.DEFAULT_READ_TIMEOUT_MS));
+	}
 
-						connectorAddress = vm.getAgentProperties().getProperty(CONNECTOR_ADDRESS);
-					}
+	@JsonIgnore
+	public boolean isQueriesMultiThreaded() {
+		return numQueryThreads > 0;
+	}
 
-					return new JMXServiceURL(connectorAddress);
-				} finally {
-					vm.detach();
-				}
-			}
-			catch(Exception e) {
-				throw new IOException(e);
-			}
+	public void runOutputWriters(Query query, Iterable<Result> results) throws Exception {
+		for (OutputWriter writer : outputWriters) {
+			writer.doWrite(this, query, results);
 		}
-
+		logger.debug("Finished running outputWriters for query: {}", query);
 	}
 
 	public static Builder builder() {
@@ -459,6 +689,8 @@ public class Server implements JmxConnectionProvider {
 	public static final class Builder {
 		@Setter private String alias;
 		@Setter private String pid;
+		@Setter private String mainClass;
+		@Setter private String systemProperty;
 		@Setter private String host;
 		@Setter private String port;
 		@Setter private String username;
@@ -468,6 +700,9 @@ public class Server implements JmxConnectionProvider {
 		@Setter private String cronExpression;
 		@Setter private Integer runPeriodSeconds;
 		@Setter private Integer numQueryThreads;
+		@Setter private Integer connectTimeoutMs;
+		@Setter private Integer readTimeoutMs;
+		@Setter private Integer maxSeries;
 		@Setter private boolean local;
 		private final List<OutputWriterFactory> outputWriterFactories = new ArrayList<>();
 		private final List<OutputWriter> outputWriters = new ArrayList<>();
@@ -479,7 +714,9 @@ public class Server implements JmxConnectionProvider {
 		private Builder(Server server) {
 			this.alias = server.alias;
 			this.pid = server.pid;
-			this.host = server.pid != null ? null : server.host; // let the host be deduced in the constructor
+			this.mainClass = server.mainClass;
+			this.systemProperty = server.systemProperty;
+			this.host = server.isLocalProcess() ? null : server.host; // let the host be deduced in the constructor
 			this.port = server.port;
 			this.username = server.username;
 			this.password = server.password;
@@ -488,6 +725,9 @@ public class Server implements JmxConnectionProvider {
 			this.cronExpression = server.cronExpression;
 			this.runPeriodSeconds = server.runPeriodSeconds;
 			this.numQueryThreads = server.numQueryThreads;
+			this.connectTimeoutMs = server.connectTimeoutMs;
+			this.readTimeoutMs = server.readTimeoutMs;
+			this.maxSeries = server.maxSeries;
 			this.local = server.local;
 			this.queries.addAll(server.queries);
 			this.pool = server.pool;
@@ -519,27 +759,11 @@ public class Server implements JmxConnectionProvider {
 		}
 
 		public Server build() {
-			if (!outputWriterFactories.isEmpty()) {
-				return new Server(
-						alias,
-						pid,
-						host,
-						port,
-						username,
-						password,
-						protocolProviderPackages,
-						url,
-						cronExpression,
-						runPeriodSeconds,
-						numQueryThreads,
-						local,
-						queries,
-						outputWriterFactories,
-						pool);
-			}
 			return new Server(
 					alias,
 					pid,
+					mainClass,
+					systemProperty,
 					host,
 					port,
 					username,
@@ -549,12 +773,16 @@ public class Server implements JmxConnectionProvider {
 					cronExpression,
 					runPeriodSeconds,
 					numQueryThreads,
+					connectTimeoutMs,
+					readTimeoutMs,
+					maxSeries,
 					local,
 					queries,
-					ImmutableList.copyOf(outputWriters),
+					outputWriterFactories,
+					outputWriters,
 					pool);
-
 		}
+
 	}
 
 }
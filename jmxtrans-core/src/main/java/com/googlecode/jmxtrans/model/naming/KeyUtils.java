@@ -22,16 +22,41 @@
  */
 package com.googlecode.jmxtrans.model.naming;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 
+import javax.annotation.concurrent.Immutable;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Builds the metric names used by most writers.
+ * <p/>
+ * The same series are named again at every collection, so names are
+ * computed once per distinct series and cached, shared by all writers. The
+ * cache holds on to the servers and queries it was used with, so it must be
+ * {@link #clearCache() cleared} when they are replaced.
+ */
 public final class KeyUtils {
 
+	/** Upper bound on the number of distinct series names we remember. */
+	private static final int MAX_KEYS = 100000;
+
+	private static final Cache<SeriesKey, String> KEYS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_KEYS)
+			.build();
+
 	private KeyUtils() {}
+
+	/** Forgets all cached names, and the servers and queries they were built for. */
+	public static void clearCache() {
+		KEYS.invalidateAll();
+	}
+
 	/**
 	 * Gets the key string.
 	 *
@@ -45,6 +70,16 @@ public final class KeyUtils {
 	 * @return the key string
 	 */
 	public static String getKeyString(Server server, Query query, Result result, Map.Entry<String, Object> values, List<String> typeNames, String rootPrefix) {
+		SeriesKey seriesKey = new SeriesKey(SeriesKey.FULL, server, query, result, values.getKey(), typeNames, rootPrefix);
+		String key = KEYS.getIfPresent(seriesKey);
+		if (key == null) {
+			key = buildKeyString(server, query, result, values, typeNames, rootPrefix);
+			KEYS.put(seriesKey, key);
+		}
+		return key;
+	}
+
+	private static String buildKeyString(Server server, Query query, Result result, Map.Entry<String, Object> values, List<String> typeNames, String rootPrefix) {
 		StringBuilder sb = new StringBuilder();
 		addRootPrefix(rootPrefix, sb);
 		addAlias(server, sb);
@@ -66,6 +101,16 @@ public final class KeyUtils {
 	 * @return the key string
 	 */
 	public static String getKeyString(Query query, Result result, Map.Entry<String, Object> values, List<String> typeNames) {
+		SeriesKey seriesKey = new SeriesKey(SeriesKey.WITHOUT_PREFIX, null, query, result, values.getKey(), typeNames, null);
+		String key = KEYS.getIfPresent(seriesKey);
+		if (key == null) {
+			key = buildKeyString(query, result, values, typeNames);
+			KEYS.put(seriesKey, key);
+		}
+		return key;
+	}
+
+	private static String buildKeyString(Query query, Result result, Map.Entry<String, Object> values, List<String> typeNames) {
 		StringBuilder sb = new StringBuilder();
 		addMBeanIdentifier(query, result, sb);
 		sb.append(".");
@@ -85,10 +130,16 @@ public final class KeyUtils {
 	 * @return the key string
 	 */
 	public static String getPrefixedKeyString(Query query, Result result, Map.Entry<String, Object> values, List<String> typeNames, String key) {
-		StringBuilder sb = new StringBuilder();
-		addTypeName(query, result, typeNames, sb);
-		sb.append(StringUtils.cleanupStr(key, query.isAllowDottedKeys()));
-		return sb.toString();
+		SeriesKey seriesKey = new SeriesKey(SeriesKey.TYPE_NAME_PREFIXED, null, query, result, key, typeNames, null);
+		String prefixedKey = KEYS.getIfPresent(seriesKey);
+		if (prefixedKey == null) {
+			StringBuilder sb = new StringBuilder();
+			addTypeName(query, result, typeNames, sb);
+			sb.append(StringUtils.cleanupStr(key, query.isAllowDottedKeys()));
+			prefixedKey = sb.toString();
+			KEYS.put(seriesKey, prefixedKey);
+		}
+		return prefixedKey;
 	}
 
 	private static void addRootPrefix(String rootPrefix, StringBuilder sb) {
@@ -155,4 +206,78 @@ public final class KeyUtils {
 		return keyStr;
 	}
 
+	/**
+	 * Everything a key string depends on. Servers and queries are immutable
+	 * and compared by identity, which is cheaper than their equals(). They
+	 * are strongly referenced until the cache is cleared.
+	 */
+	@Immutable
+	private static final class SeriesKey {
+		private static final int FULL = 0;
+		private static final int WITHOUT_PREFIX = 1;
+		private static final int TYPE_NAME_PREFIXED = 2;
+
+		private final int variant;
+		private final Server server;
+		private final Query query;
+		private final String className;
+		private final String objDomain;
+		private final String typeName;
+		private final String keyAlias;
+		private final String attributeName;
+		private final String valueKey;
+		private final List<String> typeNames;
+		private final String rootPrefix;
+		private final int hash;
+
+		private SeriesKey(int variant, Server server, Query query, Result result, String valueKey, List<String> typeNames, String rootPrefix) {
+			this.variant = variant;
+			this.server = server;
+			this.query = query;
+			this.className = result.getClassName();
+			this.objDomain = result.getObjDomain();
+			this.typeName = result.getTypeName();
+			this.keyAlias = result.getKeyAlias();
+			this.attributeName = result.getAttributeName();
+			this.valueKey = valueKey;
+			this.typeNames = typeNames;
+			this.rootPrefix = rootPrefix;
+			int h = variant;
+			h = 31 * h + System.identityHashCode(server);
+			h = 31 * h + System.identityHashCode(query);
+			h = 31 * h + Objects.hashCode(className);
+			h = 31 * h + Objects.hashCode(objDomain);
+			h = 31 * h + Objects.hashCode(typeName);
+			h = 31 * h + Objects.hashCode(keyAlias);
+			h = 31 * h + Objects.hashCode(attributeName);
+			h = 31 * h + Objects.hashCode(valueKey);
+			h = 31 * h + Objects.hashCode(typeNames);
+			this.hash = 31 * h + Objects.hashCode(rootPrefix);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof SeriesKey)) return false;
+			SeriesKey other = (SeriesKey) o;
+			return hash == other.hash
+					&& variant == other.variant
+					&& server == other.server
+					&& query == other.query
+					&& Objects.equals(className, other.className)
+					&& Objects.equals(objDomain, other.objDomain)
+					&& Objects.equals(typeName, other.typeName)
+					&& Objects.equals(keyAlias, other.keyAlias)
+					&& Objects.equals(attributeName, other.attributeName)
+					&& Objects.equals(valueKey, other.valueKey)
+					&& Objects.equals(typeNames, other.typeNames)
+					&& Objects.equals(rootPrefix, other.rootPrefix);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
 }
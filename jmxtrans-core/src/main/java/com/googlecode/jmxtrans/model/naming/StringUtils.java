@@ -22,13 +22,7 @@
  */
 package com.googlecode.jmxtrans.model.naming;
 
-import java.util.regex.Pattern;
-
 public final class StringUtils {
-	private static final Pattern DOT_SLASH_UNDERSCORE_PAT = Pattern.compile("[./]");
-	private static final Pattern SLASH_UNDERSCORE_PAT = Pattern.compile("/", Pattern.LITERAL);
-	private static final Pattern SPACE_PAT = Pattern.compile("[ \"']+");
-
 	private StringUtils() {}
 
 	/**
@@ -48,16 +42,22 @@ public final class StringUtils {
 		if (name == null) {
 			return null;
 		}
-		Pattern pattern;
-		if (!allowDottedKeys) {
-			pattern = DOT_SLASH_UNDERSCORE_PAT;
-		} else {
-			pattern = SLASH_UNDERSCORE_PAT;
+		// single pass equivalent of replacing [./] (or only / when dots are allowed) with _,
+		// removing spaces and quotes, then chomping a trailing . and a trailing _
+		char[] clean = new char[name.length()];
+		int length = 0;
+		boolean replaced = false;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == ' ' || c == '"' || c == '\'') continue;
+			if (c == '/' || (c == '.' && !allowDottedKeys)) {
+				c = '_';
+				replaced = true;
+			}
+			clean[length++] = c;
 		}
-		String clean = pattern.matcher(name).replaceAll("_");
-		clean = SPACE_PAT.matcher(clean).replaceAll("");
-		clean = org.apache.commons.lang.StringUtils.chomp(clean, ".");
-		clean = org.apache.commons.lang.StringUtils.chomp(clean, "_");
-		return clean;
+		if (length > 0 && clean[length - 1] == '.') length--;
+		if (length > 0 && clean[length - 1] == '_') length--;
+		return !replaced && length == name.length() ? name : new String(clean, 0, length);
 	}
 }
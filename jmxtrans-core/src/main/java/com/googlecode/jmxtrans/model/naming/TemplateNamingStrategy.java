@@ -0,0 +1,208 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.naming;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.NamingStrategy;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.naming.typename.TypeNameValue;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Naming strategy formatting names from a template such as
+ * <code>${class}.${typename.name}.${attribute}</code>.
+ * <p/>
+ * The template is compiled once into a list of segments, so formatting a
+ * name only appends strings to a reused buffer. It is a much cheaper
+ * alternative to {@link JexlNamingStrategy} when only variables need to be
+ * joined. The following variables can be used, with the same meaning as in
+ * {@link JexlNamingStrategy}:
+ * <dl>
+ * <dt>alias</dt>
+ * <dd>the classname alias of the MBean.</dd>
+ * <dt>attribute</dt>
+ * <dd>the name of the attribute of the MBean queried.</dd>
+ * <dt>class</dt>
+ * <dd>the effective classname of the MBean (uses #alias is not null, otherwise uses #realclass).</dd>
+ * <dt>realclass</dt>
+ * <dd>the class name of the MBean.</dd>
+ * <dt>typename.<i>key</i></dt>
+ * <dd>the value of the <i>key</i> property of the MBean object name.</dd>
+ * </dl>
+ * Missing values are replaced by an empty string.
+ */
+@Immutable
+@ThreadSafe
+@EqualsAndHashCode(of = "template")
+@ToString(of = "template")
+public class TemplateNamingStrategy implements NamingStrategy {
+
+	private static final String VAR_TYPENAME_PREFIX = JexlNamingStrategy.VAR_TYPENAME + ".";
+
+	private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder();
+		}
+	};
+
+	@Nonnull @Getter private final String template;
+	@Nonnull private final ImmutableList<Segment> segments;
+
+	/**
+	 * @param template the template to compile
+	 * @throws IllegalArgumentException if the template is malformed or uses an unknown variable
+	 */
+	public TemplateNamingStrategy(@Nonnull String template) {
+		this.template = template;
+		this.segments = compile(template);
+	}
+
+	/** Whether the expression looks like a template rather than a JEXL expression. */
+	public static boolean isTemplate(@Nonnull String expression) {
+		return expression.contains("${");
+	}
+
+	@Override
+	public String formatName(Result result) {
+		StringBuilder buffer = BUFFER.get();
+		buffer.setLength(0);
+		for (Segment segment : segments) {
+			segment.appendTo(buffer, result);
+		}
+		return buffer.toString();
+	}
+
+	private static ImmutableList<Segment> compile(String template) {
+		ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+		int position = 0;
+		while (position < template.length()) {
+			int start = template.indexOf("${", position);
+			if (start < 0) {
+				segments.add(new Literal(template.substring(position)));
+				break;
+			}
+			if (start > position) {
+				segments.add(new Literal(template.substring(position, start)));
+			}
+			int end = template.indexOf('}', start);
+			if (end < 0) {
+				throw new IllegalArgumentException("Unclosed variable at " + start + " in naming template " + template);
+			}
+			segments.add(variable(template.substring(start + 2, end).trim(), template));
+			position = end + 1;
+		}
+		return segments.build();
+	}
+
+	private static Segment variable(String name, String template) {
+		switch (name) {
+			case JexlNamingStrategy.VAR_EFFECTIVE_CLASSNAME:
+				return Variable.CLASS;
+			case JexlNamingStrategy.VAR_CLASSNAME:
+				return Variable.REAL_CLASS;
+			case JexlNamingStrategy.VAR_CLASSNAME_ALIAS:
+				return Variable.ALIAS;
+			case JexlNamingStrategy.VAR_ATTRIBUTE_NAME:
+				return Variable.ATTRIBUTE;
+			default:
+				if (name.startsWith(VAR_TYPENAME_PREFIX) && name.length() > VAR_TYPENAME_PREFIX.length()) {
+					return new TypeNameProperty(name.substring(VAR_TYPENAME_PREFIX.length()));
+				}
+				throw new IllegalArgumentException("Unknown variable " + name + " in naming template " + template);
+		}
+	}
+
+	private interface Segment {
+		void appendTo(StringBuilder buffer, Result result);
+	}
+
+	private static final class Literal implements Segment {
+		private final String text;
+
+		private Literal(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void appendTo(StringBuilder buffer, Result result) {
+			buffer.append(text);
+		}
+	}
+
+	private enum Variable implements Segment {
+		CLASS {
+			@Override
+			String get(Result result) {
+				String alias = result.getKeyAlias();
+				return alias != null ? alias : result.getClassName();
+			}
+		},
+		REAL_CLASS {
+			@Override
+			String get(Result result) {
+				return result.getClassName();
+			}
+		},
+		ALIAS {
+			@Override
+			String get(Result result) {
+				return result.getKeyAlias();
+			}
+		},
+		ATTRIBUTE {
+			@Override
+			String get(Result result) {
+				return result.getAttributeName();
+			}
+		};
+
+		abstract String get(Result result);
+
+		@Override
+		public void appendTo(StringBuilder buffer, Result result) {
+			String value = get(result);
+			if (value != null) buffer.append(value);
+		}
+	}
+
+	private static final class TypeNameProperty implements Segment {
+		private final String key;
+
+		private TypeNameProperty(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public void appendTo(StringBuilder buffer, Result result) {
+			String value = TypeNameValue.extractMap(result.getTypeName()).get(key);
+			if (value != null) buffer.append(value);
+		}
+	}
+}
@@ -22,9 +22,14 @@
  */
 package com.googlecode.jmxtrans.model.naming.typename;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
+import javax.annotation.Nonnull;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
@@ -33,6 +38,23 @@ import static com.google.common.collect.Maps.newHashMap;
 
 @EqualsAndHashCode
 public class TypeNameValue {
+
+	/** Upper bound on the number of distinct type names we remember. */
+	private static final int MAX_MAPS = 10000;
+
+	private static final LoadingCache<String, ImmutableMap<String, String>> MAPS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_MAPS)
+			.build(new CacheLoader<String, ImmutableMap<String, String>>() {
+				@Override
+				public ImmutableMap<String, String> load(@Nonnull String typeNameStr) {
+					Map<String, String> result = newHashMap();
+					for (TypeNameValue typeNameValue : extract(typeNameStr)) {
+						result.put(typeNameValue.getKey(), typeNameValue.getValue());
+					}
+					return ImmutableMap.copyOf(result);
+				}
+			});
+
 	@Getter private String key;
 	@Getter private String value;
 
@@ -65,6 +87,9 @@ public class TypeNameValue {
 	 * "name"  =>  "PS Eden Space"
 	 * "type"  =>  "MemoryPool"
 	 *
+	 * The same type names are parsed again and again, the (unmodifiable)
+	 * maps are cached.
+	 *
 	 * @param typeNameStr the type name str
 	 * @return Map<String, String> of type-name-key / value pairs.
 	 */
@@ -72,12 +97,7 @@ public class TypeNameValue {
 		if (typeNameStr == null) {
 			return Collections.emptyMap();
 		}
-
-		Map<String, String> result = newHashMap();
-		for (TypeNameValue typeNameValue : extract(typeNameStr)) {
-			result.put(typeNameValue.getKey(), typeNameValue.getValue());
-		}
-		return result;
+		return MAPS.getUnchecked(typeNameStr);
 	}
 
 	private static class TypeNameValuesIterator implements Iterator<TypeNameValue> {
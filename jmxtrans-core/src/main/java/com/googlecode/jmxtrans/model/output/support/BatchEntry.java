@@ -0,0 +1,71 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+
+/**
+ * The arguments of a single {@link OutputWriter#doWrite(Server, Query, Iterable)}
+ * call, kept so that they can be written later together with others.
+ */
+@Immutable
+@EqualsAndHashCode
+@ToString
+public final class BatchEntry {
+
+	@Nonnull @Getter private final Server server;
+	@Nonnull @Getter private final Query query;
+	@Nonnull @Getter private final ImmutableList<Result> results;
+
+	public BatchEntry(@Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) {
+		this.server = server;
+		this.query = query;
+		this.results = ImmutableList.copyOf(results);
+	}
+
+	/**
+	 * Writes a batch to the given writer, in a single call if it supports
+	 * batches and one entry at a time otherwise.
+	 */
+	public static void writeAll(@Nonnull OutputWriter target, @Nonnull List<BatchEntry> batch) throws Exception {
+		if (batch.isEmpty()) return;
+		if (target instanceof BatchOutputWriter) {
+			((BatchOutputWriter) target).writeBatch(batch);
+			return;
+		}
+		for (BatchEntry entry : batch) {
+			target.doWrite(entry.getServer(), entry.getQuery(), entry.getResults());
+		}
+	}
+}
@@ -23,6 +23,8 @@
 package com.googlecode.jmxtrans.model.output.support;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.CycleAwareOutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriterAdapter;
 import com.googlecode.jmxtrans.model.Query;
@@ -35,10 +37,11 @@ import com.googlecode.jmxtrans.model.results.ResultValuesTransformer;
 import com.googlecode.jmxtrans.exceptions.LifecycleException;
 
 import javax.annotation.Nonnull;
+import java.util.List;
 
 import static com.google.common.collect.FluentIterable.from;
 
-public class ResultTransformerOutputWriter<T extends OutputWriter> extends OutputWriterAdapter {
+public class ResultTransformerOutputWriter<T extends OutputWriter> extends OutputWriterAdapter implements BatchOutputWriter, CycleAwareOutputWriter {
 
 	@Nonnull private final ResultValuesTransformer resultValuesTransformer;
 	@Nonnull private final T target;
@@ -56,6 +59,32 @@ public class ResultTransformerOutputWriter<T extends OutputWriter> extends Outpu
 				from(results).transform(resultValuesTransformer).toList());
 	}
 
+	@Override
+	public void writeBatch(@Nonnull List<BatchEntry> batch) throws Exception {
+		ImmutableList.Builder<BatchEntry> transformed = ImmutableList.builder();
+		for (BatchEntry entry : batch) {
+			transformed.add(new BatchEntry(
+					entry.getServer(),
+					entry.getQuery(),
+					from(entry.getResults()).transform(resultValuesTransformer)));
+		}
+		BatchEntry.writeAll(target, transformed.build());
+	}
+
+	@Override
+	public void beginCycle(Server server, long cycleId) throws Exception {
+		if (target instanceof CycleAwareOutputWriter) {
+			((CycleAwareOutputWriter) target).beginCycle(server, cycleId);
+		}
+	}
+
+	@Override
+	public void endCycle(Server server, long cycleId) throws Exception {
+		if (target instanceof CycleAwareOutputWriter) {
+			((CycleAwareOutputWriter) target).endCycle(server, cycleId);
+		}
+	}
+
 	public static <T extends OutputWriter> ResultTransformerOutputWriter<T> booleanToNumber(boolean booleanToNumber, T target) {
 		if (booleanToNumber) return booleanToNumber(target);
 		return identity(target);
@@ -28,6 +28,7 @@ import java.math.BigDecimal;
 public class CPrecisionValueTransformer implements ValueTransformer {
 
 	private static final BigDecimal C_PRECISION = new BigDecimal("1E-308");
+	private static final double C_PRECISION_DOUBLE = C_PRECISION.doubleValue();
 
 	@Nullable
 	@Override
@@ -39,6 +40,17 @@ public class CPrecisionValueTransformer implements ValueTransformer {
 			return null;
 		}
 
+		// primitive wrappers are compared without going through BigDecimal
+		if (input instanceof Double || input instanceof Float) {
+			double doubleValue = ((Number) input).doubleValue();
+			if (Math.abs(doubleValue) < C_PRECISION_DOUBLE) return 0;
+			return input;
+		}
+		if (input instanceof Long || input instanceof Integer || input instanceof Short || input instanceof Byte) {
+			if (((Number) input).longValue() == 0) return 0;
+			return input;
+		}
+
 		BigDecimal inputNumber = new BigDecimal(input.toString());
 
 		if (inputNumber.abs().compareTo(C_PRECISION) < 0) return 0;
@@ -0,0 +1,356 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.model.MBeanDescriptor;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.ResultValues;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.naming.typename.TypeNameValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Bounds the number of distinct series written, so that a wildcard query
+ * matching more MBeans than expected (a topic or a client per MBean) cannot
+ * overwhelm backends.
+ * <p/>
+ * When a run of a query reads more series than its
+ * {@link Query#getMaxSeries() maxSeries}, only the MBeans with the highest
+ * {@link Query#getTopBy() topBy} value are kept, within one series less
+ * than the limit. The numeric values of the other MBeans are summed,
+ * attribute by attribute, into a single MBean whose varying type name
+ * values are replaced by {@link #OTHER}.
+ * <p/>
+ * The series of a server are admitted until its
+ * {@link Server#getMaxSeries() maxSeries} is reached, then values of new
+ * series are dropped. Admitted series are kept in an exact set per server,
+ * and forgotten once idle, with the servers not read anymore. The number of distinct series read from all guarded
+ * servers and queries, including those which were not written, is estimated
+ * with a {@link HyperLogLog}.
+ */
+@Singleton
+@ThreadSafe
+public class CardinalityGuard {
+
+	public static final String OTHER = "__other__";
+	public static final long DEFAULT_IDLE_MILLIS = MINUTES.toMillis(15);
+
+	private static final Comparator<MBeanSeries> HIGHEST_RANK_FIRST = new Comparator<MBeanSeries>() {
+		@Override
+		public int compare(MBeanSeries left, MBeanSeries right) {
+			// MBeans without rank come last
+			if (Double.isNaN(left.rank)) return Double.isNaN(right.rank) ? 0 : 1;
+			if (Double.isNaN(right.rank)) return -1;
+			return Double.compare(right.rank, left.rank);
+		}
+	};
+
+	private final long idleMillis;
+	@GuardedBy("this") private final Map<Long, SeriesStates> admitted = new HashMap<>();
+	@GuardedBy("this") private long lastEviction = Long.MIN_VALUE;
+	@GuardedBy("this") private final HyperLogLog distinct = new HyperLogLog();
+	@GuardedBy("this") private long otherSeries;
+	@GuardedBy("this") private long droppedSeries;
+
+	@Inject
+	public CardinalityGuard() {
+		this(DEFAULT_IDLE_MILLIS);
+	}
+
+	@VisibleForTesting
+	CardinalityGuard(long idleMillis) {
+		this.idleMillis = idleMillis;
+	}
+
+	@Nonnull
+	public ImmutableList<Result> guard(@Nonnull Server server, @Nonnull Query query, @Nonnull ImmutableList<Result> results) {
+		if (query.getMaxSeries() == null && server.getMaxSeries() == null) return results;
+
+		long queryHash = SeriesStates.queryHash(server, query);
+		synchronized (this) {
+			for (Result result : results) {
+				long resultHash = SeriesStates.resultHash(queryHash, result);
+				ResultValues values = result.getResultValues();
+				for (int i = 0; i < values.size(); i++) {
+					distinct.add(SeriesStates.combine(resultHash, values.getKey(i)));
+				}
+			}
+		}
+
+		ImmutableList<Result> guarded = results;
+		if (query.getMaxSeries() != null) guarded = keepTop(query, guarded);
+		if (server.getMaxSeries() != null) guarded = admit(server, query, guarded);
+		return guarded;
+	}
+
+	/** Estimated number of distinct series read from guarded servers and queries. */
+	public synchronized long getEstimatedSeries() {
+		return distinct.estimate();
+	}
+
+	/** Number of series currently admitted, for servers with a limit. */
+	public synchronized long getAdmittedSeries() {
+		long count = 0;
+		for (SeriesStates states : admitted.values()) {
+			count += states.size();
+		}
+		return count;
+	}
+
+	/** Number of values summed into {@link #OTHER} MBeans because of query limits. */
+	public synchronized long getOtherSeries() {
+		return otherSeries;
+	}
+
+	/** Number of values dropped because of server limits. */
+	public synchronized long getDroppedSeries() {
+		return droppedSeries;
+	}
+
+	private ImmutableList<Result> keepTop(Query query, ImmutableList<Result> results) {
+		int maxSeries = query.getMaxSeries();
+		int series = 0;
+		for (Result result : results) {
+			series += result.getResultValues().size();
+		}
+		if (series <= maxSeries) return results;
+
+		Map<MBeanDescriptor, MBeanSeries> byMBean = new LinkedHashMap<>();
+		for (Result result : results) {
+			MBeanSeries mbean = byMBean.get(result.getDescriptor());
+			if (mbean == null) {
+				mbean = new MBeanSeries(result.getDescriptor());
+				byMBean.put(result.getDescriptor(), mbean);
+			}
+			mbean.results.add(result);
+			mbean.series += result.getResultValues().size();
+		}
+		List<MBeanSeries> ranked = new ArrayList<>(byMBean.values());
+		if (query.getTopBy() != null) {
+			for (MBeanSeries mbean : ranked) {
+				mbean.rank = DerivedMetrics.valueOf(query.getTopBy(), mbean.results);
+			}
+			Collections.sort(ranked, HIGHEST_RANK_FIRST);
+		}
+
+		Set<MBeanDescriptor> kept = new HashSet<>();
+		List<MBeanSeries> others = new ArrayList<>();
+		int keptSeries = 0;
+		for (MBeanSeries mbean : ranked) {
+			// one series is left for the other MBeans
+			if (others.isEmpty() && keptSeries + mbean.series < maxSeries) {
+				kept.add(mbean.descriptor);
+				keptSeries += mbean.series;
+			} else {
+				others.add(mbean);
+			}
+		}
+
+		ImmutableList.Builder<Result> guarded = ImmutableList.builder();
+		for (Result result : results) {
+			if (kept.contains(result.getDescriptor())) guarded.add(result);
+		}
+		guarded.addAll(sumOthers(others));
+		synchronized (this) {
+			otherSeries += series - keptSeries;
+		}
+		return guarded.build();
+	}
+
+	/** The values of the other MBeans, summed per attribute and value key. */
+	private static List<Result> sumOthers(List<MBeanSeries> others) {
+		MBeanDescriptor descriptor = otherDescriptor(others);
+		long epoch = Long.MIN_VALUE;
+		Map<String, Map<String, Sum>> sums = new LinkedHashMap<>();
+		for (MBeanSeries mbean : others) {
+			for (Result result : mbean.results) {
+				epoch = Math.max(epoch, result.getEpoch());
+				Map<String, Sum> attributeSums = sums.get(result.getAttributeName());
+				if (attributeSums == null) {
+					attributeSums = new LinkedHashMap<>();
+					sums.put(result.getAttributeName(), attributeSums);
+				}
+				ResultValues values = result.getResultValues();
+				for (int i = 0; i < values.size(); i++) {
+					if (!values.isNumber(i)) continue;
+					Sum sum = attributeSums.get(values.getKey(i));
+					if (sum == null) {
+						sum = new Sum();
+						attributeSums.put(values.getKey(i), sum);
+					}
+					sum.add(values, i);
+				}
+			}
+		}
+
+		List<Result> summed = new ArrayList<>(sums.size());
+		for (Map.Entry<String, Map<String, Sum>> attribute : sums.entrySet()) {
+			if (attribute.getValue().isEmpty()) continue;
+			ResultValues.Builder values = ResultValues.builder(attribute.getValue().size());
+			for (Map.Entry<String, Sum> sum : attribute.getValue().entrySet()) {
+				sum.getValue().put(values, sum.getKey());
+			}
+			summed.add(new Result(epoch, attribute.getKey(), descriptor, values.build()));
+		}
+		return summed;
+	}
+
+	/** The MBean of the other values: type name values which are not the same for all of them are replaced. */
+	private static MBeanDescriptor otherDescriptor(List<MBeanSeries> others) {
+		MBeanDescriptor first = others.get(0).descriptor;
+		StringBuilder typeName = new StringBuilder();
+		if (first.getTypeName() != null) {
+			for (TypeNameValue property : TypeNameValue.extract(first.getTypeName())) {
+				String value = property.getValue();
+				for (MBeanSeries mbean : others) {
+					if (!value.equals(TypeNameValue.extractMap(mbean.descriptor.getTypeName()).get(property.getKey()))) {
+						value = OTHER;
+						break;
+					}
+				}
+				if (typeName.length() > 0) typeName.append(',');
+				typeName.append(property.getKey()).append('=').append(value);
+			}
+		}
+		return MBeanDescriptor.of(first.getClassName(), first.getObjDomain(), typeName.toString(), first.getKeyAlias());
+	}
+
+	private synchronized ImmutableList<Result> admit(Server server, Query query, ImmutableList<Result> results) {
+		long latest = Long.MIN_VALUE;
+		for (Result result : results) {
+			latest = Math.max(latest, result.getEpoch());
+		}
+		evictIdle(latest);
+
+		long serverHash = SeriesStates.serverHash(server);
+		SeriesStates states = admitted.get(serverHash);
+		if (states == null) {
+			states = new SeriesStates();
+			admitted.put(serverHash, states);
+		}
+
+		int maxSeries = server.getMaxSeries();
+		long queryHash = SeriesStates.queryHash(server, query);
+		ImmutableList.Builder<Result> guarded = ImmutableList.builder();
+		for (Result result : results) {
+			Result admittedResult = admit(states, maxSeries, queryHash, result);
+			if (admittedResult != null) guarded.add(admittedResult);
+		}
+		return guarded.build();
+	}
+
+	/**
+	 * Forgets the idle series of all servers, and the servers left without
+	 * series, at most once per idle period. Time follows the timestamps of
+	 * the samples, as in {@link SeriesStates#evictIdle(long, long)}.
+	 */
+	@GuardedBy("this")
+	private void evictIdle(long now) {
+		if (now < lastEviction + idleMillis) return;
+		for (Iterator<SeriesStates> it = admitted.values().iterator(); it.hasNext(); ) {
+			SeriesStates states = it.next();
+			states.evictOlderThan(now - idleMillis);
+			if (states.size() == 0) it.remove();
+		}
+		lastEviction = now;
+	}
+
+	@GuardedBy("this")
+	@Nullable
+	private Result admit(SeriesStates states, int maxSeries, long queryHash, Result result) {
+		long resultHash = SeriesStates.resultHash(queryHash, result);
+		ResultValues values = result.getResultValues();
+		ResultValues.Builder admittedValues = null;
+		for (int i = 0; i < values.size(); i++) {
+			long hash = SeriesStates.combine(resultHash, values.getKey(i));
+			if (states.find(hash) >= 0 || states.size() < maxSeries) {
+				states.put(hash, SeriesStates.OTHER, 0, result.getEpoch());
+				if (admittedValues != null) admittedValues.put(values.getKey(i), values.getValue(i));
+			} else {
+				droppedSeries++;
+				if (admittedValues == null) admittedValues = ChangeFilter.copyUntil(values, i);
+			}
+		}
+		if (admittedValues == null) return result;
+		ResultValues filtered = admittedValues.build();
+		if (filtered.size() == 0) return null;
+		return new Result(result.getEpoch(), result.getAttributeName(), result.getDescriptor(), filtered);
+	}
+
+	private static final class MBeanSeries {
+		private final MBeanDescriptor descriptor;
+		private final List<Result> results = new ArrayList<>();
+		private int series;
+		private double rank = Double.NaN;
+
+		MBeanSeries(MBeanDescriptor descriptor) {
+			this.descriptor = descriptor;
+		}
+	}
+
+	/** Sum of values, integral as long as all of them are. */
+	private static final class Sum {
+		private boolean integral = true;
+		private long longSum;
+		private double doubleSum;
+
+		void add(ResultValues values, int index) {
+			if (integral && values.isIntegral(index)) {
+				longSum += values.getLong(index);
+			} else {
+				if (integral) doubleSum = longSum;
+				integral = false;
+				doubleSum += values.getDouble(index);
+			}
+		}
+
+		void put(ResultValues.Builder values, String key) {
+			if (integral) {
+				values.putLong(key, longSum);
+			} else {
+				values.putDouble(key, doubleSum);
+			}
+		}
+	}
+}
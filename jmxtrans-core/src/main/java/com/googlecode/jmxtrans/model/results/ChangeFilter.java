@@ -0,0 +1,150 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.ResultValues;
+import com.googlecode.jmxtrans.model.Server;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Drops the values of {@link Query#isOnlyOnChange() onlyOnChange} queries
+ * which did not change since they were last written.
+ * <p/>
+ * Only a hash of the last written value is kept for each series, with the
+ * number of cycles it was suppressed for. Unchanged values are written
+ * again every {@link Query#getHeartbeatCycles() heartbeatCycles} cycles
+ * ({@link #DEFAULT_HEARTBEAT_CYCLES} by default, never if not positive) so
+ * that backends do not consider the series stale.
+ */
+@Singleton
+@ThreadSafe
+public class ChangeFilter {
+
+	public static final int DEFAULT_HEARTBEAT_CYCLES = 10;
+	public static final long DEFAULT_IDLE_MILLIS = MINUTES.toMillis(15);
+
+	private final long idleMillis;
+	@GuardedBy("this") private final SeriesStates states = new SeriesStates();
+
+	@Inject
+	public ChangeFilter() {
+		this(DEFAULT_IDLE_MILLIS);
+	}
+
+	@VisibleForTesting
+	ChangeFilter(long idleMillis) {
+		this.idleMillis = idleMillis;
+	}
+
+	@Nonnull
+	public ImmutableList<Result> filter(@Nonnull Server server, @Nonnull Query query, @Nonnull ImmutableList<Result> results) {
+		if (!query.isOnlyOnChange()) return results;
+
+		int heartbeatCycles = firstNonNull(query.getHeartbeatCycles(), DEFAULT_HEARTBEAT_CYCLES);
+		long queryHash = SeriesStates.queryHash(server, query);
+		ImmutableList.Builder<Result> changed = ImmutableList.builder();
+		long latest = Long.MIN_VALUE;
+		for (Result result : results) {
+			latest = Math.max(latest, result.getEpoch());
+		}
+		synchronized (this) {
+			// series idle for too long are written again when they come back
+			states.evictIdle(latest, idleMillis);
+			for (Result result : results) {
+				Result filtered = filter(queryHash, result, heartbeatCycles);
+				if (filtered != null) changed.add(filtered);
+			}
+		}
+		return changed.build();
+	}
+
+	/** The result with only the values to write, or null if there are none. */
+	@GuardedBy("this")
+	@Nullable
+	private Result filter(long queryHash, Result result, int heartbeatCycles) {
+		long resultHash = SeriesStates.resultHash(queryHash, result);
+		long epoch = result.getEpoch();
+
+		ResultValues values = result.getResultValues();
+		ResultValues.Builder changed = null;
+		for (int i = 0; i < values.size(); i++) {
+			String key = values.getKey(i);
+			long hash = SeriesStates.combine(resultHash, key);
+			byte kind;
+			long value;
+			if (values.isIntegral(i)) {
+				kind = SeriesStates.INTEGRAL;
+				value = values.getLong(i);
+			} else if (values.isNumber(i)) {
+				kind = SeriesStates.FLOATING;
+				value = Double.doubleToLongBits(values.getDouble(i));
+			} else {
+				kind = SeriesStates.OTHER;
+				value = values.getValue(i).hashCode();
+			}
+
+			int slot = states.find(hash);
+			if (slot >= 0 && states.kind(slot) == kind && states.value(slot) == value) {
+				int suppressed = states.count(slot) + 1;
+				if (heartbeatCycles <= 0 || suppressed < heartbeatCycles) {
+					states.put(hash, kind, value, epoch, suppressed);
+					if (changed == null) changed = copyUntil(values, i);
+					continue;
+				}
+			}
+			states.put(hash, kind, value, epoch, 0);
+			if (changed != null) changed.put(key, values.getValue(i));
+		}
+		if (changed == null) return result;
+		ResultValues filtered = changed.build();
+		if (filtered.size() == 0) return null;
+		return new Result(epoch, result.getAttributeName(), result.getDescriptor(), filtered);
+	}
+
+	/** A builder holding the values before the given index, to filter the following ones. */
+	static ResultValues.Builder copyUntil(ResultValues values, int index) {
+		ResultValues.Builder builder = ResultValues.builder(values.size());
+		for (int i = 0; i < index; i++) {
+			builder.put(values.getKey(i), values.getValue(i));
+		}
+		return builder;
+	}
+
+	@VisibleForTesting
+	synchronized int seriesCount() {
+		return states.size();
+	}
+}
@@ -0,0 +1,286 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.model.MBeanDescriptor;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.ResultValues;
+import com.googlecode.jmxtrans.model.RollupStatistic;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.naming.typename.TypeNameValue;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.googlecode.jmxtrans.model.RollupStatistic.AVG;
+import static com.googlecode.jmxtrans.model.RollupStatistic.COUNT;
+import static com.googlecode.jmxtrans.model.RollupStatistic.MAX;
+import static com.googlecode.jmxtrans.model.RollupStatistic.SUM;
+import static com.googlecode.jmxtrans.model.results.Rollups.MAX_INDEX;
+import static com.googlecode.jmxtrans.model.results.Rollups.MIN_INDEX;
+import static com.googlecode.jmxtrans.model.results.Rollups.SUM_INDEX;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Aggregates the numeric values of a query across all the servers running
+ * it (see {@link Query#getAggregateAlias()}), so that backends get a single
+ * series for a whole cluster.
+ * <p/>
+ * Values are grouped by aggregate alias, query alias (or object name),
+ * attribute, value key and the values of the selected type names, and
+ * aligned on windows of the run period of the servers. The first value of
+ * each server and series in a window is counted. A window is written, with
+ * the timestamp of its start, when a value of a later window is collected
+ * for the same group: values of a server lagging more than a run period
+ * behind are not counted.
+ * <p/>
+ * Percentiles are estimated across the servers, from a
+ * {@link QuantileSketch} of the values counted in the window of each
+ * aggregated series.
+ */
+@Singleton
+@ThreadSafe
+public class ClusterAggregates {
+
+	public static final int DEFAULT_WINDOW_SECONDS = 60;
+	public static final long DEFAULT_IDLE_MILLIS = MINUTES.toMillis(15);
+	public static final ImmutableSet<RollupStatistic> DEFAULT_STATISTICS = Sets.immutableEnumSet(SUM, AVG, MAX, COUNT);
+
+	private final long idleMillis;
+	/** Last window counted for each series of each server. */
+	@GuardedBy("this") private final SeriesStates servers = new SeriesStates();
+	/** Current window of each aggregated series, its {@link Aggregate} is attached. */
+	@GuardedBy("this") private final SeriesStates aggregates = new SeriesStates(3);
+	/** Aggregate servers by aggregate alias. */
+	private final ConcurrentMap<String, Server> aggregateServers = new ConcurrentHashMap<>();
+
+	@Inject
+	public ClusterAggregates() {
+		this(DEFAULT_IDLE_MILLIS);
+	}
+
+	@VisibleForTesting
+	ClusterAggregates(long idleMillis) {
+		this.idleMillis = idleMillis;
+	}
+
+	/**
+	 * Counts the results of a server, and returns the aggregates of the
+	 * windows they closed, to be written as {@link #aggregateServer}.
+	 */
+	@Nonnull
+	public ImmutableList<Result> add(@Nonnull Server server, @Nonnull Query query, @Nonnull ImmutableList<Result> results) {
+		if (query.getAggregateAlias() == null) return ImmutableList.of();
+
+		long windowMillis = SECONDS.toMillis(firstNonNull(server.getRunPeriodSeconds(), DEFAULT_WINDOW_SECONDS));
+		ImmutableSet<RollupStatistic> statistics = query.getAggregateStatistics().isEmpty()
+				? DEFAULT_STATISTICS
+				: query.getAggregateStatistics();
+		long serverQueryHash = SeriesStates.queryHash(server, query);
+		long aggregateQueryHash = SeriesStates.combine(SeriesStates.combine(17, query.getAggregateAlias()), queryAlias(query));
+
+		Map<Group, ResultValues.Builder> closed = new LinkedHashMap<>();
+		synchronized (this) {
+			long latest = Long.MIN_VALUE;
+			for (Result result : results) {
+				add(serverQueryHash, aggregateQueryHash, query, result, windowMillis, statistics, closed);
+				latest = Math.max(latest, result.getEpoch());
+			}
+			long idle = Math.max(idleMillis, 2 * windowMillis);
+			servers.evictIdle(latest, idle);
+			aggregates.evictIdle(latest, idle);
+		}
+
+		ImmutableList.Builder<Result> written = ImmutableList.builder();
+		for (Map.Entry<Group, ResultValues.Builder> entry : closed.entrySet()) {
+			Group group = entry.getKey();
+			written.add(new Result(group.epoch, group.attributeName, group.descriptor, entry.getValue().build()));
+		}
+		return written.build();
+	}
+
+	/**
+	 * The server aggregates are written as: named by the aggregate alias of
+	 * the query, for the host as well, without the port, url or process of
+	 * any member. The same instance is returned for an alias, whichever
+	 * member closed the window, as writers cache names per server instance.
+	 */
+	@Nonnull
+	public Server aggregateServer(@Nonnull Server server, @Nonnull Query query) {
+		String alias = query.getAggregateAlias();
+		Server aggregateServer = aggregateServers.get(alias);
+		if (aggregateServer != null) return aggregateServer;
+		Server created = Server.builder(server)
+				.setAlias(alias)
+				.setHost(alias)
+				.setPort(null)
+				.setUrl(null)
+				.setPid(null)
+				.setMainClass(null)
+				.setSystemProperty(null)
+				.setUsername(null)
+				.setPassword(null)
+				.setLocal(false)
+				.clearQueries()
+				.build();
+		aggregateServer = aggregateServers.putIfAbsent(alias, created);
+		return aggregateServer != null ? aggregateServer : created;
+	}
+
+	@GuardedBy("this")
+	private void add(
+			long serverQueryHash, long aggregateQueryHash, Query query, Result result, long windowMillis,
+			ImmutableSet<RollupStatistic> statistics, Map<Group, ResultValues.Builder> closed) {
+		long epoch = result.getEpoch();
+		long window = epoch / windowMillis;
+		String typeName = selectTypeNames(query, result.getTypeName());
+		long serverHash = SeriesStates.resultHash(serverQueryHash, result);
+		long aggregateHash = SeriesStates.combine(SeriesStates.combine(aggregateQueryHash,
+				result.getAttributeName()), typeName);
+		boolean quantiles = Rollups.hasQuantiles(statistics);
+		Group group = null;
+
+		ResultValues values = result.getResultValues();
+		for (int i = 0; i < values.size(); i++) {
+			if (!values.isNumber(i)) continue;
+			String key = values.getKey(i);
+
+			long serverSeries = SeriesStates.combine(serverHash, key);
+			int slot = servers.find(serverSeries);
+			if (slot >= 0 && servers.value(slot) >= window) continue;
+			servers.put(serverSeries, SeriesStates.INTEGRAL, window, epoch);
+
+			long series = SeriesStates.combine(aggregateHash, key);
+			double value = values.getDouble(i);
+			boolean integral = values.isIntegral(i);
+			slot = aggregates.find(series);
+			if (slot >= 0) {
+				long aggregateWindow = aggregates.value(slot);
+				if (window < aggregateWindow) continue;
+				if (window == aggregateWindow) {
+					boolean stillIntegral = integral && aggregates.kind(slot) == SeriesStates.INTEGRAL;
+					double min = Math.min(aggregates.statistic(slot, MIN_INDEX), value);
+					double max = Math.max(aggregates.statistic(slot, MAX_INDEX), value);
+					double sum = aggregates.statistic(slot, SUM_INDEX) + value;
+					slot = aggregates.put(series, stillIntegral ? SeriesStates.INTEGRAL : SeriesStates.FLOATING,
+							window, epoch, aggregates.count(slot) + 1);
+					aggregates.statistic(slot, MIN_INDEX, min);
+					aggregates.statistic(slot, MAX_INDEX, max);
+					aggregates.statistic(slot, SUM_INDEX, sum);
+					QuantileSketch sketch = ((Aggregate) aggregates.attachment(slot)).sketch;
+					// the window may have started before percentiles were configured
+					if (quantiles && sketch != null) sketch.add(value);
+					continue;
+				}
+				Aggregate aggregate = (Aggregate) aggregates.attachment(slot);
+				Group closedGroup = aggregate.group.at(aggregateWindow * windowMillis);
+				ResultValues.Builder builder = closed.get(closedGroup);
+				if (builder == null) {
+					builder = ResultValues.builder(values.size() * statistics.size());
+					closed.put(closedGroup, builder);
+				}
+				Rollups.write(aggregates, builder, slot, key, statistics, aggregate.sketch);
+			}
+
+			if (group == null) group = group(result, typeName);
+			Aggregate aggregate = slot >= 0 ? (Aggregate) aggregates.attachment(slot) : null;
+			slot = aggregates.put(series, integral ? SeriesStates.INTEGRAL : SeriesStates.FLOATING, window, epoch, 1);
+			QuantileSketch sketch = aggregate != null ? aggregate.sketch : null;
+			if (quantiles) {
+				if (sketch == null) sketch = new QuantileSketch();
+				sketch.clear();
+				sketch.add(value);
+			}
+			aggregates.attach(slot, new Aggregate(group, quantiles ? sketch : null));
+			aggregates.statistic(slot, MIN_INDEX, value);
+			aggregates.statistic(slot, MAX_INDEX, value);
+			aggregates.statistic(slot, SUM_INDEX, value);
+		}
+	}
+
+	private static Group group(Result result, String typeName) {
+		MBeanDescriptor descriptor = result.getDescriptor();
+		return new Group(0, result.getAttributeName(), MBeanDescriptor.of(
+				descriptor.getClassName(), descriptor.getObjDomain(), typeName, descriptor.getKeyAlias()));
+	}
+
+	private static String queryAlias(Query query) {
+		return query.getResultAlias() != null ? query.getResultAlias() : query.getObjectName().getCanonicalName();
+	}
+
+	/** The type name of the aggregate: only the selected type names, in the order of the query. */
+	private static String selectTypeNames(Query query, String typeName) {
+		Map<String, String> values = TypeNameValue.extractMap(typeName);
+		StringBuilder selected = new StringBuilder();
+		for (String name : query.getAggregateTypeNames()) {
+			String value = values.get(name);
+			if (value == null) continue;
+			if (selected.length() > 0) selected.append(',');
+			selected.append(name).append('=').append(value);
+		}
+		return selected.toString();
+	}
+
+	@VisibleForTesting
+	synchronized int seriesCount() {
+		return aggregates.size();
+	}
+
+	/** State of an aggregated series, besides its statistics. */
+	@RequiredArgsConstructor
+	private static final class Aggregate {
+		private final Group group;
+		/** Values of the current window, when percentiles are written. */
+		@Nullable private final QuantileSketch sketch;
+	}
+
+	/** Values of an aggregate written in the same result. */
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	private static final class Group {
+		private final long epoch;
+		private final String attributeName;
+		private final MBeanDescriptor descriptor;
+
+		Group at(long epoch) {
+			return new Group(epoch, attributeName, descriptor);
+		}
+	}
+}
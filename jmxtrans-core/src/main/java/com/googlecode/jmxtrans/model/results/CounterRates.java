@@ -0,0 +1,143 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.ResultValues;
+import com.googlecode.jmxtrans.model.Server;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Replaces the values of counter attributes (see {@link Query#getRates()})
+ * by their rate of change per second, so that backends do not have to
+ * derive them at query time.
+ * <p/>
+ * The previous value and timestamp of each series are kept in primitive
+ * arrays, keyed by a 64 bits hash of the server, query, MBean, attribute
+ * and value key. The first sample of a series only initializes its state.
+ * A counter going backwards is considered reset (the JVM restarted for
+ * instance) and counted from zero. Series which are not seen for
+ * {@link #DEFAULT_IDLE_MILLIS} are forgotten.
+ */
+@Singleton
+@ThreadSafe
+public class CounterRates {
+
+	public static final long DEFAULT_IDLE_MILLIS = MINUTES.toMillis(15);
+
+	private final long idleMillis;
+	@GuardedBy("this") private final SeriesStates states = new SeriesStates();
+
+	@Inject
+	public CounterRates() {
+		this(DEFAULT_IDLE_MILLIS);
+	}
+
+	@VisibleForTesting
+	CounterRates(long idleMillis) {
+		this.idleMillis = idleMillis;
+	}
+
+	@Nonnull
+	public ImmutableList<Result> derive(@Nonnull Server server, @Nonnull Query query, @Nonnull ImmutableList<Result> results) {
+		if (query.getRates().isEmpty()) return results;
+
+		long queryHash = SeriesStates.queryHash(server, query);
+		ImmutableList.Builder<Result> derived = ImmutableList.builder();
+		synchronized (this) {
+			long latest = Long.MIN_VALUE;
+			for (Result result : results) {
+				if (!query.getRates().contains(result.getAttributeName())) {
+					derived.add(result);
+					continue;
+				}
+				Result rates = rates(queryHash, result);
+				if (rates != null) derived.add(rates);
+				latest = Math.max(latest, result.getEpoch());
+			}
+			states.evictIdle(latest, idleMillis);
+		}
+		return derived.build();
+	}
+
+	@VisibleForTesting
+	synchronized int seriesCount() {
+		return states.size();
+	}
+
+	/** The result with rates instead of counters, or null if no rate can be computed yet. */
+	@GuardedBy("this")
+	@Nullable
+	private Result rates(long queryHash, Result result) {
+		long resultHash = SeriesStates.resultHash(queryHash, result);
+		long epoch = result.getEpoch();
+
+		ResultValues values = result.getResultValues();
+		ResultValues.Builder rates = ResultValues.builder(values.size());
+		int count = 0;
+		for (int i = 0; i < values.size(); i++) {
+			String key = values.getKey(i);
+			if (!values.isNumber(i)) {
+				rates.put(key, values.getValue(i));
+				count++;
+				continue;
+			}
+			if (!values.isValidNumber(i)) continue;
+
+			long hash = SeriesStates.combine(resultHash, key);
+			byte kind = values.isIntegral(i) ? SeriesStates.INTEGRAL : SeriesStates.FLOATING;
+			long value = kind == SeriesStates.INTEGRAL ? values.getLong(i) : Double.doubleToLongBits(values.getDouble(i));
+			int slot = states.find(hash);
+			if (slot >= 0 && states.kind(slot) == kind) {
+				long elapsed = epoch - states.epoch(slot);
+				// same or older sample, nothing to derive
+				if (elapsed <= 0) continue;
+				rates.putDouble(key, delta(kind, states.value(slot), value) * 1000d / elapsed);
+				count++;
+			}
+			states.put(hash, kind, value, epoch);
+		}
+		if (count == 0) return null;
+		return new Result(epoch, result.getAttributeName(), result.getDescriptor(), rates.build());
+	}
+
+	private static double delta(byte kind, long previous, long current) {
+		if (kind == SeriesStates.INTEGRAL) {
+			return current >= previous ? current - previous : current;
+		}
+		double previousValue = Double.longBitsToDouble(previous);
+		double currentValue = Double.longBitsToDouble(current);
+		return currentValue >= previousValue ? currentValue - previousValue : currentValue;
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.DerivedExpression;
+import com.googlecode.jmxtrans.model.MBeanDescriptor;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.ResultValues;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds the values of the {@link Query#getDerived() derived} expressions of
+ * a query to its results.
+ * <p/>
+ * Expressions are evaluated for each MBean, over the values of its results
+ * from the same collection, and written as a result named after the
+ * expression, with a single value of the same name. An expression is
+ * skipped when one of its variables has no numeric value, or when its value
+ * is NaN or infinite (a division by zero).
+ */
+@ThreadSafe
+public final class DerivedMetrics {
+
+	private DerivedMetrics() {}
+
+	@Nonnull
+	public static ImmutableList<Result> derive(@Nonnull Query query, @Nonnull ImmutableList<Result> results) {
+		if (query.getDerived().isEmpty() || results.isEmpty()) return results;
+
+		Map<MBeanDescriptor, List<Result>> byMBean = new LinkedHashMap<>();
+		for (Result result : results) {
+			List<Result> mbeanResults = byMBean.get(result.getDescriptor());
+			if (mbeanResults == null) {
+				mbeanResults = new ArrayList<>();
+				byMBean.put(result.getDescriptor(), mbeanResults);
+			}
+			mbeanResults.add(result);
+		}
+
+		ImmutableList.Builder<Result> derived = ImmutableList.builder();
+		derived.addAll(results);
+		for (Map.Entry<MBeanDescriptor, List<Result>> mbean : byMBean.entrySet()) {
+			for (Map.Entry<String, DerivedExpression> expression : query.getDerived().entrySet()) {
+				Result result = evaluate(expression.getKey(), expression.getValue(), mbean.getKey(), mbean.getValue());
+				if (result != null) derived.add(result);
+			}
+		}
+		return derived.build();
+	}
+
+	@Nullable
+	private static Result evaluate(String name, DerivedExpression expression, MBeanDescriptor descriptor, List<Result> results) {
+		ImmutableList<String> variables = expression.getVariables();
+		double[] values = new double[variables.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = valueOf(variables.get(i), results);
+			if (Double.isNaN(values[i])) return null;
+		}
+
+		double value = expression.evaluate(values);
+		if (Double.isNaN(value) || Double.isInfinite(value)) return null;
+
+		long epoch = Long.MIN_VALUE;
+		for (Result result : results) {
+			epoch = Math.max(epoch, result.getEpoch());
+		}
+		return new Result(epoch, name, descriptor, ResultValues.builder(1).putDouble(name, value).build());
+	}
+
+	/**
+	 * Finds the value of a variable, either an attribute with a value of the
+	 * same name or an attribute and a value key separated by a dot. NaN if
+	 * the results have no such numeric value.
+	 */
+	static double valueOf(String variable, List<Result> results) {
+		for (Result result : results) {
+			String attributeName = result.getAttributeName();
+			if (attributeName == null) continue;
+			ResultValues resultValues = result.getResultValues();
+			int valueIndex = -1;
+			if (variable.equals(attributeName)) {
+				valueIndex = resultValues.indexOf(variable);
+			} else if (variable.length() > attributeName.length()
+					&& variable.charAt(attributeName.length()) == '.'
+					&& variable.startsWith(attributeName)) {
+				valueIndex = resultValues.indexOf(variable.substring(attributeName.length() + 1));
+			}
+			if (valueIndex >= 0 && resultValues.isNumber(valueIndex)) {
+				return resultValues.getDouble(valueIndex);
+			}
+		}
+		return Double.NaN;
+	}
+}
@@ -0,0 +1,197 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Quantile sketch with a relative accuracy guarantee and a fixed memory
+ * footprint, whatever the number of values added.
+ * <p/>
+ * Values are counted in buckets growing exponentially ({@code gamma^i}), so
+ * that any value of a bucket is within the relative accuracy of the value
+ * reported for it. A fixed number of contiguous buckets is kept for
+ * positive values, and as many for negative values once one is added: when
+ * values span more buckets than that, the lowest buckets are collapsed,
+ * which only affects the accuracy of the lowest quantiles.
+ */
+@NotThreadSafe
+public final class QuantileSketch {
+
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.02;
+	public static final int DEFAULT_MAX_BUCKETS = 512;
+
+	/** Values closer to zero are counted as zero. */
+	private static final double MIN_INDEXABLE = 1e-9;
+
+	private final double gamma;
+	private final double inverseLogGamma;
+	private final int maxBuckets;
+
+	private final Store positive;
+	/** Allocated with the first negative value. */
+	private Store negative;
+	private long zeroCount;
+	private long count;
+
+	public QuantileSketch() {
+		this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+	}
+
+	public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+		checkArgument(relativeAccuracy > 0 && relativeAccuracy < 1, "Relative accuracy must be between 0 and 1");
+		checkArgument(maxBuckets > 0, "At least one bucket is needed");
+		this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		this.inverseLogGamma = 1 / Math.log(gamma);
+		this.maxBuckets = maxBuckets;
+		this.positive = new Store(maxBuckets);
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public void add(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) return;
+		if (value > MIN_INDEXABLE) {
+			positive.add(index(value), 1);
+		} else if (value < -MIN_INDEXABLE) {
+			negative().add(index(-value), 1);
+		} else {
+			zeroCount++;
+		}
+		count++;
+	}
+
+	/** Forgets all values, keeping the memory allocated. */
+	public void clear() {
+		positive.clear();
+		if (negative != null) negative.clear();
+		zeroCount = 0;
+		count = 0;
+	}
+
+	/** Estimated value of the given quantile (between 0 and 1), NaN if the sketch is empty. */
+	public double quantile(double quantile) {
+		checkArgument(quantile >= 0 && quantile <= 1, "Quantile must be between 0 and 1");
+		if (count == 0) return Double.NaN;
+
+		long rank = (long) (quantile * (count - 1));
+		if (negative != null) {
+			if (rank < negative.total) return -value(negative.indexOfRank(negative.total - 1 - rank));
+			rank -= negative.total;
+		}
+		if (rank < zeroCount) return 0;
+		return value(positive.indexOfRank(rank - zeroCount));
+	}
+
+	private Store negative() {
+		if (negative == null) negative = new Store(maxBuckets);
+		return negative;
+	}
+
+	private int index(double value) {
+		return (int) Math.ceil(Math.log(value) * inverseLogGamma);
+	}
+
+	/** The value reported for a bucket, within the relative accuracy of all its values. */
+	private double value(int index) {
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+
+	/** Counts of a sliding range of contiguous buckets. */
+	private static final class Store {
+		private final int[] counts;
+		/** Index of the bucket counted in counts[0]. */
+		private int offset;
+		private long total;
+
+		Store(int size) {
+			counts = new int[size];
+		}
+
+		void add(int index, int count) {
+			if (total == 0) {
+				// leave room on both sides of the first value
+				offset = index - counts.length / 2;
+			} else if (index < offset) {
+				if (highestIndex() - index < counts.length) {
+					shift(index);
+				} else {
+					index = offset;
+				}
+			} else if (index >= offset + counts.length) {
+				shift(index - counts.length + 1);
+			}
+			counts[index - offset] += count;
+			total += count;
+		}
+
+		void clear() {
+			Arrays.fill(counts, 0);
+			total = 0;
+		}
+
+		/** Index of the bucket holding the value of the given rank (0 for the lowest). */
+		int indexOfRank(long rank) {
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen > rank) return offset + i;
+			}
+			return highestIndex();
+		}
+
+		private int highestIndex() {
+			for (int i = counts.length - 1; i >= 0; i--) {
+				if (counts[i] != 0) return offset + i;
+			}
+			return offset;
+		}
+
+		/**
+		 * Moves the range of buckets to start at the given index. Buckets
+		 * which do not fit anymore are collapsed into the lowest one.
+		 */
+		private void shift(int newOffset) {
+			int shift = newOffset - offset;
+			int length = counts.length;
+			if (shift > 0) {
+				int collapsed = 0;
+				for (int i = 0; i < Math.min(shift, length); i++) {
+					collapsed += counts[i];
+				}
+				if (shift < length) System.arraycopy(counts, shift, counts, 0, length - shift);
+				Arrays.fill(counts, Math.max(length - shift, 0), length, 0);
+				counts[0] += collapsed;
+			} else if (shift < 0) {
+				System.arraycopy(counts, 0, counts, -shift, length + shift);
+				Arrays.fill(counts, 0, -shift, 0);
+			}
+			offset = newOffset;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * What happens to results between their collection and the output writers:
+ * they are normalized, the number of series is bounded, counters are turned
+ * into rates, derived values are computed, values are rolled up over time
+ * windows and unchanged values are dropped, as configured on each query.
+ * Stages keep their state across runs, which is why there is one pipeline
+ * per injector.
+ * <p/>
+ * The stages run in two steps, {@link #prepare} and {@link #reduce}, so
+ * that results can also be used in between, at the collection rate.
+ */
+@Singleton
+@ThreadSafe
+public class ResultPipeline {
+
+	@Nonnull private final CardinalityGuard cardinalityGuard;
+	@Nonnull private final CounterRates counterRates;
+	@Nonnull private final Rollups rollups;
+	@Nonnull private final ChangeFilter changeFilter;
+
+	@Inject
+	public ResultPipeline(
+			@Nonnull CardinalityGuard cardinalityGuard,
+			@Nonnull CounterRates counterRates,
+			@Nonnull Rollups rollups,
+			@Nonnull ChangeFilter changeFilter) {
+		this.cardinalityGuard = cardinalityGuard;
+		this.counterRates = counterRates;
+		this.rollups = rollups;
+		this.changeFilter = changeFilter;
+	}
+
+	@Nonnull
+	public static ResultPipeline create() {
+		return new ResultPipeline(new CardinalityGuard(), new CounterRates(), new Rollups(), new ChangeFilter());
+	}
+
+	@Nonnull
+	public ImmutableList<Result> process(@Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) {
+		return reduce(server, query, prepare(server, query, results));
+	}
+
+	/** Normalizes results, bounds their series, computes rates and derived values. */
+	@Nonnull
+	public ImmutableList<Result> prepare(@Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) {
+		ImmutableList<Result> processed = ResultNormalizer.normalize(results);
+		// before stages keeping a state per series
+		processed = cardinalityGuard.guard(server, query, processed);
+		processed = counterRates.derive(server, query, processed);
+		return DerivedMetrics.derive(query, processed);
+	}
+
+	/** Rolls up prepared results and drops unchanged ones, which may leave fewer results than collected. */
+	@Nonnull
+	public ImmutableList<Result> reduce(@Nonnull Server server, @Nonnull Query query, @Nonnull ImmutableList<Result> prepared) {
+		return changeFilter.filter(server, query, rollups.rollup(server, query, prepared));
+	}
+}
@@ -23,7 +23,6 @@
 package com.googlecode.jmxtrans.model.results;
 
 import com.google.common.base.Function;
-import com.google.common.collect.Maps;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.results.ValueTransformer;
 
@@ -40,18 +39,13 @@ public class ResultValuesTransformer implements Function<Result, Result> {
 	@Nullable
 	@Override
 	public Result apply(@Nullable Result input) {
-		if (input == null) {
-			return null;
+		if (input == null || valueTransformer instanceof IdentityValueTransformer) {
+			return input;
 		}
-		return new Result(
-				input.getEpoch(),
-				input.getAttributeName(),
-				input.getClassName(),
-				input.getObjDomain(),
-				input.getKeyAlias(),
-				input.getTypeName(),
-				Maps.transformValues(input.getValues(), valueTransformer)
-		);
+		if (valueTransformer instanceof BooleanAsNumberValueTransformer) {
+			return input.transformNonNumbers(valueTransformer);
+		}
+		return input.transformValues(valueTransformer);
 	}
 
 }
@@ -0,0 +1,250 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.ResultValues;
+import com.googlecode.jmxtrans.model.RollupStatistic;
+import com.googlecode.jmxtrans.model.Server;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.googlecode.jmxtrans.model.RollupStatistic.COUNT;
+import static com.googlecode.jmxtrans.model.RollupStatistic.LAST;
+import static com.googlecode.jmxtrans.model.RollupStatistic.MAX;
+import static com.googlecode.jmxtrans.model.RollupStatistic.MIN;
+import static com.googlecode.jmxtrans.model.RollupStatistic.SUM;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Aggregates the numeric values of rolled up queries (see
+ * {@link Query#getRollupSeconds()}) over windows aligned on multiples of
+ * the window length, and writes a single point per window and series.
+ * <p/>
+ * The minimum, maximum, sum, count and last value of the current window of
+ * each series are kept in primitive arrays. A window is written, with the
+ * timestamp of its start, when the first sample of a later window is
+ * collected. Values which are not numbers cannot be aggregated and are not
+ * written. Integral series keep integral minimum, maximum, sum and last
+ * values until a floating point sample is collected.
+ * <p/>
+ * When percentiles are requested, each series also gets a
+ * {@link QuantileSketch}, cleared and reused for each window so that its
+ * memory does not depend on the number of samples.
+ */
+@Singleton
+@ThreadSafe
+public class Rollups {
+
+	public static final long DEFAULT_IDLE_MILLIS = MINUTES.toMillis(15);
+	public static final ImmutableSet<RollupStatistic> DEFAULT_STATISTICS = Sets.immutableEnumSet(MIN, MAX, SUM, COUNT, LAST);
+
+	static final int MIN_INDEX = 0;
+	static final int MAX_INDEX = 1;
+	static final int SUM_INDEX = 2;
+
+	private final long idleMillis;
+	@GuardedBy("this") private final SeriesStates states = new SeriesStates(3);
+
+	@Inject
+	public Rollups() {
+		this(DEFAULT_IDLE_MILLIS);
+	}
+
+	@VisibleForTesting
+	Rollups(long idleMillis) {
+		this.idleMillis = idleMillis;
+	}
+
+	@Nonnull
+	public ImmutableList<Result> rollup(@Nonnull Server server, @Nonnull Query query, @Nonnull ImmutableList<Result> results) {
+		Integer rollupSeconds = query.getRollupSeconds();
+		if (rollupSeconds == null || rollupSeconds <= 0) return results;
+
+		long windowMillis = SECONDS.toMillis(rollupSeconds);
+		ImmutableSet<RollupStatistic> statistics = query.getRollupStatistics().isEmpty()
+				? DEFAULT_STATISTICS
+				: query.getRollupStatistics();
+		long queryHash = SeriesStates.queryHash(server, query);
+		ImmutableList.Builder<Result> windows = ImmutableList.builder();
+		synchronized (this) {
+			long latest = Long.MIN_VALUE;
+			for (Result result : results) {
+				Result window = rollup(queryHash, result, windowMillis, statistics);
+				if (window != null) windows.add(window);
+				latest = Math.max(latest, result.getEpoch());
+			}
+			// a series has to survive at least one full window without samples
+			states.evictIdle(latest, Math.max(idleMillis, 2 * windowMillis));
+		}
+		return windows.build();
+	}
+
+	/** The statistics of the windows closed by this result, or null if none was. */
+	@GuardedBy("this")
+	@Nullable
+	private Result rollup(long queryHash, Result result, long windowMillis, ImmutableSet<RollupStatistic> statistics) {
+		long resultHash = SeriesStates.resultHash(queryHash, result);
+		long epoch = result.getEpoch();
+		long window = epoch / windowMillis;
+		boolean quantiles = hasQuantiles(statistics);
+
+		ResultValues values = result.getResultValues();
+		ResultValues.Builder closed = null;
+		long closedEpoch = 0;
+		for (int i = 0; i < values.size(); i++) {
+			if (!values.isNumber(i)) continue;
+
+			long hash = SeriesStates.combine(resultHash, values.getKey(i));
+			boolean integral = values.isIntegral(i);
+			int slot = states.find(hash);
+			if (slot >= 0) {
+				long previousEpoch = states.epoch(slot);
+				if (epoch <= previousEpoch) continue;
+				if (previousEpoch / windowMillis == window) {
+					accumulate(slot, hash, values, i, epoch, quantiles);
+					continue;
+				}
+				if (closed == null) {
+					closed = ResultValues.builder(values.size() * statistics.size());
+					closedEpoch = previousEpoch / windowMillis * windowMillis;
+				}
+				write(states, closed, slot, values.getKey(i), statistics, (QuantileSketch) states.attachment(slot));
+			}
+			slot = integral
+					? states.put(hash, SeriesStates.INTEGRAL, values.getLong(i), epoch, 1)
+					: states.put(hash, SeriesStates.FLOATING, Double.doubleToLongBits(values.getDouble(i)), epoch, 1);
+			double value = values.getDouble(i);
+			states.statistic(slot, MIN_INDEX, value);
+			states.statistic(slot, MAX_INDEX, value);
+			states.statistic(slot, SUM_INDEX, value);
+			if (quantiles) {
+				QuantileSketch sketch = (QuantileSketch) states.attachment(slot);
+				if (sketch == null) {
+					sketch = new QuantileSketch();
+					states.attach(slot, sketch);
+				}
+				sketch.clear();
+				sketch.add(value);
+			}
+		}
+		if (closed == null) return null;
+		return new Result(closedEpoch, result.getAttributeName(), result.getDescriptor(), closed.build());
+	}
+
+	@GuardedBy("this")
+	private void accumulate(int slot, long hash, ResultValues values, int index, long epoch, boolean quantiles) {
+		double value = values.getDouble(index);
+		double min = Math.min(states.statistic(slot, MIN_INDEX), value);
+		double max = Math.max(states.statistic(slot, MAX_INDEX), value);
+		double sum = states.statistic(slot, SUM_INDEX) + value;
+		int count = states.count(slot) + 1;
+
+		if (states.kind(slot) == SeriesStates.INTEGRAL && values.isIntegral(index)) {
+			slot = states.put(hash, SeriesStates.INTEGRAL, values.getLong(index), epoch, count);
+		} else {
+			slot = states.put(hash, SeriesStates.FLOATING, Double.doubleToLongBits(value), epoch, count);
+		}
+		states.statistic(slot, MIN_INDEX, min);
+		states.statistic(slot, MAX_INDEX, max);
+		states.statistic(slot, SUM_INDEX, sum);
+		if (quantiles) {
+			QuantileSketch sketch = (QuantileSketch) states.attachment(slot);
+			// the window may have started before percentiles were configured
+			if (sketch != null) sketch.add(value);
+		}
+	}
+
+	/**
+	 * Writes the statistics of a series, from its min, max and sum
+	 * statistics (at {@link #MIN_INDEX}, {@link #MAX_INDEX} and
+	 * {@link #SUM_INDEX}), count, last value and quantile sketch.
+	 */
+	static void write(
+			SeriesStates states, ResultValues.Builder closed, int slot, String key,
+			ImmutableSet<RollupStatistic> statistics, @Nullable QuantileSketch sketch) {
+		boolean integral = states.kind(slot) == SeriesStates.INTEGRAL;
+		for (RollupStatistic statistic : statistics) {
+			String statisticKey = key + statistic.suffix();
+			switch (statistic) {
+				case MIN:
+					putNumber(closed, statisticKey, states.statistic(slot, MIN_INDEX), integral);
+					break;
+				case MAX:
+					putNumber(closed, statisticKey, states.statistic(slot, MAX_INDEX), integral);
+					break;
+				case SUM:
+					putNumber(closed, statisticKey, states.statistic(slot, SUM_INDEX), integral);
+					break;
+				case COUNT:
+					closed.putLong(statisticKey, states.count(slot));
+					break;
+				case LAST:
+					if (integral) {
+						closed.putLong(statisticKey, states.value(slot));
+					} else {
+						closed.putDouble(statisticKey, Double.longBitsToDouble(states.value(slot)));
+					}
+					break;
+				case AVG:
+					closed.putDouble(statisticKey, states.statistic(slot, SUM_INDEX) / states.count(slot));
+					break;
+				default:
+					if (sketch != null && sketch.count() > 0) {
+						closed.putDouble(statisticKey, sketch.quantile(statistic.quantile()));
+					}
+			}
+		}
+	}
+
+	static boolean hasQuantiles(ImmutableSet<RollupStatistic> statistics) {
+		for (RollupStatistic statistic : statistics) {
+			if (statistic.isQuantile()) return true;
+		}
+		return false;
+	}
+
+	private static void putNumber(ResultValues.Builder closed, String key, double value, boolean integral) {
+		if (integral) {
+			closed.putLong(key, (long) value);
+		} else {
+			closed.putDouble(key, value);
+		}
+	}
+
+	@VisibleForTesting
+	synchronized int seriesCount() {
+		return states.size();
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.googlecode.jmxtrans.model.MBeanDescriptor;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Open addressing (linear probing) map from a 64 bits series hash to the
+ * state of the series (a kind, a value, a count, the timestamp of its
+ * last sample and optionally a fixed number of statistics), stored in
+ * primitive arrays. An object can also be attached to each series.
+ */
+@NotThreadSafe
+final class SeriesStates {
+
+	static final byte EMPTY = 0;
+	static final byte INTEGRAL = 1;
+	static final byte FLOATING = 2;
+	static final byte OTHER = 3;
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] hashes;
+	/** Raw bits of the last value: a long for integral values, double bits otherwise. */
+	private long[] values;
+	private long[] epochs;
+	private int[] counts;
+	private byte[] kinds;
+	/** {@link #width} statistics per slot. */
+	private double[] statistics;
+	private final int width;
+	private Object[] attachments;
+	private int size;
+	private long lastEviction = Long.MIN_VALUE;
+
+	SeriesStates() {
+		this(0);
+	}
+
+	SeriesStates(int width) {
+		this.width = width;
+		allocate(MIN_CAPACITY);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/** The slot of the series, or a negative value if it is not known. */
+	int find(long hash) {
+		int mask = kinds.length - 1;
+		for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+			if (kinds[slot] == EMPTY) return -1;
+			if (hashes[slot] == hash) return slot;
+		}
+	}
+
+	byte kind(int slot) {
+		return kinds[slot];
+	}
+
+	long value(int slot) {
+		return values[slot];
+	}
+
+	long epoch(int slot) {
+		return epochs[slot];
+	}
+
+	int count(int slot) {
+		return counts[slot];
+	}
+
+	double statistic(int slot, int index) {
+		return statistics[slot * width + index];
+	}
+
+	void statistic(int slot, int index, double value) {
+		statistics[slot * width + index] = value;
+	}
+
+	void put(long hash, byte kind, long value, long epoch) {
+		put(hash, kind, value, epoch, 0);
+	}
+
+	@Nullable
+	Object attachment(int slot) {
+		return attachments[slot];
+	}
+
+	void attach(int slot, @Nullable Object attachment) {
+		attachments[slot] = attachment;
+	}
+
+	/** Stores the state of the series, the returned slot is valid until the next put. */
+	int put(long hash, byte kind, long value, long epoch, int count) {
+		if ((size + 1) * 2 > kinds.length) rehash(kinds.length * 2, Long.MIN_VALUE);
+		int mask = kinds.length - 1;
+		int slot = mix(hash) & mask;
+		while (kinds[slot] != EMPTY && hashes[slot] != hash) {
+			slot = (slot + 1) & mask;
+		}
+		if (kinds[slot] == EMPTY) size++;
+		hashes[slot] = hash;
+		kinds[slot] = kind;
+		values[slot] = value;
+		epochs[slot] = epoch;
+		counts[slot] = count;
+		return slot;
+	}
+
+	/**
+	 * Forgets the series without samples for the given time, at most once
+	 * per idle period. Time follows the timestamps of the samples, not the
+	 * local clock.
+	 */
+	void evictIdle(long now, long idleMillis) {
+		if (now < lastEviction + idleMillis) return;
+		evictOlderThan(now - idleMillis);
+		lastEviction = now;
+	}
+
+	/** Forgets the series not updated since the given time. */
+	void evictOlderThan(long epoch) {
+		int capacity = MIN_CAPACITY;
+		int live = 0;
+		for (int slot = 0; slot < kinds.length; slot++) {
+			if (kinds[slot] != EMPTY && epochs[slot] >= epoch) live++;
+		}
+		while (live * 2 > capacity) capacity *= 2;
+		rehash(capacity, epoch);
+	}
+
+	private void rehash(int capacity, long minEpoch) {
+		long[] oldHashes = hashes;
+		long[] oldValues = values;
+		long[] oldEpochs = epochs;
+		int[] oldCounts = counts;
+		byte[] oldKinds = kinds;
+		double[] oldStatistics = statistics;
+		Object[] oldAttachments = attachments;
+		allocate(capacity);
+		for (int slot = 0; slot < oldKinds.length; slot++) {
+			if (oldKinds[slot] != EMPTY && oldEpochs[slot] >= minEpoch) {
+				int newSlot = put(oldHashes[slot], oldKinds[slot], oldValues[slot], oldEpochs[slot], oldCounts[slot]);
+				System.arraycopy(oldStatistics, slot * width, statistics, newSlot * width, width);
+				attachments[newSlot] = oldAttachments[slot];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		hashes = new long[capacity];
+		values = new long[capacity];
+		epochs = new long[capacity];
+		counts = new int[capacity];
+		kinds = new byte[capacity];
+		statistics = new double[capacity * width];
+		attachments = new Object[capacity];
+		size = 0;
+	}
+
+	static long serverHash(Server server) {
+		return combine(combine(combine(17, server.getHost()), server.getPort()), server.getAlias());
+	}
+
+	/** Hash of the server and query, combined with {@link #resultHash} for each result. */
+	static long queryHash(Server server, Query query) {
+		return combine(combine(serverHash(server),
+				query.getObjectName().getCanonicalName()), query.getResultAlias());
+	}
+
+	/** Hash of the result, combined with the key of each value to identify series. */
+	static long resultHash(long queryHash, Result result) {
+		MBeanDescriptor descriptor = result.getDescriptor();
+		return combine(combine(combine(combine(combine(queryHash,
+				descriptor.getClassName()), descriptor.getObjDomain()), descriptor.getTypeName()),
+				descriptor.getKeyAlias()), result.getAttributeName());
+	}
+
+	/**
+	 * Hashes the characters of the value into the 64 bits hash (FNV-1a over
+	 * UTF-16 chars, preceded by the length), so that values sharing their
+	 * 32 bits {@link String#hashCode()} still identify different series.
+	 */
+	static long combine(long hash, @Nullable String value) {
+		hash ^= value == null ? -1 : value.length();
+		hash *= 0x9e3779b97f4a7c15L;
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				hash ^= value.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+		}
+		return hash ^ (hash >>> 29);
+	}
+
+	private static int mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return (int) hash;
+	}
+
+	@Override
+	public String toString() {
+		return "SeriesStates(size=" + size + ", capacity=" + kinds.length + ")";
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.monitoring;
+
+import com.googlecode.jmxtrans.model.results.CardinalityGuard;
+
+import javax.annotation.Nonnull;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the counters of the {@link CardinalityGuard}: how many series are
+ * read, admitted, summed into other MBeans or dropped.
+ */
+public class ManagedCardinalityGuard implements CardinalityGuardMXBean {
+
+	@Nonnull private final CardinalityGuard guard;
+	private final ObjectName objectName;
+
+	public ManagedCardinalityGuard(@Nonnull CardinalityGuard guard) throws MalformedObjectNameException {
+		this.guard = guard;
+		this.objectName = new ObjectName("com.googlecode.jmxtrans:Type=CardinalityGuard");
+	}
+
+	@Override
+	public long getEstimatedSeries() {
+		return guard.getEstimatedSeries();
+	}
+
+	@Override
+	public long getAdmittedSeries() {
+		return guard.getAdmittedSeries();
+	}
+
+	@Override
+	public long getOtherSeries() {
+		return guard.getOtherSeries();
+	}
+
+	@Override
+	public long getDroppedSeries() {
+		return guard.getDroppedSeries();
+	}
+
+	@Override
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+}
@@ -23,7 +23,9 @@
 package com.googlecode.jmxtrans.monitoring;
 
 import com.google.common.base.MoreObjects;
+import com.googlecode.jmxtrans.connections.StormpotKeyedObjectPool;
 import lombok.Getter;
+import org.apache.commons.pool.KeyedObjectPool;
 import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 
 import javax.management.MalformedObjectNameException;
@@ -31,6 +33,12 @@ import javax.management.ObjectName;
 
 /**
  * The Class ManagedGenericKeyedObjectPool.
+ * <p/>
+ * Exposes either a {@link GenericKeyedObjectPool} or a
+ * {@link StormpotKeyedObjectPool}. For the latter, max active is the number
+ * of objects per key and min and max idle are not supported, as objects are
+ * allocated up to max active. Allocation counts are only tracked by the
+ * latter.
  *
  * @author marcos.lois
  */
@@ -43,7 +51,7 @@ public class ManagedGenericKeyedObjectPool implements ManagedGenericKeyedObjectP
 	@Getter private final String poolName;
 
 	/** The pool. */
-	private final GenericKeyedObjectPool pool;
+	private final KeyedObjectPool<?, ?> pool;
 
 	/**
 	 * The Constructor.
@@ -51,7 +59,12 @@ public class ManagedGenericKeyedObjectPool implements ManagedGenericKeyedObjectP
 	 * @param pool     the pool
 	 * @param poolName the pool name
 	 */
-	public ManagedGenericKeyedObjectPool(GenericKeyedObjectPool pool, String poolName) {
+	public ManagedGenericKeyedObjectPool(GenericKeyedObjectPool<?, ?> pool, String poolName) {
+		this.poolName = MoreObjects.firstNonNull(poolName, "Noname");
+		this.pool = pool;
+	}
+
+	public ManagedGenericKeyedObjectPool(StormpotKeyedObjectPool<?, ?> pool, String poolName) {
 		this.poolName = MoreObjects.firstNonNull(poolName, "Noname");
 		this.pool = pool;
 	}
@@ -76,22 +89,24 @@ public class ManagedGenericKeyedObjectPool implements ManagedGenericKeyedObjectP
 
 	@Override
 	public int getMaxActive() {
-		return pool.getMaxActive();
+		if (pool instanceof StormpotKeyedObjectPool) return stormpot().getMaxPerKey();
+		return generic().getMaxActive();
 	}
 
 	@Override
 	public int getMaxIdle() {
-		return pool.getMaxIdle();
+		return generic().getMaxIdle();
 	}
 
 	@Override
 	public long getMaxWait() {
-		return pool.getMaxWait();
+		if (pool instanceof StormpotKeyedObjectPool) return stormpot().getMaxWaitMillis();
+		return generic().getMaxWait();
 	}
 
 	@Override
 	public int getMinIdle() {
-		return pool.getMinIdle();
+		return generic().getMinIdle();
 	}
 
 	@Override
@@ -104,23 +119,54 @@ public class ManagedGenericKeyedObjectPool implements ManagedGenericKeyedObjectP
 		return pool.getNumIdle();
 	}
 
+	@Override
+	public int getNumKeys() {
+		if (pool instanceof StormpotKeyedObjectPool) return stormpot().getNumKeys();
+		return -1;
+	}
+
+	@Override
+	public long getAllocationCount() {
+		if (pool instanceof StormpotKeyedObjectPool) return stormpot().getAllocationCount();
+		return -1;
+	}
+
+	@Override
+	public long getFailedAllocationCount() {
+		if (pool instanceof StormpotKeyedObjectPool) return stormpot().getFailedAllocationCount();
+		return -1;
+	}
+
 	@Override
 	public void setMaxActive(int maxActive) {
-		this.pool.setMaxActive(maxActive);
+		if (pool instanceof StormpotKeyedObjectPool) stormpot().setMaxPerKey(maxActive);
+		else generic().setMaxActive(maxActive);
 	}
 
 	@Override
 	public void setMaxIdle(int maxIdle) {
-		this.pool.setMaxIdle(maxIdle);
+		generic().setMaxIdle(maxIdle);
 	}
 
 	@Override
 	public void setMinIdle(int maxIdle) {
-		this.pool.setMinIdle(maxIdle);
+		generic().setMinIdle(maxIdle);
 	}
 
 	@Override
 	public void setMaxWait(long maxWait) {
-		this.pool.setMaxWait(maxWait);
+		if (pool instanceof StormpotKeyedObjectPool) stormpot().setMaxWaitMillis(maxWait);
+		else generic().setMaxWait(maxWait);
+	}
+
+	private GenericKeyedObjectPool<?, ?> generic() {
+		if (!(pool instanceof GenericKeyedObjectPool)) {
+			throw new UnsupportedOperationException("Not supported by " + pool.getClass().getSimpleName());
+		}
+		return (GenericKeyedObjectPool<?, ?>) pool;
+	}
+
+	private StormpotKeyedObjectPool<?, ?> stormpot() {
+		return (StormpotKeyedObjectPool<?, ?>) pool;
 	}
 }
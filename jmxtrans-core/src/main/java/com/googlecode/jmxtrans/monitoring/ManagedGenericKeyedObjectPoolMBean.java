@@ -23,7 +23,8 @@
 package com.googlecode.jmxtrans.monitoring;
 
 /**
- * Managed attributes and operations of a {@link org.apache.commons.pool.impl.GenericKeyedObjectPool}.
+ * Managed attributes and operations of a {@link org.apache.commons.pool.impl.GenericKeyedObjectPool}
+ * or a {@link com.googlecode.jmxtrans.connections.StormpotKeyedObjectPool}.
  */
 public interface ManagedGenericKeyedObjectPoolMBean {
 
@@ -44,6 +45,15 @@ public interface ManagedGenericKeyedObjectPoolMBean {
 
 	int getNumIdle();
 
+	/** Number of keys having a pool of their own, -1 when not tracked. */
+	int getNumKeys();
+
+	/** Number of objects allocated so far, -1 when not tracked. */
+	long getAllocationCount();
+
+	/** Number of objects whose allocation failed so far, -1 when not tracked. */
+	long getFailedAllocationCount();
+
 	void setMaxActive(int maxActive);
 
 	void setMaxIdle(int maxIdle);
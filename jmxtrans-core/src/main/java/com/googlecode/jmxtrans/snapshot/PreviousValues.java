@@ -0,0 +1,76 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.snapshot;
+
+import lombok.EqualsAndHashCode;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The last value sent for each series of a connection, the reference of the
+ * delta encoding. Encoder and decoder keep the same state, so a series is
+ * identified by the dictionary ids of its names, which are identical on
+ * both sides.
+ * <p/>
+ * Values are kept as raw bits: the long value of integral numbers, the
+ * IEEE 754 bits of floating point numbers.
+ */
+@NotThreadSafe
+final class PreviousValues {
+
+	private final Map<Series, long[]> values = new HashMap<>();
+
+	/** The slot of a series, holding 0 when the series is seen for the first time. */
+	long[] slot(int query, int objDomain, int typeName, int attributeName, int key) {
+		Series series = new Series(query, objDomain, typeName, attributeName, key);
+		long[] slot = values.get(series);
+		if (slot == null) {
+			slot = new long[1];
+			values.put(series, slot);
+		}
+		return slot;
+	}
+
+	void clear() {
+		values.clear();
+	}
+
+	@EqualsAndHashCode
+	private static final class Series {
+		private final int query;
+		private final int objDomain;
+		private final int typeName;
+		private final int attributeName;
+		private final int key;
+
+		private Series(int query, int objDomain, int typeName, int attributeName, int key) {
+			this.query = query;
+			this.objDomain = objDomain;
+			this.typeName = typeName;
+			this.attributeName = attributeName;
+			this.key = key;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.snapshot;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.ERROR;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.SNAPSHOT;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.define;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.readFrame;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.readString;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.writeFrame;
+
+/**
+ * Central side of a connection to a snapshot agent. Each poll costs a single
+ * round trip, whatever the number of queries and MBeans.
+ * <p/>
+ * The connection is kept open between polls, as the delta and dictionary
+ * state lives as long as the connection. Any error closes it, the next poll
+ * reconnects and starts from a clean state.
+ */
+@ThreadSafe
+@ToString(of = {"host", "port"})
+public class SnapshotClient implements Closeable {
+
+	public static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+	public static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+
+	@Nonnull private final String host;
+	private final int port;
+	private final int connectTimeoutMs;
+	private final int readTimeoutMs;
+
+	@GuardedBy("this") private Socket socket;
+	@GuardedBy("this") private InputStream in;
+	@GuardedBy("this") private OutputStream out;
+	@GuardedBy("this") private byte[] definition;
+	@GuardedBy("this") private final SnapshotDecoder decoder = new SnapshotDecoder();
+
+	public SnapshotClient(@Nonnull String host, int port, int connectTimeoutMs, int readTimeoutMs) {
+		this.host = host;
+		this.port = port;
+		this.connectTimeoutMs = connectTimeoutMs;
+		this.readTimeoutMs = readTimeoutMs;
+	}
+
+	/**
+	 * Evaluates the queries on the agent. Queries are sent to the agent only
+	 * when they differ from the ones it already knows.
+	 *
+	 * @return the results of each query, in order, null for the queries that
+	 * failed on the agent.
+	 */
+	@Nonnull
+	public synchronized List<ImmutableList<Result>> poll(@Nonnull List<Query> queries) throws IOException {
+		try {
+			if (socket == null) connect();
+
+			ByteArrayOutputStream newDefinition = define(queries);
+			if (definition == null || !Arrays.equals(definition, newDefinition.toByteArray())) {
+				writeFrame(out, newDefinition);
+				definition = newDefinition.toByteArray();
+				decoder.reset();
+			}
+
+			writeFrame(out, SnapshotProtocol.poll());
+			ByteBuffer frame = readFrame(in);
+			byte type = frame.get();
+			if (type == ERROR) {
+				throw new IOException("Snapshot agent " + host + ":" + port + " failed: " + readString(frame));
+			}
+			if (type != SNAPSHOT) {
+				throw new IOException("Unexpected frame of type " + type + " from snapshot agent " + host + ":" + port);
+			}
+			return decoder.decode(frame, queries);
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private void connect() throws IOException {
+		Socket newSocket = new Socket();
+		try {
+			newSocket.setTcpNoDelay(true);
+			newSocket.setSoTimeout(readTimeoutMs);
+			newSocket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+			in = new BufferedInputStream(newSocket.getInputStream());
+			out = new BufferedOutputStream(newSocket.getOutputStream());
+			socket = newSocket;
+		} catch (IOException e) {
+			newSocket.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		definition = null;
+		decoder.reset();
+		if (socket == null) return;
+		try {
+			socket.close();
+		} finally {
+			socket = null;
+			in = null;
+			out = null;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.snapshot;
+
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+
+/**
+ * The {@link SnapshotClient} of each snapshot agent server, kept across runs
+ * so that connections and their encoding state are reused.
+ */
+@Singleton
+@ThreadSafe
+public class SnapshotClients {
+
+	private static final Logger log = LoggerFactory.getLogger(SnapshotClients.class);
+
+	private final ConcurrentMap<Server, SnapshotClient> clients = new ConcurrentHashMap<>();
+
+	@Nonnull
+	public SnapshotClient forServer(@Nonnull Server server) {
+		SnapshotClient client = clients.get(server);
+		if (client != null) return client;
+
+		client = new SnapshotClient(
+				server.getHost(),
+				Integer.parseInt(server.getPort()),
+				firstNonNull(server.getConnectTimeoutMs(), SnapshotClient.DEFAULT_CONNECT_TIMEOUT_MS),
+				firstNonNull(server.getReadTimeoutMs(), SnapshotClient.DEFAULT_READ_TIMEOUT_MS));
+		SnapshotClient existing = clients.putIfAbsent(server, client);
+		return existing != null ? existing : client;
+	}
+
+	public void closeAll() {
+		for (SnapshotClient client : clients.values()) {
+			try {
+				client.close();
+			} catch (IOException e) {
+				log.warn("Could not close {}", client, e);
+			}
+		}
+		clients.clear();
+	}
+}
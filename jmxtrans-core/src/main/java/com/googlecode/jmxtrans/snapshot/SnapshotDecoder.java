@@ -0,0 +1,169 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.snapshot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.BYTE;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.DOUBLE;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.FALSE;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.FLOAT;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.INT;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.LONG;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.SHORT;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.STRING;
+import static com.googlecode.jmxtrans.snapshot.SnapshotEncoder.TRUE;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.readString;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.readVarLong;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.readVarint;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.unZigZag;
+
+/**
+ * Turns {@link SnapshotProtocol#SNAPSHOT} frames back into {@link Result}s,
+ * see {@link SnapshotEncoder} for the encoding. One decoder is used per
+ * connection.
+ */
+@NotThreadSafe
+public class SnapshotDecoder {
+
+	private final List<String> names = new ArrayList<>();
+	private final PreviousValues previous = new PreviousValues();
+
+	public SnapshotDecoder() {
+		reset();
+	}
+
+	public void reset() {
+		names.clear();
+		names.add(null);
+		previous.clear();
+	}
+
+	/**
+	 * @param frame a snapshot frame, positioned after its type.
+	 * @param queries the queries defined on the connection, their result alias
+	 *                is not sent by the agent.
+	 * @return the results of each query, null for queries that failed on the
+	 * agent.
+	 */
+	@Nonnull
+	public List<ImmutableList<Result>> decode(@Nonnull ByteBuffer frame, @Nonnull List<Query> queries) throws IOException {
+		try {
+			long epoch = frame.getLong();
+			int newNames = readVarint(frame);
+			for (int i = 0; i < newNames; i++) {
+				names.add(readString(frame));
+			}
+
+			int queryCount = readVarint(frame);
+			if (queryCount != queries.size()) {
+				throw new IOException("Snapshot has results for " + queryCount + " queries, " + queries.size() + " were defined");
+			}
+			List<ImmutableList<Result>> results = new ArrayList<>(queryCount);
+			for (int query = 0; query < queryCount; query++) {
+				int resultCount = readVarint(frame) - 1;
+				if (resultCount < 0) {
+					results.add(null);
+					continue;
+				}
+				String keyAlias = queries.get(query).getResultAlias();
+				ImmutableList.Builder<Result> queryResults = ImmutableList.builder();
+				for (int i = 0; i < resultCount; i++) {
+					queryResults.add(decodeResult(frame, query, epoch, keyAlias));
+				}
+				results.add(queryResults.build());
+			}
+			return results;
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Truncated snapshot frame");
+		}
+	}
+
+	private Result decodeResult(ByteBuffer frame, int query, long epoch, String keyAlias) throws IOException {
+		int attributeName = readVarint(frame);
+		int className = readVarint(frame);
+		int objDomain = readVarint(frame);
+		int typeName = readVarint(frame);
+		int valueCount = readVarint(frame);
+		ImmutableMap.Builder<String, Object> values = ImmutableMap.builder();
+		for (int i = 0; i < valueCount; i++) {
+			int key = readVarint(frame);
+			long[] slot = previous.slot(query, objDomain, typeName, attributeName, key);
+			values.put(name(key), decodeValue(frame, slot));
+		}
+		return new Result(epoch, name(attributeName), name(className), name(objDomain), keyAlias, name(typeName), values.build());
+	}
+
+	private Object decodeValue(ByteBuffer frame, long[] slot) throws IOException {
+		int tag = frame.get();
+		switch (tag) {
+			case INT:
+				return (int) readIntegral(frame, slot);
+			case LONG:
+				return readIntegral(frame, slot);
+			case SHORT:
+				return (short) readIntegral(frame, slot);
+			case BYTE:
+				return (byte) readIntegral(frame, slot);
+			case DOUBLE:
+				return readFloating(frame, slot);
+			case FLOAT:
+				return (float) readFloating(frame, slot);
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case STRING:
+				return readString(frame);
+			default:
+				throw new IOException("Unknown value type " + tag);
+		}
+	}
+
+	private static long readIntegral(ByteBuffer frame, long[] slot) throws IOException {
+		slot[0] += unZigZag(readVarLong(frame));
+		return slot[0];
+	}
+
+	private static double readFloating(ByteBuffer frame, long[] slot) throws IOException {
+		slot[0] ^= readVarLong(frame);
+		return Double.longBitsToDouble(slot[0]);
+	}
+
+	private String name(int id) throws IOException {
+		if (id >= names.size()) throw new IOException("Unknown name id " + id);
+		return names.get(id);
+	}
+}
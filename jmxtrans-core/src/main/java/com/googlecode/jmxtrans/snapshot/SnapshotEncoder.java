@@ -0,0 +1,192 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.snapshot;
+
+import com.googlecode.jmxtrans.model.Result;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.SNAPSHOT;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.writeString;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.writeVarLong;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.writeVarint;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.zigZag;
+
+/**
+ * Encodes the results of a poll into a {@link SnapshotProtocol#SNAPSHOT}
+ * frame. One encoder is used per connection, its state mirrors the
+ * {@link SnapshotDecoder} on the other end:
+ * <ul>
+ *     <li>names (attributes, classes, domains, type names and value keys)
+ *     are sent once and then referenced by id, each snapshot only carries
+ *     the names not seen before on the connection;</li>
+ *     <li>integral values are sent as the zig zag varint of their difference
+ *     with the previous value of the series, floating point values as the
+ *     varint of the XOR of their bits with the previous ones. Unchanged
+ *     values take a single byte.</li>
+ * </ul>
+ * Frame layout after the type byte: epoch (8 bytes), new names, then for
+ * each query the number of results plus one (0 when the query failed) and
+ * the results.
+ */
+@NotThreadSafe
+public class SnapshotEncoder {
+
+	static final int INT = 1;
+	static final int LONG = 2;
+	static final int SHORT = 3;
+	static final int BYTE = 4;
+	static final int DOUBLE = 5;
+	static final int FLOAT = 6;
+	static final int TRUE = 7;
+	static final int FALSE = 8;
+	static final int STRING = 9;
+
+	/** Id 0 stands for null, names are numbered from 1 in order of appearance. */
+	private final Map<String, Integer> names = new HashMap<>();
+	private final List<String> newNames = new ArrayList<>();
+	private final PreviousValues previous = new PreviousValues();
+
+	private final ByteArrayOutputStream frame = new ByteArrayOutputStream(4096);
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+
+	/** Forgets everything sent so far, for a new connection or new query definitions. */
+	public void reset() {
+		names.clear();
+		previous.clear();
+	}
+
+	/**
+	 * @param results the results of each defined query, in order, null for a
+	 *                query that failed.
+	 * @return the frame, only valid until the next call.
+	 */
+	@Nonnull
+	public ByteArrayOutputStream encode(long epoch, @Nonnull List<? extends Iterable<Result>> results) {
+		newNames.clear();
+		body.reset();
+		writeVarint(body, results.size());
+		for (int query = 0; query < results.size(); query++) {
+			Iterable<Result> queryResults = results.get(query);
+			if (queryResults == null) {
+				writeVarint(body, 0);
+				continue;
+			}
+			List<Result> list = queryResults instanceof List ? (List<Result>) queryResults : toList(queryResults);
+			writeVarint(body, list.size() + 1);
+			for (Result result : list) {
+				encode(query, result);
+			}
+		}
+
+		frame.reset();
+		frame.write(SNAPSHOT);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			frame.write((int) (epoch >>> shift));
+		}
+		writeVarint(frame, newNames.size());
+		for (String name : newNames) {
+			writeString(frame, name);
+		}
+		frame.write(body.toByteArray(), 0, body.size());
+		return frame;
+	}
+
+	private void encode(int query, Result result) {
+		int attributeName = name(result.getAttributeName());
+		int className = name(result.getClassName());
+		int objDomain = name(result.getObjDomain());
+		int typeName = name(result.getTypeName());
+		writeVarint(body, attributeName);
+		writeVarint(body, className);
+		writeVarint(body, objDomain);
+		writeVarint(body, typeName);
+		writeVarint(body, result.getValues().size());
+		for (Map.Entry<String, Object> value : result.getValues().entrySet()) {
+			int key = name(value.getKey());
+			writeVarint(body, key);
+			encodeValue(previous.slot(query, objDomain, typeName, attributeName, key), value.getValue());
+		}
+	}
+
+	private void encodeValue(long[] slot, Object value) {
+		if (value instanceof Integer) {
+			writeIntegral(INT, slot, (Integer) value);
+		} else if (value instanceof Long) {
+			writeIntegral(LONG, slot, (Long) value);
+		} else if (value instanceof Double) {
+			writeFloating(DOUBLE, slot, (Double) value);
+		} else if (value instanceof Float) {
+			writeFloating(FLOAT, slot, (Float) value);
+		} else if (value instanceof Short) {
+			writeIntegral(SHORT, slot, (Short) value);
+		} else if (value instanceof Byte) {
+			writeIntegral(BYTE, slot, (Byte) value);
+		} else if (value instanceof Boolean) {
+			body.write((Boolean) value ? TRUE : FALSE);
+		} else {
+			// other numbers (BigDecimal, AtomicLong...) keep their exact representation
+			body.write(STRING);
+			writeString(body, String.valueOf(value));
+		}
+	}
+
+	private void writeIntegral(int tag, long[] slot, long value) {
+		body.write(tag);
+		writeVarLong(body, zigZag(value - slot[0]));
+		slot[0] = value;
+	}
+
+	private void writeFloating(int tag, long[] slot, double value) {
+		long bits = Double.doubleToLongBits(value);
+		body.write(tag);
+		writeVarLong(body, bits ^ slot[0]);
+		slot[0] = bits;
+	}
+
+	private int name(@Nullable String name) {
+		if (name == null) return 0;
+		Integer id = names.get(name);
+		if (id == null) {
+			id = names.size() + 1;
+			names.put(name, id);
+			newNames.add(name);
+		}
+		return id;
+	}
+
+	private static List<Result> toList(Iterable<Result> results) {
+		List<Result> list = new ArrayList<>();
+		for (Result result : results) {
+			list.add(result);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.snapshot;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * Framing and primitives of the snapshot protocol, spoken between a
+ * jmxtrans agent running in the target JVM and the central jmxtrans.
+ * <p/>
+ * Every message is a frame: a 4 bytes big endian length followed by the
+ * payload, whose first byte is the frame type. The central instance sends
+ * {@link #DEFINE} (the queries to evaluate, once per connection or when they
+ * change) and then {@link #POLL} once per cycle. The agent answers each poll
+ * with a single {@link #SNAPSHOT}, or an {@link #ERROR}.
+ * <p/>
+ * Integers are written as unsigned LEB128 varints, strings as their varint
+ * length followed by UTF-8 bytes.
+ */
+public final class SnapshotProtocol {
+
+	public static final byte DEFINE = 1;
+	public static final byte POLL = 2;
+	public static final byte SNAPSHOT = 3;
+	public static final byte ERROR = 4;
+
+	/** Protects both sides from allocating absurd buffers on a corrupted stream. */
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	private SnapshotProtocol() {}
+
+	public static void writeFrame(@Nonnull OutputStream out, @Nonnull ByteArrayOutputStream payload) throws IOException {
+		int length = payload.size();
+		out.write(length >>> 24);
+		out.write(length >>> 16);
+		out.write(length >>> 8);
+		out.write(length);
+		payload.writeTo(out);
+		out.flush();
+	}
+
+	/** Reads a whole frame, the returned buffer is positioned on the frame type. */
+	@Nonnull
+	public static ByteBuffer readFrame(@Nonnull InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		int length;
+		try {
+			length = data.readInt();
+		} catch (EOFException e) {
+			throw new EOFException("Snapshot connection closed by peer");
+		}
+		if (length <= 0 || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Invalid snapshot frame length " + length);
+		}
+		byte[] frame = new byte[length];
+		data.readFully(frame);
+		return ByteBuffer.wrap(frame);
+	}
+
+	@Nonnull
+	public static ByteArrayOutputStream poll() {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(1);
+		payload.write(POLL);
+		return payload;
+	}
+
+	@Nonnull
+	public static ByteArrayOutputStream error(@Nonnull String message) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		payload.write(ERROR);
+		writeString(payload, message);
+		return payload;
+	}
+
+	/**
+	 * Only the MBean pattern and the attributes are sent, everything else in
+	 * a query (aliases, type names, writers) only matters to the central side.
+	 */
+	@Nonnull
+	public static ByteArrayOutputStream define(@Nonnull List<Query> queries) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		payload.write(DEFINE);
+		writeVarint(payload, queries.size());
+		for (Query query : queries) {
+			writeString(payload, query.getObjectName().getCanonicalName());
+			writeVarint(payload, query.getAttr().size());
+			for (String attribute : query.getAttr()) {
+				writeString(payload, attribute);
+			}
+		}
+		return payload;
+	}
+
+	/** Reads the queries of a {@link #DEFINE} frame, positioned after its type. */
+	@Nonnull
+	public static ImmutableList<Query> readDefinitions(@Nonnull ByteBuffer frame) throws IOException {
+		try {
+			int count = readVarint(frame);
+			ImmutableList.Builder<Query> queries = ImmutableList.builder();
+			for (int i = 0; i < count; i++) {
+				Query.Builder query = Query.builder().setObj(readString(frame));
+				int attributes = readVarint(frame);
+				for (int j = 0; j < attributes; j++) {
+					query.addAttr(readString(frame));
+				}
+				queries.add(query.build());
+			}
+			return queries.build();
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid query definition", e);
+		}
+	}
+
+	static void writeVarint(ByteArrayOutputStream out, int value) {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	static int readVarint(ByteBuffer in) throws IOException {
+		long value = readVarLong(in);
+		if (value > Integer.MAX_VALUE) throw new IOException("Varint out of range: " + value);
+		return (int) value;
+	}
+
+	static long readVarLong(ByteBuffer in) throws IOException {
+		try {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = in.get();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return value;
+			}
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Truncated snapshot frame");
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	static void writeString(ByteArrayOutputStream out, String value) {
+		byte[] bytes = value.getBytes(UTF_8);
+		writeVarint(out, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	@Nonnull
+	public static String readString(ByteBuffer in) throws IOException {
+		int length = readVarint(in);
+		if (length > in.remaining()) throw new EOFException("Truncated snapshot frame");
+		String value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+		in.position(in.position() + length);
+		return value;
+	}
+
+	static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
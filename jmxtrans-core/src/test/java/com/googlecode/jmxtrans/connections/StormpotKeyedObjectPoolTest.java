@@ -0,0 +1,119 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.connections;
+
+import org.apache.commons.pool.BaseKeyedPoolableObjectFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StormpotKeyedObjectPoolTest {
+
+	private final CountingFactory factory = new CountingFactory();
+	private final StormpotKeyedObjectPool<String, Object> pool =
+			new StormpotKeyedObjectPool<>(factory, "test", 1, 100, 60000, 60000);
+
+	@After
+	public void closePool() {
+		pool.close();
+	}
+
+	@Test
+	public void returnedObjectsAreReused() throws Exception {
+		Object first = pool.borrowObject("a");
+		assertThat(pool.getNumActive()).isEqualTo(1);
+		pool.returnObject("a", first);
+
+		assertThat(pool.borrowObject("a")).isSameAs(first);
+		assertThat(factory.created.get()).isEqualTo(1);
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void borrowingMoreThanMaxPerKeyTimesOut() throws Exception {
+		pool.borrowObject("a");
+		pool.borrowObject("a");
+	}
+
+	@Test
+	public void keysHaveIndependentPools() throws Exception {
+		Object a = pool.borrowObject("a");
+		Object b = pool.borrowObject("b");
+
+		assertThat(a).isNotSameAs(b);
+		assertThat(pool.getNumActive("a")).isEqualTo(1);
+		assertThat(pool.getNumKeys()).isEqualTo(2);
+	}
+
+	@Test
+	public void invalidatedObjectsAreDestroyedAndReplaced() throws Exception {
+		Object first = pool.borrowObject("a");
+		pool.invalidateObject("a", first);
+
+		Object second = pool.borrowObject("a");
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(factory.destroyed.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void idleObjectsAreDestroyedAndReplaced() throws Exception {
+		StormpotKeyedObjectPool<String, Object> idlePool = new StormpotKeyedObjectPool<>(factory, "idle", 1, 100, 60000, 50);
+		try {
+			Object first = idlePool.borrowObject("a");
+			idlePool.returnObject("a", first);
+			Thread.sleep(100);
+
+			assertThat(idlePool.borrowObject("a")).isNotSameAs(first);
+			assertThat(factory.destroyed.get()).isGreaterThanOrEqualTo(1);
+		} finally {
+			idlePool.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void allocationFailuresAreRethrown() throws Exception {
+		pool.borrowObject("broken");
+	}
+
+	private static final class CountingFactory extends BaseKeyedPoolableObjectFactory<String, Object> {
+		private final AtomicInteger created = new AtomicInteger();
+		private final AtomicInteger destroyed = new AtomicInteger();
+
+		@Override
+		public Object makeObject(String key) throws IOException {
+			if ("broken".equals(key)) throw new IOException("Cannot connect");
+			created.incrementAndGet();
+			return new Object();
+		}
+
+		@Override
+		public void destroyObject(String key, Object obj) {
+			destroyed.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.discovery;
+
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.localServer;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MBeanDiscoveryTest {
+
+	private final ExecutorService executor = newFixedThreadPool(2);
+	private final MBeanDiscovery discovery = new MBeanDiscovery(executor);
+	private final Server server = localServer();
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void onlyNumericAttributesAreDiscovered() throws Exception {
+		DiscoveredMBeans discovered = discovery.walk(server);
+
+		assertThat(discovered.getAttributes().get(new ObjectName("java.lang:type=Memory")))
+				.contains("HeapMemoryUsage", "NonHeapMemoryUsage", "ObjectPendingFinalizationCount")
+				.doesNotContain("Verbose");
+		assertThat(discovered.getAttributes().get(new ObjectName("java.lang:type=Runtime")))
+				.contains("Uptime", "StartTime")
+				.doesNotContain("VmName", "InputArguments", "SystemProperties");
+	}
+
+	@Test
+	public void mbeansRegisteredBetweenWalksAreDiscovered() throws Exception {
+		discovery.walk(server);
+
+		MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("jmxtrans.discovery:type=Counter");
+		mbeanServer.registerMBean(new Counter(), name);
+		try {
+			assertThat(discovery.walk(server).getAttributes().get(name)).containsExactly("Count");
+		} finally {
+			mbeanServer.unregisterMBean(name);
+		}
+
+		assertThat(discovery.walk(server).getAttributes()).doesNotContainKey(name);
+	}
+
+	public interface CounterMBean {
+		long getCount();
+		String getName();
+	}
+
+	public static class Counter implements CounterMBean {
+		@Override
+		public long getCount() {
+			return 42;
+		}
+
+		@Override
+		public String getName() {
+			return "counter";
+		}
+	}
+}
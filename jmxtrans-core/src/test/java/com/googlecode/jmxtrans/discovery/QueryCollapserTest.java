@@ -0,0 +1,89 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.discovery;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.jmxtrans.model.Query;
+import org.junit.Test;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryCollapserTest {
+
+	private static final ImmutableSet<String> GC = ImmutableSet.of("CollectionCount", "CollectionTime");
+
+	@Test
+	public void mbeansDifferingByOneKeyAreReadWithAWildcard() throws MalformedObjectNameException {
+		ImmutableList<Query> queries = QueryCollapser.collapse(ImmutableMap.<ObjectName, Set<String>>of(
+				new ObjectName("java.lang:type=GarbageCollector,name=PS Scavenge"), GC,
+				new ObjectName("java.lang:type=GarbageCollector,name=PS MarkSweep"), GC,
+				new ObjectName("java.lang:type=Memory"), ImmutableSet.of("HeapMemoryUsage")));
+
+		assertThat(queries).hasSize(2);
+		assertThat(queries.get(0).getObjectName()).isEqualTo(new ObjectName("java.lang:name=*,type=GarbageCollector"));
+		assertThat(queries.get(0).getAttr()).containsExactly("CollectionCount", "CollectionTime");
+		assertThat(queries.get(1).getObjectName()).isEqualTo(new ObjectName("java.lang:type=Memory"));
+	}
+
+	@Test
+	public void groupsWithDifferentAttributesKeepTheirOwnPatterns() throws MalformedObjectNameException {
+		ImmutableList<Query> queries = QueryCollapser.collapse(ImmutableMap.<ObjectName, Set<String>>of(
+				new ObjectName("kafka.server:type=BrokerTopicMetrics,name=BytesInPerSec"), ImmutableSet.of("Count", "OneMinuteRate"),
+				new ObjectName("kafka.server:type=BrokerTopicMetrics,name=BytesOutPerSec"), ImmutableSet.of("Count", "OneMinuteRate"),
+				new ObjectName("kafka.server:type=ReplicaManager,name=LeaderCount"), ImmutableSet.of("Value"),
+				new ObjectName("kafka.server:type=ReplicaManager,name=PartitionCount"), ImmutableSet.of("Value")));
+
+		assertThat(queries).hasSize(2);
+		assertThat(queries.get(0).getObjectName()).isEqualTo(new ObjectName("kafka.server:name=*,type=BrokerTopicMetrics"));
+		assertThat(queries.get(1).getObjectName()).isEqualTo(new ObjectName("kafka.server:name=*,type=ReplicaManager"));
+	}
+
+	@Test
+	public void overlappingPatternsAreMerged() throws MalformedObjectNameException {
+		ImmutableList<Query> queries = QueryCollapser.collapse(ImmutableMap.<ObjectName, Set<String>>of(
+				new ObjectName("app:type=Cache,name=a"), ImmutableSet.of("Hits"),
+				new ObjectName("app:type=Cache,name=b"), ImmutableSet.of("Hits"),
+				new ObjectName("app:type=Cache,name=c"), ImmutableSet.of("Hits", "Misses")));
+
+		assertThat(queries).hasSize(1);
+		assertThat(queries.get(0).getObjectName()).isEqualTo(new ObjectName("app:name=*,type=Cache"));
+		assertThat(queries.get(0).getAttr()).containsExactly("Hits", "Misses");
+	}
+
+	@Test
+	public void singleMBeansAreReadByName() throws MalformedObjectNameException {
+		ImmutableList<Query> queries = QueryCollapser.collapse(ImmutableMap.<ObjectName, Set<String>>of(
+				new ObjectName("app:type=Cache,name=a"), ImmutableSet.of("Hits"),
+				new ObjectName("app:type=Pool,name=b"), ImmutableSet.of("Active")));
+
+		assertThat(queries).extracting("objectName").containsExactly(
+				new ObjectName("app:name=a,type=Cache"),
+				new ObjectName("app:name=b,type=Pool"));
+	}
+}
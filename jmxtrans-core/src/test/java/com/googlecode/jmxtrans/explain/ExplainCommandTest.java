@@ -0,0 +1,103 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.explain;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.createPool;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExplainCommandTest {
+
+	private final ExplainCommand command = new ExplainCommand();
+
+	private final Query gc = Query.builder().setObj("java.lang:type=GarbageCollector,name=*").build();
+	private final Query runtime = Query.builder().setObj("java.lang:type=Runtime").addAttr("Uptime", "VmName").build();
+	private final Server server = Server.builder()
+			.setHost("localhost")
+			.setLocal(true)
+			.setPool(createPool())
+			.addQuery(gc)
+			.addQuery(runtime)
+			.build();
+
+	@Test
+	public void costsAreAccountedPerMBean() throws Exception {
+		ImmutableList<CollectionCost> costs = command.explain(server);
+
+		CollectionCost pattern = costOf(costs, gc.getObjectName());
+		assertThat(pattern.getQueryNamesNanos()).isPositive();
+		assertThat(pattern.getResults()).isZero();
+
+		CollectionCost collector = null;
+		for (CollectionCost cost : costs) {
+			if (cost.getQuery().equals(gc.getObjectName()) && !cost.getObjectName().isPattern()) collector = cost;
+		}
+		assertThat(collector).isNotNull();
+		assertThat(collector.getGetMBeanInfoNanos()).isPositive();
+		assertThat(collector.getGetAttributesNanos()).isPositive();
+		assertThat(collector.getBytes()).isPositive();
+		assertThat(collector.getResults()).isPositive();
+	}
+
+	@Test
+	public void nonNumericValuesAreCounted() throws Exception {
+		CollectionCost cost = costOf(command.explain(server), runtime.getObjectName());
+
+		// attributes are listed, no MBeanInfo needed
+		assertThat(cost.getGetMBeanInfoNanos()).isZero();
+		assertThat(cost.getResults()).isEqualTo(2);
+		assertThat(cost.getValues()).isEqualTo(2);
+		assertThat(cost.getNonNumericValues()).isEqualTo(1);
+	}
+
+	@Test
+	public void reportIsSortedByCost() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		command.run(ImmutableList.of(server), new PrintStream(out, true, "UTF-8"));
+
+		String[] lines = out.toString("UTF-8").split("\n");
+		assertThat(lines[0]).contains("total ms");
+		double previous = Double.MAX_VALUE;
+		for (int i = 1; i < lines.length; i++) {
+			double total = Double.parseDouble(lines[i].trim().split("\\s+")[0]);
+			assertThat(total).isLessThanOrEqualTo(previous);
+			previous = total;
+		}
+	}
+
+	private static CollectionCost costOf(Iterable<CollectionCost> costs, ObjectName objectName) {
+		for (CollectionCost cost : costs) {
+			if (cost.getObjectName().equals(objectName)) return cost;
+		}
+		throw new AssertionError("No cost for " + objectName);
+	}
+}
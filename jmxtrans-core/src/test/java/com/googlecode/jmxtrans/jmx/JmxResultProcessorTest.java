@@ -286,6 +286,44 @@ public class JmxResultProcessorTest {
 		assertThat(result.getValues()).isEqualTo(ImmutableMap.of("1", "value1", "2", "value2"));
 	}
 
+	@Test
+	public void canReadPrimitiveArrays() throws MalformedObjectNameException {
+		List<Result> results = new JmxResultProcessor(
+				dummyQueryWithResultAlias(),
+				new ObjectInstance("java.lang:type=Memory", "java.lang.SomeClass"),
+				ImmutableList.of(
+						new Attribute("longs", new long[]{1L, 2L}),
+						new Attribute("doubles", new double[]{1.5}),
+						new Attribute("ints", new int[]{3, 4, 5}),
+						new Attribute("shorts", new short[]{6})),
+				"java.lang.SomeClass",
+				TEST_DOMAIN_NAME
+		).getResults();
+
+		assertThat(results).hasSize(4);
+		assertThat(results.get(0).getValues()).isEqualTo(ImmutableMap.<String, Object>of("longs.0", 1L, "longs.1", 2L));
+		assertThat(results.get(1).getValues()).isEqualTo(ImmutableMap.<String, Object>of("doubles.0", 1.5));
+		assertThat(results.get(2).getValues()).isEqualTo(ImmutableMap.<String, Object>of("ints.0", 3, "ints.1", 4, "ints.2", 5));
+		assertThat(results.get(3).getValues()).isEqualTo(ImmutableMap.<String, Object>of("shorts.0", (short) 6));
+	}
+
+	@Test
+	public void compositeDataOfSameTypeProducesSameResults() throws MalformedObjectNameException, AttributeNotFoundException,
+			MBeanException, ReflectionException, InstanceNotFoundException {
+		ObjectInstance memory = getMemory();
+		AttributeList attr = ManagementFactory.getPlatformMBeanServer().getAttributes(
+				memory.getObjectName(), new String[]{"HeapMemoryUsage", "NonHeapMemoryUsage"});
+		List<Result> results = new JmxResultProcessor(
+				dummyQueryWithResultAlias(),
+				memory,
+				attr.asList(),
+				memory.getClassName(),
+				TEST_DOMAIN_NAME).getResults();
+
+		assertThat(results).hasSize(2);
+		assertThat(results.get(0).getValues().keySet()).containsExactlyElementsOf(results.get(1).getValues().keySet());
+	}
+
 	public ObjectInstance getRuntime() throws MalformedObjectNameException, InstanceNotFoundException {
 		return ManagementFactory.getPlatformMBeanServer().getObjectInstance(
 				new ObjectName("java.lang", "type", "Runtime"));
@@ -0,0 +1,142 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.Iterables;
+import com.googlecode.jmxtrans.connections.JMXConnection;
+import com.googlecode.jmxtrans.connections.JmxConnectionProvider;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.apache.commons.pool.KeyedObjectPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.management.AttributeChangeNotification;
+import javax.management.MBeanServer;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static com.google.common.collect.ImmutableList.of;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createPool;
+import static com.googlecode.jmxtrans.model.ServerFixtures.localServer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class NotificationSubscriptionsTest {
+
+	private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+	private final ResultProcessor resultProcessor = mock(ResultProcessor.class);
+	private final NotificationSubscriptions subscriptions = new NotificationSubscriptions(resultProcessor);
+	private final Server server = localServer();
+	private final Query query = Query.builder()
+			.setObj("jmxtrans.test:type=Notifying")
+			.addAttr("Value")
+			.setNotifications(true)
+			.build();
+	private ObjectName name;
+	private Notifying notifying;
+
+	@Before
+	public void registerMBean() throws Exception {
+		name = new ObjectName("jmxtrans.test:type=Notifying");
+		notifying = new Notifying();
+		mbeanServer.registerMBean(notifying, name);
+	}
+
+	@After
+	public void unregisterMBean() throws Exception {
+		subscriptions.unsubscribeAll();
+		mbeanServer.unregisterMBean(name);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void attributeChangesArePushedAsResults() {
+		subscriptions.refresh(server, of(query));
+
+		notifying.change("Value", 42);
+		notifying.change("Ignored", 1);
+
+		ArgumentCaptor<Iterable> results = ArgumentCaptor.forClass(Iterable.class);
+		verify(resultProcessor).submit(eq(server), eq(query), results.capture());
+
+		Result result = (Result) Iterables.getOnlyElement(results.getValue());
+		assertThat(result.getAttributeName()).isEqualTo("Value");
+		assertThat(result.getClassName()).isEqualTo(Notifying.class.getName());
+		assertThat(result.getValues()).containsEntry("Value", 42);
+	}
+
+	@Test
+	public void refreshingTwiceDoesNotDuplicateListeners() {
+		subscriptions.refresh(server, of(query));
+		subscriptions.refresh(server, of(query));
+
+		notifying.change("Value", 42);
+
+		verify(resultProcessor).submit(eq(server), eq(query), any(Iterable.class));
+	}
+
+	@Test
+	public void subscriptionsDoNotHoldPooledConnections() throws Exception {
+		KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool = createPool();
+		subscriptions.refresh(Server.builder(server).setPool(pool).build(), of(query));
+
+		assertThat(pool.getNumActive()).isZero();
+	}
+
+	@Test
+	public void nothingIsPushedAfterUnsubscribing() {
+		subscriptions.refresh(server, of(query));
+		subscriptions.unsubscribeAll();
+
+		notifying.change("Value", 42);
+
+		verify(resultProcessor, never()).submit(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	public interface NotifyingMBean {
+		int getValue();
+	}
+
+	public static class Notifying extends NotificationBroadcasterSupport implements NotifyingMBean {
+		private long sequence;
+
+		@Override
+		public int getValue() {
+			return 0;
+		}
+
+		void change(String attribute, int newValue) {
+			sendNotification(new AttributeChangeNotification(
+					this, ++sequence, System.currentTimeMillis(), "changed", attribute, "int", 0, newValue));
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createPool;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ProcessJolokiaServerThreadTest {
+
+	private static final String RESPONSE = "["
+			+ "{\"status\":200,\"value\":{\"init\":1,\"used\":2,\"committed\":3,\"max\":4}},"
+			+ "{\"status\":200,\"value\":{"
+			+ "\"java.lang:type=GarbageCollector,name=Copy\":{\"CollectionCount\":5,\"CollectionTime\":6}}}"
+			+ "]";
+
+	private HttpServer fakeJolokia;
+	private final List<String> requests = new CopyOnWriteArrayList<>();
+
+	@Before
+	public void startFakeJolokia() throws IOException {
+		fakeJolokia = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		fakeJolokia.createContext("/jolokia", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests.add(new String(ByteStreams.toByteArray(exchange.getRequestBody()), UTF_8));
+				byte[] response = RESPONSE.getBytes(UTF_8);
+				exchange.sendResponseHeaders(200, response.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(response);
+				}
+			}
+		});
+		fakeJolokia.start();
+	}
+
+	@After
+	public void stopFakeJolokia() {
+		fakeJolokia.stop(0);
+	}
+
+	@Test
+	public void allQueriesAreReadInOneRequest() {
+		Query memory = Query.builder()
+				.setObj("java.lang:type=Memory")
+				.addAttr("HeapMemoryUsage")
+				.build();
+		Query gc = Query.builder()
+				.setObj("java.lang:type=GarbageCollector,name=*")
+				.addAttr("CollectionCount", "CollectionTime")
+				.setResultAlias("gc")
+				.build();
+		Server server = Server.builder()
+				.setUrl("http://localhost:" + fakeJolokia.getAddress().getPort() + "/jolokia")
+				.addQuery(memory)
+				.addQuery(gc)
+				.setPool(createPool())
+				.build();
+		ResultProcessor resultProcessor = mock(ResultProcessor.class);
+
+		new ProcessJolokiaServerThread(resultProcessor, new JolokiaResultMapper(), server).run();
+
+		assertThat(requests).hasSize(1);
+		assertThat(requests.get(0))
+				.contains("\"mbean\":\"java.lang:type=Memory\"")
+				.contains("\"attribute\":[\"CollectionCount\",\"CollectionTime\"]");
+
+		ArgumentCaptor<Iterable> memoryResults = ArgumentCaptor.forClass(Iterable.class);
+		verify(resultProcessor).submit(eq(server), eq(memory), memoryResults.capture());
+		List<Result> heap = ImmutableList.copyOf((Iterable<Result>) memoryResults.getValue());
+		assertThat(heap).hasSize(1);
+		assertThat(heap.get(0).getAttributeName()).isEqualTo("HeapMemoryUsage");
+		assertThat(heap.get(0).getTypeName()).isEqualTo("type=Memory");
+		assertThat(heap.get(0).getValues()).containsEntry("used", 2).hasSize(4);
+
+		ArgumentCaptor<Iterable> gcResults = ArgumentCaptor.forClass(Iterable.class);
+		verify(resultProcessor).submit(eq(server), eq(gc), gcResults.capture());
+		List<Result> collections = ImmutableList.copyOf((Iterable<Result>) gcResults.getValue());
+		assertThat(collections).hasSize(2);
+		assertThat(collections.get(0).getKeyAlias()).isEqualTo("gc");
+		assertThat(collections.get(0).getTypeName()).isEqualTo("type=GarbageCollector,name=Copy");
+		assertThat(collections.get(0).getValues()).containsEntry("CollectionCount", 5);
+
+		verify(resultProcessor, times(2)).submit(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test
+	public void failedReadsProduceNoResults() {
+		Query query = Query.builder().setObj("java.lang:type=Memory").build();
+		JolokiaResultMapper mapper = new JolokiaResultMapper();
+
+		List<Result> results = mapper.toResults(query, JsonNodeFactory.instance.objectNode().put("status", 404));
+
+		assertThat(results).isEmpty();
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.results.ClusterAggregates;
+import com.googlecode.jmxtrans.model.results.ResultPipeline;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServerBuilder;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ResultProcessorTest {
+
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, SECONDS, new LinkedBlockingQueue<Runnable>());
+	private final ClusterAggregates clusterAggregates = new ClusterAggregates();
+	private final ResultProcessor processor = new ResultProcessor(executor, ResultPipeline.create(), clusterAggregates);
+	private final OutputWriter writer = mock(OutputWriter.class);
+	private final Server server = dummyServerBuilder().setHost("kafka1").setRunPeriodSeconds(10).build();
+	private final Query query = Query.builder()
+			.setObj("kafka.server:type=BrokerTopicMetrics,name=MessagesInPerSec")
+			.setAggregateAlias("kafka")
+			.setOnlyOnChange(true)
+			.addOutputWriters(ImmutableList.of(writer))
+			.build();
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void unchangedValuesAreAggregatedButNotWritten() throws Exception {
+		processor.submit(server, query, ImmutableList.of(meter(0)));
+		processor.submit(server, query, ImmutableList.of(meter(10000)));
+		processor.submit(server, query, ImmutableList.of(meter(20000)));
+		executor.shutdown();
+		executor.awaitTermination(10, SECONDS);
+
+		ArgumentCaptor<Iterable> written = ArgumentCaptor.forClass(Iterable.class);
+		verify(writer, times(3)).doWrite(eq(server), eq(query), written.capture());
+		assertThat(written.getAllValues().get(0)).hasSize(1);
+		assertThat(written.getAllValues().get(1)).isEmpty();
+		assertThat(written.getAllValues().get(2)).isEmpty();
+
+		ArgumentCaptor<Iterable> aggregates = ArgumentCaptor.forClass(Iterable.class);
+		verify(writer, times(2)).doWrite(eq(clusterAggregates.aggregateServer(server, query)), eq(query), aggregates.capture());
+		Result last = (Result) getOnlyElement(aggregates.getAllValues().get(1));
+		assertThat(last.getEpoch()).isEqualTo(10000);
+	}
+
+	private static Result meter(long epoch) {
+		return resultAt(epoch, "kafka.server:type=BrokerTopicMetrics,name=MessagesInPerSec", "Count", 42L);
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.CycleAwareOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.results.ClusterAggregates;
+import com.googlecode.jmxtrans.model.results.ResultPipeline;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServerBuilder;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ServerCycleTest {
+
+	private final CycleAwareOutputWriter writer = mock(CycleAwareOutputWriter.class);
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, SECONDS, new LinkedBlockingQueue<Runnable>());
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void cycleEndsOnceAllWorkIsDone() throws Exception {
+		Server server = serverWith(writer);
+
+		ServerCycle cycle = ServerCycle.begin(server, 7);
+		verify(writer).beginCycle(server, 7);
+
+		cycle.enter();
+		cycle.exit();
+		verify(writer, never()).endCycle(any(Server.class), anyLong());
+
+		cycle.exit();
+		verify(writer).endCycle(server, 7);
+	}
+
+	@Test
+	public void wrappedTasksRunAsPartOfTheCycle() throws Exception {
+		ServerCycle cycle = ServerCycle.begin(serverWith(writer), 1);
+		final AtomicReference<ServerCycle> seen = new AtomicReference<>();
+
+		cycle.enter();
+		cycle.wrap(new Runnable() {
+			@Override
+			public void run() {
+				seen.set(ServerCycle.current());
+			}
+		}).run();
+		cycle.exit();
+
+		assertThat(seen.get()).isSameAs(cycle);
+		assertThat(ServerCycle.current()).isNull();
+		verify(writer).endCycle(any(Server.class), anyLong());
+	}
+
+	@Test
+	public void sharedWritersAreToldOnce() throws Exception {
+		Server server = dummyServerBuilder()
+				.addQuery(Query.builder()
+						.setObj("sharedWriter:key=val")
+						.addOutputWriters(Collections.<OutputWriter>singleton(writer))
+						.build())
+				.addOutputWriters(Collections.<OutputWriter>singleton(writer))
+				.build();
+
+		ServerCycle.begin(server, 1).exit();
+
+		verify(writer, times(1)).beginCycle(server, 1);
+		verify(writer, times(1)).endCycle(server, 1);
+	}
+
+	@Test
+	public void cycleEndsAfterTheWritesOfItsResults() throws Exception {
+		final Server server = serverWith(writer);
+		final Query query = server.getQueries().iterator().next();
+		final ResultProcessor resultProcessor = new ResultProcessor(executor, ResultPipeline.create(), new ClusterAggregates());
+
+		ServerCycle cycle = ServerCycle.begin(server, 3);
+		cycle.enter();
+		cycle.wrap(new Runnable() {
+			@Override
+			public void run() {
+				resultProcessor.submit(server, query, dummyResults());
+			}
+		}).run();
+		cycle.exit();
+
+		verify(writer, timeout(5000)).endCycle(server, 3);
+		InOrder inOrder = inOrder(writer);
+		inOrder.verify(writer).beginCycle(server, 3);
+		inOrder.verify(writer).doWrite(eq(server), eq(query), any(ImmutableList.class));
+		inOrder.verify(writer).endCycle(server, 3);
+	}
+
+	private static Server serverWith(OutputWriter writer) {
+		return dummyServerBuilder()
+				.addQuery(dummyQuery())
+				.addOutputWriters(Collections.singleton(writer))
+				.build();
+	}
+}
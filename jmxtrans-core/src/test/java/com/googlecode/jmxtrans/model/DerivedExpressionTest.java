@@ -0,0 +1,80 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class DerivedExpressionTest {
+
+	@Test
+	public void operatorsFollowUsualPrecedence() {
+		assertThat(evaluate("1 + 2 * 3")).isEqualTo(7);
+		assertThat(evaluate("(1 + 2) * 3")).isEqualTo(9);
+		assertThat(evaluate("10 - 4 - 3")).isEqualTo(3);
+		assertThat(evaluate("-2 * -3")).isEqualTo(6);
+		assertThat(evaluate("1 / 4")).isEqualTo(0.25);
+	}
+
+	@Test
+	public void variablesAreGivenInOrderOfAppearance() {
+		DerivedExpression expression = DerivedExpression.compile("HeapMemoryUsage.used / HeapMemoryUsage.max * 100 + HeapMemoryUsage.used * 0");
+
+		assertThat(expression.getVariables()).containsExactly("HeapMemoryUsage.used", "HeapMemoryUsage.max");
+		assertThat(expression.evaluate(new double[] {25, 200})).isCloseTo(12.5, offset(1e-9));
+	}
+
+	@Test
+	public void quotedVariablesCanContainAnyCharacter() {
+		DerivedExpression expression = DerivedExpression.compile("`LastGcInfo.memoryUsageAfterGc.PS Eden Space` / 2");
+
+		assertThat(expression.getVariables()).containsExactly("LastGcInfo.memoryUsageAfterGc.PS Eden Space");
+		assertThat(expression.evaluate(new double[] {8})).isEqualTo(4);
+	}
+
+	@Test
+	public void divisionByZeroIsInfinite() {
+		assertThat(evaluate("1 / 0")).isEqualTo(Double.POSITIVE_INFINITY);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingParenthesisIsRejected() {
+		DerivedExpression.compile("(a + b");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void trailingOperatorIsRejected() {
+		DerivedExpression.compile("a +");
+	}
+
+	@Test
+	public void expressionIsWrittenBackAsItWasGiven() {
+		assertThat(DerivedExpression.compile("a/b").toString()).isEqualTo("a/b");
+	}
+
+	private static double evaluate(String expression) {
+		return DerivedExpression.compile(expression).evaluate(new double[0]);
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.googlecode.jmxtrans.model.FlatteningPlans.CompositePlan;
+import com.googlecode.jmxtrans.model.FlatteningPlans.ItemKind;
+import com.googlecode.jmxtrans.model.FlatteningPlans.ValueKind;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlatteningPlansTest {
+
+	@Test
+	public void compositePlansAreCachedByType() throws OpenDataException {
+		CompositePlan first = FlatteningPlans.compositePlan(usageType());
+		CompositePlan second = FlatteningPlans.compositePlan(usageType());
+
+		assertThat(second).isSameAs(first);
+		assertThat(first.size()).isEqualTo(2);
+		assertThat(first.key(0)).isEqualTo("max");
+		assertThat(first.kind(0)).isEqualTo(ItemKind.SIMPLE);
+		assertThat(first.suffix(1)).isEqualTo(".used");
+	}
+
+	@Test
+	public void nestedTypesAreDetected() throws OpenDataException {
+		CompositeType usage = usageType();
+		TabularType table = new TabularType("table", "table", usage, new String[]{"max"});
+		CompositeType outer = new CompositeType("outer", "outer",
+				new String[]{"table", "usage"},
+				new String[]{"table", "usage"},
+				new OpenType<?>[]{table, usage});
+
+		CompositePlan plan = FlatteningPlans.compositePlan(outer);
+
+		assertThat(plan.kind(0)).isEqualTo(ItemKind.TABULAR);
+		assertThat(plan.kind(1)).isEqualTo(ItemKind.COMPOSITE);
+		assertThat(FlatteningPlans.rowPlan(table)).isSameAs(FlatteningPlans.compositePlan(usage));
+	}
+
+	@Test
+	public void valueKindsAreResolvedFromClass() {
+		assertThat(FlatteningPlans.valueKind(new long[0])).isEqualTo(ValueKind.LONG_ARRAY);
+		assertThat(FlatteningPlans.valueKind(new double[0])).isEqualTo(ValueKind.DOUBLE_ARRAY);
+		assertThat(FlatteningPlans.valueKind(new int[0])).isEqualTo(ValueKind.INT_ARRAY);
+		assertThat(FlatteningPlans.valueKind(new String[0])).isEqualTo(ValueKind.OTHER_ARRAY);
+		assertThat(FlatteningPlans.valueKind(ImmutableMap.of())).isEqualTo(ValueKind.MAP);
+		assertThat(FlatteningPlans.valueKind(1L)).isEqualTo(ValueKind.SIMPLE);
+	}
+
+	@Test
+	public void arrayKeysAreReused() {
+		String[] first = FlatteningPlans.indexedKeys("attr").upTo(3);
+		String[] second = FlatteningPlans.indexedKeys("attr").upTo(2);
+
+		assertThat(second).isSameAs(first);
+		assertThat(first).containsExactly("attr.0", "attr.1", "attr.2");
+	}
+
+	private static CompositeType usageType() throws OpenDataException {
+		return new CompositeType("usage", "usage",
+				new String[]{"max", "used"},
+				new String[]{"max", "used"},
+				new OpenType<?>[]{SimpleType.LONG, SimpleType.LONG});
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PlatformMXBeansTest {
+
+	private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+	@Test
+	public void memoryResultsHaveTheSameShapeAsTheGenericPath() throws Exception {
+		assertSameShape("java.lang:type=Memory", "HeapMemoryUsage", "NonHeapMemoryUsage", "ObjectPendingFinalizationCount");
+	}
+
+	@Test
+	public void memoryPoolResultsHaveTheSameShapeAsTheGenericPath() throws Exception {
+		for (ObjectName name : mbeanServer.queryNames(new ObjectName("java.lang:type=MemoryPool,*"), null)) {
+			assertSameShape(name.getCanonicalName(), "Usage", "PeakUsage", "CollectionUsage");
+		}
+	}
+
+	@Test
+	public void otherPlatformResultsHaveTheSameShapeAsTheGenericPath() throws Exception {
+		for (ObjectName name : mbeanServer.queryNames(new ObjectName("java.lang:type=GarbageCollector,*"), null)) {
+			assertSameShape(name.getCanonicalName(), "CollectionCount", "CollectionTime");
+		}
+		assertSameShape("java.lang:type=Threading", "ThreadCount", "PeakThreadCount", "DaemonThreadCount", "TotalStartedThreadCount");
+		assertSameShape("java.lang:type=OperatingSystem", "AvailableProcessors", "SystemLoadAverage");
+	}
+
+	@Test
+	public void unknownAttributesAreLeftToTheGenericPath() throws Exception {
+		Query query = Query.builder().setObj("java.lang:type=Threading").addAttr("ThreadCount", "ThreadCpuTimeEnabled").build();
+		assertThat(PlatformMXBeans.read(query, new ObjectName("java.lang:type=Threading"))).isNull();
+
+		Query allAttributes = Query.builder().setObj("java.lang:type=Threading").build();
+		assertThat(PlatformMXBeans.read(allAttributes, new ObjectName("java.lang:type=Threading"))).isNull();
+
+		Query other = Query.builder().setObj("java.lang:type=Runtime").addAttr("Uptime").build();
+		assertThat(PlatformMXBeans.read(other, new ObjectName("java.lang:type=Runtime"))).isNull();
+	}
+
+	private void assertSameShape(String objectName, String... attributes) throws Exception {
+		ObjectName name = new ObjectName(objectName);
+		Query query = Query.builder().setObj(objectName).addAttr(attributes).setResultAlias("alias").build();
+
+		ImmutableList<Result> fast = PlatformMXBeans.read(query, name);
+		ImmutableList<Result> generic = ImmutableList.copyOf(query.fetchResults(mbeanServer, name));
+
+		assertThat(fast).hasSameSizeAs(generic);
+		for (int i = 0; i < fast.size(); i++) {
+			Result expected = generic.get(i);
+			Result actual = fast.get(i);
+			assertThat(actual.getAttributeName()).isEqualTo(expected.getAttributeName());
+			assertThat(actual.getClassName()).isEqualTo(expected.getClassName());
+			assertThat(actual.getObjDomain()).isEqualTo(expected.getObjDomain());
+			assertThat(actual.getTypeName()).isEqualTo(expected.getTypeName());
+			assertThat(actual.getKeyAlias()).isEqualTo(expected.getKeyAlias());
+			assertThat(actual.getValues().keySet()).containsExactlyElementsOf(expected.getValues().keySet());
+			for (String key : expected.getValues().keySet()) {
+				assertThat(actual.getValues().get(key)).isInstanceOf(expected.getValues().get(key).getClass());
+			}
+		}
+	}
+}
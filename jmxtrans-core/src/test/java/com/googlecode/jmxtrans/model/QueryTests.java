@@ -24,6 +24,8 @@ package com.googlecode.jmxtrans.model;
 
 import java.util.List;
 
+import com.google.common.collect.ImmutableList;
+
 import org.junit.Test;
 
 import static com.google.common.collect.ImmutableList.copyOf;
@@ -112,4 +114,15 @@ public class QueryTests {
 		
 		assertThat(actual).isEqualTo("BAR_FOO");
 	}
+
+	@Test
+	public void positionalConstructorLeavesNewOptionsUnset() {
+		Query query = new Query("obj:type=Foo", null, newArrayList("Bar"), null, "foo", false, false, false,
+				ImmutableList.<OutputWriter>of());
+
+		assertThat(query).isEqualTo(Query.builder().setObj("obj:type=Foo").addAttr("Bar").setResultAlias("foo").build());
+		assertThat(query.getRates()).isEmpty();
+		assertThat(query.getDerived()).isEmpty();
+		assertThat(query.getMaxSeries()).isNull();
+	}
 }
@@ -0,0 +1,117 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResultValuesTest {
+
+	private static final ImmutableMap<String, Object> VALUES = ImmutableMap.<String, Object>builder()
+			.put("int", 1)
+			.put("long", 2L)
+			.put("short", (short) 3)
+			.put("byte", (byte) 4)
+			.put("double", 5.5d)
+			.put("float", 6.5f)
+			.put("string", "seven")
+			.put("nan", Double.NaN)
+			.build();
+
+	@Test
+	public void valuesKeepTheirOriginalType() {
+		ResultValues values = ResultValues.copyOf(VALUES);
+
+		assertThat(values.asMap()).isEqualTo(VALUES);
+		assertThat(values.get("short")).isInstanceOf(Short.class);
+		assertThat(values.get("float")).isInstanceOf(Float.class);
+		assertThat(values.get("missing")).isNull();
+	}
+
+	@Test
+	public void numbersAreReadWithoutBoxing() {
+		ResultValues values = ResultValues.builder(3)
+				.putLong("count", 42)
+				.putDouble("ratio", 0.5)
+				.put("name", "value")
+				.build();
+
+		assertThat(values.isIntegral(0)).isTrue();
+		assertThat(values.getLong(0)).isEqualTo(42);
+		assertThat(values.isNumber(1)).isTrue();
+		assertThat(values.getDouble(1)).isEqualTo(0.5);
+		assertThat(values.isNumber(2)).isFalse();
+	}
+
+	@Test
+	public void equalityAndHashCodeAreThoseOfTheMap() {
+		ResultValues values = ResultValues.copyOf(VALUES);
+
+		assertThat(values).isEqualTo(ResultValues.copyOf(VALUES));
+		assertThat(values.hashCode()).isEqualTo(VALUES.hashCode());
+		assertThat(values).isEqualTo(ResultValues.copyOf(ImmutableMap.<String, Object>builder()
+				.putAll(VALUES.entrySet().asList().reverse())
+				.build()));
+		assertThat(values).isNotEqualTo(ResultValues.copyOf(ImmutableMap.of("int", 1L)));
+	}
+
+	@Test
+	public void transformationSharesUnchangedValues() {
+		ResultValues values = ResultValues.copyOf(VALUES);
+
+		assertThat(values.transform(new Function<Object, Object>() {
+			@Override
+			public Object apply(@Nullable Object input) {
+				return input;
+			}
+		})).isSameAs(values);
+
+		Map<String, Object> transformed = values.transform(new Function<Object, Object>() {
+			@Nullable
+			@Override
+			public Object apply(@Nullable Object input) {
+				if ("seven".equals(input)) return 7;
+				if (input instanceof Double && ((Double) input).isNaN()) return null;
+				return input;
+			}
+		}).asMap();
+		assertThat(transformed).containsEntry("string", 7).containsEntry("long", 2L).doesNotContainKey("nan");
+	}
+
+	@Test
+	public void resultsOfTheSameMBeanShareTheirDescriptor() {
+		Result first = new Result(0, "a", "class", "domain", "alias", "type=Test", VALUES);
+		Result second = new Result(0, "b", "class", "domain", "alias", "type=Test", VALUES);
+
+		assertThat(first.getDescriptor()).isSameAs(second.getDescriptor());
+		assertThat(first.getValues()).isEqualTo(VALUES);
+		assertThat(first).isEqualTo(new Result(0, "a", "class", "domain", "alias", "type=Test", VALUES));
+		assertThat(first.toString()).contains("typeName=type=Test", "values={int=1");
+	}
+}
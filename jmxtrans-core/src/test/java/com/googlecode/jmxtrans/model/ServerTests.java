@@ -22,8 +22,10 @@
  */
 package com.googlecode.jmxtrans.model;
 
+import com.google.common.collect.ImmutableList;
 import com.googlecode.jmxtrans.connections.JMXConnection;
 import com.googlecode.jmxtrans.connections.JmxConnectionProvider;
+import com.googlecode.jmxtrans.connections.TimeoutRMIClientSocketFactory;
 import com.googlecode.jmxtrans.test.RequiresIO;
 import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.assertj.core.util.Lists;
@@ -31,11 +33,28 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.mockito.InOrder;
 
+import javax.management.MBeanServer;
 import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerFactory;
 import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
 import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.googlecode.jmxtrans.model.ServerFixtures.createPool;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -55,6 +74,16 @@ import static org.mockito.Mockito.when;
 @Category(RequiresIO.class)
 public class ServerTests {
 
+	@Test
+	public void positionalConstructorLeavesNewOptionsUnset() {
+		Server server = new Server(null, null, "mysys.mydomain", "8004", null, null, null, null, null, null, null, false,
+				ImmutableList.<Query>of(), ImmutableList.<OutputWriter>of(), createPool());
+
+		assertThat(server).isEqualTo(Server.builder().setHost("mysys.mydomain").setPort("8004").setPool(createPool()).build());
+		assertThat(server.getReadTimeoutMs()).isNull();
+		assertThat(server.getMaxSeries()).isNull();
+	}
+
 	@Test
 	public void testGetUrl() {
 		// test with host and port
@@ -95,6 +124,18 @@ public class ServerTests {
 		assertEquals("server port should be '8004'", "8004", server.getPort());
 	}
 
+	@Test
+	public void snapshotAgentServersAreRecognizedByTheirUrl() {
+		Server server = Server.builder()
+				.setUrl("jmxtrans://mysys.mydomain:9876")
+				.setPool(createPool())
+				.build();
+		assertTrue(server.isSnapshotAgent());
+		assertEquals("mysys.mydomain", server.getHost());
+		assertEquals("9876", server.getPort());
+		assertFalse(dummyServer().isSnapshotAgent());
+	}
+
 	@Test
 	public void testGetLabel() {
 		Server server = Server.builder()
@@ -237,6 +278,148 @@ public class ServerTests {
 			fail("No Pid or Url can't work");
 		}
 		catch(IllegalArgumentException e) {}
+
+		try {
+			Server.builder()
+					.setPid("123")
+					.setMainClass("org.example.Main")
+					.setPool(createPool())
+					.build();
+			fail("Only one way of selecting the local process is allowed");
+		}
+		catch(IllegalArgumentException e) {}
+
+		try {
+			Server.builder()
+					.setSystemProperty("app.name")
+					.setPool(createPool())
+					.build();
+			fail("System property selectors need a pattern");
+		}
+		catch(IllegalArgumentException e) {}
+	}
+
+	@Test
+	public void timeoutsArePassedToTheConnectorEnvironment() {
+		Server server = Server.builder()
+				.setHost("host.example.net")
+				.setPort("4321")
+				.setConnectTimeoutMs(1000)
+				.setReadTimeoutMs(5000)
+				.setPool(createPool())
+				.build();
+
+		Map<String, Object> environment = new HashMap<>(server.getEnvironment());
+		assertThat(environment)
+				.containsEntry("com.sun.jndi.rmi.factory.socket", new TimeoutRMIClientSocketFactory(1000, 5000))
+				.containsEntry("jmx.remote.x.request.waiting.timeout", 5000L);
+		assertThat(Server.builder(server).build().getReadTimeoutMs()).isEqualTo(5000);
+	}
+
+	@Test(timeout = 10000)
+	@Category(RequiresIO.class)
+	public void queriesOfAServerWhichNeverAnswersTimeOut() throws Exception {
+		CountDownLatch answer = new CountDownLatch(1);
+		MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+		mbeanServer.registerMBean(new Frozen(answer), new ObjectName("jmxtrans.test:type=Frozen"));
+		int port = freePort();
+		Registry registry = LocateRegistry.createRegistry(port);
+		JMXConnectorServer connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(
+				new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + port + "/jmxrmi"), null, mbeanServer);
+		connectorServer.start();
+		try {
+			Server server = Server.builder()
+					.setHost("localhost")
+					.setPort(Integer.toString(port))
+					.setReadTimeoutMs(200)
+					.setPool(createPool())
+					.build();
+			Query query = Query.builder().setObj("jmxtrans.test:type=Frozen").addAttr("Value").build();
+
+			try {
+				server.execute(query);
+				fail("The query should have timed out");
+			} catch (SocketTimeoutException expected) {
+				assertThat(expected.getMessage()).contains("200 ms");
+			}
+		} finally {
+			answer.countDown();
+			connectorServer.stop();
+			UnicastRemoteObject.unexportObject(registry, true);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void timedFetchesBeyondTheLimitAreRejected() throws Exception {
+		final CountDownLatch answer = new CountDownLatch(1);
+		ExecutorService fetches = Server.timedFetches(1);
+		try {
+			fetches.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					answer.await();
+					return null;
+				}
+			});
+			try {
+				fetches.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						return null;
+					}
+				});
+				fail("The second fetch should have been rejected");
+			} catch (RejectedExecutionException expected) {
+				// the only thread is still waiting for its server
+			}
+		} finally {
+			answer.countDown();
+			fetches.shutdown();
+		}
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	public interface FrozenMBean {
+		long getValue() throws InterruptedException;
+	}
+
+	public static class Frozen implements FrozenMBean {
+		private final CountDownLatch answer;
+
+		public Frozen(CountDownLatch answer) {
+			this.answer = answer;
+		}
+
+		@Override
+		public long getValue() throws InterruptedException {
+			answer.await();
+			return 1;
+		}
+	}
+
+	@Test
+	public void noTimeoutsByDefault() {
+		assertThat(ServerFixtures.dummyServer().getEnvironment()).isEmpty();
+	}
+
+	@Test
+	public void localProcessSelectorsAreCopiedByBuilder() {
+		Server server = Server.builder()
+				.setSystemProperty("app.name=checkout")
+				.setPool(createPool())
+				.build();
+
+		Server copy = Server.builder(server).build();
+
+		assertThat(copy.isLocalProcess()).isTrue();
+		assertThat(copy.getSystemProperty()).isEqualTo("app.name=checkout");
+		assertThat(copy.getHost()).isEqualTo(server.getHost());
+		assertThat(copy).isEqualTo(server);
 	}
 
 	@Test
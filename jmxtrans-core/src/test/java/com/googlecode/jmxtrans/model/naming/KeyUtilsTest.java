@@ -0,0 +1,81 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.naming;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.createPool;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyUtilsTest {
+
+	private final Query query = Query.builder().setObj("java.lang:type=Memory").build();
+	private final Result result = new Result(0, "HeapMemoryUsage", "sun.management.MemoryImpl", "java.lang", null,
+			"type=Memory", ImmutableMap.<String, Object>of("used", 1L));
+	private final Map.Entry<String, Object> value = Maps.<String, Object>immutableEntry("used", 1L);
+
+	@Test
+	public void keysAreComputedOncePerSeries() {
+		Server server = Server.builder().setHost("example.net").setPort("1234").setPool(createPool()).build();
+
+		String key = KeyUtils.getKeyString(server, query, result, value, ImmutableList.of("type"), "root");
+
+		assertThat(key).isEqualTo("root.example_net_1234.sun_management_MemoryImpl.Memory.HeapMemoryUsage_used");
+		assertThat(KeyUtils.getKeyString(server, query, result, value, ImmutableList.of("type"), "root")).isSameAs(key);
+	}
+
+	@Test
+	public void clearedKeysAreComputedAgain() {
+		Server server = Server.builder().setHost("example.net").setPort("1234").setPool(createPool()).build();
+		String key = KeyUtils.getKeyString(server, query, result, value, ImmutableList.of("type"), "root");
+
+		KeyUtils.clearCache();
+
+		String recomputed = KeyUtils.getKeyString(server, query, result, value, ImmutableList.of("type"), "root");
+		assertThat(recomputed).isEqualTo(key);
+		assertThat(recomputed).isNotSameAs(key);
+	}
+
+	@Test
+	public void keysOfDifferentSeriesAreNotMixedUp() {
+		Server server = Server.builder().setHost("example.net").setPort("1234").setPool(createPool()).build();
+		Server other = Server.builder().setHost("example.org").setPort("1234").setPool(createPool()).build();
+
+		assertThat(KeyUtils.getKeyString(other, query, result, value, ImmutableList.of("type"), "root"))
+				.isEqualTo("root.example_org_1234.sun_management_MemoryImpl.Memory.HeapMemoryUsage_used");
+		assertThat(KeyUtils.getKeyString(server, query, result, value, ImmutableList.<String>of(), "root"))
+				.isEqualTo("root.example_net_1234.sun_management_MemoryImpl.HeapMemoryUsage_used");
+		assertThat(KeyUtils.getKeyString(query, result, value, ImmutableList.of("type")))
+				.isEqualTo("sun_management_MemoryImpl.Memory.HeapMemoryUsage_used");
+		assertThat(KeyUtils.getPrefixedKeyString(query, result, value, ImmutableList.of("type"), "used"))
+				.isEqualTo("Memory.used");
+	}
+}
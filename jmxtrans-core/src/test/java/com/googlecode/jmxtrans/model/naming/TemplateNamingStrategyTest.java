@@ -0,0 +1,78 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.naming;
+
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Result;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TemplateNamingStrategyTest {
+
+	private final Result result = new Result(0, "HeapMemoryUsage", "sun.management.MemoryPoolImpl", "java.lang", null,
+			"type=MemoryPool,name=PS Eden Space", ImmutableMap.<String, Object>of("used", 1L));
+
+	@Test
+	public void variablesAreReplacedByTheirValues() {
+		TemplateNamingStrategy strategy = new TemplateNamingStrategy("jvm.${class}.${typename.name}.${attribute}");
+
+		assertThat(strategy.formatName(result)).isEqualTo("jvm.sun.management.MemoryPoolImpl.PS Eden Space.HeapMemoryUsage");
+	}
+
+	@Test
+	public void namesAreTheSameAsWithJexl() {
+		Result aliased = new Result(0, "HeapMemoryUsage", "sun.management.MemoryPoolImpl", "java.lang", "memory",
+				"type=MemoryPool,name=PS Eden Space", ImmutableMap.<String, Object>of("used", 1L));
+
+		for (Result r : new Result[]{result, aliased}) {
+			assertThat(new TemplateNamingStrategy("${class}.${attribute}").formatName(r))
+					.isEqualTo(new JexlNamingStrategy().formatName(r));
+			assertThat(new TemplateNamingStrategy("${realclass}-${typename.type}").formatName(r))
+					.isEqualTo(new JexlNamingStrategy("realclass + '-' + typename.type").formatName(r));
+		}
+	}
+
+	@Test
+	public void missingValuesAreEmpty() {
+		TemplateNamingStrategy strategy = new TemplateNamingStrategy("${alias}.${typename.missing}.");
+
+		assertThat(strategy.formatName(result)).isEqualTo("..");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownVariablesAreRejected() {
+		new TemplateNamingStrategy("${class}.${host}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unclosedVariablesAreRejected() {
+		new TemplateNamingStrategy("${class}.${attribute");
+	}
+
+	@Test
+	public void templatesAreRecognized() {
+		assertThat(TemplateNamingStrategy.isTemplate("${class}.${attribute}")).isTrue();
+		assertThat(TemplateNamingStrategy.isTemplate(JexlNamingStrategy.DEFAULT_EXPRESSION)).isFalse();
+	}
+}
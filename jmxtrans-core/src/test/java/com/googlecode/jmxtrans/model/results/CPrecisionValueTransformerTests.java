@@ -84,4 +84,12 @@ public class CPrecisionValueTransformerTests {
 		assertThat(transformed).isNull();
 	}
 
+	@Test
+	public void infiniteValueIsNotTransformed() {
+		ValueTransformer transformer = new CPrecisionValueTransformer();
+		Object transformed = transformer.apply(Double.POSITIVE_INFINITY);
+
+		assertThat(transformed).isEqualTo(Double.POSITIVE_INFINITY);
+	}
+
 }
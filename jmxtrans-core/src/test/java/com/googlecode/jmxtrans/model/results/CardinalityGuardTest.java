@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServerBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CardinalityGuardTest {
+
+	private final Server server = dummyServer();
+	private final Query query = Query.builder()
+			.setObj("kafka.server:type=BrokerTopicMetrics,name=BytesInPerSec,topic=*")
+			.setMaxSeries(2)
+			.setTopBy("Count")
+			.build();
+	private final CardinalityGuard guard = new CardinalityGuard(1000);
+
+	@Test
+	public void topMBeansAreKeptAndOthersSummed() {
+		ImmutableList<Result> guarded = guard.guard(server, query, ImmutableList.of(
+				meter(0, "small", 1L),
+				meter(0, "large", 100L),
+				meter(0, "medium", 10L),
+				meter(0, "tiny", 2.5)));
+
+		assertThat(guarded).hasSize(2);
+		assertThat(guarded.get(0).getTypeName()).isEqualTo("type=BrokerTopicMetrics,name=BytesInPerSec,topic=large");
+		Result other = guarded.get(1);
+		assertThat(other.getTypeName()).isEqualTo("type=BrokerTopicMetrics,name=BytesInPerSec,topic=__other__");
+		assertThat(other.getValues()).isEqualTo(ImmutableMap.<String, Object>of("Count", 13.5));
+		assertThat(guard.getOtherSeries()).isEqualTo(3);
+	}
+
+	@Test
+	public void resultsWithinLimitAreUntouched() {
+		ImmutableList<Result> results = ImmutableList.of(meter(0, "small", 1L), meter(0, "large", 100L));
+
+		assertThat(guard.guard(server, query, results)).isSameAs(results);
+		assertThat(guard.getOtherSeries()).isZero();
+	}
+
+	@Test
+	public void newSeriesAreDroppedBeyondServerLimit() {
+		Server limited = dummyServerBuilder().setMaxSeries(2).build();
+		Query unlimited = Query.builder(query).setMaxSeries(null).build();
+
+		guard.guard(limited, unlimited, ImmutableList.of(meter(0, "a", 1L), meter(0, "b", 1L)));
+		ImmutableList<Result> guarded = guard.guard(limited, unlimited, ImmutableList.of(
+				meter(100, "a", 2L), meter(100, "c", 2L), meter(100, "b", 2L)));
+
+		assertThat(guarded).hasSize(2);
+		assertThat(guarded.get(1).getTypeName()).endsWith("topic=b");
+		assertThat(guard.getDroppedSeries()).isEqualTo(1);
+		assertThat(guard.getAdmittedSeries()).isEqualTo(2);
+
+		// idle series free their place
+		guarded = guard.guard(limited, unlimited, ImmutableList.of(meter(5000, "c", 3L)));
+		assertThat(guarded).hasSize(1);
+	}
+
+	@Test
+	public void serversNotReadAnymoreAreForgotten() {
+		Server limited = dummyServerBuilder().setMaxSeries(2).build();
+		Server other = dummyServerBuilder().setHost("other").setMaxSeries(2).build();
+		Query unlimited = Query.builder(query).setMaxSeries(null).build();
+
+		guard.guard(limited, unlimited, ImmutableList.of(meter(0, "a", 1L), meter(0, "b", 1L)));
+		guard.guard(other, unlimited, ImmutableList.of(meter(0, "a", 1L)));
+		assertThat(guard.getAdmittedSeries()).isEqualTo(3);
+
+		guard.guard(other, unlimited, ImmutableList.of(meter(5000, "a", 1L)));
+		assertThat(guard.getAdmittedSeries()).isEqualTo(1);
+	}
+
+	@Test
+	public void distinctSeriesAreEstimated() {
+		Query manySeries = Query.builder(query).setMaxSeries(1).build();
+		for (int i = 0; i < 1000; i++) {
+			guard.guard(server, manySeries, ImmutableList.of(meter(i, "topic" + i, 1L), meter(i, "topic" + (i + 1), 1L)));
+		}
+
+		assertThat(guard.getEstimatedSeries()).isBetween(980L, 1020L);
+	}
+
+	@Test
+	public void unguardedQueriesAreNotCounted() {
+		Query plain = Query.builder().setObj("kafka.server:type=BrokerTopicMetrics,name=BytesInPerSec,topic=*").build();
+
+		guard.guard(server, plain, ImmutableList.of(meter(0, "a", 1L)));
+
+		assertThat(guard.getEstimatedSeries()).isZero();
+	}
+
+	private static Result meter(long epoch, String topic, Object count) {
+		return resultAt(epoch, "kafka.server:type=BrokerTopicMetrics,name=BytesInPerSec,topic=" + topic, "Count", count);
+	}
+}
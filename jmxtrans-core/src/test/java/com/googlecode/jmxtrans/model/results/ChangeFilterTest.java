@@ -0,0 +1,94 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangeFilterTest {
+
+	private final Server server = dummyServer();
+	private final Query query = Query.builder()
+			.setObj("java.lang:type=Memory")
+			.setOnlyOnChange(true)
+			.setHeartbeatCycles(3)
+			.build();
+	private final ChangeFilter filter = new ChangeFilter(1000);
+
+	@Test
+	public void unchangedValuesAreSuppressedUntilHeartbeat() {
+		assertThat(filter(0, 1L, "a")).containsOnlyKeys("count", "state");
+		assertThat(filter(1, 1L, "a")).isEmpty();
+		assertThat(filter(2, 1L, "a")).isEmpty();
+		assertThat(filter(3, 1L, "a")).containsOnlyKeys("count", "state");
+	}
+
+	@Test
+	public void onlyChangedValuesAreWritten() {
+		filter(0, 1L, "a");
+
+		assertThat(filter(1, 2L, "a")).containsExactly(entry("count", 2L));
+		assertThat(filter(2, 2L, "b")).containsExactly(entry("state", "b"));
+		assertThat(filter(3, 2.0, "b")).containsExactly(entry("count", 2.0));
+	}
+
+	@Test
+	public void queriesWithoutOnlyOnChangeAreUntouched() {
+		Query all = Query.builder().setObj("java.lang:type=Memory").build();
+		Result result = resultAt(0, "java.lang:type=Memory", "Usage", values(1L, "a"));
+
+		assertThat(filter.filter(server, all, ImmutableList.of(result))).containsExactly(result);
+		assertThat(filter.filter(server, all, ImmutableList.of(result))).containsExactly(result);
+	}
+
+	@Test
+	public void idleSeriesAreForgotten() {
+		filter(0, 1L, "a");
+		assertThat(filter.seriesCount()).isEqualTo(2);
+
+		assertThat(filter(5000, 1L, "a")).containsOnlyKeys("count", "state");
+	}
+
+	private Map<String, Object> filter(long epoch, Object count, String state) {
+		ImmutableList<Result> filtered = filter.filter(server, query, ImmutableList.of(resultAt(epoch, "java.lang:type=Memory", "Usage", values(count, state))));
+		return filtered.isEmpty() ? ImmutableMap.<String, Object>of() : filtered.get(0).getValues();
+	}
+
+	private static Map.Entry<String, Object> entry(String key, Object value) {
+		return ImmutableMap.of(key, value).entrySet().iterator().next();
+	}
+
+	private static Map<String, Object> values(Object count, String state) {
+		return ImmutableMap.of("count", count, "state", state);
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static com.googlecode.jmxtrans.model.RollupStatistic.MAX;
+import static com.googlecode.jmxtrans.model.RollupStatistic.MIN;
+import static com.googlecode.jmxtrans.model.RollupStatistic.P50;
+import static com.googlecode.jmxtrans.model.RollupStatistic.SUM;
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServerBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class ClusterAggregatesTest {
+
+	private final Server first = dummyServerBuilder().setHost("kafka1").setRunPeriodSeconds(10).build();
+	private final Server second = dummyServerBuilder().setHost("kafka2").setRunPeriodSeconds(10).build();
+	private final Query query = Query.builder()
+			.setObj("kafka.server:type=BrokerTopicMetrics,name=MessagesInPerSec,topic=*")
+			.setResultAlias("messagesIn")
+			.setAggregateAlias("kafka")
+			.addAggregateTypeNames("topic")
+			.build();
+	private final ClusterAggregates aggregates = new ClusterAggregates(1000);
+
+	@Test
+	public void valuesOfAllServersAreAggregatedPerWindow() {
+		assertThat(add(first, 10000, "orders", 10L)).isEmpty();
+		assertThat(add(second, 12000, "orders", 30L)).isEmpty();
+		assertThat(add(first, 15000, "orders", 1000L)).isEmpty(); // second value of the window
+
+		ImmutableList<Result> written = add(first, 20000, "orders", 20L);
+		assertThat(written).hasSize(1);
+		Result aggregate = written.get(0);
+		assertThat(aggregate.getEpoch()).isEqualTo(10000);
+		assertThat(aggregate.getTypeName()).isEqualTo("topic=orders");
+		assertThat(aggregate.getValues()).isEqualTo(ImmutableMap.<String, Object>of(
+				"Count_sum", 40L,
+				"Count_avg", 20.0,
+				"Count_max", 30L,
+				"Count_count", 2L));
+	}
+
+	@Test
+	public void selectedTypeNamesAreAggregatedSeparately() {
+		add(first, 0, "orders", 1L);
+		add(second, 0, "payments", 2L);
+
+		assertThat(add(first, 10000, "orders", 1L).get(0).getValues()).containsEntry("Count_sum", 1L);
+		assertThat(add(second, 10000, "payments", 2L).get(0).getValues()).containsEntry("Count_sum", 2L);
+	}
+
+	@Test
+	public void otherTypeNamesAreAggregatedTogether() {
+		Query allTopics = Query.builder()
+				.setObj("kafka.server:type=BrokerTopicMetrics,name=MessagesInPerSec,topic=*")
+				.setAggregateAlias("kafka")
+				.addAggregateStatistics(SUM, MIN)
+				.build();
+		add(allTopics, first, 0, "orders", 1L);
+		add(allTopics, second, 0, "payments", 2L);
+
+		ImmutableList<Result> written = add(allTopics, first, 10000, "orders", 1L);
+		assertThat(written).hasSize(1);
+		assertThat(written.get(0).getTypeName()).isEmpty();
+		assertThat(written.get(0).getValues()).isEqualTo(ImmutableMap.<String, Object>of(
+				"Count_min", 1L,
+				"Count_sum", 3L));
+	}
+
+	@Test
+	public void percentilesAreEstimatedAcrossServers() {
+		Query percentiles = Query.builder()
+				.setObj("kafka.server:type=BrokerTopicMetrics,name=MessagesInPerSec,topic=*")
+				.setAggregateAlias("kafka")
+				.addAggregateStatistics(P50, MAX)
+				.build();
+		add(percentiles, first, 0, "orders", 10L);
+		add(percentiles, second, 0, "orders", 100L);
+		add(percentiles, first, 10000, "orders", 1000L);
+		add(percentiles, second, 10000, "orders", 2000L);
+
+		Map<String, Object> values = add(percentiles, first, 20000, "orders", 1L).get(0).getValues();
+		assertThat(values).containsEntry("Count_max", 2000L);
+		assertThat((Double) values.get("Count_p50")).isCloseTo(1000.0, offset(20.0));
+	}
+
+	@Test
+	public void lateValuesAreNotCounted() {
+		add(first, 10000, "orders", 10L);
+		add(first, 20000, "orders", 10L);
+
+		assertThat(add(second, 15000, "orders", 30L)).isEmpty();
+		assertThat(add(second, 30000, "orders", 30L).get(0).getValues()).containsEntry("Count_count", 1L);
+	}
+
+	@Test
+	public void aggregatesAreWrittenAsTheAggregateServer() {
+		Server aggregateServer = aggregates.aggregateServer(first, query);
+
+		assertThat(aggregateServer.getAlias()).isEqualTo("kafka");
+		assertThat(aggregateServer.getHost()).isEqualTo("kafka");
+		assertThat(aggregateServer.getPort()).isNull();
+		assertThat(aggregateServer.getUrl()).isNull();
+		assertThat(aggregateServer.getPid()).isNull();
+		assertThat(aggregates.aggregateServer(first, query)).isSameAs(aggregateServer);
+		assertThat(aggregates.aggregateServer(second, query)).isSameAs(aggregateServer);
+	}
+
+	@Test
+	public void queriesWithoutAggregateAreIgnored() {
+		Query notAggregated = Query.builder().setObj("kafka.server:type=BrokerTopicMetrics,name=MessagesInPerSec,topic=*").build();
+
+		assertThat(aggregates.add(first, notAggregated, ImmutableList.of(meter(0, "orders", 1L)))).isEmpty();
+		assertThat(aggregates.seriesCount()).isZero();
+	}
+
+	private ImmutableList<Result> add(Server server, long epoch, String topic, Object count) {
+		return add(query, server, epoch, topic, count);
+	}
+
+	private ImmutableList<Result> add(Query query, Server server, long epoch, String topic, Object count) {
+		return aggregates.add(server, query, ImmutableList.of(meter(epoch, topic, count)));
+	}
+
+	private static Result meter(long epoch, String topic, Object count) {
+		return resultAt(epoch, "kafka.server:type=BrokerTopicMetrics,name=MessagesInPerSec,topic=" + topic, "Count", count);
+	}
+}
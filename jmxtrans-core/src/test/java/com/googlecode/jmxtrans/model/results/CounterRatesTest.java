@@ -0,0 +1,104 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CounterRatesTest {
+
+	private static final String SCAVENGE = "java.lang:type=GarbageCollector,name=PS Scavenge";
+
+	private final Server server = dummyServer();
+	private final Query query = Query.builder()
+			.setObj("java.lang:type=GarbageCollector,name=*")
+			.addAttr("CollectionCount", "Name")
+			.addRates("CollectionCount")
+			.build();
+	private final CounterRates rates = new CounterRates(1000);
+
+	@Test
+	public void countersAreReplacedByTheirRatePerSecond() {
+		assertThat(derive(0, 100L)).isEmpty();
+
+		assertThat(derive(2000, 150L)).containsExactly(entry(25d));
+		assertThat(derive(4000, 250.0)).isEmpty(); // a floating value is a new series
+		assertThat(derive(5000, 251.0)).containsExactly(entry(1d));
+	}
+
+	@Test
+	public void resetCountersStartFromZero() {
+		derive(0, 100L);
+
+		assertThat(derive(10000, 20L)).containsExactly(entry(2d));
+	}
+
+	@Test
+	public void olderSamplesAreIgnored() {
+		derive(1000, 100L);
+
+		assertThat(derive(1000, 120L)).isEmpty();
+		assertThat(derive(2000, 120L)).containsExactly(entry(20d));
+	}
+
+	@Test
+	public void otherAttributesAndQueriesAreUntouched() {
+		Result name = resultAt(0, SCAVENGE, "Name", "PS Scavenge");
+		assertThat(rates.derive(server, query, ImmutableList.of(name))).containsExactly(name);
+
+		Query noRates = Query.builder().setObj("java.lang:type=GarbageCollector,name=*").build();
+		Result count = resultAt(0, SCAVENGE, "CollectionCount", 42L);
+		assertThat(rates.derive(server, noRates, ImmutableList.of(count))).containsExactly(count);
+	}
+
+	@Test
+	public void idleSeriesAreEvicted() {
+		derive(0, 100L);
+		assertThat(rates.seriesCount()).isEqualTo(1);
+
+		// evicted by the sample of another series, more than a second later
+		Result other = resultAt(5000, "java.lang:type=GarbageCollector,name=PS MarkSweep", "CollectionCount", 1L);
+		rates.derive(server, query, ImmutableList.of(other));
+		assertThat(derive(6000, 150L)).isEmpty();
+		assertThat(rates.seriesCount()).isEqualTo(2);
+	}
+
+	private Map<String, Object> derive(long epoch, Object value) {
+		ImmutableList<Result> derived = rates.derive(server, query, ImmutableList.of(resultAt(epoch, SCAVENGE, "CollectionCount", value)));
+		return derived.isEmpty() ? ImmutableMap.<String, Object>of() : derived.get(0).getValues();
+	}
+
+	private static Map.Entry<String, Object> entry(double rate) {
+		return ImmutableMap.<String, Object>of("CollectionCount", rate).entrySet().iterator().next();
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import org.junit.Test;
+
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DerivedMetricsTest {
+
+	private final Query query = Query.builder()
+			.setObj("java.lang:type=Memory")
+			.addDerived("HeapUsedRatio", "HeapMemoryUsage.used / HeapMemoryUsage.max")
+			.addDerived("PendingPerHeap", "ObjectPendingFinalizationCount / HeapMemoryUsage.max")
+			.build();
+
+	private final Result heap = resultAt(1000, "java.lang:type=Memory", "HeapMemoryUsage",
+			ImmutableMap.<String, Object>of("used", 25L, "max", 100L, "committed", 50L));
+	private final Result pending = resultAt(2000, "java.lang:type=Memory", "ObjectPendingFinalizationCount", 10);
+
+	@Test
+	public void derivedValuesAreAddedAsResults() {
+		ImmutableList<Result> results = DerivedMetrics.derive(query, ImmutableList.of(heap, pending));
+
+		assertThat(results).hasSize(4);
+		assertThat(results.subList(0, 2)).containsExactly(heap, pending);
+
+		Result ratio = results.get(2);
+		assertThat(ratio.getAttributeName()).isEqualTo("HeapUsedRatio");
+		assertThat(ratio.getTypeName()).isEqualTo("type=Memory");
+		assertThat(ratio.getEpoch()).isEqualTo(2000);
+		assertThat(ratio.getValues()).isEqualTo(ImmutableMap.<String, Object>of("HeapUsedRatio", 0.25));
+		assertThat(results.get(3).getValues()).isEqualTo(ImmutableMap.<String, Object>of("PendingPerHeap", 0.1));
+	}
+
+	@Test
+	public void expressionsWithMissingValuesAreSkipped() {
+		ImmutableList<Result> results = DerivedMetrics.derive(query, ImmutableList.of(heap));
+
+		assertThat(results).hasSize(2);
+		assertThat(results.get(1).getAttributeName()).isEqualTo("HeapUsedRatio");
+	}
+
+	@Test
+	public void expressionsAreEvaluatedForEachMBean() {
+		Result otherHeap = resultAt(1000, "java.lang:type=Memory,name=other", "HeapMemoryUsage",
+				ImmutableMap.<String, Object>of("used", 0L, "max", 0L));
+
+		ImmutableList<Result> results = DerivedMetrics.derive(query, ImmutableList.of(heap, otherHeap));
+
+		// 0 / 0 is not written
+		assertThat(results).hasSize(3);
+		assertThat(results.get(2).getTypeName()).isEqualTo("type=Memory");
+	}
+
+	@Test
+	public void queriesWithoutDerivedValuesAreUntouched() {
+		Query plain = Query.builder().setObj("java.lang:type=Memory").build();
+		ImmutableList<Result> results = ImmutableList.of(heap);
+
+		assertThat(DerivedMetrics.derive(plain, results)).isSameAs(results);
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class QuantileSketchTest {
+
+	@Test
+	public void quantilesAreWithinRelativeAccuracy() {
+		QuantileSketch sketch = new QuantileSketch();
+		for (int i = 1; i <= 10000; i++) {
+			sketch.add(i);
+		}
+
+		assertThat(sketch.count()).isEqualTo(10000);
+		assertThat(sketch.quantile(0.5)).isCloseTo(5000, offset(100.0));
+		assertThat(sketch.quantile(0.99)).isCloseTo(9900, offset(198.0));
+		assertThat(sketch.quantile(0)).isCloseTo(1, offset(0.021));
+	}
+
+	@Test
+	public void negativeAndZeroValuesAreCounted() {
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.add(-100);
+		sketch.add(0);
+		sketch.add(100);
+
+		assertThat(sketch.quantile(0)).isCloseTo(-100, offset(2.0));
+		assertThat(sketch.quantile(0.5)).isEqualTo(0);
+		assertThat(sketch.quantile(1)).isCloseTo(100, offset(2.0));
+	}
+
+	@Test
+	public void lowestValuesAreCollapsedWhenOutOfRange() {
+		QuantileSketch sketch = new QuantileSketch(0.02, 16);
+		sketch.add(1e-6);
+		sketch.add(1);
+		sketch.add(1e6);
+
+		assertThat(sketch.count()).isEqualTo(3);
+		assertThat(sketch.quantile(1)).isCloseTo(1e6, offset(2e4));
+	}
+
+	@Test
+	public void emptySketchHasNoQuantile() {
+		QuantileSketch sketch = new QuantileSketch();
+		sketch.add(1);
+		sketch.clear();
+
+		assertThat(sketch.quantile(0.5)).isNaN();
+	}
+}
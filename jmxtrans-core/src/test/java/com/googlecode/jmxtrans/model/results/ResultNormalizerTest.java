@@ -0,0 +1,79 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.ResultValues;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResultNormalizerTest {
+
+	@Test
+	public void numericStringsAreParsedOnce() {
+		Result normalized = normalize(ImmutableMap.<String, Object>of(
+				"long", "42", "double", "1.5", "padded", "1.50", "hex", "0x10", "text", "forty-two"));
+
+		assertThat(normalized.getValues()).isEqualTo(ImmutableMap.<String, Object>of(
+				"long", 42L, "double", 1.5d, "padded", "1.50", "hex", "0x10", "text", "forty-two"));
+	}
+
+	@Test
+	public void specialFloatingPointValuesAreHandled() {
+		Result normalized = normalize(ImmutableMap.<String, Object>of(
+				"subnormal", Double.MIN_VALUE, "subnormalFloat", Float.MIN_VALUE, "nan", Double.NaN, "one", 1d));
+
+		assertThat(normalized.getValues()).isEqualTo(ImmutableMap.<String, Object>of(
+				"subnormal", 0d, "subnormalFloat", 0f, "nan", Double.NaN, "one", 1d));
+		ResultValues values = normalized.getResultValues();
+		assertThat(values.isValidNumber(2)).isFalse();
+		assertThat(values.isValidNumber(3)).isTrue();
+	}
+
+	@Test
+	public void resultsAreNormalizedOnlyOnce() {
+		Result normalized = normalize(ImmutableMap.<String, Object>of("value", true));
+
+		assertThat(normalized.getResultValues().isNormalized()).isTrue();
+		assertThat(normalized.normalize()).isSameAs(normalized);
+		assertThat(ResultNormalizer.normalize(ImmutableList.of(normalized)).get(0)).isSameAs(normalized);
+	}
+
+	@Test
+	public void booleansAreConvertedWithoutTouchingNumbers() {
+		Result normalized = normalize(ImmutableMap.<String, Object>of("flag", true, "count", 3));
+
+		Result transformed = new ResultValuesTransformer(new BooleanAsNumberValueTransformer(1, 0)).apply(normalized);
+
+		assertThat(transformed.getValues()).isEqualTo(ImmutableMap.<String, Object>of("flag", 1, "count", 3));
+		assertThat(transformed.getDescriptor()).isSameAs(normalized.getDescriptor());
+	}
+
+	private Result normalize(ImmutableMap<String, Object> values) {
+		Result result = new Result(0, "attribute", "className", "domain", null, "type=Test", values);
+		return ResultNormalizer.normalize(ImmutableList.of(result)).get(0);
+	}
+}
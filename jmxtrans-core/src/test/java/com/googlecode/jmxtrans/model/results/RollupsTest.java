@@ -0,0 +1,115 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static com.googlecode.jmxtrans.model.RollupStatistic.AVG;
+import static com.googlecode.jmxtrans.model.RollupStatistic.MAX;
+import static com.googlecode.jmxtrans.model.RollupStatistic.P50;
+import static com.googlecode.jmxtrans.model.RollupStatistic.P99;
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RollupsTest {
+
+	private final Server server = dummyServer();
+	private final Query query = Query.builder()
+			.setObj("java.lang:type=Threading")
+			.setRollupSeconds(10)
+			.build();
+	private final Rollups rollups = new Rollups(1000);
+
+	@Test
+	public void windowsAreWrittenWhenTheNextOneStarts() {
+		assertThat(rollup(query, 10000, 5L)).isEmpty();
+		assertThat(rollup(query, 12000, 9L)).isEmpty();
+		assertThat(rollup(query, 19999, 7L)).isEmpty();
+
+		ImmutableList<Result> windows = rollups.rollup(server, query, ImmutableList.of(resultAt(20000, "java.lang:type=Threading", "ThreadCount", 3L)));
+		assertThat(windows).hasSize(1);
+		assertThat(windows.get(0).getEpoch()).isEqualTo(10000);
+		assertThat(windows.get(0).getValues()).isEqualTo(ImmutableMap.<String, Object>of(
+				"ThreadCount_min", 5L,
+				"ThreadCount_max", 9L,
+				"ThreadCount_sum", 21L,
+				"ThreadCount_count", 3L,
+				"ThreadCount_last", 7L));
+	}
+
+	@Test
+	public void floatingSamplesMakeTheWindowFloating() {
+		Query maxAndAvg = Query.builder(query).addRollupStatistics(MAX, AVG).build();
+		rollup(maxAndAvg, 0, 1L);
+		rollup(maxAndAvg, 1000, 2.5);
+
+		assertThat(rollup(maxAndAvg, 10000, 1L)).isEqualTo(ImmutableMap.<String, Object>of(
+				"ThreadCount_max", 2.5,
+				"ThreadCount_avg", 1.75));
+	}
+
+	@Test
+	public void percentilesAreEstimatedForEachWindow() {
+		Query percentiles = Query.builder(query).addRollupStatistics(P50, P99).build();
+		for (int i = 1; i <= 100; i++) {
+			rollup(percentiles, i * 10, (long) i);
+		}
+
+		Map<String, Object> window = rollup(percentiles, 10000, 1L);
+		assertThat((Double) window.get("ThreadCount_p50")).isBetween(49.0, 51.0);
+		assertThat((Double) window.get("ThreadCount_p99")).isBetween(97.0, 101.0);
+
+		// the sketch only counts the samples of the new window
+		assertThat(rollup(percentiles, 20000, 1L)).containsEntry("ThreadCount_p99", rollup(percentiles, 30000, 1L).get("ThreadCount_p99"));
+	}
+
+	@Test
+	public void duplicateSamplesAreIgnored() {
+		rollup(query, 0, 1L);
+		rollup(query, 0, 1L);
+
+		assertThat(rollup(query, 10000, 1L)).containsEntry("ThreadCount_count", 1L);
+	}
+
+	@Test
+	public void queriesWithoutRollupAreUntouched() {
+		Query noRollup = Query.builder().setObj("java.lang:type=Threading").build();
+		Result result = resultAt(0, "java.lang:type=Threading", "ThreadCount", 1L);
+
+		assertThat(rollups.rollup(server, noRollup, ImmutableList.of(result))).containsExactly(result);
+		assertThat(rollups.seriesCount()).isZero();
+	}
+
+	private Map<String, Object> rollup(Query query, long epoch, Object value) {
+		ImmutableList<Result> windows = rollups.rollup(server, query, ImmutableList.of(resultAt(epoch, "java.lang:type=Threading", "ThreadCount", value)));
+		return windows.isEmpty() ? ImmutableMap.<String, Object>of() : windows.get(0).getValues();
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SeriesStatesTest {
+
+	@Test
+	public void valuesWithTheSameStringHashAreDifferentSeries() {
+		assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+		assertThat(SeriesStates.combine(17, "Aa")).isNotEqualTo(SeriesStates.combine(17, "BB"));
+		assertThat(SeriesStates.combine(17, "AaAa")).isNotEqualTo(SeriesStates.combine(17, "BBBB"));
+	}
+
+	@Test
+	public void valuesAreNotConfusedAcrossBoundaries() {
+		assertThat(SeriesStates.combine(SeriesStates.combine(17, "a"), "bc"))
+				.isNotEqualTo(SeriesStates.combine(SeriesStates.combine(17, "ab"), "c"));
+		assertThat(SeriesStates.combine(17, null)).isNotEqualTo(SeriesStates.combine(17, ""));
+	}
+
+	@Test
+	public void collidingSeriesKeepTheirOwnState() {
+		SeriesStates states = new SeriesStates();
+		states.put(SeriesStates.combine(17, "Aa"), SeriesStates.INTEGRAL, 1, 0);
+		states.put(SeriesStates.combine(17, "BB"), SeriesStates.INTEGRAL, 2, 0);
+
+		assertThat(states.size()).isEqualTo(2);
+		assertThat(states.value(states.find(SeriesStates.combine(17, "Aa")))).isEqualTo(1);
+		assertThat(states.value(states.find(SeriesStates.combine(17, "BB")))).isEqualTo(2);
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.snapshot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnapshotCodecTest {
+
+	private final SnapshotEncoder encoder = new SnapshotEncoder();
+	private final SnapshotDecoder decoder = new SnapshotDecoder();
+
+	private final List<Query> queries = ImmutableList.of(
+			Query.builder().setObj("java.lang:type=Memory").setResultAlias("memory").build(),
+			Query.builder().setObj("java.lang:type=Threading").build());
+
+	@Test
+	public void valuesAndTheirTypesSurviveARoundTrip() throws IOException {
+		Result memory = result("HeapMemoryUsage", ImmutableMap.<String, Object>builder()
+				.put("used", 123456789L)
+				.put("ratio", 0.75d)
+				.put("load", 1.5f)
+				.put("count", 42)
+				.put("small", (short) -3)
+				.put("tiny", (byte) 7)
+				.put("verbose", true)
+				.put("name", "G1 Young Generation")
+				.put("decimal", new BigDecimal("12.50"))
+				.build());
+
+		List<ImmutableList<Result>> decoded = roundTrip(1000L, Arrays.asList(ImmutableList.of(memory), ImmutableList.<Result>of()));
+
+		assertThat(decoded).hasSize(2);
+		Result result = decoded.get(0).get(0);
+		assertThat(result.getEpoch()).isEqualTo(1000L);
+		assertThat(result.getAttributeName()).isEqualTo("HeapMemoryUsage");
+		assertThat(result.getClassName()).isEqualTo("sun.management.MemoryImpl");
+		assertThat(result.getObjDomain()).isEqualTo("java.lang");
+		assertThat(result.getTypeName()).isEqualTo("type=Memory");
+		assertThat(result.getKeyAlias()).isEqualTo("memory");
+		assertThat(result.getValues()).hasSize(memory.getValues().size());
+		for (String key : memory.getValues().keySet()) {
+			if (!key.equals("decimal")) assertThat(result.getValues()).containsEntry(key, memory.getValues().get(key));
+		}
+		assertThat(result.getValues()).containsEntry("decimal", "12.50");
+		assertThat(decoded.get(1)).isEmpty();
+	}
+
+	@Test
+	public void unchangedValuesAndKnownNamesAreNotResent() throws IOException {
+		List<ImmutableList<Result>> results = Arrays.asList(
+				ImmutableList.of(result("HeapMemoryUsage", ImmutableMap.<String, Object>of("used", 123456789L, "ratio", 0.75d))),
+				ImmutableList.<Result>of());
+
+		int first = encoder.encode(1000L, results).size();
+		int second = encoder.encode(2000L, results).size();
+
+		assertThat(second).isLessThan(first / 2);
+	}
+
+	@Test
+	public void deltasAreAppliedAcrossSnapshots() throws IOException {
+		for (long used = 0; used < 5000; used += 1234) {
+			double ratio = used / 5000d;
+			List<ImmutableList<Result>> decoded = roundTrip(used, Arrays.asList(
+					ImmutableList.of(result("HeapMemoryUsage", ImmutableMap.<String, Object>of("used", used, "ratio", ratio))),
+					ImmutableList.of(result("ThreadCount", ImmutableMap.<String, Object>of("ThreadCount", (int) -used)))));
+
+			assertThat(decoded.get(0).get(0).getValues()).containsEntry("used", used).containsEntry("ratio", ratio);
+			assertThat(decoded.get(1).get(0).getValues()).containsEntry("ThreadCount", (int) -used);
+		}
+	}
+
+	@Test
+	public void failedQueriesAreReportedAsNull() throws IOException {
+		List<ImmutableList<Result>> decoded = roundTrip(1000L, Arrays.asList(
+				null,
+				ImmutableList.of(result("ThreadCount", ImmutableMap.<String, Object>of("ThreadCount", 12)))));
+
+		assertThat(decoded.get(0)).isNull();
+		assertThat(decoded.get(1)).hasSize(1);
+	}
+
+	@Test(expected = IOException.class)
+	public void snapshotsMustMatchTheDefinedQueries() throws IOException {
+		ByteBuffer frame = ByteBuffer.wrap(encoder.encode(1000L, Arrays.asList(ImmutableList.<Result>of())).toByteArray());
+		frame.get();
+		decoder.decode(frame, queries);
+	}
+
+	@Test
+	public void definitionsKeepPatternsAndAttributes() throws IOException {
+		ByteArrayOutputStream define = SnapshotProtocol.define(ImmutableList.of(
+				Query.builder().setObj("java.lang:type=GarbageCollector,name=*").addAttr("CollectionCount", "CollectionTime").build()));
+		ByteBuffer frame = ByteBuffer.wrap(define.toByteArray());
+		assertThat(frame.get()).isEqualTo(SnapshotProtocol.DEFINE);
+
+		Query query = SnapshotProtocol.readDefinitions(frame).get(0);
+
+		assertThat(query.getObjectName().getCanonicalName()).isEqualTo("java.lang:name=*,type=GarbageCollector");
+		assertThat(query.getAttr()).containsExactly("CollectionCount", "CollectionTime");
+	}
+
+	private List<ImmutableList<Result>> roundTrip(long epoch, List<? extends Iterable<Result>> results) throws IOException {
+		ByteBuffer frame = ByteBuffer.wrap(encoder.encode(epoch, results).toByteArray());
+		assertThat(frame.get()).isEqualTo(SnapshotProtocol.SNAPSHOT);
+		return decoder.decode(frame, queries);
+	}
+
+	private static Result result(String attributeName, ImmutableMap<String, Object> values) {
+		return new Result(0L, attributeName, "sun.management.MemoryImpl", "java.lang", null, "type=Memory", values);
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.javaagent;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Injector;
+import com.googlecode.jmxtrans.ConfigurationParser;
+import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.guice.JmxTransModule;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import com.googlecode.jmxtrans.model.results.ResultPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.collect.Iterables.concat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Polls the servers of a jmxtrans configuration in the current JVM.
+ * <p/>
+ * Servers are forced to {@code local}, so queries go to the platform
+ * MBeanServer (and the typed platform MXBean path) without any serialization.
+ * Each server is polled at its run period on the given executor, and results
+ * are written synchronously by the configured output writers on the same
+ * thread.
+ */
+@ThreadSafe
+public class InProcessPoller {
+
+	private static final Logger log = LoggerFactory.getLogger(InProcessPoller.class);
+
+	@Nonnull private final JmxTransConfiguration configuration;
+	@Nonnull private final Injector injector;
+	@Nonnull private final ScheduledExecutorService executor;
+	@Nonnull private final ResultPipeline pipeline = ResultPipeline.create();
+	@Nonnull private volatile ImmutableList<Server> servers = ImmutableList.of();
+
+	@VisibleForTesting
+	InProcessPoller(
+			@Nonnull JmxTransConfiguration configuration,
+			@Nonnull Injector injector,
+			@Nonnull ScheduledExecutorService executor) {
+		this.configuration = configuration;
+		this.injector = injector;
+		this.executor = executor;
+	}
+
+	public static InProcessPoller create(@Nonnull File jsonDirOrFile, @Nonnull ScheduledExecutorService executor) {
+		JmxTransConfiguration configuration = new JmxTransConfiguration();
+		if (jsonDirOrFile.isDirectory()) configuration.setJsonDir(jsonDirOrFile);
+		else configuration.setJsonFile(jsonDirOrFile);
+		return new InProcessPoller(configuration, JmxTransModule.createInjector(configuration), executor);
+	}
+
+	public void start() throws LifecycleException, ValidationException {
+		ImmutableList<Server> parsed = injector.getInstance(ConfigurationParser.class)
+				.parseServers(jsonFiles(), configuration.isContinueOnJsonError());
+		servers = local(parsed);
+
+		for (Server server : servers) {
+			for (Query query : server.getQueries()) {
+				for (OutputWriter writer : query.getOutputWriterInstances()) {
+					writer.start();
+					injector.injectMembers(writer);
+					writer.validateSetup(server, query);
+				}
+			}
+		}
+
+		for (final Server server : servers) {
+			int runPeriod = firstNonNull(server.getRunPeriodSeconds(), configuration.getRunPeriod());
+			executor.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					poll(server);
+				}
+			}, runPeriod, runPeriod, SECONDS);
+			log.info("Polling {} every {}s in process", server, runPeriod);
+		}
+	}
+
+	public void stop() {
+		executor.shutdownNow();
+		for (Server server : servers) {
+			for (OutputWriter writer : server.getOutputWriters()) {
+				close(writer);
+			}
+			for (Query query : server.getQueries()) {
+				for (OutputWriter writer : query.getOutputWriterInstances()) {
+					close(writer);
+				}
+			}
+		}
+	}
+
+	/** Runs all the queries of a server and writes their results. Never throws, not to cancel the schedule. */
+	@VisibleForTesting
+	void poll(Server server) {
+		for (Query query : server.getQueries()) {
+			try {
+				Iterable<Result> results = pipeline.process(server, query, server.execute(query));
+				for (OutputWriter writer : concat(query.getOutputWriterInstances(), server.getOutputWriters())) {
+					writer.doWrite(server, query, results);
+				}
+			} catch (Exception e) {
+				log.warn("Error executing query {} in process", query, e);
+			}
+		}
+	}
+
+	/** The agent polls the JVM it runs in, whatever the configured host is. */
+	@VisibleForTesting
+	static ImmutableList<Server> local(Iterable<Server> servers) {
+		ImmutableList.Builder<Server> local = ImmutableList.builder();
+		for (Server server : servers) {
+			local.add(Server.builder(server)
+					.setLocal(true)
+					.addOutputWriters(ImmutableList.copyOf(server.getOutputWriters()))
+					.build());
+		}
+		return local.build();
+	}
+
+	private Iterable<File> jsonFiles() {
+		File jsonDirOrFile = configuration.getJsonDirOrFile();
+		if (jsonDirOrFile.isFile()) return ImmutableList.of(jsonDirOrFile);
+
+		File[] files = jsonDirOrFile.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".json");
+			}
+		});
+		return files == null ? ImmutableList.<File>of() : ImmutableList.copyOf(files);
+	}
+
+	private static void close(OutputWriter writer) {
+		try {
+			writer.close();
+		} catch (LifecycleException e) {
+			log.error("Error stopping writer: {}", writer, e);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.javaagent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+
+/**
+ * Entry point of the jmxtrans java agent.
+ * <p/>
+ * Started with {@code -javaagent:jmxtrans-javaagent-agent.jar=/path/to/config}
+ * where the argument is a JSON configuration file, or a directory of them, in
+ * the usual jmxtrans format. Every server of the configuration is polled in
+ * the current JVM, whatever its host and port, see {@link InProcessPoller}.
+ * <p/>
+ * Started with {@code -javaagent:jmxtrans-javaagent-agent.jar=listen=[host:]port}
+ * the agent does not poll on its own but answers the polls of a central
+ * jmxtrans configured with a <code>jmxtrans://host:port</code> server url,
+ * see {@link SnapshotAgentServer}.
+ * <p/>
+ * Everything, including reading the configuration, runs on daemon threads of
+ * minimal priority so that the application startup is not delayed.
+ */
+public final class JmxTransAgent {
+
+	private static final Logger log = LoggerFactory.getLogger(JmxTransAgent.class);
+
+	private static final String LISTEN = "listen=";
+
+	private JmxTransAgent() {}
+
+	public static void premain(String agentArgs, Instrumentation instrumentation) {
+		start(agentArgs);
+	}
+
+	public static void agentmain(String agentArgs, Instrumentation instrumentation) {
+		start(agentArgs);
+	}
+
+	private static void start(String agentArgs) {
+		checkArgument(!isNullOrEmpty(agentArgs),
+				"The jmxtrans agent needs the path of its configuration, as in -javaagent:jmxtrans-javaagent-agent.jar=/etc/jmxtrans/app.json");
+		String args = agentArgs.trim();
+		if (args.startsWith(LISTEN)) {
+			listen(args.substring(LISTEN.length()));
+			return;
+		}
+		final File configuration = new File(args);
+
+		final ScheduledExecutorService executor = newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+				.setDaemon(true)
+				.setPriority(Thread.MIN_PRIORITY)
+				.setNameFormat("jmxtrans-agent")
+				.build());
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final InProcessPoller poller = InProcessPoller.create(configuration, executor);
+					poller.start();
+					Runtime.getRuntime().addShutdownHook(new Thread("jmxtrans-agent-shutdown") {
+						@Override
+						public void run() {
+							poller.stop();
+						}
+					});
+				} catch (Exception e) {
+					log.error("Could not start the jmxtrans agent with configuration {}", configuration, e);
+					executor.shutdown();
+				}
+			}
+		});
+	}
+
+	private static void listen(String hostAndPort) {
+		ThreadFactory threadFactory = new ThreadFactoryBuilder()
+				.setDaemon(true)
+				.setPriority(Thread.MIN_PRIORITY)
+				.setNameFormat("jmxtrans-snapshot-agent-%d")
+				.build();
+		try {
+			new SnapshotAgentServer(SnapshotAgentServer.listenAddress(hostAndPort), threadFactory).start();
+		} catch (IOException | RuntimeException e) {
+			log.error("Could not start the jmxtrans snapshot agent on {}", hostAndPort, e);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.javaagent;
+
+import com.googlecode.jmxtrans.connections.JMXConnection;
+import com.googlecode.jmxtrans.connections.JmxConnectionProvider;
+import com.googlecode.jmxtrans.connections.MBeanServerConnectionFactory;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.snapshot.SnapshotEncoder;
+import org.apache.commons.pool.KeyedObjectPool;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.DEFINE;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.POLL;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.error;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.readDefinitions;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.readFrame;
+import static com.googlecode.jmxtrans.snapshot.SnapshotProtocol.writeFrame;
+
+/**
+ * Answers the polls of a central jmxtrans with snapshots of the MBeans of the
+ * current JVM (see {@link com.googlecode.jmxtrans.snapshot.SnapshotProtocol}).
+ * <p/>
+ * The central instance stays in charge of scheduling and of the queries: it
+ * sends their definitions, and the agent evaluates them against the platform
+ * MBeanServer on each poll. Each connection is served by its own daemon
+ * thread, as there is usually a single central instance.
+ * <p/>
+ * There is no authentication, bind the agent to a trusted interface.
+ */
+@ThreadSafe
+public class SnapshotAgentServer implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(SnapshotAgentServer.class);
+
+	@Nonnull private final ServerSocket serverSocket;
+	@Nonnull private final ThreadFactory threadFactory;
+	@Nonnull private final Server localServer;
+
+	public SnapshotAgentServer(@Nonnull InetSocketAddress address, @Nonnull ThreadFactory threadFactory) throws IOException {
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.setReuseAddress(true);
+		this.serverSocket.bind(address);
+		this.threadFactory = threadFactory;
+		KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool = new GenericKeyedObjectPool<>(new MBeanServerConnectionFactory());
+		this.localServer = Server.builder()
+				.setHost(address.getHostName())
+				.setLocal(true)
+				.setPool(pool)
+				.build();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public void start() {
+		threadFactory.newThread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}).start();
+		log.info("jmxtrans snapshot agent listening on {}", serverSocket.getLocalSocketAddress());
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				final Socket socket = serverSocket.accept();
+				threadFactory.newThread(new Runnable() {
+					@Override
+					public void run() {
+						serve(socket);
+					}
+				}).start();
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) log.warn("Error accepting snapshot connection", e);
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			SnapshotEncoder encoder = new SnapshotEncoder();
+			List<Query> queries = null;
+			while (true) {
+				ByteBuffer frame = readFrame(in);
+				byte type = frame.get();
+				if (type == DEFINE) {
+					queries = readDefinitions(frame);
+					encoder.reset();
+				} else if (type == POLL && queries != null) {
+					writeFrame(out, encoder.encode(System.currentTimeMillis(), poll(queries)));
+				} else {
+					writeFrame(out, error(type == POLL ? "Poll before any query definition" : "Unexpected frame of type " + type));
+					return;
+				}
+			}
+		} catch (EOFException | SocketException e) {
+			log.debug("Snapshot connection from {} closed", socket.getRemoteSocketAddress(), e);
+		} catch (IOException | RuntimeException e) {
+			log.warn("Error serving snapshot connection from {}", socket.getRemoteSocketAddress(), e);
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				log.debug("Error closing snapshot connection", e);
+			}
+		}
+	}
+
+	/** The results of each query, null for the queries that failed. */
+	private List<Iterable<Result>> poll(List<Query> queries) {
+		List<Iterable<Result>> results = new ArrayList<>(queries.size());
+		for (Query query : queries) {
+			try {
+				results.add(localServer.execute(query));
+			} catch (Exception e) {
+				log.warn("Error executing query {}", query, e);
+				results.add(null);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	/** Parses the <code>[host:]port</code> address the agent listens on, all interfaces by default. */
+	@Nonnull
+	static InetSocketAddress listenAddress(@Nonnull String hostAndPort) {
+		int separator = hostAndPort.lastIndexOf(':');
+		if (separator < 0) return new InetSocketAddress(Integer.parseInt(hostAndPort));
+		return new InetSocketAddress(
+				hostAndPort.substring(0, separator),
+				Integer.parseInt(hostAndPort.substring(separator + 1)));
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.javaagent;
+
+import com.googlecode.jmxtrans.test.IntegrationTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static java.util.Collections.list;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the packaged agent jar, relocations must leave the agent classes
+ * where its manifest points.
+ */
+@Category(IntegrationTest.class)
+public class AgentJarIT {
+
+	@Test
+	public void manifestPointsToTheAgentClass() throws IOException {
+		try (JarFile jar = new JarFile(System.getProperty("agent.jar"))) {
+			Attributes manifest = jar.getManifest().getMainAttributes();
+			assertThat(manifest.getValue("Premain-Class")).isEqualTo(JmxTransAgent.class.getName());
+			assertThat(manifest.getValue("Agent-Class")).isEqualTo(JmxTransAgent.class.getName());
+			assertThat(jar.getEntry("com/googlecode/jmxtrans/javaagent/JmxTransAgent.class")).isNotNull();
+		}
+	}
+
+	@Test
+	public void onlyLibrariesAreRelocated() throws IOException {
+		try (JarFile jar = new JarFile(System.getProperty("agent.jar"))) {
+			assertThat(jar.getEntry("com/googlecode/jmxtrans/shaded/com/google/common/collect/ImmutableList.class")).isNotNull();
+			assertThat(jar.getEntry("com/google/common/collect/ImmutableList.class")).isNull();
+			for (JarEntry entry : list(jar.entries())) {
+				assertThat(entry.getName()).doesNotStartWith("com/googlecode/jmxtrans/shaded/com/googlecode/");
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.javaagent;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.createPool;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServerBuilder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class InProcessPollerTest {
+
+	private final InProcessPoller poller = new InProcessPoller(
+			new JmxTransConfiguration(), null, mock(ScheduledExecutorService.class));
+
+	@Test
+	public void serversAreForcedLocalAndKeepTheirWriters() {
+		OutputWriter writer = mock(OutputWriter.class);
+		Server remote = dummyServerBuilder().addOutputWriters(ImmutableList.of(writer)).build();
+
+		Server local = InProcessPoller.local(ImmutableList.of(remote)).get(0);
+
+		assertThat(local.isLocal()).isTrue();
+		assertThat(local.getHost()).isEqualTo(remote.getHost());
+		assertThat(local.getQueries()).isEqualTo(remote.getQueries());
+		assertThat(local.getOutputWriters()).containsExactly(writer);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void resultsOfTheHostJvmAreWrittenSynchronously() throws Exception {
+		OutputWriter writer = mock(OutputWriter.class);
+		Query query = Query.builder()
+				.setObj("java.lang:type=Threading")
+				.addAttr("ThreadCount")
+				.build();
+		Server server = InProcessPoller.local(ImmutableList.of(Server.builder()
+				.setHost("host.example.net")
+				.setPort("4321")
+				.setPool(createPool())
+				.addQuery(query)
+				.addOutputWriters(ImmutableList.of(writer))
+				.build())).get(0);
+
+		poller.poll(server);
+
+		ArgumentCaptor<Iterable> results = ArgumentCaptor.forClass(Iterable.class);
+		verify(writer).doWrite(same(server), same(query), results.capture());
+		Iterable<Result> written = results.getValue();
+		assertThat(written).hasSize(1);
+		Result result = written.iterator().next();
+		assertThat(result.getAttributeName()).isEqualTo("ThreadCount");
+		assertThat(result.getValues()).containsKey("ThreadCount");
+	}
+
+	@Test
+	public void aFailingWriterDoesNotStopPolling() throws Exception {
+		OutputWriter failing = mock(OutputWriter.class);
+		doThrow(new IllegalStateException("expected")).when(failing)
+				.doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		Server server = InProcessPoller.local(ImmutableList.of(Server.builder()
+				.setHost("host.example.net")
+				.setPort("4321")
+				.setPool(createPool())
+				.addQuery(Query.builder().setObj("java.lang:type=Threading").addAttr("ThreadCount").build())
+				.addQuery(Query.builder().setObj("java.lang:type=Runtime").addAttr("Uptime").build())
+				.addOutputWriters(ImmutableList.of(failing))
+				.build())).get(0);
+
+		poller.poll(server);
+		poller.poll(server);
+	}
+}
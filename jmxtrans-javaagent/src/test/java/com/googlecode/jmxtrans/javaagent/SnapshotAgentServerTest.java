@@ -0,0 +1,101 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.javaagent;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.snapshot.SnapshotClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnapshotAgentServerTest {
+
+	private SnapshotAgentServer agent;
+	private SnapshotClient client;
+
+	@Before
+	public void startAgent() throws IOException {
+		agent = new SnapshotAgentServer(
+				new InetSocketAddress("127.0.0.1", 0),
+				new ThreadFactoryBuilder().setDaemon(true).build());
+		agent.start();
+		client = new SnapshotClient("127.0.0.1", agent.getPort(), 1000, 5000);
+	}
+
+	@After
+	public void stopAgent() throws IOException {
+		client.close();
+		agent.close();
+	}
+
+	@Test
+	public void queriesAreEvaluatedInTheAgentJvm() throws IOException {
+		List<Query> queries = ImmutableList.of(
+				Query.builder().setObj("java.lang:type=Threading").addAttr("ThreadCount").setResultAlias("threads").build(),
+				Query.builder().setObj("java.lang:type=GarbageCollector,name=*").addAttr("CollectionCount").build());
+
+		for (int poll = 0; poll < 3; poll++) {
+			List<ImmutableList<Result>> results = client.poll(queries);
+
+			Result threads = results.get(0).get(0);
+			assertThat(threads.getAttributeName()).isEqualTo("ThreadCount");
+			assertThat(threads.getKeyAlias()).isEqualTo("threads");
+			assertThat(threads.getValues().get("ThreadCount")).isInstanceOf(Integer.class);
+			assertThat(results.get(1)).isNotEmpty();
+		}
+	}
+
+	@Test
+	public void changedQueriesAreRedefined() throws IOException {
+		client.poll(ImmutableList.of(Query.builder().setObj("java.lang:type=Threading").addAttr("ThreadCount").build()));
+
+		List<ImmutableList<Result>> results = client.poll(ImmutableList.of(
+				Query.builder().setObj("java.lang:type=Runtime").addAttr("Uptime").build()));
+
+		assertThat(results.get(0).get(0).getAttributeName()).isEqualTo("Uptime");
+	}
+
+	@Test
+	public void clientReconnectsAfterTheConnectionIsClosed() throws IOException {
+		List<Query> queries = ImmutableList.of(Query.builder().setObj("java.lang:type=Threading").addAttr("ThreadCount").build());
+		client.poll(queries);
+		client.close();
+
+		assertThat(client.poll(queries).get(0)).hasSize(1);
+	}
+
+	@Test
+	public void listenAddressDefaultsToAllInterfaces() {
+		assertThat(SnapshotAgentServer.listenAddress("9876").getAddress().isAnyLocalAddress()).isTrue();
+		assertThat(SnapshotAgentServer.listenAddress("127.0.0.1:9876").getPort()).isEqualTo(9876);
+	}
+}
@@ -34,22 +34,28 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.model.CycleAwareOutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriterAdapter;
 import com.googlecode.jmxtrans.model.OutputWriterFactory;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.output.support.BatchEntry;
+import com.googlecode.jmxtrans.model.output.support.BatchOutputWriter;
 import com.googlecode.jmxtrans.model.output.support.ResultTransformerOutputWriter;
 import com.googlecode.jmxtrans.util.ObjectToDouble;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -112,13 +118,18 @@ public class CloudWatchWriter implements OutputWriterFactory {
 		);
 	}
 
-	public static class Writer extends OutputWriterAdapter {
+	public static class Writer extends OutputWriterAdapter implements BatchOutputWriter, CycleAwareOutputWriter {
+
+		/** Maximum number of datums accepted by a single PutMetricData request. */
+		public static final int MAX_DATUMS_PER_REQUEST = 20;
 
 		@Nonnull private final String namespace;
 		@Nonnull private final AmazonCloudWatch cloudWatchClient;
 
 		@Nonnull private final ObjectToDouble toDoubleConverter = new ObjectToDouble();
 		@Nonnull private final ImmutableCollection<Dimension> dimensions;
+		/** Data of the servers in the middle of one or more collection cycles. */
+		@GuardedBy("cycles") @Nonnull private final Map<Server, OpenCycles> cycles = new HashMap<>();
 
 		public Writer(@Nonnull String namespace, @Nonnull AmazonCloudWatch cloudWatchClient, @Nonnull ImmutableCollection<Dimension> dimensions) {
 			this.namespace = namespace;
@@ -128,10 +139,77 @@ public class CloudWatchWriter implements OutputWriterFactory {
 
 		@Override
 		public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
-			PutMetricDataRequest metricDataRequest = new PutMetricDataRequest();
-			metricDataRequest.setNamespace(namespace);
 			List<MetricDatum> metricDatumList = new ArrayList<>();
+			addMetricData(metricDatumList, results);
+
+			synchronized (cycles) {
+				OpenCycles open = cycles.get(server);
+				if (open != null) {
+					open.data.addAll(metricDatumList);
+					return;
+				}
+			}
+
+			putMetricData(metricDatumList);
+		}
+
+		/**
+		 * Sends the data of all entries in as few requests as CloudWatch
+		 * allows, {@link #MAX_DATUMS_PER_REQUEST} datums at a time.
+		 */
+		@Override
+		public void writeBatch(@Nonnull List<BatchEntry> batch) throws Exception {
+			List<MetricDatum> metricDatumList = new ArrayList<>();
+			for (BatchEntry entry : batch) {
+				addMetricData(metricDatumList, entry.getResults());
+			}
+
+			putMetricData(metricDatumList);
+		}
+
+		/**
+		 * Data written for the server until the end of the cycle is sent at
+		 * once. Writes do not say which cycle they belong to, so when cycles
+		 * of the server overlap, the end of each of them sends all the data
+		 * collected so far, and the data is collected until the last one ends.
+		 */
+		@Override
+		public void beginCycle(Server server, long cycleId) {
+			synchronized (cycles) {
+				OpenCycles open = cycles.get(server);
+				if (open == null) {
+					open = new OpenCycles();
+					cycles.put(server, open);
+				}
+				open.count++;
+			}
+		}
+
+		@Override
+		public void endCycle(Server server, long cycleId) {
+			List<MetricDatum> data;
+			synchronized (cycles) {
+				OpenCycles open = cycles.get(server);
+				if (open == null) return;
+				data = open.data;
+				open.data = new ArrayList<>();
+				if (--open.count == 0) {
+					cycles.remove(server);
+				}
+			}
+			putMetricData(data);
+		}
+
+		private void putMetricData(List<MetricDatum> metricDatumList) {
+			for (List<MetricDatum> metricData : Lists.partition(metricDatumList, MAX_DATUMS_PER_REQUEST)) {
+				PutMetricDataRequest metricDataRequest = new PutMetricDataRequest();
+				metricDataRequest.setNamespace(namespace);
+				metricDataRequest.setMetricData(metricData);
+				cloudWatchClient.putMetricData(metricDataRequest);
+			}
+		}
 
+		private void addMetricData(List<MetricDatum> metricDatumList, Iterable<Result> results) {
 			// Iterating through the list of query results
 
 			for (Result result : results) {
@@ -144,9 +222,6 @@ public class CloudWatchWriter implements OutputWriterFactory {
 					}
 				}
 			}
-
-			metricDataRequest.setMetricData(metricDatumList);
-			cloudWatchClient.putMetricData(metricDataRequest);
 		}
 
 		private MetricDatum processResult(Result result, Map.Entry<String, Object> values) {
@@ -170,6 +245,11 @@ public class CloudWatchWriter implements OutputWriterFactory {
 		public void close() throws LifecycleException {
 			cloudWatchClient.shutdown();
 		}
+
+		private static final class OpenCycles {
+			private int count;
+			private List<MetricDatum> data = new ArrayList<>();
+		}
 	}
 
 }
@@ -36,10 +36,17 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
 import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ResultFixtures.resultAt;
 import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -83,6 +90,37 @@ public class CloudWatchWriterTests {
 		assertThat(metricDatum.getDimensions().get(1).getName()).isEqualTo("InstanceId");
 	}
 
+	@Test
+	public void dataOfOverlappingCyclesIsSent() throws Exception {
+		writer.beginCycle(dummyServer(), 1);
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.beginCycle(dummyServer(), 2);
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		verify(cloudWatchClient, never()).putMetricData(any(PutMetricDataRequest.class));
+
+		writer.endCycle(dummyServer(), 1);
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.endCycle(dummyServer(), 2);
+
+		verify(cloudWatchClient, times(2)).putMetricData(requestCaptor.capture());
+		assertThat(requestCaptor.getAllValues().get(0).getMetricData()).hasSize(2);
+		assertThat(requestCaptor.getAllValues().get(1).getMetricData()).hasSize(1);
+	}
+
+	@Test
+	public void largeWritesAreSplitInRequestsCloudWatchAccepts() throws Exception {
+		Map<String, Object> values = new HashMap<>();
+		for (int i = 0; i < CloudWatchWriter.Writer.MAX_DATUMS_PER_REQUEST + 5; i++) {
+			values.put("value" + i, i);
+		}
+
+		writer.doWrite(dummyServer(), dummyQuery(), ImmutableList.of(resultAt(0, "java.lang:type=Memory", "HeapMemoryUsage", values)));
+
+		verify(cloudWatchClient, times(2)).putMetricData(requestCaptor.capture());
+		assertThat(requestCaptor.getAllValues().get(0).getMetricData()).hasSize(CloudWatchWriter.Writer.MAX_DATUMS_PER_REQUEST);
+		assertThat(requestCaptor.getAllValues().get(1).getMetricData()).hasSize(5);
+	}
+
 	@Test
 	public void cloudwatchClientIsClosed() throws LifecycleException {
 		writer.close();
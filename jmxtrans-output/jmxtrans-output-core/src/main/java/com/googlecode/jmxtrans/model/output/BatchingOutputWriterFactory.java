@@ -0,0 +1,88 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.BatchingOutputWriter;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Wraps the writer created by any other factory in a
+ * {@link BatchingOutputWriter}, so that the results of many queries and
+ * servers are sent to it in a few large writes:
+ * <pre>
+ * {
+ *   "@class" : "com.googlecode.jmxtrans.model.output.BatchingOutputWriterFactory",
+ *   "batchSize" : 500,
+ *   "lingerMs" : 2000,
+ *   "maxQueuedBatches" : 10,
+ *   "target" : {
+ *     "@class" : "com.googlecode.jmxtrans.model.output.LibratoWriterFactory",
+ *     ...
+ *   }
+ * }
+ * </pre>
+ */
+@EqualsAndHashCode
+@ToString
+public class BatchingOutputWriterFactory implements OutputWriterFactory {
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	public static final long DEFAULT_BATCH_BYTES = 1024 * 1024;
+	public static final long DEFAULT_LINGER_MILLIS = 1000;
+	public static final int DEFAULT_MAX_QUEUED_BATCHES = 10;
+
+	@Nonnull private final OutputWriterFactory target;
+	private final int batchSize;
+	private final long batchBytes;
+	private final long lingerMillis;
+	private final int maxQueuedBatches;
+
+	@JsonCreator
+	public BatchingOutputWriterFactory(
+			@JsonProperty("target") OutputWriterFactory target,
+			@JsonProperty("batchSize") Integer batchSize,
+			@JsonProperty("batchBytes") Long batchBytes,
+			@JsonProperty("lingerMs") Long lingerMillis,
+			@JsonProperty("maxQueuedBatches") Integer maxQueuedBatches) {
+		this.target = checkNotNull(target, "target cannot be null");
+		this.batchSize = firstNonNull(batchSize, DEFAULT_BATCH_SIZE);
+		this.batchBytes = firstNonNull(batchBytes, DEFAULT_BATCH_BYTES);
+		this.lingerMillis = firstNonNull(lingerMillis, DEFAULT_LINGER_MILLIS);
+		this.maxQueuedBatches = firstNonNull(maxQueuedBatches, DEFAULT_MAX_QUEUED_BATCHES);
+	}
+
+	@Nonnull
+	@Override
+	public BatchingOutputWriter<OutputWriter> create() {
+		return new BatchingOutputWriter<>(target.create(), batchSize, batchBytes, lingerMillis, maxQueuedBatches);
+	}
+}
@@ -27,6 +27,7 @@ import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.naming.KeyUtils;
+import com.googlecode.jmxtrans.model.output.support.LineBuffer;
 import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
 import com.googlecode.jmxtrans.util.OnlyOnceLogger;
 import org.slf4j.Logger;
@@ -63,6 +64,7 @@ public class GraphiteWriter2 implements WriterBasedOutputWriter {
 			@Nonnull Query query,
 			@Nonnull Iterable<Result> results) throws IOException {
 
+		LineBuffer line = LineBuffer.forCurrentThread();
 		for (Result result : results) {
 			log.debug("Query result: {}", result);
 			Map<String, Object> resultValues = result.getValues();
@@ -70,11 +72,15 @@ public class GraphiteWriter2 implements WriterBasedOutputWriter {
 				Object value = values.getValue();
 				if (isValidNumber(value)) {
 
-					String line = KeyUtils.getKeyString(server, query, result, values, typeNames, rootPrefix)
-							.replaceAll("[()]", "_") + " " + value.toString() + " "
-							+ SECONDS.convert(result.getEpoch(), MILLISECONDS) + "\n";
+					line.clear()
+							.append(KeyUtils.getKeyString(server, query, result, values, typeNames, rootPrefix), "()", '_')
+							.append(' ')
+							.appendValue(value)
+							.append(' ')
+							.append(SECONDS.convert(result.getEpoch(), MILLISECONDS))
+							.append('\n');
 					log.debug("Graphite Message: {}", line);
-					writer.write(line);
+					line.writeTo(writer);
 				} else {
 					onlyOnceLogger.infoOnce("Unable to submit non-numeric value to Graphite: [{}] from result [{}]", value, result);
 				}
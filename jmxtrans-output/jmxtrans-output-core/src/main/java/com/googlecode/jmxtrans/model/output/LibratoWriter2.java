@@ -30,11 +30,13 @@ import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.naming.KeyUtils;
-import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
+import com.googlecode.jmxtrans.model.output.support.BatchEntry;
+import com.googlecode.jmxtrans.model.output.support.WriterBasedBatchOutputWriter;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.List;
 import java.util.Map;
 
 import static com.googlecode.jmxtrans.model.naming.StringUtils.cleanupStr;
@@ -42,7 +44,7 @@ import static com.googlecode.jmxtrans.util.NumberUtils.isNumeric;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
-public class LibratoWriter2 implements WriterBasedOutputWriter {
+public class LibratoWriter2 implements WriterBasedBatchOutputWriter {
 
 	@Nonnull private final JsonFactory jsonFactory;
 	@Nonnull private final ImmutableList<String> typeNames;
@@ -54,6 +56,15 @@ public class LibratoWriter2 implements WriterBasedOutputWriter {
 
 	@Override
 	public void write(@Nonnull Writer writer, @Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) throws IOException {
+		write(writer, ImmutableList.of(new BatchEntry(server, query, results)));
+	}
+
+	/**
+	 * Writes the gauges of all entries in a single document, so that a whole
+	 * batch is posted to Librato in one request.
+	 */
+	@Override
+	public void write(@Nonnull Writer writer, @Nonnull List<BatchEntry> batch) throws IOException {
 		Closer closer = Closer.create();
 		try {
 			JsonGenerator g = closer.register(jsonFactory.createGenerator(writer));
@@ -61,32 +72,9 @@ public class LibratoWriter2 implements WriterBasedOutputWriter {
 			g.writeArrayFieldStart("counters");
 			g.writeEndArray();
 
-			String source = getSource(server);
-
 			g.writeArrayFieldStart("gauges");
-			for (Result result : results) {
-				Map<String, Object> resultValues = result.getValues();
-				for (Map.Entry<String, Object> values : resultValues.entrySet()) {
-					if (isNumeric(values.getValue())) {
-						g.writeStartObject();
-						g.writeStringField("name", KeyUtils.getKeyString(query, result, values, typeNames));
-						if (source != null && !source.isEmpty()) {
-							g.writeStringField("source", source);
-						}
-						g.writeNumberField("measure_time", SECONDS.convert(result.getEpoch(), MILLISECONDS));
-						Object value = values.getValue();
-						if (value instanceof Integer) {
-							g.writeNumberField("value", (Integer) value);
-						} else if (value instanceof Long) {
-							g.writeNumberField("value", (Long) value);
-						} else if (value instanceof Float) {
-							g.writeNumberField("value", (Float) value);
-						} else if (value instanceof Double) {
-							g.writeNumberField("value", (Double) value);
-						}
-						g.writeEndObject();
-					}
-				}
+			for (BatchEntry entry : batch) {
+				writeGauges(g, entry.getServer(), entry.getQuery(), entry.getResults());
 			}
 			g.writeEndArray();
 			g.writeEndObject();
@@ -98,6 +86,35 @@ public class LibratoWriter2 implements WriterBasedOutputWriter {
 		}
 	}
 
+	private void writeGauges(JsonGenerator g, Server server, Query query, Iterable<Result> results) throws IOException {
+		String source = getSource(server);
+
+		for (Result result : results) {
+			Map<String, Object> resultValues = result.getValues();
+			for (Map.Entry<String, Object> values : resultValues.entrySet()) {
+				if (isNumeric(values.getValue())) {
+					g.writeStartObject();
+					g.writeStringField("name", KeyUtils.getKeyString(query, result, values, typeNames));
+					if (source != null && !source.isEmpty()) {
+						g.writeStringField("source", source);
+					}
+					g.writeNumberField("measure_time", SECONDS.convert(result.getEpoch(), MILLISECONDS));
+					Object value = values.getValue();
+					if (value instanceof Integer) {
+						g.writeNumberField("value", (Integer) value);
+					} else if (value instanceof Long) {
+						g.writeNumberField("value", (Long) value);
+					} else if (value instanceof Float) {
+						g.writeNumberField("value", (Float) value);
+					} else if (value instanceof Double) {
+						g.writeNumberField("value", (Double) value);
+					}
+					g.writeEndObject();
+				}
+			}
+		}
+	}
+
 	private String getSource(Server server) {
 		if (server.getAlias() != null) {
 			return server.getAlias();
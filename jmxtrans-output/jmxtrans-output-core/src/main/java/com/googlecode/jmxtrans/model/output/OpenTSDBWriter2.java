@@ -25,6 +25,7 @@ package com.googlecode.jmxtrans.model.output;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.output.support.LineBuffer;
 import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
 import com.googlecode.jmxtrans.model.output.support.opentsdb.OpenTSDBMessageFormatter;
 import org.slf4j.Logger;
@@ -52,9 +53,10 @@ public class OpenTSDBWriter2 implements WriterBasedOutputWriter {
 			@Nonnull Query query,
 			@Nonnull Iterable<Result> results) throws IOException {
 
+		LineBuffer line = LineBuffer.forCurrentThread();
 		for(String resultString : messageFormatter.formatResults(results, server)) {
 			logger.trace(resultString);
-			writer.write("put " + resultString + "\n");
+			line.clear().append("put ").append(resultString).append('\n').writeTo(writer);
 		}
 	}
 
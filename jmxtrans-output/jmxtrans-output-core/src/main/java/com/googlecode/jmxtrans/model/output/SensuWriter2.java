@@ -24,17 +24,20 @@ package com.googlecode.jmxtrans.model.output;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.collect.ImmutableList;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
-import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
+import com.googlecode.jmxtrans.model.output.support.BatchEntry;
+import com.googlecode.jmxtrans.model.output.support.WriterBasedBatchOutputWriter;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.List;
 
-public class SensuWriter2 implements WriterBasedOutputWriter {
+public class SensuWriter2 implements WriterBasedBatchOutputWriter {
 
 	@Nonnull private final GraphiteWriter2 graphiteWriter;
 	@Nonnull private final JsonFactory jsonFactory;
@@ -46,6 +49,15 @@ public class SensuWriter2 implements WriterBasedOutputWriter {
 
 	@Override
 	public void write(@Nonnull Writer writer, @Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) throws IOException {
+		write(writer, ImmutableList.of(new BatchEntry(server, query, results)));
+	}
+
+	/**
+	 * Concatenates the Graphite lines of all entries into the output of a
+	 * single Sensu check result.
+	 */
+	@Override
+	public void write(@Nonnull Writer writer, @Nonnull List<BatchEntry> batch) throws IOException {
 		try (
 				JsonGenerator g = jsonFactory.createGenerator(writer);
 				StringWriter temporaryWriter = new StringWriter()
@@ -56,7 +68,9 @@ public class SensuWriter2 implements WriterBasedOutputWriter {
 			g.writeStringField("type", "metric");
 			g.writeStringField("handler", "graphite");
 
-			graphiteWriter.write(temporaryWriter, server, query, results);
+			for (BatchEntry entry : batch) {
+				graphiteWriter.write(temporaryWriter, entry.getServer(), entry.getQuery(), entry.getResults());
+			}
 
 			g.writeStringField("output", temporaryWriter.toString());
 			g.writeEndObject();
@@ -30,6 +30,7 @@ import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.ResultAttribute;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.output.support.LineBuffer;
 import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
 import com.googlecode.jmxtrans.model.results.CPrecisionValueTransformer;
 import com.googlecode.jmxtrans.model.results.ValueTransformer;
@@ -40,8 +41,6 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 import static com.googlecode.jmxtrans.util.NumberUtils.isNumeric;
@@ -68,17 +67,13 @@ public class StatsDTelegrafWriter implements WriterBasedOutputWriter {
 	@Override
 	public void write(@Nonnull Writer writer, @Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) throws IOException {
 
+		LineBuffer line = LineBuffer.forCurrentThread();
 		int resultIndex = -1;
 		for (Result result : results) {
 			resultIndex++;
 			String bucketType = getBucketType(resultIndex);
 			String attributeName = result.getAttributeName();
 
-			List<String> resultTagList = new ArrayList<>();
-			resultTagList.add(",jmxport=" + server.getPort());
-			//tagList.add("objectName=" + query.getObjectName());
-			resultTagList.add("attribute=" + attributeName);
-
 			for (Map.Entry<String, Object> values : result.getValues().entrySet()) {
 
 				String field = values.getKey();
@@ -87,31 +82,33 @@ public class StatsDTelegrafWriter implements WriterBasedOutputWriter {
 					log.debug("Skipping message key[{}] with value: {}.", field, value);
 					continue;
 				}
-				List<String> tagList = new ArrayList(resultTagList);
+
+				line.clear()
+						.append(result.getKeyAlias())
+						.append(",jmxport=").appendValue(server.getPort())
+						//.append(",objectName=").append(query.getObjectName())
+						.append(",attribute=").append(attributeName);
 
 				boolean isSingleValueAttribute = StringUtils.equals(attributeName, field);
 				if( !isSingleValueAttribute ){
-					tagList.add("resultKey="+values.getKey());
+					line.append(",resultKey=").append(field);
 				}
 
-				for (Map.Entry e : tags.entrySet()) {
-					tagList.add(e.getKey() + "=" + e.getValue());
+				for (Map.Entry<String, String> e : tags.entrySet()) {
+					line.append(',').append(e.getKey()).append('=').append(e.getValue());
 				}
 
 				Number actualValue = computeActualValue(value);
-				StringBuilder sb = new StringBuilder(result.getKeyAlias())
-					.append(StringUtils.join(tagList, ","))
-					.append(":").append(actualValue)
-					.append("|").append(bucketType).append("\n");
+				line.append(':').appendValue(actualValue)
+						.append('|').append(bucketType).append('\n');
 
-				String output = sb.toString();
 				if( actualValue.floatValue() < 0 && !StatsDMetricType.GAUGE.getKey().equals(bucketType) )
 				{
-					log.debug("Negative values are only supported for gauges, not sending: {}.", output);
+					log.debug("Negative values are only supported for gauges, not sending: {}.", line);
 				}
 				else{
-					log.debug(output);
-					writer.write(output);
+					log.debug("{}", line);
+					line.writeTo(writer);
 				}
 			}
 		}
@@ -26,6 +26,7 @@ import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.naming.KeyUtils;
+import com.googlecode.jmxtrans.model.output.support.LineBuffer;
 import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
 import com.googlecode.jmxtrans.model.results.CPrecisionValueTransformer;
 import com.googlecode.jmxtrans.model.results.ValueTransformer;
@@ -73,6 +74,7 @@ public class StatsDWriter2 implements WriterBasedOutputWriter {
 
 	@Override
 	public void write(@Nonnull Writer writer, @Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) throws IOException {
+		LineBuffer line = LineBuffer.forCurrentThread();
 		for (Result result : results) {
 			for (Map.Entry<String, Object> values : result.getValues().entrySet()) {
 
@@ -81,10 +83,11 @@ public class StatsDWriter2 implements WriterBasedOutputWriter {
 					continue;
 				}
 
-				String line = KeyUtils.getKeyString(server, query, result, values, typeNames, rootPrefix)
-						+ computeActualValue(values.getValue()) + "|" + bucketType + "\n";
+				line.clear().append(KeyUtils.getKeyString(server, query, result, values, typeNames, rootPrefix));
+				appendActualValue(line, values.getValue());
+				line.append('|').append(bucketType).append('\n');
 
-				writer.write(line);
+				line.writeTo(writer);
 			}
 		}
 	}
@@ -93,14 +96,14 @@ public class StatsDWriter2 implements WriterBasedOutputWriter {
 		return !(isNumeric(value) || stringsValuesAsKey);
 	}
 
-	private String computeActualValue(Object value) {
+	private void appendActualValue(LineBuffer line, Object value) {
 		Object transformedValue = valueTransformer.apply(value);
 		if (isNumeric(transformedValue)) {
-			return ":" + transformedValue.toString();
+			line.append(':').appendValue(transformedValue);
 		} else if (transformedValue == null) {
-			return ":";
+			line.append(':');
+		} else {
+			line.append('.').appendValue(transformedValue).append(':').append(stringValueDefaultCount);
 		}
-
-		return "." + transformedValue.toString() + ":" + stringValueDefaultCount;
 	}
 }
@@ -121,6 +121,10 @@ public class TCollectorUDPWriter extends OpenTSDBGenericWriter {
 
 	/**
 	 * Send a single metric to TCollector.
+	 * <p/>
+	 * Each line is its own datagram, encoded straight from the formatter's
+	 * string, so a {@link com.googlecode.jmxtrans.model.output.support.LineBuffer}
+	 * would only add a copy here.
 	 *
 	 * @param metricLine - the line containing the metric name, value, and tags for a single metric; excludes the
 	 *                   "put" keyword expected by OpenTSDB and the trailing newline character.
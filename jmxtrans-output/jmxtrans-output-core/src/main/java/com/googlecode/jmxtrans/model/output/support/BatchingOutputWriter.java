@@ -0,0 +1,292 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.model.CycleAwareOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterAdapter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Collects the results of many {@link #doWrite(Server, Query, Iterable)} calls
+ * and hands them to the target writer as a single batch, on a background
+ * thread.
+ * <p/>
+ * A batch is flushed as soon as it holds {@code batchSize} entries or about
+ * {@code batchBytes} bytes of results, or {@code lingerMillis} after its first
+ * entry was queued. Targets implementing {@link BatchOutputWriter} receive
+ * the whole batch in one call, others receive one
+ * {@link OutputWriter#doWrite(Server, Query, Iterable)} call per entry.
+ * <p/>
+ * At most {@code maxQueuedBatches} full batches wait for the background
+ * thread. When the target is slower than that, new batches are dropped and
+ * counted, as are entries written after {@link #close()}.
+ * <p/>
+ * Cycles are forwarded to targets implementing {@link CycleAwareOutputWriter}
+ * on the background thread, after the entries queued before them, so the
+ * target sees the end of a cycle only once the results of the cycle were
+ * handed to it. These flushes are never dropped.
+ * <p/>
+ * Write failures happen on the background thread and are only logged.
+ */
+@ThreadSafe
+public class BatchingOutputWriter<T extends OutputWriter> extends OutputWriterAdapter implements CycleAwareOutputWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger(BatchingOutputWriter.class);
+
+	private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+	@Nonnull private final T target;
+	private final int batchSize;
+	private final long batchBytes;
+	private final long lingerMillis;
+	private final int maxQueuedBatches;
+	@Nonnull private final ScheduledThreadPoolExecutor executor;
+
+	private final Object lock = new Object();
+	@GuardedBy("lock") private List<BatchEntry> pending = new ArrayList<>();
+	@GuardedBy("lock") private long pendingBytes;
+	@GuardedBy("lock") @Nullable private ScheduledFuture<?> lingerFlush;
+	@GuardedBy("lock") private int queuedBatches;
+	@GuardedBy("lock") private long droppedEntries;
+	@GuardedBy("lock") private boolean closed;
+
+	private final Runnable lingerTask = new Runnable() {
+		@Override
+		public void run() {
+			flush(takePending());
+		}
+	};
+
+	public BatchingOutputWriter(@Nonnull T target, int batchSize, long batchBytes, long lingerMillis, int maxQueuedBatches) {
+		checkArgument(batchSize > 0, "batchSize must be positive");
+		checkArgument(batchBytes > 0, "batchBytes must be positive");
+		checkArgument(lingerMillis >= 0, "lingerMillis cannot be negative");
+		checkArgument(maxQueuedBatches > 0, "maxQueuedBatches must be positive");
+		this.target = target;
+		this.batchSize = batchSize;
+		this.batchBytes = batchBytes;
+		this.lingerMillis = lingerMillis;
+		this.maxQueuedBatches = maxQueuedBatches;
+		this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+				.setDaemon(true)
+				.setNameFormat("jmxtrans-batching-writer-%d")
+				.build());
+		this.executor.setRemoveOnCancelPolicy(true);
+	}
+
+	@Override
+	public void start() throws LifecycleException {
+		target.start();
+	}
+
+	@Override
+	public void validateSetup(Server server, Query query) throws ValidationException {
+		target.validateSetup(server, query);
+	}
+
+	@Override
+	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+		BatchEntry entry = new BatchEntry(server, query, results);
+		final List<BatchEntry> full;
+		synchronized (lock) {
+			if (closed) {
+				droppedEntries++;
+				logger.warn("Dropped results of {} written after {} was closed", query, this);
+				return;
+			}
+			pending.add(entry);
+			pendingBytes += estimateBytes(entry);
+			if (pending.size() < batchSize && pendingBytes < batchBytes) {
+				if (lingerFlush == null) {
+					lingerFlush = executor.schedule(lingerTask, lingerMillis, MILLISECONDS);
+				}
+				return;
+			}
+			full = takePending();
+			if (queuedBatches >= maxQueuedBatches) {
+				droppedEntries += full.size();
+				logger.warn("Dropped batch of {} entries, {} batches are already waiting for {}", full.size(), queuedBatches, target);
+				return;
+			}
+			queuedBatches++;
+			// submitted under the lock, so that close() cannot shut the executor down in between
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						flush(full);
+					} finally {
+						synchronized (lock) {
+							queuedBatches--;
+						}
+					}
+				}
+			});
+		}
+	}
+
+	@Override
+	public void beginCycle(final Server server, final long cycleId) {
+		if (!(target instanceof CycleAwareOutputWriter)) return;
+		flushThen(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					((CycleAwareOutputWriter) target).beginCycle(server, cycleId);
+				} catch (Exception e) {
+					logger.warn("Could not begin cycle {} of server {} on {}", cycleId, server, target, e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void endCycle(final Server server, final long cycleId) {
+		if (!(target instanceof CycleAwareOutputWriter)) return;
+		flushThen(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					((CycleAwareOutputWriter) target).endCycle(server, cycleId);
+				} catch (Exception e) {
+					logger.warn("Could not end cycle {} of server {} on {}", cycleId, server, target, e);
+				}
+			}
+		});
+	}
+
+	/** Runs the task on the background thread, after flushing the queued entries. */
+	private void flushThen(final Runnable task) {
+		synchronized (lock) {
+			if (closed) return;
+			final List<BatchEntry> queued = takePending();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					flush(queued);
+					task.run();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Flushes what is still queued, waits for the background thread to finish
+	 * and closes the target.
+	 */
+	@Override
+	public void close() throws LifecycleException {
+		synchronized (lock) {
+			if (closed) return;
+			closed = true;
+			final List<BatchEntry> remaining = takePending();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					flush(remaining);
+				}
+			});
+		}
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, SECONDS)) {
+				logger.warn("Pending batches were not written to {} within {} seconds", target, CLOSE_TIMEOUT_SECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		target.close();
+	}
+
+	private List<BatchEntry> takePending() {
+		synchronized (lock) {
+			if (lingerFlush != null) {
+				lingerFlush.cancel(false);
+				lingerFlush = null;
+			}
+			List<BatchEntry> batch = pending;
+			pending = new ArrayList<>();
+			pendingBytes = 0;
+			return batch;
+		}
+	}
+
+	private void flush(List<BatchEntry> batch) {
+		if (batch.isEmpty()) return;
+		try {
+			BatchEntry.writeAll(target, batch);
+		} catch (Exception e) {
+			logger.warn("Could not write batch of {} entries to {}", batch.size(), target, e);
+		}
+	}
+
+	/**
+	 * Rough size of an entry once serialized: names and keys, plus a fixed
+	 * amount for each value, timestamp and separator.
+	 */
+	@VisibleForTesting
+	static long estimateBytes(BatchEntry entry) {
+		long bytes = 0;
+		for (Result result : entry.getResults()) {
+			bytes += result.getAttributeName().length() + 16;
+			for (String key : result.getValues().keySet()) {
+				bytes += key.length() + 32;
+			}
+		}
+		return bytes;
+	}
+
+	/** Number of entries dropped because too many batches were queued or the writer was closed. */
+	public long getDroppedEntries() {
+		synchronized (lock) {
+			return droppedEntries;
+		}
+	}
+
+	@VisibleForTesting
+	T getTarget() {
+		return target;
+	}
+}
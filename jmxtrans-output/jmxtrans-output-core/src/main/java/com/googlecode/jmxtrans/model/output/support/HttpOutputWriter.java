@@ -36,17 +36,19 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.List;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.io.ByteStreams.copy;
 import static com.google.common.io.ByteStreams.nullOutputStream;
 
-public class HttpOutputWriter<T extends WriterBasedOutputWriter> extends OutputWriterAdapter {
+public class HttpOutputWriter<T extends WriterBasedOutputWriter> extends OutputWriterAdapter implements BatchOutputWriter {
 
 	@Nonnull private final Logger logger = LoggerFactory.getLogger(HttpOutputWriter.class);
 
@@ -70,12 +72,44 @@ public class HttpOutputWriter<T extends WriterBasedOutputWriter> extends OutputW
 	}
 
 	@Override
-	public void doWrite(Server server, Query query, Iterable<Result> results) throws IOException {
+	public void doWrite(final Server server, final Query query, final Iterable<Result> results) throws IOException {
+		post(new Body() {
+			@Override
+			public void writeTo(Writer writer) throws IOException {
+				target.write(writer, server, query, results);
+			}
+		});
+	}
+
+	/**
+	 * Sends the whole batch in a single request when the target knows how to
+	 * serialize it, and falls back to one request per entry otherwise.
+	 */
+	@Override
+	public void writeBatch(@Nonnull final List<BatchEntry> batch) throws IOException {
+		if (batch.isEmpty()) return;
+		if (target instanceof WriterBasedBatchOutputWriter) {
+			post(new Body() {
+				@Override
+				public void writeTo(Writer writer) throws IOException {
+					((WriterBasedBatchOutputWriter) target).write(writer, batch);
+				}
+			});
+			return;
+		}
+		for (BatchEntry entry : batch) {
+			doWrite(entry.getServer(), entry.getQuery(), entry.getResults());
+		}
+	}
+
+	private void post(Body body) throws IOException {
 		HttpURLConnection httpURLConnection = createHttpURLConnection();
 		try {
 			configurer.configure(httpURLConnection);
 
-			writeResults(server, query, results, httpURLConnection);
+			try (Writer writer = new OutputStreamWriter(httpURLConnection.getOutputStream(), charset)) {
+				body.writeTo(writer);
+			}
 
 			int responseCode = httpURLConnection.getResponseCode();
 			if (responseCode != 200) {
@@ -105,15 +139,13 @@ public class HttpOutputWriter<T extends WriterBasedOutputWriter> extends OutputW
 		}
 	}
 
-	private void writeResults(Server server, Query query, Iterable<Result> results, HttpURLConnection httpURLConnection) throws IOException {
-		try (OutputStreamWriter outputStream = new OutputStreamWriter(httpURLConnection.getOutputStream(), charset)) {
-			target.write(outputStream, server, query, results);
-		}
-	}
-
 	private HttpURLConnection createHttpURLConnection() throws IOException {
 		if (proxy == null) return (HttpURLConnection) url.openConnection();
 		else return  (HttpURLConnection) url.openConnection(proxy);
 	}
 
+	private interface Body {
+		void writeTo(Writer writer) throws IOException;
+	}
+
 }
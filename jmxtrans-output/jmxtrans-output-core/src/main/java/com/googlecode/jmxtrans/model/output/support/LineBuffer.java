@@ -0,0 +1,195 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A reusable buffer to encode the lines of text based protocols (Graphite,
+ * StatsD, OpenTSDB...) without building intermediate strings.
+ * <p/>
+ * Each writer owns the grammar of its protocol and appends the parts of a
+ * line (names, values, timestamps, separators) here, then hands the whole
+ * line to the {@link Writer} in a single call. Integral numbers are
+ * formatted straight into the buffer, with the same output as
+ * {@link Object#toString()}.
+ * <p/>
+ * One buffer is kept per thread, see {@link #forCurrentThread()}. A buffer
+ * grown beyond {@value #MAX_RETAINED_CAPACITY} chars by an unusually long
+ * line is released once written or cleared, so it does not stay pinned in
+ * every writer thread.
+ */
+@NotThreadSafe
+public final class LineBuffer {
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+	/** Integral doubles below this are printed by Double.toString() as "123.0". */
+	private static final double MAX_PLAIN_DOUBLE = 1e7;
+
+	private static final ThreadLocal<LineBuffer> BUFFERS = new ThreadLocal<LineBuffer>() {
+		@Override
+		protected LineBuffer initialValue() {
+			return new LineBuffer(INITIAL_CAPACITY);
+		}
+	};
+
+	private final int initialCapacity;
+	@Nonnull private char[] chars;
+	private int length;
+
+	public LineBuffer(int initialCapacity) {
+		this.initialCapacity = initialCapacity;
+		chars = new char[initialCapacity];
+	}
+
+	/**
+	 * The cleared buffer of the current thread. It must not be kept across
+	 * calls to other writers, which could use it as well.
+	 */
+	@Nonnull
+	public static LineBuffer forCurrentThread() {
+		return BUFFERS.get().clear();
+	}
+
+	@Nonnull
+	public LineBuffer clear() {
+		length = 0;
+		if (chars.length > MAX_RETAINED_CAPACITY) {
+			chars = new char[initialCapacity];
+		}
+		return this;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	@Nonnull
+	public LineBuffer append(char c) {
+		ensureCapacity(1);
+		chars[length++] = c;
+		return this;
+	}
+
+	@Nonnull
+	public LineBuffer append(@Nonnull String s) {
+		int len = s.length();
+		ensureCapacity(len);
+		s.getChars(0, len, chars, length);
+		length += len;
+		return this;
+	}
+
+	/**
+	 * Appends a string where each character found in {@code forbidden} is
+	 * written as {@code replacement}.
+	 */
+	@Nonnull
+	public LineBuffer append(@Nonnull String s, @Nonnull String forbidden, char replacement) {
+		int start = length;
+		append(s);
+		for (int i = start; i < length; i++) {
+			if (forbidden.indexOf(chars[i]) >= 0) {
+				chars[i] = replacement;
+			}
+		}
+		return this;
+	}
+
+	@Nonnull
+	public LineBuffer append(long value) {
+		if (value == Long.MIN_VALUE) {
+			return append(Long.toString(value));
+		}
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		int digits = 1;
+		for (long v = value / 10; v != 0; v /= 10) {
+			digits++;
+		}
+		ensureCapacity(digits);
+		int end = length + digits;
+		for (int i = end - 1; i >= length; i--) {
+			chars[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		length = end;
+		return this;
+	}
+
+	/**
+	 * Appends a value as {@link String#valueOf(Object)} would. Integral
+	 * primitive wrappers, and doubles and floats holding small integral
+	 * values, are formatted without allocation.
+	 */
+	@Nonnull
+	public LineBuffer appendValue(Object value) {
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return append(((Number) value).longValue());
+		}
+		if (value instanceof Double || value instanceof Float) {
+			double d = ((Number) value).doubleValue();
+			if (d == Math.rint(d) && Math.abs(d) < MAX_PLAIN_DOUBLE && (d != 0 || 1 / d > 0)) {
+				return append((long) d).append('.').append('0');
+			}
+		}
+		return append(String.valueOf(value));
+	}
+
+	/**
+	 * Writes the content of the buffer in a single call. An oversized buffer
+	 * is cleared and released afterwards.
+	 */
+	public void writeTo(@Nonnull Writer writer) throws IOException {
+		writer.write(chars, 0, length);
+		if (chars.length > MAX_RETAINED_CAPACITY) {
+			clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+
+	@VisibleForTesting
+	int capacity() {
+		return chars.length;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (length + extra > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + extra));
+		}
+	}
+}
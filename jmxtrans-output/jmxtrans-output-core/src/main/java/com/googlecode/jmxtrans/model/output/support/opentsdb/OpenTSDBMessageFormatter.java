@@ -31,6 +31,7 @@ import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.naming.ClassAttributeNamingStrategy;
 import com.googlecode.jmxtrans.model.naming.JexlNamingStrategy;
+import com.googlecode.jmxtrans.model.naming.TemplateNamingStrategy;
 import com.googlecode.jmxtrans.model.naming.typename.TypeNameValue;
 import com.googlecode.jmxtrans.model.naming.typename.TypeNameValuesStringBuilder;
 import lombok.EqualsAndHashCode;
@@ -79,7 +80,13 @@ public class OpenTSDBMessageFormatter {
 		this.typeNames = typeNames;
 		this.tags = tags;
 		this.tagName = tagName;
-		if (metricNamingExpression != null) {
+		if (metricNamingExpression != null && TemplateNamingStrategy.isTemplate(metricNamingExpression)) {
+			try {
+				metricNameStrategy = new TemplateNamingStrategy(metricNamingExpression);
+			} catch (IllegalArgumentException iae) {
+				throw new LifecycleException("failed to setup naming strategy", iae);
+			}
+		} else if (metricNamingExpression != null) {
 			try {
 				metricNameStrategy = new JexlNamingStrategy(metricNamingExpression);
 			} catch (JexlException jexlExc) {
@@ -157,12 +164,14 @@ public class OpenTSDBMessageFormatter {
 		Map<String, Object> values = result.getValues();
 
 		String attributeName = result.getAttributeName();
+		// the name only depends on the result, not on its values
+		String metricName = this.metricNameStrategy.formatName(result);
 
 		if (values.containsKey(attributeName) && values.size() == 1) {
-			processOneMetric(resultStrings, server, result, values.get(attributeName), null, null);
+			processOneMetric(resultStrings, server, result, metricName, values.get(attributeName), null, null);
 		} else {
 			for (Map.Entry<String, Object> valueEntry : values.entrySet()) {
-				processOneMetric(resultStrings, server, result, valueEntry.getValue(), tagName, valueEntry.getKey());
+				processOneMetric(resultStrings, server, result, metricName, valueEntry.getValue(), tagName, valueEntry.getKey());
 			}
 		}
 		return resultStrings;
@@ -184,8 +193,11 @@ public class OpenTSDBMessageFormatter {
 	 */
 	protected void processOneMetric(List<String> resultStrings, Server server, Result result, Object value, String addTagName,
 									String addTagValue) {
-		String metricName = this.metricNameStrategy.formatName(result);
+		processOneMetric(resultStrings, server, result, this.metricNameStrategy.formatName(result), value, addTagName, addTagValue);
+	}
 
+	private void processOneMetric(List<String> resultStrings, Server server, Result result, String metricName, Object value,
+			String addTagName, String addTagValue) {
 		//
 		// Skip any non-numeric values since OpenTSDB only supports numeric metrics.
 		//
@@ -244,9 +256,20 @@ public class OpenTSDBMessageFormatter {
 	 * - Replace all other invalid characters with '_'.
 	 */
 	protected String sanitizeString(String unSanitized) {
-		return unSanitized.
-				replaceAll("[\"']", "").
-				replaceAll("[^-_./a-zA-Z0-9]", "_");
+		StringBuilder sanitized = null;
+		for (int i = 0; i < unSanitized.length(); i++) {
+			char c = unSanitized.charAt(i);
+			boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| c == '-' || c == '_' || c == '.' || c == '/';
+			if (valid && sanitized == null) continue;
+			if (sanitized == null) {
+				// first invalid character, only copy the string from here
+				sanitized = new StringBuilder(unSanitized.length()).append(unSanitized, 0, i);
+			}
+			if (valid) sanitized.append(c);
+			else if (c != '"' && c != '\'') sanitized.append('_');
+		}
+		return sanitized == null ? unSanitized : sanitized.toString();
 	}
 
 }
@@ -29,12 +29,16 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 @ThreadSafe
 public class ChannelWriter extends Writer {
-	@Nonnull private final Charset charset;
+	@Nonnull private final CharsetEncoder encoder;
 	@Nonnull private final ByteBuffer buffer;
 	@Nonnull private final WritableByteChannel channel;
 
@@ -42,19 +46,38 @@ public class ChannelWriter extends Writer {
 			int bufferSize,
 			@Nonnull Charset charset,
 			@Nonnull WritableByteChannel channel) {
-		this.charset = charset;
+		this.encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
 		this.channel = channel;
 		buffer = ByteBuffer.allocate(bufferSize);
 	}
 
+	/**
+	 * Encodes the characters straight into the buffer. Text written in a
+	 * single call is not split across two flushes, unless it is larger than
+	 * the buffer itself.
+	 */
 	@Override
 	public void write(char[] cbuf, int off, int len) throws IOException {
 		synchronized (lock) {
-			byte[] bytes = new String(cbuf, off, len).getBytes(charset);
-
-			if (buffer.remaining() < (bytes.length + 1)) flush();
-
-			buffer.put(bytes, off, len);
+			CharBuffer chars = CharBuffer.wrap(cbuf, off, len);
+			int start = buffer.position();
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if (result.isOverflow() && start > 0) {
+				// send what was written before, then start over with this text
+				buffer.position(start);
+				flush();
+				chars.position(off);
+				encoder.reset();
+				result = encoder.encode(chars, buffer, true);
+			}
+			while (result.isOverflow()) {
+				flush();
+				result = encoder.encode(chars, buffer, true);
+			}
+			if (result.isError()) result.throwException();
+			encoder.reset();
 		}
 	}
 
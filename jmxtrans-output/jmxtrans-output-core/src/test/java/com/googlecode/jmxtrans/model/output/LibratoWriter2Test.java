@@ -24,6 +24,7 @@ package com.googlecode.jmxtrans.model.output;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.output.support.BatchEntry;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -57,4 +58,25 @@ public class LibratoWriter2Test {
 				.node("gauges[0].value").isEqualTo(10);
 	}
 
+	@Test
+	public void batchIsWrittenAsASingleDocument() throws IOException {
+		LibratoWriter2 libratoWriter = new LibratoWriter2(new JsonFactory(), ImmutableList.<String>of());
+
+		StringWriter writer = new StringWriter();
+
+		libratoWriter.write(writer, ImmutableList.of(
+				new BatchEntry(dummyServer(), dummyQuery(), dummyResults()),
+				new BatchEntry(dummyServer(), dummyQuery(), dummyResults())));
+
+		String json = writer.toString();
+
+		assertThatJson(json)
+				.node("counters").isArray().ofLength(0);
+		assertThatJson(json)
+				.node("gauges").isArray().ofLength(2);
+		assertThatJson(json)
+				.node("gauges[1].name").isEqualTo("MemoryAlias.ObjectPendingFinalizationCount")
+				.node("gauges[1].value").isEqualTo(10);
+	}
+
 }
@@ -32,23 +32,24 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.io.StringWriter;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 public class OpenTSDBWriter2Test {
 
 	private OpenTSDBMessageFormatter openTSDBMessageFormatter;
 	private OpenTSDBWriter2 writer;
-	private Writer outputWriter;
+	private StringWriter outputWriter;
 	private Result result;
 
 	@Before
 	public void setup() {
 		openTSDBMessageFormatter = mock(OpenTSDBMessageFormatter.class);
 		writer = new OpenTSDBWriter2(openTSDBMessageFormatter);
-		outputWriter = mock(Writer.class);
+		outputWriter = new StringWriter();
 		result = mock(Result.class);
 	}
 
@@ -62,8 +63,7 @@ public class OpenTSDBWriter2Test {
 
 		writer.write(outputWriter, null, null, results);
 
-		Mockito.verify(outputWriter).write("put Result1\n");
-		Mockito.verify(outputWriter).write("put Result2\n");
+		assertThat(outputWriter.toString()).isEqualTo("put Result1\nput Result2\n");
 	}
 
 }
\ No newline at end of file
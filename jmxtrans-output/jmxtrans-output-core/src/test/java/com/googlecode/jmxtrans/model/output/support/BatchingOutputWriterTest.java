@@ -0,0 +1,210 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.CycleAwareOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterAdapter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BatchingOutputWriterTest {
+
+	private final RecordingBatchOutputWriter target = new RecordingBatchOutputWriter();
+
+	@Test
+	public void fullBatchIsWrittenInOneCall() throws Exception {
+		BatchingOutputWriter<RecordingBatchOutputWriter> writer = new BatchingOutputWriter<>(target, 3, Long.MAX_VALUE, 60000, 10);
+
+		for (int i = 0; i < 3; i++) {
+			writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		}
+
+		List<BatchEntry> batch = target.batches.poll(5, SECONDS);
+		assertThat(batch).hasSize(3);
+		assertThat(batch.get(0).getResults()).isEqualTo(dummyResults());
+		writer.close();
+		assertThat(target.batches).isEmpty();
+	}
+
+	@Test
+	public void batchIsFlushedWhenItExceedsBatchBytes() throws Exception {
+		long entryBytes = BatchingOutputWriter.estimateBytes(new BatchEntry(dummyServer(), dummyQuery(), dummyResults()));
+		BatchingOutputWriter<RecordingBatchOutputWriter> writer = new BatchingOutputWriter<>(target, 100, 2 * entryBytes, 60000, 10);
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		assertThat(target.batches.poll(5, SECONDS)).hasSize(2);
+		writer.close();
+	}
+
+	@Test
+	public void partialBatchIsFlushedAfterLinger() throws Exception {
+		BatchingOutputWriter<RecordingBatchOutputWriter> writer = new BatchingOutputWriter<>(target, 100, Long.MAX_VALUE, 10, 10);
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		assertThat(target.batches.poll(5, SECONDS)).hasSize(1);
+		writer.close();
+	}
+
+	@Test
+	public void remainingEntriesAreFlushedOnClose() throws Exception {
+		BatchingOutputWriter<RecordingBatchOutputWriter> writer = new BatchingOutputWriter<>(target, 100, Long.MAX_VALUE, 60000, 10);
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.close();
+
+		assertThat(target.batches.poll()).hasSize(2);
+		assertThat(target.closed).isTrue();
+	}
+
+	@Test
+	public void writersWithoutBatchSupportReceiveOneCallPerEntry() throws Exception {
+		OutputWriter simpleTarget = mock(OutputWriter.class);
+		BatchingOutputWriter<OutputWriter> writer = new BatchingOutputWriter<>(simpleTarget, 100, Long.MAX_VALUE, 60000, 10);
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.close();
+
+		verify(simpleTarget, times(2)).doWrite(any(Server.class), any(Query.class), any(ImmutableList.class));
+		verify(simpleTarget).close();
+	}
+
+	@Test
+	public void batchesBeyondMaxQueuedBatchesAreDropped() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch writing = new CountDownLatch(1);
+		OutputWriter slowTarget = new OutputWriterAdapter() {
+			@Override
+			public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+				writing.countDown();
+				release.await();
+			}
+		};
+		BatchingOutputWriter<OutputWriter> writer = new BatchingOutputWriter<>(slowTarget, 1, Long.MAX_VALUE, 60000, 1);
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		assertThat(writing.await(5, SECONDS)).isTrue();
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		assertThat(writer.getDroppedEntries()).isEqualTo(2);
+		release.countDown();
+		writer.close();
+	}
+
+	@Test
+	public void writesAfterCloseAreDropped() throws Exception {
+		BatchingOutputWriter<RecordingBatchOutputWriter> writer = new BatchingOutputWriter<>(target, 1, Long.MAX_VALUE, 60000, 10);
+		writer.close();
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.close();
+
+		assertThat(writer.getDroppedEntries()).isEqualTo(1);
+		assertThat(target.batches).isEmpty();
+	}
+
+	@Test
+	public void cyclesAreForwardedAfterTheEntriesQueuedBeforeThem() throws Exception {
+		CycleRecordingWriter cycleTarget = new CycleRecordingWriter();
+		BatchingOutputWriter<CycleRecordingWriter> writer = new BatchingOutputWriter<>(cycleTarget, 100, Long.MAX_VALUE, 60000, 10);
+
+		writer.beginCycle(dummyServer(), 1);
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.endCycle(dummyServer(), 1);
+		writer.close();
+
+		assertThat(cycleTarget.events).containsExactly("begin 1", "batch 2", "end 1");
+	}
+
+	private static final class CycleRecordingWriter extends OutputWriterAdapter implements BatchOutputWriter, CycleAwareOutputWriter {
+		private final Queue<String> events = new ConcurrentLinkedQueue<>();
+
+		@Override
+		public void writeBatch(@Nonnull List<BatchEntry> batch) {
+			events.add("batch " + batch.size());
+		}
+
+		@Override
+		public void doWrite(Server server, Query query, Iterable<Result> results) {
+			throw new UnsupportedOperationException("Batches only");
+		}
+
+		@Override
+		public void beginCycle(Server server, long cycleId) {
+			events.add("begin " + cycleId);
+		}
+
+		@Override
+		public void endCycle(Server server, long cycleId) {
+			events.add("end " + cycleId);
+		}
+	}
+
+	private static final class RecordingBatchOutputWriter extends OutputWriterAdapter implements BatchOutputWriter {
+		private final BlockingQueue<List<BatchEntry>> batches = new LinkedBlockingQueue<>();
+		private volatile boolean closed;
+
+		@Override
+		public void writeBatch(@Nonnull List<BatchEntry> batch) {
+			batches.add(batch);
+		}
+
+		@Override
+		public void doWrite(Server server, Query query, Iterable<Result> results) {
+			throw new UnsupportedOperationException("Batches only");
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
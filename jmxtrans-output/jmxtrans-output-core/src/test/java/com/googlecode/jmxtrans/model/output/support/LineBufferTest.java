@@ -0,0 +1,92 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineBufferTest {
+
+	@Test
+	public void integralValuesAreFormattedLikeToString() {
+		Object[] values = {0, 7, -42, 123456789L, Long.MAX_VALUE, Long.MIN_VALUE, (short) -3, (byte) 12};
+		for (Object value : values) {
+			assertThat(new LineBuffer(1).appendValue(value).toString()).isEqualTo(value.toString());
+		}
+	}
+
+	@Test
+	public void floatingValuesAreFormattedLikeToString() {
+		Object[] values = {0.0, -0.0, 1.0, -12.0, 9999999.0, 1e7, 0.5, 3.14, Double.NaN, 42f, 0.1f, 1e20};
+		for (Object value : values) {
+			assertThat(new LineBuffer(1).appendValue(value).toString()).isEqualTo(value.toString());
+		}
+	}
+
+	@Test
+	public void otherValuesUseStringValueOf() {
+		assertThat(new LineBuffer(4).appendValue(new BigDecimal("1.50")).toString()).isEqualTo("1.50");
+		assertThat(new LineBuffer(4).appendValue("abc").toString()).isEqualTo("abc");
+		assertThat(new LineBuffer(4).appendValue(null).toString()).isEqualTo("null");
+	}
+
+	@Test
+	public void forbiddenCharactersAreReplaced() {
+		LineBuffer line = new LineBuffer(4).append("a(b)").append(' ').append("c(d)", "()", '_');
+
+		assertThat(line.toString()).isEqualTo("a(b) c_d_");
+	}
+
+	@Test
+	public void bufferIsReusedAfterClear() throws IOException {
+		LineBuffer line = LineBuffer.forCurrentThread();
+		line.append("first line that is long enough to grow the buffer").append('\n');
+		line.clear().append("second").append(' ').append(2L).append('\n');
+
+		StringWriter writer = new StringWriter();
+		line.writeTo(writer);
+
+		assertThat(writer.toString()).isEqualTo("second 2\n");
+		assertThat(LineBuffer.forCurrentThread()).isSameAs(line);
+		assertThat(line.length()).isZero();
+	}
+
+	@Test
+	public void oversizedBufferIsReleasedOnceWritten() throws IOException {
+		LineBuffer line = new LineBuffer(16);
+		line.append(Strings.repeat("x", 100000)).append('\n');
+
+		StringWriter writer = new StringWriter();
+		line.writeTo(writer);
+
+		assertThat(writer.toString()).hasSize(100001);
+		assertThat(line.length()).isZero();
+		assertThat(line.capacity()).isEqualTo(16);
+	}
+}
@@ -81,6 +81,39 @@ public class ChannelWriterTest {
 		assertThat(channel.toString()).isEqualTo("hello world 1" + "hello world 2");
 	}
 
+	@Test
+	public void partOfACharArrayIsEncoded() throws IOException {
+		MyByteChannel channel = new MyByteChannel(UTF_8);
+		ChannelWriter writer = new ChannelWriter(20, UTF_8, channel);
+
+		writer.write("xxhello worldxx".toCharArray(), 2, 11);
+		writer.flush();
+
+		assertThat(channel.toString()).isEqualTo("hello world");
+	}
+
+	@Test
+	public void multiByteCharactersAreNotTruncated() throws IOException {
+		MyByteChannel channel = new MyByteChannel(UTF_8);
+		ChannelWriter writer = new ChannelWriter(20, UTF_8, channel);
+
+		writer.write("h\u00e9llo w\u00f6rld");
+		writer.flush();
+
+		assertThat(channel.toString()).isEqualTo("h\u00e9llo w\u00f6rld");
+	}
+
+	@Test
+	public void textLargerThanTheBufferIsSentInPieces() throws IOException {
+		MyByteChannel channel = new MyByteChannel(UTF_8);
+		ChannelWriter writer = new ChannelWriter(8, UTF_8, channel);
+
+		writer.write("hello world 1");
+		writer.flush();
+
+		assertThat(channel.toString()).isEqualTo("hello world 1");
+	}
+
 	private static class MyByteChannel implements WritableByteChannel {
 
 		@Nonnull private final StringBuffer buffer = new StringBuffer();
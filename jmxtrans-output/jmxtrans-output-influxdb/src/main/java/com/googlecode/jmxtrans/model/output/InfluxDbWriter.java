@@ -29,6 +29,8 @@ import com.google.common.collect.ImmutableSet;
 import com.googlecode.jmxtrans.model.*;
 import com.googlecode.jmxtrans.model.naming.KeyUtils;
 import com.googlecode.jmxtrans.model.naming.typename.TypeNameValue;
+import com.googlecode.jmxtrans.model.output.support.BatchEntry;
+import com.googlecode.jmxtrans.model.output.support.BatchOutputWriter;
 import org.apache.commons.lang.StringUtils;
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDB.ConsistencyLevel;
@@ -38,8 +40,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
@@ -57,7 +61,7 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  *         <a href="https://github.com/sihutch">github.com/sihutch</a>
  */
 @ThreadSafe
-public class InfluxDbWriter extends OutputWriterAdapter {
+public class InfluxDbWriter extends OutputWriterAdapter implements BatchOutputWriter {
     private static final Logger log = LoggerFactory.getLogger(InfluxDbWriter.class);
 
     public static final String TAG_HOSTNAME = "hostname";
@@ -175,14 +179,41 @@ public class InfluxDbWriter extends OutputWriterAdapter {
     public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
         // Creates only if it doesn't already exist
         if (createDatabase) influxDB.createDatabase(database);
-        BatchPoints.Builder batchPointsBuilder = BatchPoints.database(database).retentionPolicy(retentionPolicy)
-                .tag(TAG_HOSTNAME, server.getSource());
+        BatchPoints batchPoints = createBatchPoints(server.getSource());
+        addPoints(batchPoints, query, results, null);
+        influxDB.write(batchPoints);
+    }
+
+    /**
+     * Writes the points of all entries in a single request. As entries can
+     * come from different servers, the hostname is tagged on each point
+     * instead of on the batch.
+     */
+    @Override
+    public void writeBatch(@Nonnull List<BatchEntry> batch) throws Exception {
+        if (batch.isEmpty()) return;
+        if (createDatabase) influxDB.createDatabase(database);
+        BatchPoints batchPoints = createBatchPoints(null);
+        for (BatchEntry entry : batch) {
+            addPoints(batchPoints, entry.getQuery(), entry.getResults(), entry.getServer().getSource());
+        }
+        influxDB.write(batchPoints);
+    }
+
+    private BatchPoints createBatchPoints(@Nullable String hostname) {
+        BatchPoints.Builder batchPointsBuilder = BatchPoints.database(database).retentionPolicy(retentionPolicy);
+        if (hostname != null) {
+            batchPointsBuilder.tag(TAG_HOSTNAME, hostname);
+        }
 
         for (Map.Entry<String, String> tag : tags.entrySet()) {
             batchPointsBuilder.tag(tag.getKey(), tag.getValue());
         }
 
-        BatchPoints batchPoints = batchPointsBuilder.consistency(writeConsistency).build();
+        return batchPointsBuilder.consistency(writeConsistency).build();
+    }
+
+    private void addPoints(BatchPoints batchPoints, Query query, Iterable<Result> results, @Nullable String hostname) throws Exception {
         for (Result result : results) {
             log.debug("Query result: {}", result);
 
@@ -231,6 +262,9 @@ public class InfluxDbWriter extends OutputWriterAdapter {
                 }
 
                 resultTagsToApply.putAll(topicTags);
+                if (hostname != null) {
+                    resultTagsToApply.put(TAG_HOSTNAME, hostname);
+                }
 
                 Point point = Point.measurement(result.getKeyAlias()).time(result.getEpoch(), MILLISECONDS)
                         .tag(resultTagsToApply).fields(filteredValues).build();
@@ -239,8 +273,6 @@ public class InfluxDbWriter extends OutputWriterAdapter {
                 batchPoints.point(point);
             }
         }
-
-        influxDB.write(batchPoints);
     }
 
     private Map<String, String> buildResultTagMap(Result result) throws Exception {
@@ -31,7 +31,9 @@ import com.googlecode.jmxtrans.guice.JmxTransModule;
 import com.googlecode.jmxtrans.model.JmxProcess;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.ResultAttribute;
+import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.ServerFixtures;
+import com.googlecode.jmxtrans.model.output.support.BatchEntry;
 import com.googlecode.jmxtrans.util.JsonUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.WordUtils;
@@ -264,6 +266,24 @@ public class InfluxDbWriterTests {
         assertThat(point.lineProtocol()).startsWith(lineProtocol);
     }
 
+    @Test
+    public void batchIsWrittenInASingleRequestWithHostnameOnEachPoint() throws Exception {
+        InfluxDbWriter writer = getTestInfluxDbWriterWithDefaultSettings();
+        Server otherServer = Server.builder(dummyServer()).setHost("other.example.net").build();
+        writer.writeBatch(ImmutableList.of(
+                new BatchEntry(dummyServer(), dummyQuery(), results),
+                new BatchEntry(otherServer, dummyQuery(), results)));
+
+        verify(influxDB).write(messageCaptor.capture());
+        BatchPoints batchPoints = messageCaptor.getValue();
+
+        assertThat(batchPoints.getTags()).doesNotContainKey(TAG_HOSTNAME);
+        List<Point> points = batchPoints.getPoints();
+        assertThat(points).hasSize(2);
+        assertThat(points.get(0).lineProtocol()).contains(TAG_HOSTNAME + "=" + HOST);
+        assertThat(points.get(1).lineProtocol()).contains(TAG_HOSTNAME + "=other.example.net");
+    }
+
     @Test
     public void databaseIsCreated() throws Exception {
         InfluxDbWriter writer = getTestInfluxDbWriterWithDefaultSettings();